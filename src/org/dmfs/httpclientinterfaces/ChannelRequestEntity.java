@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+
+/**
+ * An {@link HttpRequestEntity} that can also write its content to a {@link WritableByteChannel}. Executors that work on channels should check for this
+ * interface, so the content can be moved without copying it through {@link java.io.OutputStream}s and byte arrays.
+ * <p>
+ * Implementations still have to support {@link #writeContent(java.io.OutputStream)}, see
+ * {@link org.dmfs.httpclientinterfaces.utils.AbstractChannelRequestEntity}. Use {@link org.dmfs.httpclientinterfaces.utils.ChannelRequestEntityAdapter} to
+ * write any {@link HttpRequestEntity} to a channel.
+ * </p>
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public interface ChannelRequestEntity extends HttpRequestEntity
+{
+	/**
+	 * Writes the content to the given blocking {@link WritableByteChannel}. Note that the channel is property of the caller and must not be closed by this
+	 * method.
+	 * 
+	 * @param channel
+	 *            The {@link WritableByteChannel} to write to.
+	 * @throws IOException
+	 */
+	public void writeContent(WritableByteChannel channel) throws IOException;
+}
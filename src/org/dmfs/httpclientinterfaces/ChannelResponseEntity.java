@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+
+
+/**
+ * An {@link HttpResponseEntity} that can also provide its content as a {@link ReadableByteChannel}. Handlers that work on channels should check for this
+ * interface, so the content can be moved without copying it through {@link java.io.InputStream}s and byte arrays.
+ * <p>
+ * Implementations still have to support {@link #contentStream()}, see {@link org.dmfs.httpclientinterfaces.utils.AbstractChannelResponseEntity}. Use
+ * {@link org.dmfs.httpclientinterfaces.utils.ChannelResponseEntityAdapter} to read any {@link HttpResponseEntity} from a channel.
+ * </p>
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public interface ChannelResponseEntity extends HttpResponseEntity
+{
+	/**
+	 * Returns the content of the entity as a blocking {@link ReadableByteChannel}. Either this or {@link #contentStream()} can be called, but not both. If you
+	 * don't consume the entire content, make sure you always close the {@link ReadableByteChannel}.
+	 * 
+	 * @return A {@link ReadableByteChannel}, never null.
+	 * @throws IOException
+	 */
+	public ReadableByteChannel contentChannel() throws IOException;
+}
@@ -0,0 +1,379 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.authentication;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Iterator;
+import java.util.List;
+
+import org.dmfs.httpclientinterfaces.HttpMethod;
+import org.dmfs.httpclientinterfaces.HttpRequest;
+import org.dmfs.httpclientinterfaces.HttpRequestEntity;
+import org.dmfs.httpclientinterfaces.HttpRequestExecutor;
+import org.dmfs.httpclientinterfaces.HttpResponse;
+import org.dmfs.httpclientinterfaces.HttpResponseHandler;
+import org.dmfs.httpclientinterfaces.HttpStatus;
+import org.dmfs.httpclientinterfaces.OnRedirectCallback;
+import org.dmfs.httpclientinterfaces.OnResponseCallback;
+import org.dmfs.httpclientinterfaces.exceptions.ProtocolError;
+import org.dmfs.httpclientinterfaces.exceptions.ProtocolException;
+import org.dmfs.httpclientinterfaces.exceptions.RedirectionException;
+import org.dmfs.httpclientinterfaces.exceptions.UnauthorizedException;
+import org.dmfs.httpclientinterfaces.exceptions.UnexpectedResponseException;
+import org.dmfs.httpclientinterfaces.headers.Header;
+import org.dmfs.httpclientinterfaces.headers.HeaderList;
+import org.dmfs.httpclientinterfaces.headers.HttpHeaders;
+import org.dmfs.httpclientinterfaces.headers.values.Challenge;
+import org.dmfs.httpclientinterfaces.utils.ConsumingInputStream;
+
+
+/**
+ * An {@link HttpRequestExecutor} decorator that authenticates requests.
+ * <p>
+ * Requests to a protection space that has been authenticated before are authenticated preemptively with the {@link Authenticator} from the
+ * {@link AuthenticationCache}. When a response has the status {@link HttpStatus#UNAUTHORIZED} and contains a challenge that can be answered, either by the
+ * {@link Authenticator} that authenticated the request or by a new one from the {@link AuthenticatorFactory}, the request is repeated once with new
+ * credentials. In all other cases the response is handed to the response handler of the request.
+ * </p>
+ * <p>
+ * Note that the request is repeated, so the request entity must support being written twice.
+ * </p>
+ * <p>
+ * Challenges are always associated with the {@link URI} of the response that contains them. If a redirect led to another server, the request is repeated at
+ * the {@link URI} of the challenging response, so credentials are only sent to the server that asked for them.
+ * </p>
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class AuthenticatingExecutor implements HttpRequestExecutor
+{
+	private final HttpRequestExecutor mExecutor;
+	private final AuthenticationCache mCache;
+	private final AuthenticatorFactory mAuthenticatorFactory;
+
+
+	/**
+	 * Creates an {@link AuthenticatingExecutor}.
+	 * 
+	 * @param executor
+	 *            The {@link HttpRequestExecutor} to execute the requests.
+	 * @param cache
+	 *            The {@link AuthenticationCache} that stores the {@link Authenticator}s of known protection spaces.
+	 * @param authenticatorFactory
+	 *            The {@link AuthenticatorFactory} that provides {@link Authenticator}s for new protection spaces.
+	 */
+	public AuthenticatingExecutor(HttpRequestExecutor executor, AuthenticationCache cache, AuthenticatorFactory authenticatorFactory)
+	{
+		mExecutor = executor;
+		mCache = cache;
+		mAuthenticatorFactory = authenticatorFactory;
+	}
+
+
+	@Override
+	public <T> T execute(URI uri, HttpRequest<T> request) throws IOException, ProtocolError, ProtocolException, RedirectionException,
+		UnexpectedResponseException
+	{
+		try
+		{
+			return mExecutor.execute(uri, authenticated(uri, request, mCache.authenticator(uri), true));
+		}
+		catch (ChallengeException e)
+		{
+			return mExecutor.execute(e.mUri, reauthenticated(request, e));
+		}
+	}
+
+
+	@Override
+	public <T> T execute(URI uri, HttpRequest<T> request, OnRedirectCallback redirectionCallback) throws IOException, ProtocolError, ProtocolException,
+		RedirectionException, UnexpectedResponseException
+	{
+		try
+		{
+			return mExecutor.execute(uri, authenticated(uri, request, mCache.authenticator(uri), true), redirectionCallback);
+		}
+		catch (ChallengeException e)
+		{
+			return mExecutor.execute(e.mUri, reauthenticated(request, e), redirectionCallback);
+		}
+	}
+
+
+	@Override
+	public <T> void execute(URI uri, HttpRequest<T> request, OnResponseCallback<T> callback)
+	{
+		execute(uri, request, callback, null);
+	}
+
+
+	@Override
+	public <T> void execute(final URI uri, final HttpRequest<T> request, final OnResponseCallback<T> callback, final OnRedirectCallback redirectionCallback)
+	{
+		HttpRequest<T> authenticated;
+		try
+		{
+			authenticated = authenticated(uri, request, mCache.authenticator(uri), true);
+		}
+		catch (Exception e)
+		{
+			callback.onError(uri, e);
+			return;
+		}
+
+		OnResponseCallback<T> challengeCallback = new OnResponseCallback<T>()
+		{
+			@Override
+			public void onResponse(URI requestUri, URI respondingUri, T response)
+			{
+				callback.onResponse(requestUri, respondingUri, response);
+			}
+
+
+			@Override
+			public void onError(URI requestUri, Exception e)
+			{
+				if (!(e instanceof ChallengeException))
+				{
+					callback.onError(requestUri, e);
+					return;
+				}
+
+				ChallengeException challengeException = (ChallengeException) e;
+				HttpRequest<T> reauthenticated;
+				try
+				{
+					reauthenticated = reauthenticated(request, challengeException);
+				}
+				catch (Exception e2)
+				{
+					callback.onError(requestUri, e2);
+					return;
+				}
+				executeAsync(challengeException.mUri, reauthenticated, callback, redirectionCallback);
+			}
+		};
+		executeAsync(uri, authenticated, challengeCallback, redirectionCallback);
+	}
+
+
+	private <T> void executeAsync(URI uri, HttpRequest<T> request, OnResponseCallback<T> callback, OnRedirectCallback redirectionCallback)
+	{
+		if (redirectionCallback == null)
+		{
+			mExecutor.execute(uri, request, callback);
+		}
+		else
+		{
+			mExecutor.execute(uri, request, callback, redirectionCallback);
+		}
+	}
+
+
+	/**
+	 * Returns a request that contains the credentials of the given {@link Authenticator}.
+	 */
+	private <T> HttpRequest<T> authenticated(URI uri, HttpRequest<T> request, Authenticator authenticator, boolean interceptChallenges) throws IOException,
+		ProtocolError, ProtocolException
+	{
+		String authorization = authenticator == null ? null : authenticator.authorization(request.method(), uri);
+		return new AuthenticatedRequest<T>(uri, request, authenticator, authorization, interceptChallenges);
+	}
+
+
+	/**
+	 * Answers the challenge of the given {@link ChallengeException} and returns a request with new credentials for the {@link URI} of the challenge. The
+	 * returned request doesn't intercept challenges anymore, so another 401 response is handed to the response handler of the request.
+	 */
+	private <T> HttpRequest<T> reauthenticated(HttpRequest<T> request, ChallengeException challengeException) throws IOException, ProtocolError,
+		ProtocolException
+	{
+		URI uri = challengeException.mUri;
+		Authenticator authenticator = challengeException.mAuthenticator;
+		if (!authenticator.challenge(challengeException.mChallenge, challengeException.mAuthorization))
+		{
+			throw new UnauthorizedException(String.format("Authentication at '%s' failed.", uri.toASCIIString()));
+		}
+		if (challengeException.mProtectionSpace != null)
+		{
+			mCache.put(uri, challengeException.mProtectionSpace, authenticator);
+		}
+		return authenticated(uri, request, authenticator, false);
+	}
+
+
+	/**
+	 * Returns a {@link ChallengeException} for the first challenge of the given response that can be answered or <code>null</code> if there is none.
+	 * <p>
+	 * The challenge belongs to the server that sent the response, which is not the server of the request {@link URI} if the request has been redirected. The
+	 * {@link Authenticator} of the request is only reused if both are the same server.
+	 * </p>
+	 */
+	private ChallengeException challengeException(URI requestUri, HttpResponse response, Authenticator authenticator, String authorization)
+	{
+		URI uri = response.responseUri();
+		if (authenticator != null && !ProtectionSpace.root(requestUri).equals(ProtectionSpace.root(uri)))
+		{
+			// the credentials of the request are not meant for this server
+			authenticator = null;
+			authorization = null;
+		}
+
+		Iterator<Header<List<Challenge>>> headers = response.headers(HttpHeaders.WWW_AUTHENTICATE);
+		while (headers.hasNext())
+		{
+			List<Challenge> challenges;
+			try
+			{
+				challenges = headers.next().value();
+			}
+			catch (IllegalArgumentException e)
+			{
+				// ignore malformed challenges
+				continue;
+			}
+
+			for (Challenge challenge : challenges)
+			{
+				if (authenticator != null && authenticator.scheme().equalsIgnoreCase(challenge.scheme()))
+				{
+					return new ChallengeException(uri, authenticator, challenge, authorization, null);
+				}
+
+				ProtectionSpace protectionSpace = new ProtectionSpace(uri, challenge.parameter("realm"));
+				Authenticator cached = mCache.authenticator(protectionSpace);
+				if (cached != null && cached.scheme().equalsIgnoreCase(challenge.scheme()))
+				{
+					// the protection space is known, but the request has been sent to a path we didn't know is part of it
+					return new ChallengeException(uri, cached, challenge, null, protectionSpace);
+				}
+
+				Authenticator newAuthenticator = mAuthenticatorFactory.authenticator(protectionSpace, challenge);
+				if (newAuthenticator != null)
+				{
+					return new ChallengeException(uri, newAuthenticator, challenge, null, protectionSpace);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * A request wrapper that adds an Authorization header and intercepts answerable challenges.
+	 */
+	private final class AuthenticatedRequest<T> implements HttpRequest<T>
+	{
+		private final URI mUri;
+		private final HttpRequest<T> mRequest;
+		private final Authenticator mAuthenticator;
+		private final String mAuthorization;
+		private final boolean mInterceptChallenges;
+
+
+		private AuthenticatedRequest(URI uri, HttpRequest<T> request, Authenticator authenticator, String authorization, boolean interceptChallenges)
+		{
+			mUri = uri;
+			mRequest = request;
+			mAuthenticator = authenticator;
+			mAuthorization = authorization;
+			mInterceptChallenges = interceptChallenges;
+		}
+
+
+		@Override
+		public HttpMethod method()
+		{
+			return mRequest.method();
+		}
+
+
+		@Override
+		public HeaderList headers()
+		{
+			HeaderList headers = mRequest.headers();
+			if (mAuthorization == null)
+			{
+				return headers;
+			}
+			if (headers.contains(HttpHeaders.AUTHORIZATION))
+			{
+				headers = headers.remove(HttpHeaders.AUTHORIZATION);
+			}
+			return headers.append(HttpHeaders.AUTHORIZATION.header(mAuthorization));
+		}
+
+
+		@Override
+		public HttpRequestEntity requestEntity()
+		{
+			return mRequest.requestEntity();
+		}
+
+
+		@Override
+		public HttpResponseHandler<T> responseHandler(HttpResponse response) throws IOException, ProtocolError, ProtocolException
+		{
+			if (mInterceptChallenges && HttpStatus.UNAUTHORIZED.equals(response.status()) && response.hasHeader(HttpHeaders.WWW_AUTHENTICATE))
+			{
+				final ChallengeException challengeException = challengeException(mUri, response, mAuthenticator, mAuthorization);
+				if (challengeException != null)
+				{
+					return new HttpResponseHandler<T>()
+					{
+						@Override
+						public T handleResponse(HttpResponse response) throws IOException, ProtocolError, ProtocolException
+						{
+							new ConsumingInputStream(response.responseEntity().contentStream()).close();
+							throw challengeException;
+						}
+					};
+				}
+			}
+			return mRequest.responseHandler(response);
+		}
+	}
+
+	/**
+	 * An {@link UnauthorizedException} that carries a challenge that can be answered.
+	 */
+	private final static class ChallengeException extends UnauthorizedException
+	{
+		private static final long serialVersionUID = 0;
+
+		/**
+		 * The {@link URI} of the response that contains the challenge.
+		 */
+		private final URI mUri;
+		private final transient Authenticator mAuthenticator;
+		private final transient Challenge mChallenge;
+		private final String mAuthorization;
+		private final transient ProtectionSpace mProtectionSpace;
+
+
+		private ChallengeException(URI uri, Authenticator authenticator, Challenge challenge, String authorization, ProtectionSpace protectionSpace)
+		{
+			super("Authentication required");
+			mUri = uri;
+			mAuthenticator = authenticator;
+			mChallenge = challenge;
+			mAuthorization = authorization;
+			mProtectionSpace = protectionSpace;
+		}
+	}
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.authentication;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+
+/**
+ * A thread safe cache of {@link Authenticator}s per {@link ProtectionSpace}.
+ * <p>
+ * Every {@link Authenticator} is associated with the paths it has been used for. Requests to a path at or below these paths are authenticated
+ * preemptively, as recommended by <a href="https://tools.ietf.org/html/rfc7617#section-2.2">RFC 7617, Section 2.2</a>. Lookups don't lock.
+ * </p>
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class AuthenticationCache
+{
+	private final ConcurrentMap<String, List<Entry>> mEntries = new ConcurrentHashMap<String, List<Entry>>(16, 0.75f, 4);
+
+
+	/**
+	 * Returns the {@link Authenticator} to authenticate a request to the given {@link URI} preemptively.
+	 * 
+	 * @param uri
+	 *            The request {@link URI}.
+	 * @return The {@link Authenticator} of the protection space with the longest matching path or <code>null</code> if there is none.
+	 */
+	public Authenticator authenticator(URI uri)
+	{
+		List<Entry> entries = mEntries.get(ProtectionSpace.root(uri));
+		if (entries == null)
+		{
+			return null;
+		}
+		String path = path(uri);
+		Entry result = null;
+		for (Entry entry : entries)
+		{
+			if (path.startsWith(entry.mPath) && (result == null || entry.mPath.length() > result.mPath.length()))
+			{
+				result = entry;
+			}
+		}
+		return result == null ? null : result.mAuthenticator;
+	}
+
+
+	/**
+	 * Returns the {@link Authenticator} of the given {@link ProtectionSpace}.
+	 * 
+	 * @param protectionSpace
+	 *            The {@link ProtectionSpace}.
+	 * @return The {@link Authenticator} or <code>null</code> if there is none.
+	 */
+	public Authenticator authenticator(ProtectionSpace protectionSpace)
+	{
+		List<Entry> entries = mEntries.get(protectionSpace.root());
+		if (entries != null)
+		{
+			for (Entry entry : entries)
+			{
+				if (entry.mProtectionSpace.equals(protectionSpace))
+				{
+					return entry.mAuthenticator;
+				}
+			}
+		}
+		return null;
+	}
+
+
+	/**
+	 * Stores an {@link Authenticator} for the given {@link ProtectionSpace}. It will be used for all requests to the directory of the given {@link URI} and
+	 * below. If the protection space is already known, its {@link Authenticator} is replaced and its paths are extended to cover the given {@link URI}.
+	 * 
+	 * @param uri
+	 *            The {@link URI} of the request that has been challenged.
+	 * @param protectionSpace
+	 *            The {@link ProtectionSpace}.
+	 * @param authenticator
+	 *            The {@link Authenticator}.
+	 */
+	public void put(URI uri, ProtectionSpace protectionSpace, Authenticator authenticator)
+	{
+		String root = protectionSpace.root();
+		List<Entry> entries = mEntries.get(root);
+		if (entries == null)
+		{
+			List<Entry> newEntries = new CopyOnWriteArrayList<Entry>();
+			entries = mEntries.putIfAbsent(root, newEntries);
+			if (entries == null)
+			{
+				entries = newEntries;
+			}
+		}
+
+		String path = path(uri);
+		path = path.substring(0, path.lastIndexOf('/') + 1);
+		synchronized (entries)
+		{
+			for (int i = 0, count = entries.size(); i < count; ++i)
+			{
+				Entry entry = entries.get(i);
+				if (entry.mProtectionSpace.equals(protectionSpace))
+				{
+					entries.set(i, new Entry(protectionSpace, commonPath(entry.mPath, path), authenticator));
+					return;
+				}
+			}
+			entries.add(new Entry(protectionSpace, path, authenticator));
+		}
+	}
+
+
+	/**
+	 * Removes the {@link Authenticator} of the given {@link ProtectionSpace}.
+	 * 
+	 * @param protectionSpace
+	 *            The {@link ProtectionSpace} to remove.
+	 */
+	public void remove(ProtectionSpace protectionSpace)
+	{
+		List<Entry> entries = mEntries.get(protectionSpace.root());
+		if (entries != null)
+		{
+			synchronized (entries)
+			{
+				for (Entry entry : entries)
+				{
+					if (entry.mProtectionSpace.equals(protectionSpace))
+					{
+						entries.remove(entry);
+						return;
+					}
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Removes all {@link Authenticator}s.
+	 */
+	public void clear()
+	{
+		mEntries.clear();
+	}
+
+
+	private static String path(URI uri)
+	{
+		String path = uri.getRawPath();
+		return path == null || path.length() == 0 ? "/" : path;
+	}
+
+
+	/**
+	 * Returns the longest common directory of the given directories.
+	 */
+	private static String commonPath(String path1, String path2)
+	{
+		int length = Math.min(path1.length(), path2.length());
+		int lastSlash = 0;
+		for (int i = 0; i < length && path1.charAt(i) == path2.charAt(i); ++i)
+		{
+			if (path1.charAt(i) == '/')
+			{
+				lastSlash = i;
+			}
+		}
+		return path1.substring(0, lastSlash + 1);
+	}
+
+	private final static class Entry
+	{
+		private final ProtectionSpace mProtectionSpace;
+		private final String mPath;
+		private final Authenticator mAuthenticator;
+
+
+		private Entry(ProtectionSpace protectionSpace, String path, Authenticator authenticator)
+		{
+			mProtectionSpace = protectionSpace;
+			mPath = path;
+			mAuthenticator = authenticator;
+		}
+	}
+}
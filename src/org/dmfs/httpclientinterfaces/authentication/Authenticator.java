@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.authentication;
+
+import java.io.IOException;
+import java.net.URI;
+
+import org.dmfs.httpclientinterfaces.HttpMethod;
+import org.dmfs.httpclientinterfaces.exceptions.ProtocolError;
+import org.dmfs.httpclientinterfaces.exceptions.ProtocolException;
+import org.dmfs.httpclientinterfaces.headers.values.Challenge;
+
+
+/**
+ * Interface of an authenticator that holds the credentials and the authentication state of a {@link ProtectionSpace}. Implementations must be thread safe.
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public interface Authenticator
+{
+	/**
+	 * Returns the name of the authentication scheme of this authenticator.
+	 * 
+	 * @return The scheme name, like "Basic".
+	 */
+	public String scheme();
+
+
+	/**
+	 * Returns the value of the Authorization header for a request.
+	 * 
+	 * @param method
+	 *            The {@link HttpMethod} of the request.
+	 * @param uri
+	 *            The request {@link URI}.
+	 * @return The Authorization header value or <code>null</code> if this authenticator can not authenticate requests before it received a challenge.
+	 * @throws IOException
+	 * @throws ProtocolError
+	 * @throws ProtocolException
+	 */
+	public String authorization(HttpMethod method, URI uri) throws IOException, ProtocolError, ProtocolException;
+
+
+	/**
+	 * Updates the authentication state with a challenge of this authenticator's scheme that has been received with a 401 response.
+	 * 
+	 * @param challenge
+	 *            The {@link Challenge}.
+	 * @param authorization
+	 *            The Authorization header value that has been rejected or <code>null</code> if the request didn't contain any credentials of this
+	 *            authenticator.
+	 * @return <code>true</code> if the request should be repeated with new credentials, <code>false</code> if the credentials have been rejected.
+	 * @throws IOException
+	 * @throws ProtocolError
+	 * @throws ProtocolException
+	 */
+	public boolean challenge(Challenge challenge, String authorization) throws IOException, ProtocolError, ProtocolException;
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.authentication;
+
+import org.dmfs.httpclientinterfaces.headers.values.Challenge;
+
+
+/**
+ * Interface of a factory that provides {@link Authenticator}s for {@link ProtectionSpace}s that have not been authenticated yet.
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public interface AuthenticatorFactory
+{
+	/**
+	 * Returns an {@link Authenticator} to answer the given {@link Challenge}.
+	 * 
+	 * @param protectionSpace
+	 *            The {@link ProtectionSpace} that requires authentication.
+	 * @param challenge
+	 *            The {@link Challenge} to answer.
+	 * @return An {@link Authenticator} or <code>null</code> if there are no credentials for the given protection space or the scheme is not supported.
+	 */
+	public Authenticator authenticator(ProtectionSpace protectionSpace, Challenge challenge);
+}
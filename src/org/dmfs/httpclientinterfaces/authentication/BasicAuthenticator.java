@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.authentication;
+
+import java.net.URI;
+import java.nio.charset.Charset;
+
+import org.dmfs.httpclientinterfaces.HttpMethod;
+import org.dmfs.httpclientinterfaces.headers.values.Challenge;
+
+
+/**
+ * An {@link Authenticator} for the Basic authentication scheme as specified in <a href="https://tools.ietf.org/html/rfc7617">RFC 7617</a>.
+ * <p>
+ * The Authorization header value is computed once and sent with every request.
+ * </p>
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class BasicAuthenticator implements Authenticator
+{
+	/**
+	 * The name of the Basic authentication scheme.
+	 */
+	public final static String SCHEME = "Basic";
+
+	private final static char[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+	private final String mAuthorization;
+
+
+	/**
+	 * Creates a {@link BasicAuthenticator} with the given credentials.
+	 * 
+	 * @param userName
+	 *            The user name, must not contain a colon.
+	 * @param password
+	 *            The password.
+	 */
+	public BasicAuthenticator(String userName, String password)
+	{
+		if (userName.indexOf(':') >= 0)
+		{
+			throw new IllegalArgumentException("user name must not contain a colon");
+		}
+		mAuthorization = SCHEME + " " + base64((userName + ":" + password).getBytes(Charset.forName("UTF-8")));
+	}
+
+
+	@Override
+	public String scheme()
+	{
+		return SCHEME;
+	}
+
+
+	@Override
+	public String authorization(HttpMethod method, URI uri)
+	{
+		return mAuthorization;
+	}
+
+
+	@Override
+	public boolean challenge(Challenge challenge, String authorization)
+	{
+		// Basic credentials never change, a retry makes sense only if we didn't send them already
+		return !mAuthorization.equals(authorization);
+	}
+
+
+	private static String base64(byte[] data)
+	{
+		StringBuilder result = new StringBuilder((data.length + 2) / 3 * 4);
+		for (int i = 0; i < data.length; i += 3)
+		{
+			int remaining = data.length - i;
+			int bits = (data[i] & 0xff) << 16 | (remaining > 1 ? (data[i + 1] & 0xff) << 8 : 0) | (remaining > 2 ? data[i + 2] & 0xff : 0);
+			result.append(BASE64[bits >>> 18 & 0x3f]);
+			result.append(BASE64[bits >>> 12 & 0x3f]);
+			result.append(remaining > 1 ? BASE64[bits >>> 6 & 0x3f] : '=');
+			result.append(remaining > 2 ? BASE64[bits & 0x3f] : '=');
+		}
+		return result.toString();
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.authentication;
+
+import java.io.IOException;
+import java.net.URI;
+
+import org.dmfs.httpclientinterfaces.HttpMethod;
+import org.dmfs.httpclientinterfaces.exceptions.ProtocolError;
+import org.dmfs.httpclientinterfaces.exceptions.ProtocolException;
+import org.dmfs.httpclientinterfaces.headers.values.Challenge;
+
+
+/**
+ * An {@link Authenticator} for the Bearer authentication scheme as specified in <a href="https://tools.ietf.org/html/rfc6750">RFC 6750</a>.
+ * <p>
+ * Tokens are taken from a {@link TokenProvider}. When a token is rejected, exactly one thread fetches a new token. All other threads that have been rejected
+ * with the same token wait for it and use the new token when it arrives, instead of fetching their own.
+ * </p>
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class BearerAuthenticator implements Authenticator
+{
+	/**
+	 * The name of the Bearer authentication scheme.
+	 */
+	public final static String SCHEME = "Bearer";
+
+	private final static String PREFIX = SCHEME + " ";
+
+	private final TokenProvider mTokenProvider;
+	private final Object mRefreshLock = new Object();
+	private volatile String mToken;
+
+
+	/**
+	 * Creates a {@link BearerAuthenticator} that takes its tokens from the given {@link TokenProvider}.
+	 * 
+	 * @param tokenProvider
+	 *            The {@link TokenProvider}.
+	 */
+	public BearerAuthenticator(TokenProvider tokenProvider)
+	{
+		mTokenProvider = tokenProvider;
+	}
+
+
+	@Override
+	public String scheme()
+	{
+		return SCHEME;
+	}
+
+
+	@Override
+	public String authorization(HttpMethod method, URI uri) throws IOException, ProtocolError, ProtocolException
+	{
+		String token = mToken;
+		return PREFIX + (token == null ? refresh(null) : token);
+	}
+
+
+	@Override
+	public boolean challenge(Challenge challenge, String authorization) throws IOException, ProtocolError, ProtocolException
+	{
+		String error = challenge.parameter("error");
+		if (error != null && !"invalid_token".equals(error))
+		{
+			// the token is valid, but the request is not, a new token won't help
+			return false;
+		}
+		refresh(authorization != null && authorization.startsWith(PREFIX) ? authorization.substring(PREFIX.length()) : null);
+		return true;
+	}
+
+
+	/**
+	 * Returns a new token, unless another thread already replaced the rejected token.
+	 * 
+	 * @param rejectedToken
+	 *            The token that has been rejected or <code>null</code>.
+	 * @return The current token.
+	 */
+	private String refresh(String rejectedToken) throws IOException, ProtocolError, ProtocolException
+	{
+		synchronized (mRefreshLock)
+		{
+			String token = mToken;
+			if (token != null && !token.equals(rejectedToken))
+			{
+				// the token has been refreshed while we were waiting
+				return token;
+			}
+			token = mTokenProvider.newToken();
+			mToken = token;
+			return token;
+		}
+	}
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.authentication;
+
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dmfs.httpclientinterfaces.HttpMethod;
+import org.dmfs.httpclientinterfaces.headers.values.Challenge;
+
+
+/**
+ * An {@link Authenticator} for the Digest authentication scheme as specified in <a href="https://tools.ietf.org/html/rfc7616">RFC 7616</a>.
+ * <p>
+ * The nonce of the last challenge is reused for subsequent requests with an incremented nonce count, so only the first request to a protection space and
+ * requests after the server declared the nonce stale need an extra round trip. Supports the algorithms MD5, MD5-sess, SHA-256 and SHA-256-sess with quality
+ * of protection "auth" or without quality of protection.
+ * </p>
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class DigestAuthenticator implements Authenticator
+{
+	/**
+	 * The name of the Digest authentication scheme.
+	 */
+	public final static String SCHEME = "Digest";
+
+	private final static Charset UTF8 = Charset.forName("UTF-8");
+	private final static char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final String mUserName;
+	private final String mPassword;
+	private final SecureRandom mRandom = new SecureRandom();
+	private volatile State mState;
+
+
+	/**
+	 * Creates a {@link DigestAuthenticator} with the given credentials.
+	 * 
+	 * @param userName
+	 *            The user name.
+	 * @param password
+	 *            The password.
+	 */
+	public DigestAuthenticator(String userName, String password)
+	{
+		mUserName = userName;
+		mPassword = password;
+	}
+
+
+	@Override
+	public String scheme()
+	{
+		return SCHEME;
+	}
+
+
+	@Override
+	public String authorization(HttpMethod method, URI uri)
+	{
+		State state = mState;
+		if (state == null)
+		{
+			// we need a nonce first
+			return null;
+		}
+
+		String digestUri = uri.getRawPath() == null || uri.getRawPath().length() == 0 ? "/" : uri.getRawPath();
+		if (uri.getRawQuery() != null)
+		{
+			digestUri += "?" + uri.getRawQuery();
+		}
+
+		String cnonce = cnonce();
+		String nc = String.format("%08x", state.mNonceCount.incrementAndGet());
+		String ha1 = state.mHa1;
+		if (state.mSession)
+		{
+			ha1 = hash(state.mAlgorithm, ha1 + ":" + state.mNonce + ":" + cnonce);
+		}
+		String ha2 = hash(state.mAlgorithm, method.verb() + ":" + digestUri);
+		String response = state.mQop == null ? hash(state.mAlgorithm, ha1 + ":" + state.mNonce + ":" + ha2) : hash(state.mAlgorithm, ha1 + ":"
+			+ state.mNonce + ":" + nc + ":" + cnonce + ":" + state.mQop + ":" + ha2);
+
+		StringBuilder result = new StringBuilder(256);
+		result.append(SCHEME).append(" username=\"").append(quote(mUserName)).append("\", realm=\"").append(quote(state.mRealm)).append("\", nonce=\"")
+			.append(quote(state.mNonce)).append("\", uri=\"").append(quote(digestUri)).append("\", algorithm=").append(state.mAlgorithmName)
+			.append(", response=\"").append(response).append('"');
+		if (state.mOpaque != null)
+		{
+			result.append(", opaque=\"").append(quote(state.mOpaque)).append('"');
+		}
+		if (state.mQop != null)
+		{
+			result.append(", qop=").append(state.mQop).append(", nc=").append(nc).append(", cnonce=\"").append(cnonce).append('"');
+		}
+		return result.toString();
+	}
+
+
+	@Override
+	public boolean challenge(Challenge challenge, String authorization)
+	{
+		String nonce = challenge.parameter("nonce");
+		String realm = challenge.parameter("realm");
+		if (nonce == null || realm == null)
+		{
+			return false;
+		}
+
+		String algorithmName = challenge.parameter("algorithm");
+		if (algorithmName == null)
+		{
+			algorithmName = "MD5";
+		}
+		String algorithm = algorithmName.toUpperCase(Locale.ENGLISH);
+		boolean session = algorithm.endsWith("-SESS");
+		if (session)
+		{
+			algorithm = algorithm.substring(0, algorithm.length() - 5);
+		}
+		if ("SHA-256".equals(algorithm) || "MD5".equals(algorithm))
+		{
+			try
+			{
+				MessageDigest.getInstance(algorithm);
+			}
+			catch (NoSuchAlgorithmException e)
+			{
+				return false;
+			}
+		}
+		else
+		{
+			return false;
+		}
+
+		String qop = null;
+		String qopOptions = challenge.parameter("qop");
+		if (qopOptions != null)
+		{
+			for (String option : qopOptions.split(","))
+			{
+				if ("auth".equals(option.trim()))
+				{
+					qop = "auth";
+				}
+			}
+			if (qop == null)
+			{
+				// auth-int is not supported
+				return false;
+			}
+		}
+
+		State oldState = mState;
+		// retry if the nonce was stale or we didn't send any credentials yet, otherwise the credentials are wrong
+		boolean retry = authorization == null || "true".equalsIgnoreCase(challenge.parameter("stale")) || oldState == null
+			|| !authorization.contains("nonce=\"" + quote(oldState.mNonce) + "\"");
+
+		mState = new State(algorithm, algorithmName, session, realm, nonce, challenge.parameter("opaque"), qop, hash(algorithm, mUserName + ":" + realm
+			+ ":" + mPassword));
+		return retry;
+	}
+
+
+	private String cnonce()
+	{
+		byte[] bytes = new byte[8];
+		mRandom.nextBytes(bytes);
+		return hex(bytes);
+	}
+
+
+	private static String hash(String algorithm, String value)
+	{
+		try
+		{
+			return hex(MessageDigest.getInstance(algorithm).digest(value.getBytes(UTF8)));
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			// this has been checked when the challenge was received
+			throw new RuntimeException(String.format("Algorithm %s not supported", algorithm), e);
+		}
+	}
+
+
+	private static String hex(byte[] bytes)
+	{
+		char[] result = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; ++i)
+		{
+			result[i * 2] = HEX[bytes[i] >>> 4 & 0x0f];
+			result[i * 2 + 1] = HEX[bytes[i] & 0x0f];
+		}
+		return new String(result);
+	}
+
+
+	private static String quote(String value)
+	{
+		return value.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+
+	/**
+	 * The immutable state of a Digest session, except for the nonce count.
+	 */
+	private final static class State
+	{
+		private final String mAlgorithm;
+		private final String mAlgorithmName;
+		private final boolean mSession;
+		private final String mRealm;
+		private final String mNonce;
+		private final String mOpaque;
+		private final String mQop;
+		private final String mHa1;
+		private final AtomicInteger mNonceCount = new AtomicInteger();
+
+
+		private State(String algorithm, String algorithmName, boolean session, String realm, String nonce, String opaque, String qop, String ha1)
+		{
+			mAlgorithm = algorithm;
+			mAlgorithmName = algorithmName;
+			mSession = session;
+			mRealm = realm;
+			mNonce = nonce;
+			mOpaque = opaque;
+			mQop = qop;
+			mHa1 = ha1;
+		}
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.authentication;
+
+import java.net.URI;
+import java.util.Locale;
+
+
+/**
+ * A protection space as specified in <a href="https://tools.ietf.org/html/rfc7235#section-2.2">RFC 7235, Section 2.2</a>, i.e. the canonical root URI of a
+ * server and a realm.
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class ProtectionSpace
+{
+	private final String mRoot;
+	private final String mRealm;
+
+
+	/**
+	 * Creates the {@link ProtectionSpace} of the given realm on the server of the given {@link URI}.
+	 * 
+	 * @param uri
+	 *            Any absolute {@link URI} on the server.
+	 * @param realm
+	 *            The realm, may be <code>null</code> if the scheme doesn't use realms.
+	 */
+	public ProtectionSpace(URI uri, String realm)
+	{
+		mRoot = root(uri);
+		mRealm = realm;
+	}
+
+
+	/**
+	 * Returns the canonical root URI of this protection space.
+	 * 
+	 * @return The root URI, like "https://example.com:443".
+	 */
+	public String root()
+	{
+		return mRoot;
+	}
+
+
+	/**
+	 * Returns the realm of this protection space.
+	 * 
+	 * @return The realm or <code>null</code>.
+	 */
+	public String realm()
+	{
+		return mRealm;
+	}
+
+
+	@Override
+	public int hashCode()
+	{
+		return mRoot.hashCode() * 31 + (mRealm == null ? 0 : mRealm.hashCode());
+	}
+
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (!(obj instanceof ProtectionSpace))
+		{
+			return false;
+		}
+		ProtectionSpace other = (ProtectionSpace) obj;
+		return mRoot.equals(other.mRoot) && (mRealm == null ? other.mRealm == null : mRealm.equals(other.mRealm));
+	}
+
+
+	@Override
+	public String toString()
+	{
+		return mRealm == null ? mRoot : mRoot + " (" + mRealm + ")";
+	}
+
+
+	/**
+	 * Returns the canonical root URI of the server of the given {@link URI}.
+	 */
+	static String root(URI uri)
+	{
+		String scheme = uri.getScheme().toLowerCase(Locale.ENGLISH);
+		int port = uri.getPort();
+		if (port < 0)
+		{
+			port = "https".equals(scheme) ? 443 : 80;
+		}
+		return scheme + "://" + uri.getHost().toLowerCase(Locale.ENGLISH) + ":" + port;
+	}
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.authentication;
+
+import java.io.IOException;
+
+import org.dmfs.httpclientinterfaces.exceptions.ProtocolError;
+import org.dmfs.httpclientinterfaces.exceptions.ProtocolException;
+
+
+/**
+ * Interface of a source of bearer tokens, like an OAuth2 token endpoint.
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public interface TokenProvider
+{
+	/**
+	 * Returns a new access token. This is called when there is no token yet or when the current token has been rejected.
+	 * 
+	 * @return The access token.
+	 * @throws IOException
+	 * @throws ProtocolError
+	 * @throws ProtocolException
+	 */
+	public String newToken() throws IOException, ProtocolError, ProtocolException;
+}
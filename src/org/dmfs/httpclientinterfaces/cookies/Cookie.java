@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.cookies;
+
+/**
+ * An immutable cookie as stored in a {@link CookieJar}.
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class Cookie
+{
+	private final String mName;
+	private final String mValue;
+	private final String mDomain;
+	private final String mPath;
+	private final long mExpiryTime;
+	private final long mCreationIndex;
+	private final boolean mHostOnly;
+	private final boolean mSecure;
+	private final boolean mHttpOnly;
+
+
+	Cookie(String name, String value, String domain, String path, long expiryTime, long creationIndex, boolean hostOnly, boolean secure, boolean httpOnly)
+	{
+		mName = name;
+		mValue = value;
+		mDomain = domain;
+		mPath = path;
+		mExpiryTime = expiryTime;
+		mCreationIndex = creationIndex;
+		mHostOnly = hostOnly;
+		mSecure = secure;
+		mHttpOnly = httpOnly;
+	}
+
+
+	/**
+	 * Returns the name of this cookie.
+	 * 
+	 * @return The name.
+	 */
+	public String name()
+	{
+		return mName;
+	}
+
+
+	/**
+	 * Returns the value of this cookie.
+	 * 
+	 * @return The value, may be empty.
+	 */
+	public String value()
+	{
+		return mValue;
+	}
+
+
+	/**
+	 * Returns the domain of this cookie in lower case.
+	 * 
+	 * @return The domain.
+	 */
+	public String domain()
+	{
+		return mDomain;
+	}
+
+
+	/**
+	 * Returns the path of this cookie.
+	 * 
+	 * @return The path.
+	 */
+	public String path()
+	{
+		return mPath;
+	}
+
+
+	/**
+	 * Returns the time when this cookie expires.
+	 * 
+	 * @return The expiry time in milliseconds since the epoch or {@link Long#MAX_VALUE} for session cookies.
+	 */
+	public long expiryTime()
+	{
+		return mExpiryTime;
+	}
+
+
+	/**
+	 * Returns whether this cookie is sent to its {@link #domain()} only or to its sub-domains as well.
+	 * 
+	 * @return <code>true</code> if this cookie is sent to the exact host only.
+	 */
+	public boolean hostOnly()
+	{
+		return mHostOnly;
+	}
+
+
+	/**
+	 * Returns whether this cookie is sent over secure connections only.
+	 * 
+	 * @return <code>true</code> if this is a secure cookie.
+	 */
+	public boolean secure()
+	{
+		return mSecure;
+	}
+
+
+	/**
+	 * Returns whether this cookie must not be exposed to non-HTTP APIs.
+	 * 
+	 * @return <code>true</code> if this is an HTTP only cookie.
+	 */
+	public boolean httpOnly()
+	{
+		return mHttpOnly;
+	}
+
+
+	/**
+	 * Returns whether this cookie has expired at the given time.
+	 * 
+	 * @param now
+	 *            The time in milliseconds since the epoch.
+	 * @return <code>true</code> if the cookie has expired.
+	 */
+	public boolean expired(long now)
+	{
+		return mExpiryTime <= now;
+	}
+
+
+	/**
+	 * Returns whether this cookie matches the given request path as specified in <a href="https://tools.ietf.org/html/rfc6265#section-5.1.4">RFC 6265,
+	 * Section 5.1.4</a>.
+	 * 
+	 * @param requestPath
+	 *            The path of the request URI.
+	 * @return <code>true</code> if the path matches.
+	 */
+	public boolean pathMatches(String requestPath)
+	{
+		String path = mPath;
+		int length = path.length();
+		return requestPath.startsWith(path)
+			&& (requestPath.length() == length || path.charAt(length - 1) == '/' || requestPath.charAt(length) == '/');
+	}
+
+
+	/**
+	 * Returns whether this cookie replaces the given cookie, i.e. both have the same name and path. The caller is responsible for checking the domain.
+	 */
+	boolean replaces(Cookie other)
+	{
+		return mName.equals(other.mName) && mPath.equals(other.mPath);
+	}
+
+
+	/**
+	 * Returns the index that defines the creation order of cookies, which is retained when a cookie is replaced.
+	 */
+	long creationIndex()
+	{
+		return mCreationIndex;
+	}
+
+
+	@Override
+	public String toString()
+	{
+		return mName + "=" + mValue;
+	}
+}
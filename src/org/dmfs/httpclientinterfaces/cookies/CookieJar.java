@@ -0,0 +1,582 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.cookies;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.dmfs.httpclientinterfaces.HttpResponse;
+import org.dmfs.httpclientinterfaces.headers.Header;
+import org.dmfs.httpclientinterfaces.headers.HeaderList;
+import org.dmfs.httpclientinterfaces.headers.HttpHeaders;
+import org.dmfs.httpclientinterfaces.headers.values.SetCookie;
+
+
+/**
+ * A thread safe cookie store as specified in <a href="https://tools.ietf.org/html/rfc6265#section-5.3">RFC 6265</a>.
+ * <p>
+ * Cookies are stored in a trie of domain labels in reverse order (i.e. "www.example.com" is stored under "com", "example", "www"), so looking up the
+ * cookies of a host takes one step per label of the host name, regardless of the number of stored cookies.
+ * </p>
+ * <p>
+ * The trie is immutable. Readers never lock, they just work on the current version. Writers are serialized, they copy the nodes on the path to the changed
+ * node and publish the new version. Every version has its own cache of preformatted Cookie header values per host and path, so a change of the jar
+ * implicitly invalidates all cached values. Cached values are also recomputed once one of the cookies they contain expires.
+ * </p>
+ * <p>
+ * Note that this implementation doesn't check public suffixes. It only rejects cookies for top level domains.
+ * </p>
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class CookieJar
+{
+	/**
+	 * The default maximum number of cached Cookie header values.
+	 */
+	public final static int DEFAULT_CACHE_SIZE = 256;
+
+	/**
+	 * The order of cookies in a Cookie header as specified in <a href="https://tools.ietf.org/html/rfc6265#section-5.4">RFC 6265, Section 5.4</a>: longer
+	 * paths first, older cookies first.
+	 */
+	private final static Comparator<Cookie> COOKIE_ORDER = new Comparator<Cookie>()
+	{
+		@Override
+		public int compare(Cookie lhs, Cookie rhs)
+		{
+			int lhsLength = lhs.path().length();
+			int rhsLength = rhs.path().length();
+			if (lhsLength != rhsLength)
+			{
+				return lhsLength > rhsLength ? -1 : 1;
+			}
+			return lhs.creationIndex() < rhs.creationIndex() ? -1 : lhs.creationIndex() == rhs.creationIndex() ? 0 : 1;
+		}
+	};
+
+	/**
+	 * The cached value of hosts and paths without any matching cookies.
+	 */
+	private final static CachedValue NO_COOKIES = new CachedValue(null, Long.MAX_VALUE);
+
+	private final int mCacheSize;
+	private final Object mWriteLock = new Object();
+	private volatile Snapshot mSnapshot = new Snapshot(Node.EMPTY);
+	private long mCreationIndex;
+
+
+	/**
+	 * Creates an empty {@link CookieJar} with the default cache size.
+	 */
+	public CookieJar()
+	{
+		this(DEFAULT_CACHE_SIZE);
+	}
+
+
+	/**
+	 * Creates an empty {@link CookieJar}.
+	 * 
+	 * @param cacheSize
+	 *            The maximum number of cached Cookie header values.
+	 */
+	public CookieJar(int cacheSize)
+	{
+		mCacheSize = cacheSize;
+	}
+
+
+	/**
+	 * Stores the cookies of all {@link HttpHeaders#SET_COOKIE} headers of the given response. Malformed and rejected cookies are ignored.
+	 * 
+	 * @param response
+	 *            The {@link HttpResponse} to take the cookies from.
+	 */
+	public void store(HttpResponse response)
+	{
+		if (!response.hasHeader(HttpHeaders.SET_COOKIE))
+		{
+			return;
+		}
+
+		URI uri = response.responseUri();
+		Iterator<Header<SetCookie>> headers = response.headers(HttpHeaders.SET_COOKIE);
+		while (headers.hasNext())
+		{
+			try
+			{
+				store(uri, headers.next().value());
+			}
+			catch (IllegalArgumentException e)
+			{
+				// ignore malformed cookies, see RFC 6265, section 5.2
+			}
+		}
+	}
+
+
+	/**
+	 * Stores a cookie that has been received from the given URI. A cookie that has already expired removes any stored cookie with the same name, domain and
+	 * path.
+	 * 
+	 * @param uri
+	 *            The request URI of the response that contained the cookie.
+	 * @param setCookie
+	 *            The {@link SetCookie} value.
+	 * @return <code>true</code> if the cookie has been accepted, <code>false</code> if it has been rejected.
+	 */
+	public boolean store(URI uri, SetCookie setCookie)
+	{
+		String host = uri.getHost();
+		if (host == null)
+		{
+			return false;
+		}
+		host = host.toLowerCase(Locale.ENGLISH);
+		boolean secureUri = "https".equalsIgnoreCase(uri.getScheme());
+		if (setCookie.secure() && !secureUri)
+		{
+			// only secure origins may set secure cookies
+			return false;
+		}
+
+		String domain = setCookie.domain();
+		boolean hostOnly = domain == null || isIpAddress(host);
+		if (domain == null)
+		{
+			domain = host;
+		}
+		else if (!domainMatches(host, domain))
+		{
+			return false;
+		}
+		else if (domain.indexOf('.') < 0)
+		{
+			if (!domain.equals(host))
+			{
+				// don't accept cookies for top level domains
+				return false;
+			}
+			hostOnly = true;
+		}
+
+		String path = setCookie.path();
+		if (path == null)
+		{
+			path = defaultPath(uri.getRawPath());
+		}
+
+		long now = System.currentTimeMillis();
+		synchronized (mWriteLock)
+		{
+			Cookie cookie = new Cookie(setCookie.name(), setCookie.value(), domain, path, setCookie.expiryTime(now), mCreationIndex++, hostOnly,
+				setCookie.secure(), setCookie.httpOnly());
+			mSnapshot = new Snapshot(update(mSnapshot.mRoot, labels(domain), 0, cookie, now));
+		}
+		return true;
+	}
+
+
+	/**
+	 * Returns the cookies to send with a request to the given URI in the order in which they appear in the Cookie header.
+	 * 
+	 * @param uri
+	 *            The request URI.
+	 * @return A {@link List} of {@link Cookie}s, may be empty.
+	 */
+	public List<Cookie> cookies(URI uri)
+	{
+		String host = uri.getHost();
+		if (host == null)
+		{
+			return Collections.emptyList();
+		}
+		List<Cookie> result = new ArrayList<Cookie>(8);
+		collect(mSnapshot.mRoot, host.toLowerCase(Locale.ENGLISH), requestPath(uri), "https".equalsIgnoreCase(uri.getScheme()), System.currentTimeMillis(),
+			result);
+		return result;
+	}
+
+
+	/**
+	 * Returns the value of the Cookie header to send with a request to the given URI. The value is cached until the jar changes or one of the contained
+	 * cookies expires.
+	 * 
+	 * @param uri
+	 *            The request URI.
+	 * @return The Cookie header value or <code>null</code> if there are no cookies for this URI.
+	 */
+	public String cookieHeaderValue(URI uri)
+	{
+		String host = uri.getHost();
+		if (host == null)
+		{
+			return null;
+		}
+		host = host.toLowerCase(Locale.ENGLISH);
+		String path = requestPath(uri);
+		boolean secure = "https".equalsIgnoreCase(uri.getScheme());
+		long now = System.currentTimeMillis();
+
+		Snapshot snapshot = mSnapshot;
+		String key = (secure ? "s " : "  ") + host + path;
+		CachedValue cached = snapshot.mCache.get(key);
+		if (cached != null && cached.mValidUntil > now)
+		{
+			return cached.mValue;
+		}
+
+		List<Cookie> cookies = new ArrayList<Cookie>(8);
+		collect(snapshot.mRoot, host, path, secure, now, cookies);
+		if (cookies.isEmpty())
+		{
+			cached = NO_COOKIES;
+		}
+		else
+		{
+			StringBuilder value = new StringBuilder(cookies.size() * 32);
+			long validUntil = Long.MAX_VALUE;
+			for (Cookie cookie : cookies)
+			{
+				if (value.length() > 0)
+				{
+					value.append("; ");
+				}
+				value.append(cookie.name()).append('=').append(cookie.value());
+				validUntil = Math.min(validUntil, cookie.expiryTime());
+			}
+			cached = new CachedValue(value.toString(), validUntil);
+		}
+
+		if (snapshot.mCache.size() >= mCacheSize)
+		{
+			snapshot.mCache.clear();
+		}
+		snapshot.mCache.put(key, cached);
+		return cached.mValue;
+	}
+
+
+	/**
+	 * Appends a {@link HttpHeaders#COOKIE} header with the cookies for the given URI to the given {@link HeaderList}.
+	 * 
+	 * @param uri
+	 *            The request URI.
+	 * @param headers
+	 *            The {@link HeaderList} of the request.
+	 * @return A {@link HeaderList} with the Cookie header or the given {@link HeaderList} if there are no cookies for this URI.
+	 */
+	public HeaderList withCookies(URI uri, HeaderList headers)
+	{
+		String value = cookieHeaderValue(uri);
+		return value == null ? headers : headers.append(HttpHeaders.COOKIE.header(value));
+	}
+
+
+	/**
+	 * Removes all expired cookies.
+	 * 
+	 * @return The number of removed cookies.
+	 */
+	public int sweep()
+	{
+		long now = System.currentTimeMillis();
+		synchronized (mWriteLock)
+		{
+			Node root = mSnapshot.mRoot;
+			Node sweptRoot = sweep(root, now);
+			if (sweptRoot != root)
+			{
+				mSnapshot = new Snapshot(sweptRoot);
+			}
+			return root.mSize - sweptRoot.mSize;
+		}
+	}
+
+
+	/**
+	 * Removes all cookies.
+	 */
+	public void clear()
+	{
+		synchronized (mWriteLock)
+		{
+			mSnapshot = new Snapshot(Node.EMPTY);
+		}
+	}
+
+
+	/**
+	 * Returns the number of stored cookies, including expired cookies that have not been swept yet.
+	 * 
+	 * @return The number of cookies.
+	 */
+	public int size()
+	{
+		return mSnapshot.mRoot.mSize;
+	}
+
+
+	/**
+	 * Returns a copy of the given node with the given cookie added to the node of the given domain labels. Expired cookies on that node are dropped.
+	 */
+	private static Node update(Node node, String[] labels, int depth, Cookie cookie, long now)
+	{
+		if (depth == labels.length)
+		{
+			Cookie[] cookies = node.mCookies;
+			List<Cookie> result = new ArrayList<Cookie>(cookies.length + 1);
+			long creationIndex = cookie.creationIndex();
+			for (Cookie existing : cookies)
+			{
+				if (existing.replaces(cookie))
+				{
+					// the new cookie keeps the creation order of the old one
+					creationIndex = existing.creationIndex();
+				}
+				else if (!existing.expired(now))
+				{
+					result.add(existing);
+				}
+			}
+			if (!cookie.expired(now))
+			{
+				result.add(new Cookie(cookie.name(), cookie.value(), cookie.domain(), cookie.path(), cookie.expiryTime(), creationIndex, cookie.hostOnly(),
+					cookie.secure(), cookie.httpOnly()));
+			}
+			return new Node(node.mChildren, result.toArray(new Cookie[result.size()]));
+		}
+
+		String label = labels[labels.length - 1 - depth];
+		Node child = node.mChildren.get(label);
+		Node newChild = update(child == null ? Node.EMPTY : child, labels, depth + 1, cookie, now);
+		Map<String, Node> children = new HashMap<String, Node>(node.mChildren);
+		if (newChild.mSize == 0)
+		{
+			children.remove(label);
+		}
+		else
+		{
+			children.put(label, newChild);
+		}
+		return new Node(children, node.mCookies);
+	}
+
+
+	/**
+	 * Returns a copy of the given node without expired cookies or the node itself if it doesn't contain any expired cookies.
+	 */
+	private static Node sweep(Node node, long now)
+	{
+		boolean changed = false;
+		List<Cookie> cookies = new ArrayList<Cookie>(node.mCookies.length);
+		for (Cookie cookie : node.mCookies)
+		{
+			if (cookie.expired(now))
+			{
+				changed = true;
+			}
+			else
+			{
+				cookies.add(cookie);
+			}
+		}
+
+		Map<String, Node> children = new HashMap<String, Node>(node.mChildren);
+		for (Map.Entry<String, Node> entry : node.mChildren.entrySet())
+		{
+			Node child = entry.getValue();
+			Node sweptChild = sweep(child, now);
+			if (sweptChild != child)
+			{
+				changed = true;
+				if (sweptChild.mSize == 0)
+				{
+					children.remove(entry.getKey());
+				}
+				else
+				{
+					children.put(entry.getKey(), sweptChild);
+				}
+			}
+		}
+		return changed ? new Node(children, cookies.toArray(new Cookie[cookies.size()])) : node;
+	}
+
+
+	/**
+	 * Collects the cookies matching the given host and path in the order specified by RFC 6265.
+	 */
+	private static void collect(Node root, String host, String path, boolean secure, long now, List<Cookie> result)
+	{
+		String[] labels = labels(host);
+		Node node = root;
+		for (int depth = 1, count = labels.length; depth <= count; ++depth)
+		{
+			node = node.mChildren.get(labels[count - depth]);
+			if (node == null)
+			{
+				break;
+			}
+			boolean exactHost = depth == count;
+			for (Cookie cookie : node.mCookies)
+			{
+				if ((exactHost || !cookie.hostOnly()) && (secure || !cookie.secure()) && !cookie.expired(now) && cookie.pathMatches(path))
+				{
+					result.add(cookie);
+				}
+			}
+		}
+		if (result.size() > 1)
+		{
+			Collections.sort(result, COOKIE_ORDER);
+		}
+	}
+
+
+	/**
+	 * Returns the labels of the given domain. IP addresses are not split, because they don't have any parent domains.
+	 */
+	private static String[] labels(String domain)
+	{
+		return isIpAddress(domain) ? new String[] { domain } : domain.split("\\.");
+	}
+
+
+	private static boolean isIpAddress(String host)
+	{
+		if (host.indexOf(':') >= 0)
+		{
+			// IPv6 address
+			return true;
+		}
+		for (int i = 0, length = host.length(); i < length; ++i)
+		{
+			char c = host.charAt(i);
+			if ((c < '0' || c > '9') && c != '.')
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+
+	/**
+	 * Domain matching as specified in <a href="https://tools.ietf.org/html/rfc6265#section-5.1.3">RFC 6265, Section 5.1.3</a>.
+	 */
+	private static boolean domainMatches(String host, String domain)
+	{
+		return host.equals(domain)
+			|| (!isIpAddress(host) && host.endsWith(domain) && host.charAt(host.length() - domain.length() - 1) == '.');
+	}
+
+
+	/**
+	 * The default path as specified in <a href="https://tools.ietf.org/html/rfc6265#section-5.1.4">RFC 6265, Section 5.1.4</a>.
+	 */
+	private static String defaultPath(String uriPath)
+	{
+		if (uriPath == null || !uriPath.startsWith("/"))
+		{
+			return "/";
+		}
+		int lastSlash = uriPath.lastIndexOf('/');
+		return lastSlash == 0 ? "/" : uriPath.substring(0, lastSlash);
+	}
+
+
+	private static String requestPath(URI uri)
+	{
+		String path = uri.getRawPath();
+		return path == null || path.length() == 0 ? "/" : path;
+	}
+
+	/**
+	 * An immutable node of the domain trie.
+	 */
+	private final static class Node
+	{
+		private final static Node EMPTY = new Node(Collections.<String, Node> emptyMap(), new Cookie[0]);
+
+		private final Map<String, Node> mChildren;
+		private final Cookie[] mCookies;
+
+		/**
+		 * The number of cookies in this node and all its children.
+		 */
+		private final int mSize;
+
+
+		private Node(Map<String, Node> children, Cookie[] cookies)
+		{
+			mChildren = children;
+			mCookies = cookies;
+			int size = cookies.length;
+			for (Node child : children.values())
+			{
+				size += child.mSize;
+			}
+			mSize = size;
+		}
+	}
+
+	/**
+	 * A version of the jar with its Cookie header value cache.
+	 */
+	private final static class Snapshot
+	{
+		private final Node mRoot;
+		private final Map<String, CachedValue> mCache = new ConcurrentHashMap<String, CachedValue>(16, 0.75f, 4);
+
+
+		private Snapshot(Node root)
+		{
+			mRoot = root;
+		}
+	}
+
+	/**
+	 * A cached Cookie header value.
+	 */
+	private final static class CachedValue
+	{
+		private final String mValue;
+
+		/**
+		 * The expiry time of the first cookie in the value to expire.
+		 */
+		private final long mValidUntil;
+
+
+		private CachedValue(String value, long validUntil)
+		{
+			mValue = value;
+			mValidUntil = validUntil;
+		}
+	}
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.encoding;
+
+import java.io.IOException;
+
+import org.dmfs.httpclientinterfaces.HttpMethod;
+import org.dmfs.httpclientinterfaces.HttpRequest;
+import org.dmfs.httpclientinterfaces.HttpRequestEntity;
+import org.dmfs.httpclientinterfaces.HttpResponse;
+import org.dmfs.httpclientinterfaces.HttpResponseHandler;
+import org.dmfs.httpclientinterfaces.exceptions.ProtocolError;
+import org.dmfs.httpclientinterfaces.exceptions.ProtocolException;
+import org.dmfs.httpclientinterfaces.headers.HeaderList;
+import org.dmfs.httpclientinterfaces.headers.HttpHeaders;
+import org.dmfs.httpclientinterfaces.requestutils.BufferedRequestEntity;
+
+
+/**
+ * A request wrapper that gzips the {@link HttpRequestEntity} of another request and adds the matching {@link HttpHeaders#CONTENT_ENCODING} header.
+ * <p>
+ * Whether the entity is compressed is decided by {@link CompressedRequestEntity}. Requests with an existing {@link HttpHeaders#CONTENT_ENCODING} header are
+ * not touched.
+ * </p>
+ * <p>
+ * By default the compressed content is streamed and its length is unknown, which usually results in a chunked transfer. If the server doesn't support that
+ * or the request needs to be repeatable, set a buffer size to buffer the compressed content in memory.
+ * </p>
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ * 
+ * @param <T>
+ *            The generic type of the wrapped request.
+ */
+public final class CompressedRequest<T> implements HttpRequest<T>
+{
+	/**
+	 * The value of the {@link HttpHeaders#CONTENT_ENCODING} header of compressed requests.
+	 */
+	public final static String CONTENT_ENCODING = "gzip";
+
+	private final HttpRequest<T> mRequest;
+	private final CompressedRequestEntity mEntity;
+	private final int mMaxBufferSize;
+	private HttpRequestEntity mBufferedEntity;
+
+
+	/**
+	 * Creates a {@link CompressedRequest} that streams the compressed content using the default threshold and the shared {@link DeflaterPool}.
+	 * 
+	 * @param request
+	 *            The request to wrap.
+	 */
+	public CompressedRequest(HttpRequest<T> request)
+	{
+		this(request, CompressedRequestEntity.DEFAULT_THRESHOLD, DeflaterPool.getInstance(), null, 0);
+	}
+
+
+	/**
+	 * Creates a {@link CompressedRequest}.
+	 * 
+	 * @param request
+	 *            The request to wrap.
+	 * @param threshold
+	 *            The minimum content length to compress.
+	 * @param pool
+	 *            The {@link DeflaterPool} to take the {@link java.util.zip.Deflater}s from.
+	 * @param statistics
+	 *            The {@link CompressionStatistics} to update or <code>null</code>.
+	 * @param maxBufferSize
+	 *            The maximum number of compressed bytes to buffer in order to determine the content length, <code>0</code> to stream the content.
+	 */
+	public CompressedRequest(HttpRequest<T> request, int threshold, DeflaterPool pool, CompressionStatistics statistics, int maxBufferSize)
+	{
+		mRequest = request;
+		mEntity = new CompressedRequestEntity(request.requestEntity(), threshold, pool, statistics);
+		mMaxBufferSize = maxBufferSize;
+	}
+
+
+	@Override
+	public HttpMethod method()
+	{
+		return mRequest.method();
+	}
+
+
+	@Override
+	public HeaderList headers()
+	{
+		HeaderList headers = mRequest.headers();
+		try
+		{
+			if (!headers.contains(HttpHeaders.CONTENT_ENCODING) && mEntity.compressed())
+			{
+				return headers.append(HttpHeaders.CONTENT_ENCODING.header(CONTENT_ENCODING));
+			}
+		}
+		catch (IOException e)
+		{
+			// the length can't be determined, requestEntity() won't compress either
+		}
+		return headers;
+	}
+
+
+	@Override
+	public HttpRequestEntity requestEntity()
+	{
+		try
+		{
+			if (mRequest.headers().contains(HttpHeaders.CONTENT_ENCODING) || !mEntity.compressed())
+			{
+				return mRequest.requestEntity();
+			}
+		}
+		catch (IOException e)
+		{
+			// fail later when the entity is actually written
+			return mRequest.requestEntity();
+		}
+
+		if (mMaxBufferSize <= 0)
+		{
+			return mEntity;
+		}
+
+		if (mBufferedEntity == null)
+		{
+			// keep the buffer, so the content is compressed only once even if the request is sent again
+			mBufferedEntity = new BufferedRequestEntity(mEntity, mMaxBufferSize);
+		}
+		return mBufferedEntity;
+	}
+
+
+	@Override
+	public HttpResponseHandler<T> responseHandler(HttpResponse response) throws IOException, ProtocolError, ProtocolException
+	{
+		return mRequest.responseHandler(response);
+	}
+}
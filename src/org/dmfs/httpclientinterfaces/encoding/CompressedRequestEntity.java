@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.encoding;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.dmfs.httpclientinterfaces.ContentType;
+import org.dmfs.httpclientinterfaces.HttpRequestEntity;
+
+
+/**
+ * An {@link HttpRequestEntity} decorator that gzips the content of another {@link HttpRequestEntity} while it's written.
+ * <p>
+ * Content is only compressed if its {@link ContentType} is compressible (see {@link #isCompressible(ContentType)}) and if its length is unknown or at least
+ * the given threshold. Check {@link #compressed()} to find out whether a Content-Encoding header is required.
+ * </p>
+ * <p>
+ * The length of compressed content is not known in advance, so {@link #contentLength()} returns <code>-1</code> if the content is compressed. Wrap this in
+ * a {@link org.dmfs.httpclientinterfaces.requestutils.BufferedRequestEntity} to buffer the compressed content and get its length.
+ * </p>
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class CompressedRequestEntity implements HttpRequestEntity
+{
+	/**
+	 * The default minimum content length to compress. Smaller content doesn't gain much, but costs a full compression setup.
+	 */
+	public final static int DEFAULT_THRESHOLD = 1024;
+
+	private final HttpRequestEntity mEntity;
+	private final int mThreshold;
+	private final DeflaterPool mPool;
+	private final CompressionStatistics mStatistics;
+
+
+	/**
+	 * Creates a {@link CompressedRequestEntity} with the default threshold that uses the shared {@link DeflaterPool}.
+	 * 
+	 * @param entity
+	 *            The {@link HttpRequestEntity} to compress.
+	 */
+	public CompressedRequestEntity(HttpRequestEntity entity)
+	{
+		this(entity, DEFAULT_THRESHOLD, DeflaterPool.getInstance(), null);
+	}
+
+
+	/**
+	 * Creates a {@link CompressedRequestEntity}.
+	 * 
+	 * @param entity
+	 *            The {@link HttpRequestEntity} to compress.
+	 * @param threshold
+	 *            The minimum content length to compress. Content of unknown length is always compressed.
+	 * @param pool
+	 *            The {@link DeflaterPool} to take the {@link java.util.zip.Deflater}s from.
+	 * @param statistics
+	 *            The {@link CompressionStatistics} to update or <code>null</code>.
+	 */
+	public CompressedRequestEntity(HttpRequestEntity entity, int threshold, DeflaterPool pool, CompressionStatistics statistics)
+	{
+		mEntity = entity;
+		mThreshold = threshold;
+		mPool = pool;
+		mStatistics = statistics;
+	}
+
+
+	/**
+	 * Returns whether the content is compressed when it's written.
+	 * 
+	 * @return <code>true</code> if the content is gzip encoded.
+	 * @throws IOException
+	 */
+	public boolean compressed() throws IOException
+	{
+		if (!isCompressible(mEntity.contentType()))
+		{
+			return false;
+		}
+		long length = mEntity.contentLength();
+		return length < 0 || length >= mThreshold;
+	}
+
+
+	@Override
+	public ContentType contentType()
+	{
+		return mEntity.contentType();
+	}
+
+
+	@Override
+	public long contentLength() throws IOException
+	{
+		return compressed() ? -1 : mEntity.contentLength();
+	}
+
+
+	@Override
+	public void writeContent(OutputStream out) throws IOException
+	{
+		if (!compressed())
+		{
+			if (mStatistics != null)
+			{
+				mStatistics.recordSkipped();
+			}
+			mEntity.writeContent(out);
+			return;
+		}
+
+		long start = System.nanoTime();
+		CountingOutputStream counter = new CountingOutputStream(out);
+		GzipOutputStream gzip = new GzipOutputStream(counter, mPool);
+		long bytesIn;
+		boolean finished = false;
+		try
+		{
+			CountingOutputStream inputCounter = new CountingOutputStream(gzip);
+			mEntity.writeContent(inputCounter);
+			bytesIn = inputCounter.mCount;
+			gzip.finish();
+			finished = true;
+		}
+		finally
+		{
+			if (!finished)
+			{
+				// don't write a trailer after incomplete content, just return the deflater to the pool
+				gzip.abort();
+			}
+		}
+		if (mStatistics != null)
+		{
+			mStatistics.record(bytesIn, counter.mCount, System.nanoTime() - start);
+		}
+	}
+
+
+	/**
+	 * Returns whether content of the given {@link ContentType} is worth compressing. That's true for text, JSON, XML, JavaScript and form data.
+	 * 
+	 * @param contentType
+	 *            A {@link ContentType}, may be <code>null</code>.
+	 * @return <code>true</code> if the content type is known to be compressible.
+	 */
+	public static boolean isCompressible(ContentType contentType)
+	{
+		if (contentType == null)
+		{
+			return false;
+		}
+		String mainType = contentType.mainType;
+		String subType = contentType.subType;
+		if ("text".equals(mainType))
+		{
+			return true;
+		}
+		if (subType.endsWith("+json") || subType.endsWith("+xml"))
+		{
+			return true;
+		}
+		return "application".equals(mainType)
+			&& ("json".equals(subType) || "xml".equals(subType) || "javascript".equals(subType) || "x-www-form-urlencoded".equals(subType));
+	}
+
+	/**
+	 * An {@link OutputStream} that counts the bytes written.
+	 */
+	private final static class CountingOutputStream extends FilterOutputStream
+	{
+		private long mCount;
+
+
+		private CountingOutputStream(OutputStream out)
+		{
+			super(out);
+		}
+
+
+		@Override
+		public void write(int b) throws IOException
+		{
+			out.write(b);
+			++mCount;
+		}
+
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException
+		{
+			out.write(b, off, len);
+			mCount += len;
+		}
+
+
+		@Override
+		public void close() throws IOException
+		{
+			// don't close the wrapped stream, the caller owns it
+			flush();
+		}
+	}
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.encoding;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Thread safe statistics of request compression that relate the CPU time spent on compression to the number of bytes saved.
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class CompressionStatistics
+{
+	private final AtomicLong mCompressions = new AtomicLong();
+	private final AtomicLong mSkipped = new AtomicLong();
+	private final AtomicLong mBytesIn = new AtomicLong();
+	private final AtomicLong mBytesOut = new AtomicLong();
+	private final AtomicLong mNanos = new AtomicLong();
+
+
+	/**
+	 * Records a completed compression.
+	 * 
+	 * @param bytesIn
+	 *            The number of uncompressed bytes.
+	 * @param bytesOut
+	 *            The number of compressed bytes.
+	 * @param durationNanos
+	 *            The time spent on writing the content in nanoseconds, including the time spent by the wrapped entity to produce it.
+	 */
+	public void record(long bytesIn, long bytesOut, long durationNanos)
+	{
+		mCompressions.incrementAndGet();
+		mBytesIn.addAndGet(bytesIn);
+		mBytesOut.addAndGet(bytesOut);
+		mNanos.addAndGet(durationNanos);
+	}
+
+
+	/**
+	 * Records an entity that has not been compressed because it was too small or not compressible.
+	 */
+	public void recordSkipped()
+	{
+		mSkipped.incrementAndGet();
+	}
+
+
+	/**
+	 * Returns the number of compressed entities.
+	 * 
+	 * @return The number of compressions.
+	 */
+	public long compressions()
+	{
+		return mCompressions.get();
+	}
+
+
+	/**
+	 * Returns the number of entities that have been sent uncompressed.
+	 * 
+	 * @return The number of skipped entities.
+	 */
+	public long skipped()
+	{
+		return mSkipped.get();
+	}
+
+
+	/**
+	 * Returns the total number of uncompressed bytes.
+	 * 
+	 * @return The number of bytes before compression.
+	 */
+	public long bytesIn()
+	{
+		return mBytesIn.get();
+	}
+
+
+	/**
+	 * Returns the total number of compressed bytes.
+	 * 
+	 * @return The number of bytes after compression.
+	 */
+	public long bytesOut()
+	{
+		return mBytesOut.get();
+	}
+
+
+	/**
+	 * Returns the number of bytes saved by compression.
+	 * 
+	 * @return The number of saved bytes, may be negative if compression didn't pay off.
+	 */
+	public long bytesSaved()
+	{
+		return mBytesIn.get() - mBytesOut.get();
+	}
+
+
+	/**
+	 * Returns the ratio of compressed to uncompressed bytes.
+	 * 
+	 * @return The compression ratio, 1 if nothing has been compressed yet.
+	 */
+	public double ratio()
+	{
+		long bytesIn = mBytesIn.get();
+		return bytesIn == 0 ? 1 : (double) mBytesOut.get() / bytesIn;
+	}
+
+
+	/**
+	 * Returns the total time spent on compression.
+	 * 
+	 * @param unit
+	 *            The {@link TimeUnit} of the result.
+	 * @return The total compression time.
+	 */
+	public long compressionTime(TimeUnit unit)
+	{
+		return unit.convert(mNanos.get(), TimeUnit.NANOSECONDS);
+	}
+
+
+	/**
+	 * Returns the number of bytes saved per millisecond of compression time.
+	 * 
+	 * @return The saved bytes per millisecond, 0 if nothing has been compressed yet.
+	 */
+	public double bytesSavedPerMillisecond()
+	{
+		long nanos = mNanos.get();
+		return nanos == 0 ? 0 : bytesSaved() * 1000000.0 / nanos;
+	}
+
+
+	@Override
+	public String toString()
+	{
+		return String.format("%d compressed, %d skipped, %d -> %d bytes (%.1f%%), %d ms", compressions(), skipped(), bytesIn(), bytesOut(), ratio() * 100,
+			compressionTime(TimeUnit.MILLISECONDS));
+	}
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.encoding;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+import org.dmfs.httpclientinterfaces.HttpMethod;
+import org.dmfs.httpclientinterfaces.HttpRequest;
+import org.dmfs.httpclientinterfaces.HttpRequestEntity;
+import org.dmfs.httpclientinterfaces.HttpResponse;
+import org.dmfs.httpclientinterfaces.HttpResponseEntity;
+import org.dmfs.httpclientinterfaces.HttpResponseHandler;
+import org.dmfs.httpclientinterfaces.HttpStatus;
+import org.dmfs.httpclientinterfaces.exceptions.ProtocolError;
+import org.dmfs.httpclientinterfaces.exceptions.ProtocolException;
+import org.dmfs.httpclientinterfaces.headers.Header;
+import org.dmfs.httpclientinterfaces.headers.HeaderList;
+import org.dmfs.httpclientinterfaces.headers.HeaderType;
+import org.dmfs.httpclientinterfaces.headers.HttpHeaders;
+
+
+/**
+ * A request wrapper that advertises gzip and deflate support with an {@link HttpHeaders#ACCEPT_ENCODING} header and decodes encoded responses transparently.
+ * <p>
+ * The response handler of the wrapped request receives a response with the decoded {@link HttpResponseEntity} and without the
+ * {@link HttpHeaders#CONTENT_ENCODING} header. An existing {@link HttpHeaders#ACCEPT_ENCODING} header of the wrapped request is left untouched.
+ * </p>
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ * 
+ * @param <T>
+ *            The generic type of the wrapped request.
+ */
+public final class DecodingRequest<T> implements HttpRequest<T>
+{
+	/**
+	 * The value of the {@link HttpHeaders#ACCEPT_ENCODING} header.
+	 */
+	public final static String ACCEPT_ENCODING = "gzip, deflate";
+
+	private final HttpRequest<T> mRequest;
+	private final InflaterPool mPool;
+
+
+	/**
+	 * Creates a {@link DecodingRequest} that uses the shared {@link InflaterPool}.
+	 * 
+	 * @param request
+	 *            The request to wrap.
+	 */
+	public DecodingRequest(HttpRequest<T> request)
+	{
+		this(request, InflaterPool.getInstance());
+	}
+
+
+	/**
+	 * Creates a {@link DecodingRequest}.
+	 * 
+	 * @param request
+	 *            The request to wrap.
+	 * @param pool
+	 *            The {@link InflaterPool} to take the {@link java.util.zip.Inflater}s from.
+	 */
+	public DecodingRequest(HttpRequest<T> request, InflaterPool pool)
+	{
+		mRequest = request;
+		mPool = pool;
+	}
+
+
+	@Override
+	public HttpMethod method()
+	{
+		return mRequest.method();
+	}
+
+
+	@Override
+	public HeaderList headers()
+	{
+		HeaderList headers = mRequest.headers();
+		return headers.contains(HttpHeaders.ACCEPT_ENCODING) ? headers : headers.append(HttpHeaders.ACCEPT_ENCODING.header(ACCEPT_ENCODING));
+	}
+
+
+	@Override
+	public HttpRequestEntity requestEntity()
+	{
+		return mRequest.requestEntity();
+	}
+
+
+	@Override
+	public HttpResponseHandler<T> responseHandler(HttpResponse response) throws IOException, ProtocolError, ProtocolException
+	{
+		if (!response.hasHeader(HttpHeaders.CONTENT_ENCODING))
+		{
+			return mRequest.responseHandler(response);
+		}
+
+		String coding = response.firstHeader(HttpHeaders.CONTENT_ENCODING).value().trim().toLowerCase(Locale.ENGLISH);
+		boolean gzip = "gzip".equals(coding) || "x-gzip".equals(coding);
+		if (!gzip && !"deflate".equals(coding))
+		{
+			// unknown or stacked coding, leave it to the wrapped request
+			return mRequest.responseHandler(response);
+		}
+
+		final HttpResponse decodedResponse = new DecodedResponse(response, new DecodingResponseEntity(response.responseEntity(), gzip, mPool));
+		final HttpResponseHandler<T> handler = mRequest.responseHandler(decodedResponse);
+		return new HttpResponseHandler<T>()
+		{
+			@Override
+			public T handleResponse(HttpResponse response) throws IOException, ProtocolError, ProtocolException
+			{
+				return handler.handleResponse(decodedResponse);
+			}
+		};
+	}
+
+	/**
+	 * An {@link HttpResponse} decorator with a decoded {@link HttpResponseEntity} that hides the headers which describe the encoded content.
+	 */
+	private final static class DecodedResponse implements HttpResponse
+	{
+		private final HttpResponse mResponse;
+		private final HttpResponseEntity mEntity;
+
+
+		private DecodedResponse(HttpResponse response, HttpResponseEntity entity)
+		{
+			mResponse = response;
+			mEntity = entity;
+		}
+
+
+		@Override
+		public HttpStatus status()
+		{
+			return mResponse.status();
+		}
+
+
+		@Override
+		public <V> boolean hasHeader(HeaderType<V> headerType)
+		{
+			return !HttpHeaders.CONTENT_ENCODING.equals(headerType) && mResponse.hasHeader(headerType);
+		}
+
+
+		@Override
+		public <V> Header<V> firstHeader(HeaderType<V> headerType) throws NoSuchElementException
+		{
+			if (HttpHeaders.CONTENT_ENCODING.equals(headerType))
+			{
+				throw new NoSuchElementException(String.format("No %s header present", headerType.headerName()));
+			}
+			return mResponse.firstHeader(headerType);
+		}
+
+
+		@Override
+		public <V> Iterator<Header<V>> headers(HeaderType<V> headerType)
+		{
+			if (HttpHeaders.CONTENT_ENCODING.equals(headerType))
+			{
+				return Collections.<Header<V>> emptyList().iterator();
+			}
+			return mResponse.headers(headerType);
+		}
+
+
+		@Override
+		public HttpResponseEntity responseEntity()
+		{
+			return mEntity;
+		}
+
+
+		@Override
+		public URI requestUri()
+		{
+			return mResponse.requestUri();
+		}
+
+
+		@Override
+		public URI responseUri()
+		{
+			return mResponse.responseUri();
+		}
+	}
+}
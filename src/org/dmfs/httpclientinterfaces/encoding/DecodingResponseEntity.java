@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.encoding;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.dmfs.httpclientinterfaces.ContentType;
+import org.dmfs.httpclientinterfaces.HttpResponseEntity;
+
+
+/**
+ * An {@link HttpResponseEntity} decorator that decodes gzip or deflate encoded content. The length of the decoded content is not known in advance, so
+ * {@link #contentLength()} always returns <code>-1</code>.
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class DecodingResponseEntity implements HttpResponseEntity
+{
+	private final HttpResponseEntity mEntity;
+	private final boolean mGzip;
+	private final InflaterPool mPool;
+
+
+	/**
+	 * Creates a {@link DecodingResponseEntity}.
+	 * 
+	 * @param entity
+	 *            The encoded {@link HttpResponseEntity}.
+	 * @param gzip
+	 *            <code>true</code> for gzip encoded content, <code>false</code> for deflate encoded content.
+	 * @param pool
+	 *            The {@link InflaterPool} to take the {@link java.util.zip.Inflater}s from.
+	 */
+	public DecodingResponseEntity(HttpResponseEntity entity, boolean gzip, InflaterPool pool)
+	{
+		mEntity = entity;
+		mGzip = gzip;
+		mPool = pool;
+	}
+
+
+	@Override
+	public ContentType contentType() throws IOException
+	{
+		return mEntity.contentType();
+	}
+
+
+	@Override
+	public long contentLength()
+	{
+		return -1;
+	}
+
+
+	@Override
+	public InputStream contentStream() throws IOException
+	{
+		return new InflatingInputStream(mEntity.contentStream(), mGzip, mPool);
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.encoding;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+
+/**
+ * A thread safe pool of {@link Deflater}s for raw deflate data (i.e. without zlib header and checksum) with a fixed compression level.
+ * <p>
+ * Like {@link InflaterPool}, this avoids allocating and freeing the native zlib memory of a {@link Deflater} for every request. Deflaters need considerably
+ * more native memory than inflaters, so pooling them pays off even more.
+ * </p>
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class DeflaterPool
+{
+	/**
+	 * The default maximum number of idle {@link Deflater}s.
+	 */
+	public final static int DEFAULT_MAX_IDLE = 8;
+
+	/**
+	 * The default compression level. Level 6 is the zlib default and a good compromise between CPU time and compression ratio.
+	 */
+	public final static int DEFAULT_LEVEL = 6;
+
+	private final static DeflaterPool INSTANCE = new DeflaterPool(DEFAULT_LEVEL, DEFAULT_MAX_IDLE);
+
+	private final int mLevel;
+	private final int mMaxIdle;
+	private final Queue<Deflater> mIdle = new ConcurrentLinkedQueue<Deflater>();
+	private final AtomicInteger mIdleCount = new AtomicInteger();
+	private final AtomicInteger mCreated = new AtomicInteger();
+
+
+	/**
+	 * Returns the shared {@link DeflaterPool} with the default compression level.
+	 * 
+	 * @return The default instance.
+	 */
+	public static DeflaterPool getInstance()
+	{
+		return INSTANCE;
+	}
+
+
+	/**
+	 * Creates a {@link DeflaterPool}.
+	 * 
+	 * @param level
+	 *            The compression level of the {@link Deflater}s, between {@link Deflater#BEST_SPEED} and {@link Deflater#BEST_COMPRESSION}.
+	 * @param maxIdle
+	 *            The maximum number of idle {@link Deflater}s to keep.
+	 */
+	public DeflaterPool(int level, int maxIdle)
+	{
+		mLevel = level;
+		mMaxIdle = maxIdle;
+	}
+
+
+	/**
+	 * Returns a {@link Deflater} for raw deflate data. The caller must return it with {@link #release(Deflater)}.
+	 * 
+	 * @return A {@link Deflater} in its initial state.
+	 */
+	public Deflater acquire()
+	{
+		Deflater deflater = mIdle.poll();
+		if (deflater != null)
+		{
+			mIdleCount.decrementAndGet();
+			return deflater;
+		}
+		mCreated.incrementAndGet();
+		return new Deflater(mLevel, true);
+	}
+
+
+	/**
+	 * Returns a {@link Deflater} to the pool. The {@link Deflater} must not be used by the caller anymore.
+	 * 
+	 * @param deflater
+	 *            A {@link Deflater} that has been returned by {@link #acquire()}.
+	 */
+	public void release(Deflater deflater)
+	{
+		if (mIdleCount.incrementAndGet() <= mMaxIdle)
+		{
+			deflater.reset();
+			mIdle.offer(deflater);
+		}
+		else
+		{
+			mIdleCount.decrementAndGet();
+			deflater.end();
+		}
+	}
+
+
+	/**
+	 * Returns the number of {@link Deflater}s this pool has created so far.
+	 * 
+	 * @return The number of created {@link Deflater}s.
+	 */
+	public int created()
+	{
+		return mCreated.get();
+	}
+
+
+	/**
+	 * Returns the number of idle {@link Deflater}s in this pool.
+	 * 
+	 * @return The number of idle {@link Deflater}s.
+	 */
+	public int idle()
+	{
+		return mIdleCount.get();
+	}
+}
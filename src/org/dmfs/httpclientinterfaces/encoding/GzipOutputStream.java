@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.encoding;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+
+/**
+ * An {@link OutputStream} that writes gzip encoded content, using a {@link Deflater} from a {@link DeflaterPool}.
+ * <p>
+ * In contrast to {@link java.util.zip.GZIPOutputStream}, {@link #finish()} writes the gzip trailer and returns the {@link Deflater} to the pool without
+ * closing the underlying stream.
+ * </p>
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class GzipOutputStream extends FilterOutputStream
+{
+	private final static int BUFFER_SIZE = 8 * 1024;
+
+	/**
+	 * A gzip header without file name, modification time or any flags.
+	 */
+	private final static byte[] HEADER = { 0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+	private final DeflaterPool mPool;
+	private final CRC32 mCrc = new CRC32();
+	private final byte[] mBuffer = new byte[BUFFER_SIZE];
+	private Deflater mDeflater;
+	private boolean mHeaderWritten;
+
+
+	/**
+	 * Creates a {@link GzipOutputStream}.
+	 * 
+	 * @param out
+	 *            The {@link OutputStream} to write the encoded content to.
+	 * @param pool
+	 *            The {@link DeflaterPool} to take the {@link Deflater} from.
+	 */
+	public GzipOutputStream(OutputStream out, DeflaterPool pool)
+	{
+		super(out);
+		mPool = pool;
+		mDeflater = pool.acquire();
+	}
+
+
+	@Override
+	public void write(int b) throws IOException
+	{
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+
+	@Override
+	public void write(byte[] buffer, int offset, int length) throws IOException
+	{
+		if (mDeflater == null)
+		{
+			throw new IOException("stream already finished");
+		}
+		writeHeader();
+		mCrc.update(buffer, offset, length);
+		mDeflater.setInput(buffer, offset, length);
+		while (!mDeflater.needsInput())
+		{
+			deflate();
+		}
+	}
+
+
+	/**
+	 * Writes the remaining compressed content and the gzip trailer and returns the {@link Deflater} to the pool. The underlying stream is not closed.
+	 * 
+	 * @throws IOException
+	 */
+	public void finish() throws IOException
+	{
+		if (mDeflater == null)
+		{
+			return;
+		}
+		try
+		{
+			writeHeader();
+			mDeflater.finish();
+			while (!mDeflater.finished())
+			{
+				deflate();
+			}
+			long crc = mCrc.getValue();
+			long size = mDeflater.getBytesRead();
+			out.write(new byte[] { (byte) crc, (byte) (crc >>> 8), (byte) (crc >>> 16), (byte) (crc >>> 24), (byte) size, (byte) (size >>> 8),
+				(byte) (size >>> 16), (byte) (size >>> 24) });
+		}
+		finally
+		{
+			mPool.release(mDeflater);
+			mDeflater = null;
+		}
+	}
+
+
+	/**
+	 * Returns the {@link Deflater} to the pool without writing the remaining content or the trailer. Use this when writing the content failed, so the
+	 * receiver doesn't get a valid gzip stream of incomplete content. Any further writes fail.
+	 */
+	public void abort()
+	{
+		if (mDeflater != null)
+		{
+			mPool.release(mDeflater);
+			mDeflater = null;
+		}
+	}
+
+
+	@Override
+	public void close() throws IOException
+	{
+		try
+		{
+			finish();
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+
+	private void writeHeader() throws IOException
+	{
+		if (!mHeaderWritten)
+		{
+			out.write(HEADER);
+			mHeaderWritten = true;
+		}
+	}
+
+
+	private void deflate() throws IOException
+	{
+		int count = mDeflater.deflate(mBuffer, 0, mBuffer.length);
+		if (count > 0)
+		{
+			out.write(mBuffer, 0, count);
+		}
+	}
+}
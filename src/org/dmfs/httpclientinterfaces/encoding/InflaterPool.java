@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.encoding;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Inflater;
+
+
+/**
+ * A thread safe pool of {@link Inflater}s for raw deflate data (i.e. without zlib header and checksum).
+ * <p>
+ * Every {@link Inflater} holds native zlib memory that's only freed by {@link Inflater#end()} or by the finalizer. Pooling them avoids allocating and freeing
+ * that memory for every response.
+ * </p>
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class InflaterPool
+{
+	/**
+	 * The default maximum number of idle {@link Inflater}s.
+	 */
+	public final static int DEFAULT_MAX_IDLE = 16;
+
+	private final static InflaterPool INSTANCE = new InflaterPool(DEFAULT_MAX_IDLE);
+
+	private final int mMaxIdle;
+	private final Queue<Inflater> mIdle = new ConcurrentLinkedQueue<Inflater>();
+	private final AtomicInteger mIdleCount = new AtomicInteger();
+	private final AtomicInteger mCreated = new AtomicInteger();
+
+
+	/**
+	 * Returns the shared {@link InflaterPool}.
+	 * 
+	 * @return The default instance.
+	 */
+	public static InflaterPool getInstance()
+	{
+		return INSTANCE;
+	}
+
+
+	/**
+	 * Creates an {@link InflaterPool}.
+	 * 
+	 * @param maxIdle
+	 *            The maximum number of idle {@link Inflater}s to keep.
+	 */
+	public InflaterPool(int maxIdle)
+	{
+		mMaxIdle = maxIdle;
+	}
+
+
+	/**
+	 * Returns an {@link Inflater} for raw deflate data. The caller must return it with {@link #release(Inflater)}.
+	 * 
+	 * @return An {@link Inflater} in its initial state.
+	 */
+	public Inflater acquire()
+	{
+		Inflater inflater = mIdle.poll();
+		if (inflater != null)
+		{
+			mIdleCount.decrementAndGet();
+			return inflater;
+		}
+		mCreated.incrementAndGet();
+		return new Inflater(true);
+	}
+
+
+	/**
+	 * Returns an {@link Inflater} to the pool. The {@link Inflater} must not be used by the caller anymore.
+	 * 
+	 * @param inflater
+	 *            An {@link Inflater} that has been returned by {@link #acquire()}.
+	 */
+	public void release(Inflater inflater)
+	{
+		if (mIdleCount.incrementAndGet() <= mMaxIdle)
+		{
+			inflater.reset();
+			mIdle.offer(inflater);
+		}
+		else
+		{
+			mIdleCount.decrementAndGet();
+			inflater.end();
+		}
+	}
+
+
+	/**
+	 * Returns the number of {@link Inflater}s this pool has created so far.
+	 * 
+	 * @return The number of created {@link Inflater}s.
+	 */
+	public int created()
+	{
+		return mCreated.get();
+	}
+
+
+	/**
+	 * Returns the number of idle {@link Inflater}s in this pool.
+	 * 
+	 * @return The number of idle {@link Inflater}s.
+	 */
+	public int idle()
+	{
+		return mIdleCount.get();
+	}
+}
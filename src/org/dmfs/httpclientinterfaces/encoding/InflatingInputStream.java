@@ -0,0 +1,334 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.encoding;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+
+/**
+ * An {@link InputStream} that decodes gzip or deflate encoded content as a stream, using an {@link Inflater} from an {@link InflaterPool}.
+ * <p>
+ * Gzip headers and trailers are handled by this class, so the same pooled raw {@link Inflater}s serve all formats. The gzip checksum and size are verified.
+ * Deflate content is accepted with zlib wrapper (as specified) as well as raw (as sent by some servers). The Adler-32 checksum of zlib content is verified,
+ * raw deflate content has no checksum.
+ * </p>
+ * <p>
+ * The {@link Inflater} is returned to the pool when the stream is closed.
+ * </p>
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class InflatingInputStream extends InputStream
+{
+	private final static int BUFFER_SIZE = 8 * 1024;
+
+	private final static int GZIP_MAGIC = 0x8b1f;
+	private final static int FHCRC = 2;
+	private final static int FEXTRA = 4;
+	private final static int FNAME = 8;
+	private final static int FCOMMENT = 16;
+
+	private final InputStream mIn;
+	private final InflaterPool mPool;
+	private final boolean mGzip;
+	private final byte[] mBuffer = new byte[BUFFER_SIZE];
+	private final CRC32 mCrc;
+
+	/**
+	 * The checksum of zlib content, <code>null</code> for gzip and raw deflate content.
+	 */
+	private Adler32 mAdler;
+	private Inflater mInflater;
+	private boolean mHeaderDone;
+	private boolean mEof;
+
+	/**
+	 * Position and limit of the input in {@link #mBuffer} that has not been handed to the {@link Inflater}.
+	 */
+	private int mPos;
+	private int mLimit;
+
+
+	/**
+	 * Creates an {@link InflatingInputStream}.
+	 * 
+	 * @param in
+	 *            The encoded {@link InputStream}.
+	 * @param gzip
+	 *            <code>true</code> for gzip encoded content, <code>false</code> for deflate encoded content.
+	 * @param pool
+	 *            The {@link InflaterPool} to take the {@link Inflater} from.
+	 */
+	public InflatingInputStream(InputStream in, boolean gzip, InflaterPool pool)
+	{
+		mIn = in;
+		mGzip = gzip;
+		mPool = pool;
+		mCrc = gzip ? new CRC32() : null;
+		mInflater = pool.acquire();
+	}
+
+
+	@Override
+	public int read() throws IOException
+	{
+		byte[] single = new byte[1];
+		return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+	}
+
+
+	@Override
+	public int read(byte[] buffer, int offset, int length) throws IOException
+	{
+		if (mInflater == null)
+		{
+			throw new IOException("stream closed");
+		}
+		if (mEof)
+		{
+			return -1;
+		}
+		if (length == 0)
+		{
+			return 0;
+		}
+		if (!mHeaderDone)
+		{
+			readHeader();
+			mHeaderDone = true;
+		}
+
+		Inflater inflater = mInflater;
+		try
+		{
+			while (true)
+			{
+				int count = inflater.inflate(buffer, offset, length);
+				if (count > 0)
+				{
+					if (mCrc != null)
+					{
+						mCrc.update(buffer, offset, count);
+					}
+					if (mAdler != null)
+					{
+						mAdler.update(buffer, offset, count);
+					}
+					return count;
+				}
+				if (inflater.finished())
+				{
+					// give the unused input back to our buffer and handle the trailer
+					mPos = mLimit - inflater.getRemaining();
+					readTrailer();
+					mEof = true;
+					return -1;
+				}
+				if (inflater.needsDictionary())
+				{
+					throw new ZipException("preset dictionaries are not supported");
+				}
+				if (inflater.needsInput())
+				{
+					if (!fill())
+					{
+						throw new EOFException("unexpected end of compressed content");
+					}
+					inflater.setInput(mBuffer, mPos, mLimit - mPos);
+					mPos = mLimit;
+				}
+			}
+		}
+		catch (DataFormatException e)
+		{
+			throw new ZipException(e.getMessage());
+		}
+	}
+
+
+	@Override
+	public int available() throws IOException
+	{
+		return mEof || mInflater == null ? 0 : 1;
+	}
+
+
+	@Override
+	public void close() throws IOException
+	{
+		if (mInflater != null)
+		{
+			mPool.release(mInflater);
+			mInflater = null;
+			mIn.close();
+		}
+	}
+
+
+	/**
+	 * Reads more input into the buffer if it's empty.
+	 * 
+	 * @return <code>false</code> if the end of the input has been reached.
+	 */
+	private boolean fill() throws IOException
+	{
+		if (mPos < mLimit)
+		{
+			return true;
+		}
+		int count = mIn.read(mBuffer, 0, mBuffer.length);
+		if (count < 0)
+		{
+			return false;
+		}
+		mPos = 0;
+		mLimit = count;
+		return true;
+	}
+
+
+	private int readByte() throws IOException
+	{
+		if (!fill())
+		{
+			throw new EOFException("unexpected end of compressed content");
+		}
+		return mBuffer[mPos++] & 0xff;
+	}
+
+
+	private int readShort() throws IOException
+	{
+		return readByte() | readByte() << 8;
+	}
+
+
+	private long readInt() throws IOException
+	{
+		return (readShort() | (long) readShort() << 16) & 0xffffffffL;
+	}
+
+
+	private void readHeader() throws IOException
+	{
+		if (mGzip)
+		{
+			if (readShort() != GZIP_MAGIC)
+			{
+				throw new ZipException("not in gzip format");
+			}
+			if (readByte() != 8)
+			{
+				throw new ZipException("unsupported compression method");
+			}
+			int flags = readByte();
+			// skip modification time, extra flags and operating system
+			for (int i = 0; i < 6; ++i)
+			{
+				readByte();
+			}
+			if ((flags & FEXTRA) != 0)
+			{
+				for (int i = readShort(); i > 0; --i)
+				{
+					readByte();
+				}
+			}
+			if ((flags & FNAME) != 0)
+			{
+				while (readByte() != 0)
+				{
+				}
+			}
+			if ((flags & FCOMMENT) != 0)
+			{
+				while (readByte() != 0)
+				{
+				}
+			}
+			if ((flags & FHCRC) != 0)
+			{
+				readShort();
+			}
+		}
+		else
+		{
+			// RFC 7230 says deflate means zlib format, but some servers send raw deflate data, so we check for a valid zlib header
+			if (!fill())
+			{
+				throw new EOFException("unexpected end of compressed content");
+			}
+			int count = 0;
+			while (mLimit - mPos < 2 && count >= 0)
+			{
+				// we need both header bytes, unless the content is shorter than that
+				count = mIn.read(mBuffer, mLimit, mBuffer.length - mLimit);
+				mLimit += Math.max(count, 0);
+			}
+			if (mLimit - mPos >= 2)
+			{
+				int cmf = mBuffer[mPos] & 0xff;
+				int flg = mBuffer[mPos + 1] & 0xff;
+				boolean zlib = (cmf & 0x0f) == 8 && (cmf >>> 4) <= 7 && ((cmf << 8) | flg) % 31 == 0;
+				if (zlib)
+				{
+					if ((flg & 0x20) != 0)
+					{
+						throw new ZipException("preset dictionaries are not supported");
+					}
+					mPos += 2;
+					mAdler = new Adler32();
+				}
+			}
+		}
+	}
+
+
+	private void readTrailer() throws IOException
+	{
+		if (mGzip)
+		{
+			long crc = readInt();
+			long size = readInt();
+			if (crc != mCrc.getValue())
+			{
+				throw new ZipException("corrupt gzip content, checksum mismatch");
+			}
+			if (size != (mInflater.getBytesWritten() & 0xffffffffL))
+			{
+				throw new ZipException("corrupt gzip content, size mismatch");
+			}
+		}
+		else if (mAdler != null)
+		{
+			// unlike the gzip trailer, the zlib checksum is big-endian
+			long adler = (long) readByte() << 24 | readByte() << 16 | readByte() << 8 | readByte();
+			if (adler != mAdler.getValue())
+			{
+				throw new ZipException("corrupt zlib content, checksum mismatch");
+			}
+		}
+	}
+}
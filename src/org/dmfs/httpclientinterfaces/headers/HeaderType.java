@@ -20,7 +20,12 @@ package org.dmfs.httpclientinterfaces.headers;
 /**
  * Represents a header type. That is, it binds a header name to a value type.
  * <p />
- * Two {@link HeaderType}s are considered to equal if they have the same header name.
+ * Two {@link HeaderType}s are considered to equal if they have the same header name, ignoring the case of ASCII letters. Implementations must implement
+ * {@link Object#equals(Object)} accordingly and {@link Object#hashCode()} must return the {@link String#hashCode()} of the header name with all ASCII letters
+ * converted to lower case, so {@link HeaderType}s of different implementations can be mixed in hash based collections.
+ * <p />
+ * Note that older versions compared header names case-sensitively. Implementations that still do (and return the hash code of the unmodified name) only work
+ * reliably with other {@link HeaderType}s if all of them use the same case for the same header name.
  * 
  * @author Marten Gajda <marten@dmfs.org>
  * 
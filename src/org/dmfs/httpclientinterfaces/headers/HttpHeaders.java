@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.headers;
+
+import java.util.List;
+
+import org.dmfs.httpclientinterfaces.ContentType;
+import org.dmfs.httpclientinterfaces.headers.impl.ChallengeListHeaderValueConverter;
+import org.dmfs.httpclientinterfaces.headers.impl.ContentTypeHeaderValueConverter;
+import org.dmfs.httpclientinterfaces.headers.impl.ContentTypeListHeaderValueConverter;
+import org.dmfs.httpclientinterfaces.headers.impl.LinkHeaderValueConverter;
+import org.dmfs.httpclientinterfaces.headers.impl.NumberHeaderValueConverter;
+import org.dmfs.httpclientinterfaces.headers.impl.SetCookieHeaderValueConverter;
+import org.dmfs.httpclientinterfaces.headers.impl.SimpleHeaderType;
+import org.dmfs.httpclientinterfaces.headers.impl.StringHeaderValueConverter;
+import org.dmfs.httpclientinterfaces.headers.values.Challenge;
+import org.dmfs.httpclientinterfaces.headers.values.Link;
+import org.dmfs.httpclientinterfaces.headers.values.SetCookie;
+
+
+/**
+ * Provides static members for {@link HeaderType}s of well known HTTP headers.
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public interface HttpHeaders
+{
+	/**
+	 * The Accept header.
+	 * 
+	 * @see <a href="https://tools.ietf.org/html/rfc7231#section-5.3.2">RFC 7231, section 5.3.2</a>
+	 */
+	public final static HeaderType<List<ContentType>> ACCEPT = new SimpleHeaderType<List<ContentType>>("Accept", new ContentTypeListHeaderValueConverter());
+
+	/**
+	 * The Link header.
+	 * 
+	 * @see <a href="https://tools.ietf.org/html/rfc5988#section-5">RFC 5988, section 5</a>
+	 */
+	public final static HeaderType<Link> LINK = new SimpleHeaderType<Link>("Link", new LinkHeaderValueConverter());
+
+	/**
+	 * The Cookie header.
+	 * 
+	 * @see <a href="https://tools.ietf.org/html/rfc6265#section-5.4">RFC 6265, section 5.4</a>
+	 */
+	public final static HeaderType<String> COOKIE = new SimpleHeaderType<String>("Cookie", new StringHeaderValueConverter());
+
+	/**
+	 * The Set-Cookie header.
+	 * 
+	 * @see <a href="https://tools.ietf.org/html/rfc6265#section-4.1">RFC 6265, section 4.1</a>
+	 */
+	public final static HeaderType<SetCookie> SET_COOKIE = new SimpleHeaderType<SetCookie>("Set-Cookie", new SetCookieHeaderValueConverter());
+
+	/**
+	 * The Authorization header.
+	 * 
+	 * @see <a href="https://tools.ietf.org/html/rfc7235#section-4.2">RFC 7235, section 4.2</a>
+	 */
+	public final static HeaderType<String> AUTHORIZATION = new SimpleHeaderType<String>("Authorization", new StringHeaderValueConverter());
+
+	/**
+	 * The WWW-Authenticate header.
+	 * 
+	 * @see <a href="https://tools.ietf.org/html/rfc7235#section-4.1">RFC 7235, section 4.1</a>
+	 */
+	public final static HeaderType<List<Challenge>> WWW_AUTHENTICATE = new SimpleHeaderType<List<Challenge>>("WWW-Authenticate",
+		new ChallengeListHeaderValueConverter());
+
+	/**
+	 * The Accept-Encoding header.
+	 * 
+	 * @see <a href="https://tools.ietf.org/html/rfc7231#section-5.3.4">RFC 7231, section 5.3.4</a>
+	 */
+	public final static HeaderType<String> ACCEPT_ENCODING = new SimpleHeaderType<String>("Accept-Encoding", new StringHeaderValueConverter());
+
+	/**
+	 * The Content-Encoding header.
+	 * 
+	 * @see <a href="https://tools.ietf.org/html/rfc7231#section-3.1.2.2">RFC 7231, section 3.1.2.2</a>
+	 */
+	public final static HeaderType<String> CONTENT_ENCODING = new SimpleHeaderType<String>("Content-Encoding", new StringHeaderValueConverter());
+
+	/**
+	 * The Host header.
+	 * 
+	 * @see <a href="https://tools.ietf.org/html/rfc7230#section-5.4">RFC 7230, section 5.4</a>
+	 */
+	public final static HeaderType<String> HOST = new SimpleHeaderType<String>("Host", new StringHeaderValueConverter());
+
+	/**
+	 * The Content-Type header.
+	 * 
+	 * @see <a href="https://tools.ietf.org/html/rfc7231#section-3.1.1.5">RFC 7231, section 3.1.1.5</a>
+	 */
+	public final static HeaderType<ContentType> CONTENT_TYPE = new SimpleHeaderType<ContentType>("Content-Type", new ContentTypeHeaderValueConverter());
+
+	/**
+	 * The Content-Length header.
+	 * 
+	 * @see <a href="https://tools.ietf.org/html/rfc7230#section-3.3.2">RFC 7230, section 3.3.2</a>
+	 */
+	public final static HeaderType<Long> CONTENT_LENGTH = new SimpleHeaderType<Long>("Content-Length", new NumberHeaderValueConverter());
+
+	/**
+	 * The Transfer-Encoding header.
+	 * 
+	 * @see <a href="https://tools.ietf.org/html/rfc7230#section-3.3.1">RFC 7230, section 3.3.1</a>
+	 */
+	public final static HeaderType<String> TRANSFER_ENCODING = new SimpleHeaderType<String>("Transfer-Encoding", new StringHeaderValueConverter());
+
+	/**
+	 * The Connection header.
+	 * 
+	 * @see <a href="https://tools.ietf.org/html/rfc7230#section-6.1">RFC 7230, section 6.1</a>
+	 */
+	public final static HeaderType<String> CONNECTION = new SimpleHeaderType<String>("Connection", new StringHeaderValueConverter());
+
+	/**
+	 * The Date header.
+	 * 
+	 * @see <a href="https://tools.ietf.org/html/rfc7231#section-7.1.1.2">RFC 7231, section 7.1.1.2</a>
+	 */
+	public final static HeaderType<String> DATE = new SimpleHeaderType<String>("Date", new StringHeaderValueConverter());
+
+	/**
+	 * The Location header.
+	 * 
+	 * @see <a href="https://tools.ietf.org/html/rfc7231#section-7.1.2">RFC 7231, section 7.1.2</a>
+	 */
+	public final static HeaderType<String> LOCATION = new SimpleHeaderType<String>("Location", new StringHeaderValueConverter());
+
+	/**
+	 * The ETag header.
+	 * 
+	 * @see <a href="https://tools.ietf.org/html/rfc7232#section-2.3">RFC 7232, section 2.3</a>
+	 */
+	public final static HeaderType<String> ETAG = new SimpleHeaderType<String>("ETag", new StringHeaderValueConverter());
+
+	/**
+	 * The Last-Modified header.
+	 * 
+	 * @see <a href="https://tools.ietf.org/html/rfc7232#section-2.2">RFC 7232, section 2.2</a>
+	 */
+	public final static HeaderType<String> LAST_MODIFIED = new SimpleHeaderType<String>("Last-Modified", new StringHeaderValueConverter());
+
+	/**
+	 * The Cache-Control header.
+	 * 
+	 * @see <a href="https://tools.ietf.org/html/rfc7234#section-5.2">RFC 7234, section 5.2</a>
+	 */
+	public final static HeaderType<String> CACHE_CONTROL = new SimpleHeaderType<String>("Cache-Control", new StringHeaderValueConverter());
+
+	/**
+	 * The Retry-After header.
+	 * 
+	 * @see <a href="https://tools.ietf.org/html/rfc7231#section-7.1.3">RFC 7231, section 7.1.3</a>
+	 */
+	public final static HeaderType<String> RETRY_AFTER = new SimpleHeaderType<String>("Retry-After", new StringHeaderValueConverter());
+
+	/**
+	 * The Server header.
+	 * 
+	 * @see <a href="https://tools.ietf.org/html/rfc7231#section-7.4.2">RFC 7231, section 7.4.2</a>
+	 */
+	public final static HeaderType<String> SERVER = new SimpleHeaderType<String>("Server", new StringHeaderValueConverter());
+
+	/**
+	 * The User-Agent header.
+	 * 
+	 * @see <a href="https://tools.ietf.org/html/rfc7231#section-5.5.3">RFC 7231, section 5.5.3</a>
+	 */
+	public final static HeaderType<String> USER_AGENT = new SimpleHeaderType<String>("User-Agent", new StringHeaderValueConverter());
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.headers;
+
+/**
+ * Interface of a {@link Header} that provides its own wire form, usually to encode it only once if it's sent many times. Encoders use the wire form of
+ * headers that implement this interface and encode all other headers from their name and value string (see
+ * {@link org.dmfs.httpclientinterfaces.headers.impl.HeaderFields#wireBytes(Header)}).
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public interface WireEncodedHeader<ValueType> extends Header<ValueType>
+{
+	/**
+	 * Returns the complete header field as sent over the wire, i.e. <code>name: value\r\n</code>, encoded as ISO-8859-1 (which is US-ASCII for all values
+	 * that don't contain obs-text). Implementations may return the same array on each call, so callers must not modify it.
+	 * 
+	 * @return The bytes of the header field.
+	 * @throws IllegalArgumentException
+	 *             If the header name or value contains characters that are not allowed in headers.
+	 */
+	public byte[] wireBytes();
+}
@@ -17,7 +17,10 @@
 
 package org.dmfs.httpclientinterfaces.headers.impl;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 
 import org.dmfs.httpclientinterfaces.headers.Header;
 import org.dmfs.httpclientinterfaces.headers.HeaderList;
@@ -28,11 +31,21 @@ import org.dmfs.httpclientinterfaces.utils.FilteringIterator.IteratorFilter;
 
 /**
  * An abstract base class for complex {@link HeaderList}s. It implements methods that are common to non-trivial HeaderList implementations.
+ * <p>
+ * {@link #append(HeaderList)} and {@link #remove(HeaderType...)} wrap this list in a {@link JoinedHeaderList} or {@link RemoveHeaderList}. Once a chain of
+ * such wrappers gets deeper than {@link #MAX_DEPTH} it's flattened, so code that appends headers one at a time doesn't create lists that are expensive to
+ * iterate. Flattening keeps the innermost list of the chain and only collects the {@link Header}s appended to it in an {@link IndexedHeaderList}. That
+ * list grows in place when the chain is flattened again, so lazily parsed lists like {@link ByteArrayHeaderList} are not parsed and appending stays cheap.
+ * </p>
  * 
  * @author Marten Gajda <marten@dmfs.org>
  */
 public abstract class AbstractComplexHeaderList implements HeaderList
 {
+	/**
+	 * The maximum number of nested {@link JoinedHeaderList}s and {@link RemoveHeaderList}s before a chain is flattened.
+	 */
+	public final static int MAX_DEPTH = 4;
 
 	/**
 	 * Empty constructor.
@@ -62,7 +75,7 @@ public abstract class AbstractComplexHeaderList implements HeaderList
 	@Override
 	public HeaderList append(HeaderList newHeaders)
 	{
-		return new JoinedHeaderList(this, newHeaders);
+		return flattenIfDeep(new JoinedHeaderList(this, newHeaders));
 	}
 
 
@@ -74,7 +87,7 @@ public abstract class AbstractComplexHeaderList implements HeaderList
 			return this;
 		}
 
-		return new RemoveHeaderList(this, removedHeaderTypes);
+		return flattenIfDeep(new RemoveHeaderList(this, removedHeaderTypes));
 	}
 
 
@@ -122,4 +135,93 @@ public abstract class AbstractComplexHeaderList implements HeaderList
 		};
 	}
 
+
+	/**
+	 * Returns the number of nested {@link JoinedHeaderList}s and {@link RemoveHeaderList}s in this list. Flat lists return 0.
+	 * 
+	 * @return The depth of this list.
+	 */
+	int depth()
+	{
+		return 0;
+	}
+
+
+	/**
+	 * Returns the depth of any {@link HeaderList}. Lists that are not derived from {@link AbstractComplexHeaderList} are considered flat.
+	 */
+	static int depth(HeaderList headers)
+	{
+		return headers instanceof AbstractComplexHeaderList ? ((AbstractComplexHeaderList) headers).depth() : 0;
+	}
+
+
+	private static HeaderList flattenIfDeep(AbstractComplexHeaderList headers)
+	{
+		return headers.depth() > MAX_DEPTH ? flatten(headers) : headers;
+	}
+
+
+	/**
+	 * Flattens a chain of {@link JoinedHeaderList}s and {@link RemoveHeaderList}s. The result is the innermost list of the chain, wrapped in at most one
+	 * {@link RemoveHeaderList}, joined with an {@link IndexedHeaderList} of all {@link Header}s that have been appended to it.
+	 */
+	private static HeaderList flatten(HeaderList headers)
+	{
+		// walk down the chain to its innermost list
+		List<HeaderList> chain = new ArrayList<HeaderList>(MAX_DEPTH + 2);
+		HeaderList base = headers;
+		while (base instanceof JoinedHeaderList || base instanceof RemoveHeaderList)
+		{
+			chain.add(base);
+			base = base instanceof JoinedHeaderList ? ((JoinedHeaderList) base).list1() : ((RemoveHeaderList) base).originalHeaders();
+		}
+
+		IndexedHeaderList appended = null;
+		if (base instanceof IndexedHeaderList)
+		{
+			// an IndexedHeaderList can grow itself
+			appended = (IndexedHeaderList) base;
+			base = null;
+		}
+
+		// apply the chain from the inside out
+		List<HeaderType<?>> removed = new ArrayList<HeaderType<?>>();
+		for (int i = chain.size() - 1; i >= 0; --i)
+		{
+			HeaderList link = chain.get(i);
+			if (link instanceof JoinedHeaderList)
+			{
+				HeaderList list2 = ((JoinedHeaderList) link).list2();
+				if (appended == null)
+				{
+					// this is usually the result of an earlier flattening, keep growing it
+					appended = list2 instanceof IndexedHeaderList ? (IndexedHeaderList) list2 : new IndexedHeaderList(list2);
+				}
+				else
+				{
+					appended = appended.appendAll(list2);
+				}
+			}
+			else
+			{
+				HeaderType<?>[] removedHeaderTypes = ((RemoveHeaderList) link).removedHeaderTypes();
+				if (base != null)
+				{
+					Collections.addAll(removed, removedHeaderTypes);
+				}
+				if (appended != null)
+				{
+					appended = (IndexedHeaderList) appended.remove(removedHeaderTypes);
+				}
+			}
+		}
+
+		if (base == null)
+		{
+			return appended;
+		}
+		HeaderList result = removed.isEmpty() ? base : new RemoveHeaderList(base, removed.toArray(new HeaderType<?>[removed.size()]));
+		return appended == null || appended.size() == 0 ? result : new JoinedHeaderList(result, appended);
+	}
 }
\ No newline at end of file
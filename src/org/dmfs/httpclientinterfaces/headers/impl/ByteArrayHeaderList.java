@@ -0,0 +1,278 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.headers.impl;
+
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.dmfs.httpclientinterfaces.headers.Header;
+import org.dmfs.httpclientinterfaces.headers.HeaderList;
+import org.dmfs.httpclientinterfaces.headers.HeaderType;
+
+
+/**
+ * A compact {@link HeaderList} that keeps raw header fields in a single byte array, as received from the wire.
+ * <p>
+ * Names and values are decoded (as ISO-8859-1) only when they are accessed, and typed values are parsed with {@link HeaderType#headerFromString(String)}
+ * each time a {@link Header} is returned. {@link #contains(HeaderType)} compares the raw bytes and doesn't decode anything. This makes the list cheap to
+ * create for responses of which only a few headers are ever looked at. Note that malformed values are detected only on access, in which case the
+ * {@link HeaderType} throws a {@link RuntimeException}.
+ * </p>
+ * <p>
+ * The offset table contains {@value #FIELDS} <code>int</code>s per header field: the start of the name, the start of the value (which is also the end of the
+ * name), the end of the value and the index of the {@link HeaderType} in a {@link HeaderTypeRegistry} or -1 if the header type is unknown. Headers with
+ * unknown types are returned with an interned String valued {@link HeaderType} of the same registry. Header names are compared case-insensitively.
+ * </p>
+ * <p>
+ * The arrays are not copied, the caller must not modify them after creating the list.
+ * </p>
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class ByteArrayHeaderList extends AbstractComplexHeaderList
+{
+	/**
+	 * The number of <code>int</code>s per header field in the offset table.
+	 */
+	public final static int FIELDS = 4;
+
+	private final static Charset LATIN1 = Charset.forName("ISO-8859-1");
+
+	private final byte[] mBlock;
+	private final int[] mOffsets;
+	private final int mCount;
+	private final HeaderTypeRegistry mHeaderTypes;
+
+
+	/**
+	 * Creates a {@link ByteArrayHeaderList}.
+	 * 
+	 * @param block
+	 *            The raw names and values.
+	 * @param offsets
+	 *            The offset table, {@link #FIELDS} entries per header field.
+	 * @param count
+	 *            The number of header fields.
+	 * @param headerTypes
+	 *            The {@link HeaderTypeRegistry} the offset table refers to.
+	 */
+	public ByteArrayHeaderList(byte[] block, int[] offsets, int count, HeaderTypeRegistry headerTypes)
+	{
+		if (offsets.length < count * FIELDS)
+		{
+			throw new IllegalArgumentException("Offset table too small");
+		}
+		mBlock = block;
+		mOffsets = offsets;
+		mCount = count;
+		mHeaderTypes = headerTypes;
+	}
+
+
+	@Override
+	public Iterator<Header<?>> iterator()
+	{
+		return new Iterator<Header<?>>()
+		{
+			private int mNext = 0;
+
+
+			@Override
+			public boolean hasNext()
+			{
+				return mNext < mCount;
+			}
+
+
+			@Override
+			public Header<?> next()
+			{
+				if (mNext >= mCount)
+				{
+					throw new NoSuchElementException("No more headers");
+				}
+				return header(mNext++);
+			}
+
+
+			@Override
+			public void remove()
+			{
+				throw new UnsupportedOperationException("remove() not is supported by this iterator.");
+			}
+		};
+	}
+
+
+	@Override
+	public <T> Iterator<Header<T>> headersByType(final HeaderType<T> headerType)
+	{
+		return new Iterator<Header<T>>()
+		{
+			private int mNext = find(headerType, 0);
+
+
+			@Override
+			public boolean hasNext()
+			{
+				return mNext < mCount;
+			}
+
+
+			@Override
+			public Header<T> next()
+			{
+				if (mNext >= mCount)
+				{
+					throw new NoSuchElementException("No more headers");
+				}
+				Header<T> result = headerType.headerFromString(value(mNext));
+				mNext = find(headerType, mNext + 1);
+				return result;
+			}
+
+
+			@Override
+			public void remove()
+			{
+				throw new UnsupportedOperationException("remove() not is supported by this iterator.");
+			}
+		};
+	}
+
+
+	@Override
+	public boolean contains(HeaderType<?> headerType)
+	{
+		return find(headerType, 0) < mCount;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Since the headers of this list are created on access, this returns <code>true</code> if the list contains a header of the same type with an equal value.
+	 * </p>
+	 */
+	@Override
+	public boolean contains(Header<?> header)
+	{
+		HeaderType<?> headerType = header.headerType();
+		Object value = header.value();
+		for (int i = find(headerType, 0); i < mCount; i = find(headerType, i + 1))
+		{
+			Object candidate = headerType.headerFromString(value(i)).value();
+			if (value == null ? candidate == null : value.equals(candidate))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+
+	@Override
+	public int size()
+	{
+		return mCount;
+	}
+
+
+	/**
+	 * Returns the index of the first header field at or after the given index that has the given {@link HeaderType} or {@link #mCount} if there is none.
+	 */
+	private int find(HeaderType<?> headerType, int start)
+	{
+		int[] offsets = mOffsets;
+		HeaderTypeRegistry headerTypes = mHeaderTypes;
+		String name = null;
+		for (int i = start, count = mCount; i < count; ++i)
+		{
+			int typeIndex = offsets[i * FIELDS + 3];
+			if (typeIndex >= 0)
+			{
+				HeaderType<?> type = headerTypes.headerType(typeIndex);
+				if (type == headerType || type.equals(headerType))
+				{
+					return i;
+				}
+			}
+			else
+			{
+				if (name == null)
+				{
+					name = headerType.headerName();
+				}
+				if (nameEquals(i, name))
+				{
+					return i;
+				}
+			}
+		}
+		return mCount;
+	}
+
+
+	/**
+	 * Compares the raw name of the given header field with the given name without decoding it, ignoring the case of ASCII letters.
+	 */
+	private boolean nameEquals(int index, String name)
+	{
+		int start = mOffsets[index * FIELDS];
+		int length = mOffsets[index * FIELDS + 1] - start;
+		if (length != name.length())
+		{
+			return false;
+		}
+		byte[] block = mBlock;
+		for (int i = 0; i < length; ++i)
+		{
+			int c1 = block[start + i] & 0xff;
+			int c2 = name.charAt(i);
+			if (c1 != c2 && ((c1 | 0x20) != (c2 | 0x20) || (c1 | 0x20) < 'a' || (c1 | 0x20) > 'z'))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+
+	private Header<?> header(int index)
+	{
+		int typeIndex = mOffsets[index * FIELDS + 3];
+		int nameStart = mOffsets[index * FIELDS];
+		HeaderType<?> headerType = typeIndex >= 0 ? mHeaderTypes.headerType(typeIndex) : mHeaderTypes.headerType(mBlock, nameStart, mOffsets[index * FIELDS
+			+ 1] - nameStart);
+		return headerType.headerFromString(value(index));
+	}
+
+
+	private String value(int index)
+	{
+		return decode(mOffsets[index * FIELDS + 1], mOffsets[index * FIELDS + 2]);
+	}
+
+
+	private String decode(int start, int end)
+	{
+		// pass the Charset rather than its name to avoid the lookup
+		return new String(mBlock, start, end - start, LATIN1);
+	}
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.headers.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.dmfs.httpclientinterfaces.headers.HeaderValueConverter;
+import org.dmfs.httpclientinterfaces.headers.values.Challenge;
+
+
+/**
+ * {@link HeaderValueConverter} for header values that consist of a list of {@link Challenge}s, like the WWW-Authenticate header.
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class ChallengeListHeaderValueConverter implements HeaderValueConverter<List<Challenge>>
+{
+	@Override
+	public List<Challenge> parseValue(String headerValueString)
+	{
+		if (headerValueString == null)
+		{
+			return Collections.emptyList();
+		}
+
+		List<Challenge> result = new ArrayList<Challenge>(2);
+		Tokenizer tokenizer = new Tokenizer(headerValueString);
+		tokenizer.skipSeparators();
+		while (!tokenizer.atEnd())
+		{
+			String scheme = tokenizer.token();
+			if (scheme.length() == 0)
+			{
+				throw new IllegalArgumentException(String.format("Invalid challenge in '%s' at position %d", headerValueString, tokenizer.mPos));
+			}
+			SimpleChallenge challenge = new SimpleChallenge(scheme);
+			result.add(challenge);
+
+			tokenizer.skipWhitespace();
+			if (tokenizer.isToken68())
+			{
+				challenge.mToken68 = tokenizer.token68();
+				tokenizer.skipSeparators();
+				continue;
+			}
+
+			// parse parameters until the next challenge starts
+			while (!tokenizer.atEnd() && tokenizer.isParameter())
+			{
+				String name = tokenizer.token().toLowerCase(Locale.ENGLISH);
+				tokenizer.skipWhitespace();
+				tokenizer.expect('=');
+				tokenizer.skipWhitespace();
+				challenge.mParameters.put(name, tokenizer.value());
+				tokenizer.skipSeparators();
+			}
+			tokenizer.skipSeparators();
+		}
+		return result;
+	}
+
+
+	@Override
+	public String valueString(List<Challenge> headerValue)
+	{
+		StringBuilder result = new StringBuilder(headerValue.size() * 64);
+		for (Challenge challenge : headerValue)
+		{
+			if (result.length() > 0)
+			{
+				result.append(", ");
+			}
+			result.append(challenge.scheme());
+			if (challenge.token68() != null)
+			{
+				result.append(' ').append(challenge.token68());
+				continue;
+			}
+			boolean first = true;
+			for (String name : challenge.parameterNames())
+			{
+				result.append(first ? " " : ", ").append(name).append("=\"");
+				String value = challenge.parameter(name);
+				for (int i = 0, length = value.length(); i < length; ++i)
+				{
+					char c = value.charAt(i);
+					if (c == '"' || c == '\\')
+					{
+						result.append('\\');
+					}
+					result.append(c);
+				}
+				result.append('"');
+				first = false;
+			}
+		}
+		return result.toString();
+	}
+
+	/**
+	 * A simple tokenizer for challenge lists.
+	 */
+	private final static class Tokenizer
+	{
+		private final String mValue;
+		private final int mLength;
+		private int mPos;
+
+
+		private Tokenizer(String value)
+		{
+			mValue = value;
+			mLength = value.length();
+		}
+
+
+		private boolean atEnd()
+		{
+			return mPos >= mLength;
+		}
+
+
+		private void skipWhitespace()
+		{
+			while (mPos < mLength && (mValue.charAt(mPos) == ' ' || mValue.charAt(mPos) == '\t'))
+			{
+				++mPos;
+			}
+		}
+
+
+		private void skipSeparators()
+		{
+			while (mPos < mLength && (mValue.charAt(mPos) == ' ' || mValue.charAt(mPos) == '\t' || mValue.charAt(mPos) == ','))
+			{
+				++mPos;
+			}
+		}
+
+
+		private void expect(char c)
+		{
+			if (mPos >= mLength || mValue.charAt(mPos) != c)
+			{
+				throw new IllegalArgumentException(String.format("Expected '%c' in '%s' at position %d", c, mValue, mPos));
+			}
+			++mPos;
+		}
+
+
+		private String token()
+		{
+			int start = mPos;
+			while (mPos < mLength && isTokenChar(mValue.charAt(mPos)))
+			{
+				++mPos;
+			}
+			return mValue.substring(start, mPos);
+		}
+
+
+		/**
+		 * Returns whether the next element is a token68, i.e. a sequence of token68 characters, optionally followed by '=' characters, which is followed by a
+		 * comma or the end of the value.
+		 */
+		private boolean isToken68()
+		{
+			int pos = mPos;
+			int start = pos;
+			while (pos < mLength && isToken68Char(mValue.charAt(pos)))
+			{
+				++pos;
+			}
+			if (pos == start)
+			{
+				return false;
+			}
+			while (pos < mLength && mValue.charAt(pos) == '=')
+			{
+				++pos;
+			}
+			while (pos < mLength && (mValue.charAt(pos) == ' ' || mValue.charAt(pos) == '\t'))
+			{
+				++pos;
+			}
+			return pos >= mLength || mValue.charAt(pos) == ',';
+		}
+
+
+		private String token68()
+		{
+			int start = mPos;
+			while (mPos < mLength && (isToken68Char(mValue.charAt(mPos)) || mValue.charAt(mPos) == '='))
+			{
+				++mPos;
+			}
+			return mValue.substring(start, mPos);
+		}
+
+
+		/**
+		 * Returns whether the next element is an auth-param, i.e. a token followed by '='. Otherwise it's the scheme of the next challenge.
+		 */
+		private boolean isParameter()
+		{
+			int pos = mPos;
+			while (pos < mLength && isTokenChar(mValue.charAt(pos)))
+			{
+				++pos;
+			}
+			while (pos < mLength && (mValue.charAt(pos) == ' ' || mValue.charAt(pos) == '\t'))
+			{
+				++pos;
+			}
+			return pos > mPos && pos < mLength && mValue.charAt(pos) == '=';
+		}
+
+
+		private String value()
+		{
+			if (mPos < mLength && mValue.charAt(mPos) == '"')
+			{
+				StringBuilder result = new StringBuilder(32);
+				++mPos;
+				while (mPos < mLength)
+				{
+					char c = mValue.charAt(mPos++);
+					if (c == '"')
+					{
+						return result.toString();
+					}
+					if (c == '\\' && mPos < mLength)
+					{
+						c = mValue.charAt(mPos++);
+					}
+					result.append(c);
+				}
+				throw new IllegalArgumentException(String.format("Unterminated quoted string in '%s'", mValue));
+			}
+			return token();
+		}
+
+
+		private static boolean isTokenChar(char c)
+		{
+			return c > 32 && c < 127 && "()<>@,;:\\\"/[]?={}".indexOf(c) < 0;
+		}
+
+
+		private static boolean isToken68Char(char c)
+		{
+			return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '-' || c == '.' || c == '_' || c == '~' || c == '+'
+				|| c == '/';
+		}
+	}
+
+	private final static class SimpleChallenge implements Challenge
+	{
+		private final String mScheme;
+		private final Map<String, String> mParameters = new LinkedHashMap<String, String>(8);
+		private String mToken68;
+
+
+		private SimpleChallenge(String scheme)
+		{
+			mScheme = scheme;
+		}
+
+
+		@Override
+		public String scheme()
+		{
+			return mScheme;
+		}
+
+
+		@Override
+		public String token68()
+		{
+			return mToken68;
+		}
+
+
+		@Override
+		public String parameter(String name)
+		{
+			return mParameters.get(name.toLowerCase(Locale.ENGLISH));
+		}
+
+
+		@Override
+		public Set<String> parameterNames()
+		{
+			return Collections.unmodifiableSet(mParameters.keySet());
+		}
+	}
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.headers.impl;
+
+import org.dmfs.httpclientinterfaces.ContentType;
+import org.dmfs.httpclientinterfaces.headers.HeaderValueConverter;
+
+
+/**
+ * {@link HeaderValueConverter} for header values that consist of a single {@link ContentType}, like the value of a <code>Content-Type</code> header.
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class ContentTypeHeaderValueConverter implements HeaderValueConverter<ContentType>
+{
+	@Override
+	public ContentType parseValue(String headerValueString)
+	{
+		return new ContentType(headerValueString.trim());
+	}
+
+
+	@Override
+	public String valueString(ContentType headerValue)
+	{
+		return headerValue.toString();
+	}
+}
@@ -45,7 +45,7 @@ public final class ContentTypeListHeaderValueConverter implements HeaderValueCon
 		int start = 0;
 		while ((next = indexOfUnquotedComma(headerValueString, start)) >= 0)
 		{
-			result.add(new ContentType(headerValueString.substring(start, next - 1).trim()));
+			result.add(new ContentType(headerValueString.substring(start, next).trim()));
 			start = next + 1;
 		}
 		if (start < headerValueString.length())
@@ -77,28 +77,29 @@ public final class ContentTypeListHeaderValueConverter implements HeaderValueCon
 	}
 
 
+	/**
+	 * Returns the position of the next comma that's not within a quoted string. Instead of testing each character this jumps from comma to quote using
+	 * {@link String#indexOf(int, int)}, which the JVM implements with vectorized instructions.
+	 */
 	private int indexOfUnquotedComma(final String haystack, final int start)
 	{
-		boolean isQuoted = false;
-		for (int i = start, count = haystack.length(); i < count; ++i)
+		int comma = haystack.indexOf(',', start);
+		int quote = haystack.indexOf('"', start);
+		while (quote >= 0 && comma > quote)
 		{
-			char c = haystack.charAt(i);
-			switch (c)
+			// the comma might be quoted, skip the quoted string
+			int closingQuote = haystack.indexOf('"', quote + 1);
+			if (closingQuote < 0)
 			{
-				case '"':
-				{
-					isQuoted = !isQuoted;
-					break;
-				}
-				case ',':
-				{
-					if (!isQuoted)
-					{
-						return i;
-					}
-				}
+				// the rest of the value is quoted
+				return -1;
 			}
+			if (comma < closingQuote)
+			{
+				comma = haystack.indexOf(',', closingQuote + 1);
+			}
+			quote = haystack.indexOf('"', closingQuote + 1);
 		}
-		return -1;
+		return comma;
 	}
 }
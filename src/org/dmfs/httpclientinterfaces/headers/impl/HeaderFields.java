@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.headers.impl;
+
+import java.nio.charset.Charset;
+
+import org.dmfs.httpclientinterfaces.headers.Header;
+import org.dmfs.httpclientinterfaces.headers.WireEncodedHeader;
+
+
+/**
+ * Encodes {@link Header}s into header fields as sent over the wire.
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class HeaderFields
+{
+	private final static Charset LATIN1 = Charset.forName("ISO-8859-1");
+
+	/**
+	 * The delimiters that are not allowed in a token, see <a href="https://tools.ietf.org/html/rfc7230#section-3.2.6">RFC 7230, section 3.2.6</a>.
+	 */
+	private final static String DELIMITERS = "()<>@,;:\\\"/[]?={}";
+
+
+	private HeaderFields()
+	{
+	}
+
+
+	/**
+	 * Returns the complete header field of the given {@link Header}, i.e. <code>name: value\r\n</code>, encoded as ISO-8859-1. If the header is a
+	 * {@link WireEncodedHeader} this returns its {@link WireEncodedHeader#wireBytes()}, which may be the same array on each call, so callers must not modify
+	 * the result.
+	 * 
+	 * @param header
+	 *            The {@link Header} to encode.
+	 * @return The bytes of the header field.
+	 * @throws IllegalArgumentException
+	 *             If the header name or value contains characters that are not allowed in headers.
+	 */
+	public static byte[] wireBytes(Header<?> header)
+	{
+		if (header instanceof WireEncodedHeader)
+		{
+			return ((WireEncodedHeader<?>) header).wireBytes();
+		}
+		return encode(header.headerType().headerName(), header.valueString());
+	}
+
+
+	/**
+	 * Validates and encodes a header field with the given name and value string.
+	 */
+	static byte[] encode(String name, String value)
+	{
+		if (name.isEmpty())
+		{
+			throw new IllegalArgumentException("Header name must not be empty");
+		}
+		for (int i = 0, count = name.length(); i < count; ++i)
+		{
+			char c = name.charAt(i);
+			// the name must be a token, i.e. visible US-ASCII without delimiters, this also rules out anything that could terminate the header field
+			if (c <= 0x20 || c >= 0x7f || DELIMITERS.indexOf(c) >= 0)
+			{
+				throw new IllegalArgumentException(String.format("Header name '%s' contains illegal characters", name));
+			}
+		}
+		for (int i = 0, count = value.length(); i < count; ++i)
+		{
+			char c = value.charAt(i);
+			// the value converter should have checked this already, but we don't want to rely on third party converters for this, DEL is not a field-vchar
+			if ((c < 0x20 || c > 0xff || c == 0x7f) && c != 0x09)
+			{
+				throw new IllegalArgumentException(String.format("Value of header '%s' contains illegal characters", name));
+			}
+		}
+		return new StringBuilder(name.length() + value.length() + 4).append(name).append(": ").append(value).append("\r\n").toString().getBytes(LATIN1);
+	}
+}
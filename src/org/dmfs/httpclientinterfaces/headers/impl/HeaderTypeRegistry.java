@@ -0,0 +1,331 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.headers.impl;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.dmfs.httpclientinterfaces.headers.HeaderType;
+import org.dmfs.httpclientinterfaces.headers.HttpHeaders;
+
+
+/**
+ * A registry that resolves header names, including raw header names from the wire, to canonical {@link HeaderType} instances.
+ * <p>
+ * Header names are case-insensitive. The registry keeps the lower case name of each registered {@link HeaderType} and its hash in an open addressing hash
+ * table, so resolving a name from a byte array doesn't create any objects. Resolving a name always returns the same instance, so comparing resolved types is
+ * an identity check in most cases (see {@link SimpleHeaderType#equals(Object)}). The {@link HeaderType}s keep their names as registered, the lower case names
+ * are only used for lookups.
+ * </p>
+ * <p>
+ * Unknown header names are interned with a String valued {@link HeaderType}, up to {@link #MAX_INTERNED} names per registry. After that, unknown names get a
+ * new {@link HeaderType} each time, so peers that send arbitrary header names can't make the registry grow without bounds.
+ * </p>
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class HeaderTypeRegistry
+{
+	/**
+	 * The maximum number of unknown header names a registry interns.
+	 */
+	public final static int MAX_INTERNED = 256;
+
+	private final static Charset LATIN1 = Charset.forName("ISO-8859-1");
+
+	private final static StringHeaderValueConverter STRING_CONVERTER = new StringHeaderValueConverter();
+
+	private final static HeaderTypeRegistry INSTANCE = new HeaderTypeRegistry(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING, HttpHeaders.AUTHORIZATION,
+		HttpHeaders.CACHE_CONTROL, HttpHeaders.CONNECTION, HttpHeaders.CONTENT_ENCODING, HttpHeaders.CONTENT_LENGTH, HttpHeaders.CONTENT_TYPE,
+		HttpHeaders.COOKIE, HttpHeaders.DATE, HttpHeaders.ETAG, HttpHeaders.HOST, HttpHeaders.LAST_MODIFIED, HttpHeaders.LINK, HttpHeaders.LOCATION,
+		HttpHeaders.RETRY_AFTER, HttpHeaders.SERVER, HttpHeaders.SET_COOKIE, HttpHeaders.TRANSFER_ENCODING, HttpHeaders.USER_AGENT,
+		HttpHeaders.WWW_AUTHENTICATE);
+
+	private final HeaderType<?>[] mTypes;
+	private final byte[][] mNames;
+	private final int[] mHashes;
+	private final int mMask;
+
+	private final ConcurrentMap<String, HeaderType<?>> mInterned = new ConcurrentHashMap<String, HeaderType<?>>(16, 0.75f, 1);
+
+
+	/**
+	 * Returns the registry of the well known {@link HeaderType}s in {@link HttpHeaders}.
+	 * 
+	 * @return The shared {@link HeaderTypeRegistry}.
+	 */
+	public static HeaderTypeRegistry getInstance()
+	{
+		return INSTANCE;
+	}
+
+
+	/**
+	 * Creates a registry of the given {@link HeaderType}s. If several types have the same name the first one wins.
+	 * 
+	 * @param headerTypes
+	 *            The {@link HeaderType}s to register.
+	 */
+	public HeaderTypeRegistry(HeaderType<?>... headerTypes)
+	{
+		this(null, headerTypes);
+	}
+
+
+	/**
+	 * Creates a registry of the given {@link HeaderType}s and all the {@link HeaderType}s of another registry.
+	 * 
+	 * @param defaults
+	 *            A {@link HeaderTypeRegistry} with further {@link HeaderType}s or <code>null</code>.
+	 * @param headerTypes
+	 *            The {@link HeaderType}s to register. They take precedence over the ones in defaults with the same name.
+	 */
+	public HeaderTypeRegistry(HeaderTypeRegistry defaults, HeaderType<?>... headerTypes)
+	{
+		int count = headerTypes.length + (defaults == null ? 0 : defaults.mTypes.length);
+		// keep the load factor below 0.5
+		int size = Integer.highestOneBit(Math.max(count, 4) * 4 - 1);
+		mTypes = new HeaderType<?>[size];
+		mNames = new byte[size][];
+		mHashes = new int[size];
+		mMask = size - 1;
+		for (HeaderType<?> headerType : headerTypes)
+		{
+			put(headerType);
+		}
+		if (defaults != null)
+		{
+			for (HeaderType<?> headerType : defaults.mTypes)
+			{
+				if (headerType != null)
+				{
+					put(headerType);
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Updates the given hash with the given byte of a header name. The hash of a name is case-insensitive and equals the {@link String#hashCode()} of the
+	 * lower case name.
+	 * 
+	 * @param hash
+	 *            The hash of the preceding bytes, 0 for the first byte.
+	 * @param b
+	 *            The next byte of the name.
+	 * @return The updated hash.
+	 */
+	public static int hash(int hash, byte b)
+	{
+		return hash * 31 + (b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b & 0xff);
+	}
+
+
+	/**
+	 * Returns the index of the {@link HeaderType} with the given name.
+	 * 
+	 * @param name
+	 *            The header name.
+	 * @return The index or -1 if no such {@link HeaderType} has been registered.
+	 */
+	public int indexOf(String name)
+	{
+		byte[] bytes = name.getBytes(LATIN1);
+		return indexOf(hash(bytes, 0, bytes.length), bytes, 0, bytes.length);
+	}
+
+
+	/**
+	 * Returns the index of the {@link HeaderType} with the given raw name. This doesn't create any objects.
+	 * 
+	 * @param hash
+	 *            The hash of the name, as computed with {@link #hash(int, byte)}.
+	 * @param name
+	 *            An array containing the name.
+	 * @param offset
+	 *            The start of the name in the array.
+	 * @param length
+	 *            The length of the name.
+	 * @return The index or -1 if no such {@link HeaderType} has been registered.
+	 */
+	public int indexOf(int hash, byte[] name, int offset, int length)
+	{
+		int index = spread(hash) & mMask;
+		while (mTypes[index] != null)
+		{
+			if (mHashes[index] == hash && equalsIgnoreCase(mNames[index], name, offset, length))
+			{
+				return index;
+			}
+			index = (index + 1) & mMask;
+		}
+		return -1;
+	}
+
+
+	/**
+	 * Returns the {@link HeaderType} at the given index.
+	 * 
+	 * @param index
+	 *            An index returned by {@link #indexOf(int, byte[], int, int)} or {@link #indexOf(String)}.
+	 * @return The {@link HeaderType}.
+	 */
+	public HeaderType<?> headerType(int index)
+	{
+		return mTypes[index];
+	}
+
+
+	/**
+	 * Returns the canonical {@link HeaderType} with the given name. If no such type has been registered this returns an interned String valued
+	 * {@link HeaderType}.
+	 * 
+	 * @param name
+	 *            The header name.
+	 * @return The {@link HeaderType}.
+	 */
+	public HeaderType<?> headerType(String name)
+	{
+		int index = indexOf(name);
+		return index >= 0 ? mTypes[index] : intern(name);
+	}
+
+
+	/**
+	 * Returns the canonical {@link HeaderType} with the given raw name. If no such type has been registered this returns an interned String valued
+	 * {@link HeaderType}. Registered types are resolved without creating any objects.
+	 * 
+	 * @param name
+	 *            An array containing the name.
+	 * @param offset
+	 *            The start of the name in the array.
+	 * @param length
+	 *            The length of the name.
+	 * @return The {@link HeaderType}.
+	 */
+	public HeaderType<?> headerType(byte[] name, int offset, int length)
+	{
+		int index = indexOf(hash(name, offset, length), name, offset, length);
+		return index >= 0 ? mTypes[index] : intern(new String(name, offset, length, LATIN1));
+	}
+
+
+	private HeaderType<?> intern(String name)
+	{
+		String key = lowerCase(name);
+		HeaderType<?> result = mInterned.get(key);
+		if (result == null)
+		{
+			result = new SimpleHeaderType<String>(name, STRING_CONVERTER);
+			// the limit is not exact when several threads intern at the same time, but it's good enough to keep the map from growing without bounds
+			if (mInterned.size() < MAX_INTERNED)
+			{
+				HeaderType<?> existing = mInterned.putIfAbsent(key, result);
+				if (existing != null)
+				{
+					result = existing;
+				}
+			}
+		}
+		return result;
+	}
+
+
+	private void put(HeaderType<?> headerType)
+	{
+		byte[] name = headerType.headerName().getBytes(LATIN1);
+		int hash = hash(name, 0, name.length);
+		int index = spread(hash) & mMask;
+		while (mTypes[index] != null)
+		{
+			if (mHashes[index] == hash && equalsIgnoreCase(mNames[index], name, 0, name.length))
+			{
+				// first one wins
+				return;
+			}
+			index = (index + 1) & mMask;
+		}
+		for (int i = 0; i < name.length; ++i)
+		{
+			if (name[i] >= 'A' && name[i] <= 'Z')
+			{
+				name[i] += 'a' - 'A';
+			}
+		}
+		mTypes[index] = headerType;
+		mNames[index] = name;
+		mHashes[index] = hash;
+	}
+
+
+	private static int hash(byte[] name, int offset, int length)
+	{
+		int hash = 0;
+		for (int i = offset, end = offset + length; i < end; ++i)
+		{
+			hash = hash(hash, name[i]);
+		}
+		return hash;
+	}
+
+
+	/**
+	 * Converts the ASCII letters of the given name to lower case. In contrast to {@link String#toLowerCase()} this doesn't depend on the default locale.
+	 */
+	private static String lowerCase(String name)
+	{
+		char[] chars = name.toCharArray();
+		for (int i = 0; i < chars.length; ++i)
+		{
+			if (chars[i] >= 'A' && chars[i] <= 'Z')
+			{
+				chars[i] += 'a' - 'A';
+			}
+		}
+		return new String(chars);
+	}
+
+
+	private static int spread(int hash)
+	{
+		return hash ^ (hash >>> 16);
+	}
+
+
+	/**
+	 * Compares a lower case name with a name of any case.
+	 */
+	private static boolean equalsIgnoreCase(byte[] lowerCaseName, byte[] name, int offset, int length)
+	{
+		if (lowerCaseName.length != length)
+		{
+			return false;
+		}
+		for (int i = 0; i < length; ++i)
+		{
+			byte b = name[offset + i];
+			if (lowerCaseName[i] != (b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+}
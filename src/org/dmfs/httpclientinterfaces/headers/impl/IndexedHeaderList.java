@@ -0,0 +1,668 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.headers.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.dmfs.httpclientinterfaces.headers.Header;
+import org.dmfs.httpclientinterfaces.headers.HeaderList;
+import org.dmfs.httpclientinterfaces.headers.HeaderType;
+
+
+/**
+ * A flat {@link HeaderList} with a hash index of its {@link HeaderType}s.
+ * <p>
+ * The {@link Header}s are kept in an array in the order they have been added. An open addressing hash table maps each {@link HeaderType} to the first
+ * {@link Header} of that type and each {@link Header} refers to the next {@link Header} of the same type. So {@link #contains(HeaderType)} takes constant
+ * time and {@link #headersByType(HeaderType)} only visits the {@link Header}s of the requested type. Use {@link #header(HeaderType)} to get the first
+ * {@link Header} of a type without allocating an {@link Iterator}.
+ * </p>
+ * <p>
+ * {@link #remove(HeaderType...)} returns a new {@link IndexedHeaderList}. Appending {@link Header}s returns an {@link IndexedHeaderList} that shares the
+ * array and the index with this one. The shared table has room to grow, so the new {@link Header}s are added in place and appending headers one at a time
+ * takes amortized constant time. Each list only sees the {@link Header}s that have been added before it was created, so all lists remain immutable. Only the
+ * most recent list of a table grows it, appending to an older list copies its {@link Header}s into a new table. Use a {@link Builder} to create a list in
+ * several steps.
+ * </p>
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class IndexedHeaderList extends AbstractComplexHeaderList
+{
+	/**
+	 * The table of {@link Header}s, which may contain more {@link Header}s than this list.
+	 */
+	private final Table mTable;
+
+	/**
+	 * The number of {@link Header}s in this list. These are the first {@link Header}s in {@link #mTable}.
+	 */
+	private final int mCount;
+
+
+	/**
+	 * Creates an {@link IndexedHeaderList} that contains the given {@link Header}s. The array must not contain <code>null</code> values.
+	 * 
+	 * @param headers
+	 *            The headers in this {@link HeaderList}.
+	 */
+	public IndexedHeaderList(Header<?>... headers)
+	{
+		this(new Table(headers.clone()));
+	}
+
+
+	/**
+	 * Creates an {@link IndexedHeaderList} that contains the {@link Header}s of the given {@link HeaderList}.
+	 * 
+	 * @param headers
+	 *            The {@link HeaderList} to flatten.
+	 */
+	public IndexedHeaderList(HeaderList headers)
+	{
+		// don't call size(), it's expensive for some lists
+		this(new Table(new Builder().add(headers).toArray()));
+	}
+
+
+	private IndexedHeaderList(Table table)
+	{
+		this(table, table.count);
+	}
+
+
+	private IndexedHeaderList(Table table, int count)
+	{
+		mTable = table;
+		mCount = count;
+	}
+
+
+	@Override
+	public HeaderList append(Header<?>... newHeaders)
+	{
+		if (newHeaders.length == 0)
+		{
+			return this;
+		}
+		return grow(newHeaders.clone());
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Flat lists are added to the table of this list, other lists are wrapped like {@link AbstractComplexHeaderList} does.
+	 * </p>
+	 */
+	@Override
+	public HeaderList append(HeaderList newHeaders)
+	{
+		if (newHeaders instanceof IndexedHeaderList || newHeaders instanceof ArrayHeaderList || newHeaders instanceof SingleHeaderList)
+		{
+			return appendAll(newHeaders);
+		}
+		return super.append(newHeaders);
+	}
+
+
+	/**
+	 * Returns an {@link IndexedHeaderList} with all {@link Header}s of this list and the given {@link HeaderList}. Chains of {@link JoinedHeaderList}s and
+	 * {@link RemoveHeaderList}s are taken apart like {@link Builder#add(HeaderList)} does.
+	 */
+	IndexedHeaderList appendAll(HeaderList newHeaders)
+	{
+		Header<?>[] headers = new Builder(4).add(newHeaders).toArray();
+		return headers.length == 0 ? this : grow(headers);
+	}
+
+
+	@Override
+	public HeaderList remove(HeaderType<?>... removedHeaderTypes)
+	{
+		boolean[] removed = null;
+		int removedCount = 0;
+		for (HeaderType<?> headerType : removedHeaderTypes)
+		{
+			int first = first(headerType);
+			if (first >= 0)
+			{
+				if (removed == null)
+				{
+					removed = new boolean[mCount];
+				}
+				for (int i = first; i >= 0; i = next(i))
+				{
+					if (!removed[i])
+					{
+						removed[i] = true;
+						++removedCount;
+					}
+				}
+			}
+		}
+
+		if (removedCount == 0)
+		{
+			return this;
+		}
+
+		Header<?>[] all = mTable.headers;
+		Header<?>[] headers = new Header<?>[mCount - removedCount];
+		for (int i = 0, j = 0; i < mCount; ++i)
+		{
+			if (!removed[i])
+			{
+				headers[j++] = all[i];
+			}
+		}
+		return new IndexedHeaderList(new Table(headers));
+	}
+
+
+	@Override
+	public Iterator<Header<?>> iterator()
+	{
+		return new Iterator<Header<?>>()
+		{
+			private int mNextHeader = 0;
+
+
+			@Override
+			public boolean hasNext()
+			{
+				return mNextHeader < mCount;
+			}
+
+
+			@Override
+			public Header<?> next()
+			{
+				if (mNextHeader >= mCount)
+				{
+					throw new NoSuchElementException("No more headers");
+				}
+				return mTable.headers[mNextHeader++];
+			}
+
+
+			@Override
+			public void remove()
+			{
+				throw new UnsupportedOperationException("remove() not is supported by this iterator.");
+			}
+		};
+	}
+
+
+	@Override
+	public <T> Iterator<Header<T>> headersByType(HeaderType<T> headerType)
+	{
+		final int first = first(headerType);
+		if (first < 0)
+		{
+			return Collections.emptyIterator();
+		}
+
+		return new Iterator<Header<T>>()
+		{
+			private int mNextHeader = first;
+
+
+			@Override
+			public boolean hasNext()
+			{
+				return mNextHeader >= 0;
+			}
+
+
+			@SuppressWarnings("unchecked")
+			@Override
+			public Header<T> next()
+			{
+				if (mNextHeader < 0)
+				{
+					throw new NoSuchElementException("No more headers");
+				}
+				// we can safely cast here, because the Header has the requested HeaderType
+				Header<T> result = (Header<T>) mTable.headers[mNextHeader];
+				mNextHeader = IndexedHeaderList.this.next(mNextHeader);
+				return result;
+			}
+
+
+			@Override
+			public void remove()
+			{
+				throw new UnsupportedOperationException("remove() not is supported by this iterator.");
+			}
+		};
+	}
+
+
+	/**
+	 * Returns the first {@link Header} of the given {@link HeaderType}.
+	 * 
+	 * @param headerType
+	 *            The {@link HeaderType} to look for.
+	 * @return The first {@link Header} of the given type or <code>null</code> if this list doesn't contain any.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> Header<T> header(HeaderType<T> headerType)
+	{
+		int first = first(headerType);
+		// we can safely cast here, because the Header has the requested HeaderType
+		return first < 0 ? null : (Header<T>) mTable.headers[first];
+	}
+
+
+	@Override
+	public boolean contains(HeaderType<?> headerType)
+	{
+		return first(headerType) >= 0;
+	}
+
+
+	@Override
+	public boolean contains(Header<?> header)
+	{
+		Header<?>[] headers = mTable.headers;
+		for (int i = first(header.headerType()); i >= 0; i = next(i))
+		{
+			if (headers[i].equals(header))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+
+	@Override
+	public int size()
+	{
+		return mCount;
+	}
+
+
+	/**
+	 * Returns a list with the given {@link Header}s appended to this list. The array is not copied.
+	 */
+	private IndexedHeaderList grow(Header<?>[] newHeaders)
+	{
+		Table table = mTable;
+		synchronized (table)
+		{
+			if (table.count == mCount && table.headers.length - mCount >= newHeaders.length)
+			{
+				// we're the most recent list of this table and there is room left
+				for (Header<?> header : newHeaders)
+				{
+					table.add(header);
+				}
+				return new IndexedHeaderList(table, table.count);
+			}
+		}
+
+		// the table is full or another list has grown it already, copy our headers into a larger table
+		Table larger = new Table(Math.max((mCount + newHeaders.length) * 2, 8));
+		for (int i = 0; i < mCount; ++i)
+		{
+			larger.add(table.headers[i]);
+		}
+		for (Header<?> header : newHeaders)
+		{
+			larger.add(header);
+		}
+		return new IndexedHeaderList(larger);
+	}
+
+
+	/**
+	 * Returns the index of the first {@link Header} of the given {@link HeaderType} in this list or -1 if this list doesn't contain a {@link Header} of that
+	 * type.
+	 */
+	private int first(HeaderType<?> headerType)
+	{
+		Slot[] slots = mTable.slots;
+		int mask = slots.length - 1;
+		int index = spread(hash(headerType)) & mask;
+		Slot slot;
+		while ((slot = slots[index]) != null)
+		{
+			if (matches(slot.type, headerType))
+			{
+				// the type might have been added to the table after this list has been created
+				return slot.first < mCount ? slot.first : -1;
+			}
+			index = (index + 1) & mask;
+		}
+		return -1;
+	}
+
+
+	/**
+	 * Returns the index of the next {@link Header} of the same type in this list or -1 if the {@link Header} at the given index is the last one.
+	 */
+	private int next(int index)
+	{
+		int next = mTable.next[index];
+		// the next header might have been added to the table after this list has been created
+		return next < mCount ? next : -1;
+	}
+
+
+	/**
+	 * Compares two {@link HeaderType}s both ways, in case one of them compares names case-sensitively.
+	 */
+	private static boolean matches(HeaderType<?> type, HeaderType<?> headerType)
+	{
+		return type == headerType || type.equals(headerType) || headerType.equals(type);
+	}
+
+
+	/**
+	 * Returns the hash of the name of the given {@link HeaderType}. This doesn't rely on the {@link Object#hashCode()} of third party {@link HeaderType}s,
+	 * which might not be case-insensitive.
+	 */
+	private static int hash(HeaderType<?> headerType)
+	{
+		return headerType instanceof SimpleHeaderType ? headerType.hashCode() : SimpleHeaderType.nameHash(headerType.headerName());
+	}
+
+
+	private static int spread(int hash)
+	{
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * An entry of the hash table. It's immutable, so lists that read the table while another list grows it see either no entry or a complete one.
+	 */
+	private final static class Slot
+	{
+		private final HeaderType<?> type;
+		private final int first;
+
+
+		private Slot(HeaderType<?> type, int first)
+		{
+			this.type = type;
+			this.first = first;
+		}
+	}
+
+	/**
+	 * The {@link Header}s and the index shared by the {@link IndexedHeaderList}s created by appending to each other. {@link Header}s are only ever added to a
+	 * table, so the part of a table a list sees never changes. Adding {@link Header}s to a table that has been published requires its lock.
+	 */
+	private final static class Table
+	{
+		private final Header<?>[] headers;
+
+		/**
+		 * The index of the next {@link Header} of the same type for each {@link Header} or -1 if it's the last one.
+		 */
+		private final int[] next;
+
+		/**
+		 * The hash table, with a load factor of at most 0.5.
+		 */
+		private final Slot[] slots;
+
+		/**
+		 * The index of the last {@link Header} of the {@link HeaderType} in the same slot of {@link #slots}.
+		 */
+		private final int[] last;
+
+		/**
+		 * The number of {@link Header}s in this table.
+		 */
+		private int count;
+
+
+		/**
+		 * Creates an empty table with room for the given number of {@link Header}s.
+		 */
+		private Table(int capacity)
+		{
+			this(new Header<?>[capacity], 0);
+		}
+
+
+		/**
+		 * Creates a full table of the given {@link Header}s. It takes ownership of the array.
+		 */
+		private Table(Header<?>[] headers)
+		{
+			this(headers, headers.length);
+		}
+
+
+		private Table(Header<?>[] headers, int count)
+		{
+			int size = Integer.highestOneBit(Math.max(headers.length, 1) * 4 - 1);
+			this.headers = headers;
+			next = new int[headers.length];
+			slots = new Slot[size];
+			last = new int[size];
+			for (int i = 0; i < count; ++i)
+			{
+				index(i);
+			}
+			this.count = count;
+		}
+
+
+		private void add(Header<?> header)
+		{
+			headers[count] = header;
+			index(count);
+			++count;
+		}
+
+
+		private void index(int i)
+		{
+			HeaderType<?> headerType = headers[i].headerType();
+			int mask = slots.length - 1;
+			int index = spread(hash(headerType)) & mask;
+			Slot slot;
+			while ((slot = slots[index]) != null && !matches(slot.type, headerType))
+			{
+				index = (index + 1) & mask;
+			}
+			next[i] = -1;
+			if (slot == null)
+			{
+				slots[index] = new Slot(headerType, i);
+			}
+			else
+			{
+				next[last[index]] = i;
+			}
+			last[index] = i;
+		}
+	}
+
+	/**
+	 * A builder of {@link IndexedHeaderList}s. It collects {@link Header}s in an array and indexes them once when {@link #build()} is called.
+	 */
+	public final static class Builder
+	{
+		private Header<?>[] mHeaders;
+		private int mCount;
+
+
+		/**
+		 * Creates a {@link Builder} with a default capacity.
+		 */
+		public Builder()
+		{
+			this(16);
+		}
+
+
+		/**
+		 * Creates a {@link Builder} for the given number of {@link Header}s. The builder grows when more {@link Header}s are added.
+		 * 
+		 * @param capacity
+		 *            The expected number of {@link Header}s.
+		 */
+		public Builder(int capacity)
+		{
+			mHeaders = new Header<?>[Math.max(capacity, 1)];
+		}
+
+
+		/**
+		 * Adds the given {@link Header}s.
+		 * 
+		 * @param headers
+		 *            The {@link Header}s to add, must not contain <code>null</code> values.
+		 * @return This {@link Builder}.
+		 */
+		public Builder add(Header<?>... headers)
+		{
+			ensureCapacity(headers.length);
+			System.arraycopy(headers, 0, mHeaders, mCount, headers.length);
+			mCount += headers.length;
+			return this;
+		}
+
+
+		/**
+		 * Adds all {@link Header}s of the given {@link HeaderList}.
+		 * <p>
+		 * Chains of {@link JoinedHeaderList}s and {@link RemoveHeaderList}s are taken apart rather than iterated, because iterating them goes through one
+		 * nested {@link Iterator} per link.
+		 * </p>
+		 * 
+		 * @param headers
+		 *            The {@link HeaderList} to add.
+		 * @return This {@link Builder}.
+		 */
+		public Builder add(HeaderList headers)
+		{
+			if (headers instanceof IndexedHeaderList)
+			{
+				IndexedHeaderList list = (IndexedHeaderList) headers;
+				ensureCapacity(list.mCount);
+				System.arraycopy(list.mTable.headers, 0, mHeaders, mCount, list.mCount);
+				mCount += list.mCount;
+				return this;
+			}
+			if (headers instanceof JoinedHeaderList)
+			{
+				return add(((JoinedHeaderList) headers).list1()).add(((JoinedHeaderList) headers).list2());
+			}
+			if (headers instanceof RemoveHeaderList)
+			{
+				int start = mCount;
+				add(((RemoveHeaderList) headers).originalHeaders());
+				remove(start, ((RemoveHeaderList) headers).removedHeaderTypes());
+				return this;
+			}
+			for (Header<?> header : headers)
+			{
+				ensureCapacity(1);
+				mHeaders[mCount++] = header;
+			}
+			return this;
+		}
+
+
+		/**
+		 * Removes all {@link Header}s of the given {@link HeaderType}s that have been added so far.
+		 * 
+		 * @param headerTypes
+		 *            The {@link HeaderType}s to remove.
+		 * @return This {@link Builder}.
+		 */
+		public Builder remove(HeaderType<?>... headerTypes)
+		{
+			remove(0, headerTypes);
+			return this;
+		}
+
+
+		/**
+		 * Creates an {@link IndexedHeaderList} of the {@link Header}s added so far. The {@link Builder} can be used further without affecting the result.
+		 * 
+		 * @return An {@link IndexedHeaderList}.
+		 */
+		public IndexedHeaderList build()
+		{
+			return new IndexedHeaderList(new Table(Arrays.copyOf(mHeaders, mCount)));
+		}
+
+
+		/**
+		 * Returns the added {@link Header}s, without copying them if possible. The {@link Builder} must not be used afterwards.
+		 */
+		private Header<?>[] toArray()
+		{
+			return mCount == mHeaders.length ? mHeaders : Arrays.copyOf(mHeaders, mCount);
+		}
+
+
+		/**
+		 * Removes the {@link Header}s of the given {@link HeaderType}s that have been added at or after the given index.
+		 */
+		private void remove(int from, HeaderType<?>[] headerTypes)
+		{
+			Header<?>[] headers = mHeaders;
+			int count = from;
+			for (int i = from; i < mCount; ++i)
+			{
+				if (!isOfType(headers[i], headerTypes))
+				{
+					headers[count++] = headers[i];
+				}
+			}
+			Arrays.fill(headers, count, mCount, null);
+			mCount = count;
+		}
+
+
+		private void ensureCapacity(int additional)
+		{
+			if (mCount + additional > mHeaders.length)
+			{
+				mHeaders = Arrays.copyOf(mHeaders, Math.max(mHeaders.length * 2, mCount + additional));
+			}
+		}
+
+
+		private static boolean isOfType(Header<?> header, HeaderType<?>[] headerTypes)
+		{
+			HeaderType<?> headerType = header.headerType();
+			for (HeaderType<?> type : headerTypes)
+			{
+				if (type == headerType || type.equals(headerType))
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+}
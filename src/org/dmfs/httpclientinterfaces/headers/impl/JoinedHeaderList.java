@@ -41,6 +41,8 @@ public final class JoinedHeaderList extends AbstractComplexHeaderList
 	 */
 	private int mSize = -1;
 
+	private final int mDepth;
+
 
 	/**
 	 * Create a {@link HeaderList} that contains the {@link Header}s of the two given {@link HeaderList}s.
@@ -52,6 +54,7 @@ public final class JoinedHeaderList extends AbstractComplexHeaderList
 	{
 		mList1 = list1;
 		mList2 = list2;
+		mDepth = Math.max(depth(list1), depth(list2)) + 1;
 	}
 
 
@@ -86,4 +89,29 @@ public final class JoinedHeaderList extends AbstractComplexHeaderList
 
 		return mSize;
 	}
+
+
+	@Override
+	int depth()
+	{
+		return mDepth;
+	}
+
+
+	/**
+	 * Returns the first of the joined lists, for flattening.
+	 */
+	HeaderList list1()
+	{
+		return mList1;
+	}
+
+
+	/**
+	 * Returns the second of the joined lists, for flattening.
+	 */
+	HeaderList list2()
+	{
+		return mList2;
+	}
 }
@@ -43,30 +43,125 @@ public class LinkHeaderValueConverter implements HeaderValueConverter<Link>
 	private final static Pattern LINK_HEADER_PARAMS_PATTERN = Pattern.compile(";\\s*(\\w+)\\s*=\\s*([^\\;\\=\"\\s]+|\"[^\"]+\")\\s*");
 
 
+	/**
+	 * Parses the first link of the given header value. Use {@link #parseValues(String)} to get all links of a value.
+	 */
 	@Override
 	public Link parseValue(String headerValueString)
 	{
-		java.util.regex.Matcher uriMatcher = LINK_HEADER_URI_PATTERN.matcher(headerValueString);
+		int end = elementEnd(headerValueString, 0);
+		return parseLink(headerValueString, 0, end, headerValueString);
+	}
+
+
+	/**
+	 * Parses all links of a header value. A single Link header may contain several comma separated links and several Link headers are often joined into a
+	 * single one. {@link #parseValue(String)} only returns the first link of such a value, while this method returns all of them. Empty list elements are
+	 * ignored. The value string of each of the returned {@link Link}s is the part of the value it has been parsed from.
+	 * 
+	 * @param headerValueString
+	 *            The header value.
+	 * @return A {@link List} of the {@link Link}s in the given value, in the order they appear.
+	 * @throws IllegalArgumentException
+	 *             If any of the links is invalid.
+	 */
+	public List<Link> parseValues(String headerValueString)
+	{
+		List<Link> result = new ArrayList<Link>(4);
+		int start = 0;
+		int length = headerValueString.length();
+		while (start <= length)
+		{
+			int end = elementEnd(headerValueString, start);
+			String element = headerValueString.substring(start, end).trim();
+			if (!element.isEmpty())
+			{
+				result.add(parseLink(element, 0, element.length(), element));
+			}
+			start = end + 1;
+		}
+		return result;
+	}
+
+
+	/**
+	 * Returns the value string of the given {@link Link}. This is only supported for {@link Link}s created by this converter, for which it returns the value
+	 * they have been parsed from, including any further links.
+	 */
+	@Override
+	public String valueString(Link headerValue)
+	{
+		if (headerValue instanceof LinkValue)
+		{
+			return ((LinkValue) headerValue).mValueString;
+		}
+		throw new UnsupportedOperationException("serializing Links is not supported yet");
+	}
+
+
+	/**
+	 * Parses the link between start and end of the given value.
+	 */
+	private static Link parseLink(String value, int start, int end, String valueString)
+	{
+		java.util.regex.Matcher uriMatcher = LINK_HEADER_URI_PATTERN.matcher(value).region(start, end);
 		if (!uriMatcher.lookingAt())
 		{
-			throw new IllegalArgumentException(String.format("Link header value '%s' is invalid", headerValueString));
+			throw new IllegalArgumentException(String.format("Link header value '%s' is invalid", value));
 		}
 
 		List<LinkValue.Param> params = new ArrayList<LinkValue.Param>(10);
-		java.util.regex.Matcher paramMatcher = LINK_HEADER_PARAMS_PATTERN.matcher(headerValueString);
+		java.util.regex.Matcher paramMatcher = LINK_HEADER_PARAMS_PATTERN.matcher(value).region(uriMatcher.end(), end);
 		while (paramMatcher.find())
 		{
 			params.add(new LinkValue.Param(paramMatcher.group(1), paramMatcher.group(2)));
 		}
 
-		return new LinkValue(URI.create(uriMatcher.group(1)), params);
+		return new LinkValue(URI.create(uriMatcher.group(1)), params, valueString);
 	}
 
 
-	@Override
-	public String valueString(Link headerValue)
+	/**
+	 * Returns the position of the first comma at or after start that separates two links, i.e. a comma that's neither part of the URI nor of a quoted
+	 * string, or the length of the value if there is no such comma.
+	 */
+	private static int elementEnd(String value, int start)
 	{
-		throw new UnsupportedOperationException("serializing Links is not supported yet");
+		boolean inUri = false;
+		boolean inQuotes = false;
+		for (int i = start, length = value.length(); i < length; ++i)
+		{
+			char c = value.charAt(i);
+			if (inQuotes)
+			{
+				if (c == '\\')
+				{
+					// skip the escaped character
+					++i;
+				}
+				else if (c == '"')
+				{
+					inQuotes = false;
+				}
+			}
+			else if (inUri)
+			{
+				inUri = c != '>';
+			}
+			else if (c == '<')
+			{
+				inUri = true;
+			}
+			else if (c == '"')
+			{
+				inQuotes = true;
+			}
+			else if (c == ',')
+			{
+				return i;
+			}
+		}
+		return value.length();
 	}
 
 	private final static class LinkValue implements Link
@@ -87,11 +182,17 @@ public class LinkHeaderValueConverter implements HeaderValueConverter<Link>
 		private final URI mUri;
 		private final List<Param> mParams;
 
+		/**
+		 * The header value this link has been parsed from.
+		 */
+		private final String mValueString;
+
 
-		private LinkValue(URI uri, List<Param> params)
+		private LinkValue(URI uri, List<Param> params, String valueString)
 		{
 			mUri = uri;
 			mParams = params;
+			mValueString = valueString;
 		}
 
 
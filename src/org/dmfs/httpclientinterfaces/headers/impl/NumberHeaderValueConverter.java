@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.headers.impl;
+
+import org.dmfs.httpclientinterfaces.headers.HeaderValueConverter;
+
+
+/**
+ * {@link HeaderValueConverter} for header values that consist of a non-negative decimal number, like the value of a <code>Content-Length</code> header.
+ * 
+ * <pre>
+ * Content-Length = 1*DIGIT
+ * </pre>
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class NumberHeaderValueConverter implements HeaderValueConverter<Long>
+{
+	@Override
+	public Long parseValue(String headerValueString)
+	{
+		String value = headerValueString.trim();
+		if (value.length() == 0)
+		{
+			throw new IllegalArgumentException("Empty number");
+		}
+		for (int i = 0, count = value.length(); i < count; ++i)
+		{
+			char c = value.charAt(i);
+			if (c < '0' || c > '9')
+			{
+				// Long.parseLong would accept a sign
+				throw new IllegalArgumentException(String.format("Invalid number '%s'", value));
+			}
+		}
+		// throws a NumberFormatException, which is an IllegalArgumentException, if the value is too large
+		return Long.parseLong(value);
+	}
+
+
+	@Override
+	public String valueString(Long headerValue)
+	{
+		if (headerValue < 0)
+		{
+			throw new IllegalArgumentException(String.format("Negative number %d", headerValue));
+		}
+		return headerValue.toString();
+	}
+}
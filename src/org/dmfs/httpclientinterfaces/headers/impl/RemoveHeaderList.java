@@ -42,6 +42,8 @@ public final class RemoveHeaderList extends AbstractComplexHeaderList
 	 */
 	private int mSize = -1;
 
+	private final int mDepth;
+
 
 	/**
 	 * Creates a {@link HeaderList} from another {@link HeaderList} but doesn't contain {@link Header}s of the given {@link HeaderType}s
@@ -55,6 +57,7 @@ public final class RemoveHeaderList extends AbstractComplexHeaderList
 	{
 		mOriginalHeaders = originalHeaders;
 		mRemovedHeaderTypes = removedHeaderTypes;
+		mDepth = depth(originalHeaders) + 1;
 	}
 
 
@@ -106,6 +109,31 @@ public final class RemoveHeaderList extends AbstractComplexHeaderList
 	}
 
 
+	@Override
+	int depth()
+	{
+		return mDepth;
+	}
+
+
+	/**
+	 * Returns the list the headers are removed from, for flattening.
+	 */
+	HeaderList originalHeaders()
+	{
+		return mOriginalHeaders;
+	}
+
+
+	/**
+	 * Returns the removed {@link HeaderType}s, for flattening.
+	 */
+	HeaderType<?>[] removedHeaderTypes()
+	{
+		return mRemovedHeaderTypes;
+	}
+
+
 	/**
 	 * Returns whether a Header of the given type may be in this set or if it's been removed explicitly.
 	 * 
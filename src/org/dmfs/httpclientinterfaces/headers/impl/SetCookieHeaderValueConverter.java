@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.headers.impl;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import org.dmfs.httpclientinterfaces.headers.HeaderValueConverter;
+import org.dmfs.httpclientinterfaces.headers.values.SetCookie;
+
+
+/**
+ * Converts between String and {@link SetCookie} values. Unknown attributes are ignored.
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class SetCookieHeaderValueConverter implements HeaderValueConverter<SetCookie>
+{
+	/**
+	 * The date formats to try when parsing the Expires attribute. The first one is the preferred format of <a
+	 * href="https://tools.ietf.org/html/rfc7231#section-7.1.1.1">RFC 7231</a>, the others are obsolete, but still in use.
+	 */
+	private final static String[] DATE_FORMATS = { "EEE, dd MMM yyyy HH:mm:ss zzz", "EEE, dd-MMM-yyyy HH:mm:ss zzz", "EEE, dd-MMM-yy HH:mm:ss zzz",
+		"EEE MMM d HH:mm:ss yyyy" };
+
+	private final static TimeZone GMT = TimeZone.getTimeZone("GMT");
+
+
+	@Override
+	public SetCookie parseValue(String headerValueString)
+	{
+		String[] parts = headerValueString.split(";");
+		int eq = parts[0].indexOf('=');
+		if (eq <= 0 || parts[0].substring(0, eq).trim().length() == 0)
+		{
+			throw new IllegalArgumentException(String.format("Set-Cookie header value '%s' is invalid", headerValueString));
+		}
+
+		SetCookieValue result = new SetCookieValue(parts[0].substring(0, eq).trim(), parts[0].substring(eq + 1).trim());
+		for (int i = 1, count = parts.length; i < count; ++i)
+		{
+			String part = parts[i];
+			int attributeEq = part.indexOf('=');
+			String attribute = (attributeEq < 0 ? part : part.substring(0, attributeEq)).trim().toLowerCase(Locale.ENGLISH);
+			String value = attributeEq < 0 ? "" : part.substring(attributeEq + 1).trim();
+
+			if ("expires".equals(attribute))
+			{
+				Date expires = parseDate(value);
+				if (expires != null)
+				{
+					result.mExpires = expires.getTime();
+				}
+			}
+			else if ("max-age".equals(attribute))
+			{
+				try
+				{
+					result.mMaxAge = Long.parseLong(value);
+				}
+				catch (NumberFormatException e)
+				{
+					// ignore invalid attribute values
+				}
+			}
+			else if ("domain".equals(attribute))
+			{
+				if (value.startsWith("."))
+				{
+					value = value.substring(1);
+				}
+				if (value.length() > 0)
+				{
+					result.mDomain = value.toLowerCase(Locale.ENGLISH);
+				}
+			}
+			else if ("path".equals(attribute))
+			{
+				result.mPath = value.startsWith("/") ? value : null;
+			}
+			else if ("secure".equals(attribute))
+			{
+				result.mSecure = true;
+			}
+			else if ("httponly".equals(attribute))
+			{
+				result.mHttpOnly = true;
+			}
+		}
+		return result;
+	}
+
+
+	@Override
+	public String valueString(SetCookie headerValue)
+	{
+		StringBuilder result = new StringBuilder(64);
+		result.append(headerValue.name()).append('=').append(headerValue.value());
+		if (headerValue.domain() != null)
+		{
+			result.append("; Domain=").append(headerValue.domain());
+		}
+		if (headerValue.path() != null)
+		{
+			result.append("; Path=").append(headerValue.path());
+		}
+		long expires = headerValue.expiryTime(System.currentTimeMillis());
+		if (expires != Long.MAX_VALUE)
+		{
+			SimpleDateFormat format = new SimpleDateFormat(DATE_FORMATS[0], Locale.US);
+			format.setTimeZone(GMT);
+			result.append("; Expires=").append(format.format(new Date(expires)));
+		}
+		if (headerValue.secure())
+		{
+			result.append("; Secure");
+		}
+		if (headerValue.httpOnly())
+		{
+			result.append("; HttpOnly");
+		}
+		return result.toString();
+	}
+
+
+	private Date parseDate(String value)
+	{
+		for (String pattern : DATE_FORMATS)
+		{
+			// SimpleDateFormat is not thread safe, so we create a new instance each time
+			SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.US);
+			format.setTimeZone(GMT);
+			ParsePosition position = new ParsePosition(0);
+			Date date = format.parse(value, position);
+			if (date != null)
+			{
+				return date;
+			}
+		}
+		return null;
+	}
+
+	private final static class SetCookieValue implements SetCookie
+	{
+		private final String mName;
+		private final String mValue;
+		private String mDomain;
+		private String mPath;
+		private long mExpires = Long.MAX_VALUE;
+		private Long mMaxAge;
+		private boolean mSecure;
+		private boolean mHttpOnly;
+
+
+		private SetCookieValue(String name, String value)
+		{
+			mName = name;
+			mValue = value;
+		}
+
+
+		@Override
+		public String name()
+		{
+			return mName;
+		}
+
+
+		@Override
+		public String value()
+		{
+			return mValue;
+		}
+
+
+		@Override
+		public String domain()
+		{
+			return mDomain;
+		}
+
+
+		@Override
+		public String path()
+		{
+			return mPath;
+		}
+
+
+		@Override
+		public long expiryTime(long receivedTime)
+		{
+			if (mMaxAge != null)
+			{
+				long maxAge = mMaxAge;
+				if (maxAge <= 0)
+				{
+					return Long.MIN_VALUE;
+				}
+				return maxAge > (Long.MAX_VALUE - receivedTime) / 1000 ? Long.MAX_VALUE : receivedTime + maxAge * 1000;
+			}
+			return mExpires;
+		}
+
+
+		@Override
+		public boolean secure()
+		{
+			return mSecure;
+		}
+
+
+		@Override
+		public boolean httpOnly()
+		{
+			return mHttpOnly;
+		}
+	}
+}
@@ -19,22 +19,32 @@ package org.dmfs.httpclientinterfaces.headers.impl;
 
 import org.dmfs.httpclientinterfaces.headers.Header;
 import org.dmfs.httpclientinterfaces.headers.HeaderType;
+import org.dmfs.httpclientinterfaces.headers.WireEncodedHeader;
 
 
 /**
  * A simple implementation of a {@link Header}.
+ * <p>
+ * The value string and the wire form are computed when they are requested for the first time and cached, so a {@link Header} that's sent with many
+ * requests is validated and encoded only once.
+ * </p>
  * 
  * @author Marten Gajda <marten@dmfs.org>
  * 
  * @param <ValueType>
  *            The type of the header value.
  */
-final class SimpleHeader<ValueType> implements Header<ValueType>
+final class SimpleHeader<ValueType> implements WireEncodedHeader<ValueType>
 {
-
 	private final HeaderType<ValueType> mHeaderType;
 	private final ValueType mValue;
 
+	/**
+	 * The cached value string and wire form. Computing them twice in a race is harmless, volatile ensures other threads see complete arrays.
+	 */
+	private volatile String mValueString;
+	private volatile byte[] mWireBytes;
+
 
 	/**
 	 * Creates a simple header from {@link HeaderType} and a value.
@@ -68,6 +78,25 @@ final class SimpleHeader<ValueType> implements Header<ValueType>
 	@Override
 	public String valueString()
 	{
-		return mHeaderType.valueToString(mValue);
+		String result = mValueString;
+		if (result == null)
+		{
+			result = mHeaderType.valueToString(mValue);
+			mValueString = result;
+		}
+		return result;
+	}
+
+
+	@Override
+	public byte[] wireBytes()
+	{
+		byte[] result = mWireBytes;
+		if (result == null)
+		{
+			result = HeaderFields.encode(mHeaderType.headerName(), valueString());
+			mWireBytes = result;
+		}
+		return result;
 	}
 }
@@ -24,6 +24,10 @@ import org.dmfs.httpclientinterfaces.headers.HeaderValueConverter;
 
 /**
  * Simple header type class.
+ * <p>
+ * Header names are compared case-insensitively (ignoring the case of ASCII letters only). The hash code is computed once, when the type is created. Use
+ * {@link HeaderTypeRegistry} to get canonical instances, which can be compared by identity.
+ * </p>
  * 
  * @author Marten Gajda <marten@dmfs.org>
  * 
@@ -34,6 +38,7 @@ public final class SimpleHeaderType<ValueType> implements HeaderType<ValueType>
 {
 	private final String mHeaderName;
 	private final HeaderValueConverter<ValueType> mValueConverter;
+	private final int mHashCode;
 
 
 	/**
@@ -48,6 +53,7 @@ public final class SimpleHeaderType<ValueType> implements HeaderType<ValueType>
 	{
 		mHeaderName = headerName;
 		mValueConverter = valueConverter;
+		mHashCode = nameHash(headerName);
 	}
 
 
@@ -82,13 +88,58 @@ public final class SimpleHeaderType<ValueType> implements HeaderType<ValueType>
 	@Override
 	public int hashCode()
 	{
-		return mHeaderName.hashCode();
+		return mHashCode;
 	}
 
 
 	@Override
 	public boolean equals(Object obj)
 	{
-		return this == obj || (obj instanceof HeaderType && mHeaderName.equals(((HeaderType<?>) obj).headerName()));
+		if (this == obj)
+		{
+			return true;
+		}
+		if (obj instanceof SimpleHeaderType)
+		{
+			SimpleHeaderType<?> other = (SimpleHeaderType<?>) obj;
+			return mHashCode == other.mHashCode && equalsIgnoreCase(mHeaderName, other.mHeaderName);
+		}
+		return obj instanceof HeaderType && equalsIgnoreCase(mHeaderName, ((HeaderType<?>) obj).headerName());
+	}
+
+
+	/**
+	 * Returns the hash code of the lower case name, as required by {@link HeaderType}. This is the same as the hash computed by
+	 * {@link HeaderTypeRegistry#hash(int, byte)}.
+	 */
+	static int nameHash(String name)
+	{
+		int hash = 0;
+		for (int i = 0, length = name.length(); i < length; ++i)
+		{
+			char c = name.charAt(i);
+			hash = hash * 31 + (c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c);
+		}
+		return hash;
+	}
+
+
+	private static boolean equalsIgnoreCase(String name1, String name2)
+	{
+		int length = name1.length();
+		if (name2.length() != length)
+		{
+			return false;
+		}
+		for (int i = 0; i < length; ++i)
+		{
+			char c1 = name1.charAt(i);
+			char c2 = name2.charAt(i);
+			if (c1 != c2 && ((c1 | 0x20) != (c2 | 0x20) || (c1 | 0x20) < 'a' || (c1 | 0x20) > 'z'))
+			{
+				return false;
+			}
+		}
+		return true;
 	}
 }
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.headers.values;
+
+import java.util.Set;
+
+
+/**
+ * Interface of an authentication challenge as specified in <a href="https://tools.ietf.org/html/rfc7235#section-2.1">RFC 7235, Section 2.1</a>.
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public interface Challenge
+{
+	/**
+	 * Returns the authentication scheme of this challenge, like "Basic" or "Digest".
+	 * 
+	 * @return The scheme name as given by the server.
+	 */
+	public String scheme();
+
+
+	/**
+	 * Returns the token68 of this challenge, if the challenge has one instead of parameters.
+	 * 
+	 * @return The token68 or <code>null</code> if this challenge has no token68.
+	 */
+	public String token68();
+
+
+	/**
+	 * Returns the value of the given parameter. Parameter names are case-insensitive.
+	 * 
+	 * @param name
+	 *            The name of the parameter.
+	 * @return The unquoted parameter value or <code>null</code> if the parameter is not present.
+	 */
+	public String parameter(String name);
+
+
+	/**
+	 * Returns the lower case names of all parameters of this challenge.
+	 * 
+	 * @return A {@link Set} of parameter names, may be empty.
+	 */
+	public Set<String> parameterNames();
+}
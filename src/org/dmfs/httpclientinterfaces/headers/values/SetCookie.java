@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.headers.values;
+
+/**
+ * Interface of a Set-Cookie header value as specified in <a href="https://tools.ietf.org/html/rfc6265#section-4.1">RFC 6265, Section 4.1</a>.
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public interface SetCookie
+{
+	/**
+	 * Returns the name of the cookie.
+	 * 
+	 * @return The cookie name, never <code>null</code>.
+	 */
+	public String name();
+
+
+	/**
+	 * Returns the value of the cookie.
+	 * 
+	 * @return The cookie value, may be empty, but never <code>null</code>.
+	 */
+	public String value();
+
+
+	/**
+	 * Returns the value of the Domain attribute.
+	 * 
+	 * @return The domain without any leading dot or <code>null</code> if the attribute is not present.
+	 */
+	public String domain();
+
+
+	/**
+	 * Returns the value of the Path attribute.
+	 * 
+	 * @return The path or <code>null</code> if the attribute is not present or doesn't start with a slash.
+	 */
+	public String path();
+
+
+	/**
+	 * Returns the time when the cookie expires. The Max-Age attribute takes precedence over the Expires attribute.
+	 * 
+	 * @param receivedTime
+	 *            The time when the cookie has been received in milliseconds since the epoch.
+	 * @return The expiry time in milliseconds since the epoch or {@link Long#MAX_VALUE} if the cookie expires at the end of the session.
+	 */
+	public long expiryTime(long receivedTime);
+
+
+	/**
+	 * Returns whether the cookie must be sent over secure connections only.
+	 * 
+	 * @return <code>true</code> if the Secure attribute is present.
+	 */
+	public boolean secure();
+
+
+	/**
+	 * Returns whether the cookie must not be exposed to non-HTTP APIs.
+	 * 
+	 * @return <code>true</code> if the HttpOnly attribute is present.
+	 */
+	public boolean httpOnly();
+}
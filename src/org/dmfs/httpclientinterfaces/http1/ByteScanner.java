@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.http1;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+
+/**
+ * Fast scanning of {@link ByteBuffer}s for delimiters and illegal characters.
+ * <p>
+ * The scanner reads 8 bytes at a time as a <code>long</code> and tests all of them at once using bitwise arithmetic ("SIMD within a register"). The tests are
+ * exact, i.e. a word is flagged only if it actually contains a matching byte, so no byte needs to be tested twice. The remaining bytes at the end of a range
+ * are tested one by one.
+ * </p>
+ * <p>
+ * All methods work with absolute positions and never change the position of the buffer.
+ * </p>
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class ByteScanner
+{
+	private final static long ONES = 0x0101010101010101L;
+	private final static long LOW_BITS = 0x7f7f7f7f7f7f7f7fL;
+	private final static long HIGH_BITS = 0x8080808080808080L;
+
+	/**
+	 * Adding this to a byte in the range 0x00 to 0x7f sets the high bit if and only if the byte is at least 0x20.
+	 */
+	private final static long CONTROL_THRESHOLD = 0x6060606060606060L;
+
+	private final static long TAB = '\t' * ONES;
+	private final static long CR = '\r' * ONES;
+	private final static long DEL = 0x7f * ONES;
+
+
+	private ByteScanner()
+	{
+	}
+
+
+	/**
+	 * Returns the position of the first occurrence of the given byte in the given range of the buffer.
+	 * 
+	 * @param buffer
+	 *            The {@link ByteBuffer} to scan.
+	 * @param from
+	 *            The absolute position to start at.
+	 * @param to
+	 *            The absolute position to stop at (exclusive).
+	 * @param value
+	 *            The byte to search for.
+	 * @return The absolute position of the byte or -1 if the range doesn't contain it.
+	 */
+	public static int indexOf(ByteBuffer buffer, int from, int to, byte value)
+	{
+		long pattern = (value & 0xffL) * ONES;
+		boolean bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+		int i = from;
+		for (int end = to - 7; i < end; i += 8)
+		{
+			long matches = zeroBytes(buffer.getLong(i) ^ pattern);
+			if (matches != 0)
+			{
+				return i + firstByte(matches, bigEndian);
+			}
+		}
+		for (; i < to; ++i)
+		{
+			if (buffer.get(i) == value)
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+
+	/**
+	 * Returns the position of the first control character in the given range of the buffer. Control characters are all bytes below 0x20 and 0x7f, except for
+	 * horizontal tab (0x09) and carriage return (0x0d). These are not allowed in header field values.
+	 * 
+	 * @param buffer
+	 *            The {@link ByteBuffer} to scan.
+	 * @param from
+	 *            The absolute position to start at.
+	 * @param to
+	 *            The absolute position to stop at (exclusive).
+	 * @return The absolute position of the first control character or -1 if the range doesn't contain any.
+	 */
+	public static int indexOfControl(ByteBuffer buffer, int from, int to)
+	{
+		boolean bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+		int i = from;
+		for (int end = to - 7; i < end; i += 8)
+		{
+			long word = buffer.getLong(i);
+			// bytes below 0x20 have neither the high bit set nor get it set by adding the threshold, the sum can't carry into the next byte
+			long controls = ~(((word & LOW_BITS) + CONTROL_THRESHOLD) | word) & HIGH_BITS;
+			if (controls != 0)
+			{
+				controls &= ~(zeroBytes(word ^ TAB) | zeroBytes(word ^ CR));
+			}
+			controls |= zeroBytes(word ^ DEL);
+			if (controls != 0)
+			{
+				return i + firstByte(controls, bigEndian);
+			}
+		}
+		for (; i < to; ++i)
+		{
+			if (isControl(buffer.get(i)))
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+
+	/**
+	 * Returns whether the given byte is a control character as defined by {@link #indexOfControl(ByteBuffer, int, int)}.
+	 * 
+	 * @param b
+	 *            The byte to test.
+	 * @return <code>true</code> if the byte is a control character.
+	 */
+	public static boolean isControl(byte b)
+	{
+		return (b & 0xff) < 0x20 && b != '\t' && b != '\r' || b == 0x7f;
+	}
+
+
+	/**
+	 * Returns a word that has the high bit set in exactly those bytes that are zero in the given word. In contrast to the common
+	 * <code>(x - 0x01..) &amp; ~x &amp; 0x80..</code> this has no false positives, so the result can be combined with other masks.
+	 */
+	private static long zeroBytes(long word)
+	{
+		return ~(((word & LOW_BITS) + LOW_BITS) | word | LOW_BITS);
+	}
+
+
+	/**
+	 * Returns the index of the first flagged byte in memory order.
+	 */
+	private static int firstByte(long flags, boolean bigEndian)
+	{
+		return (bigEndian ? Long.numberOfLeadingZeros(flags) : Long.numberOfTrailingZeros(flags)) >>> 3;
+	}
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.http1;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dmfs.httpclientinterfaces.headers.Header;
+import org.dmfs.httpclientinterfaces.headers.HeaderList;
+import org.dmfs.httpclientinterfaces.headers.impl.ArrayHeaderList;
+import org.dmfs.httpclientinterfaces.headers.impl.EmptyHeaderList;
+import org.dmfs.httpclientinterfaces.headers.impl.SimpleHeaderType;
+import org.dmfs.httpclientinterfaces.headers.impl.StringHeaderValueConverter;
+
+
+/**
+ * An incremental decoder of the chunked transfer coding of HTTP/1.1 (see <a href="https://tools.ietf.org/html/rfc7230#section-4.1">RFC 7230, section
+ * 4.1</a>).
+ * <p>
+ * The decoder is fed with whatever has been received so far. It never copies the content, instead {@link #decode(ByteBuffer)} returns views of the input
+ * buffer. Chunk extensions are ignored. Trailers are available from {@link #trailers()} once the decoder is {@link #finished()}. Since the decoder doesn't
+ * know the types of the trailer headers, all trailer values are Strings.
+ * </p>
+ * <p>
+ * Instances are not thread safe.
+ * </p>
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class ChunkedDecoder
+{
+	/**
+	 * The default maximum length of a chunk header line including any chunk extensions.
+	 */
+	public final static int DEFAULT_MAX_LINE_LENGTH = 4 * 1024;
+
+	/**
+	 * The default maximum size of all trailers.
+	 */
+	public final static int DEFAULT_MAX_TRAILER_SIZE = 8 * 1024;
+
+	private final static int STATE_SIZE = 0;
+	private final static int STATE_EXTENSION = 1;
+	private final static int STATE_SIZE_LF = 2;
+	private final static int STATE_DATA = 3;
+	private final static int STATE_DATA_CR = 4;
+	private final static int STATE_DATA_LF = 5;
+	private final static int STATE_TRAILER = 6;
+	private final static int STATE_FINISHED = 7;
+
+	private final int mMaxLineLength;
+	private final int mMaxTrailerSize;
+
+	private int mState = STATE_SIZE;
+	private long mChunkSize;
+	private int mDigits;
+	private int mLineLength;
+	private int mTrailerSize;
+	private final StringBuilder mTrailerLine = new StringBuilder(64);
+	private List<Header<?>> mTrailers;
+
+
+	/**
+	 * Creates a {@link ChunkedDecoder} with the default limits.
+	 */
+	public ChunkedDecoder()
+	{
+		this(DEFAULT_MAX_LINE_LENGTH, DEFAULT_MAX_TRAILER_SIZE);
+	}
+
+
+	/**
+	 * Creates a {@link ChunkedDecoder}.
+	 * 
+	 * @param maxLineLength
+	 *            The maximum length of a chunk header line.
+	 * @param maxTrailerSize
+	 *            The maximum size of all trailers.
+	 */
+	public ChunkedDecoder(int maxLineLength, int maxTrailerSize)
+	{
+		mMaxLineLength = maxLineLength;
+		mMaxTrailerSize = maxTrailerSize;
+	}
+
+
+	/**
+	 * Decodes the next content bytes of the given input. The position of the input buffer is moved behind all the bytes that have been processed.
+	 * <p>
+	 * Call this repeatedly until it returns <code>null</code>. At that point either all input has been consumed or the decoder is {@link #finished()}. Any
+	 * input after the end of the chunked content is left in the buffer.
+	 * </p>
+	 * 
+	 * @param input
+	 *            A {@link ByteBuffer} with the received bytes.
+	 * @return A view of the input that contains the next content bytes or <code>null</code> if more input is required or the content is complete.
+	 * @throws IOException
+	 *             If the input is malformed or exceeds the limits.
+	 */
+	public ByteBuffer decode(ByteBuffer input) throws IOException
+	{
+		while (input.hasRemaining())
+		{
+			switch (mState)
+			{
+				case STATE_DATA:
+				{
+					int count = (int) Math.min(mChunkSize, input.remaining());
+					ByteBuffer result = input.slice();
+					result.limit(count);
+					input.position(input.position() + count);
+					mChunkSize -= count;
+					if (mChunkSize == 0)
+					{
+						mState = STATE_DATA_CR;
+					}
+					return result;
+				}
+				case STATE_SIZE:
+					size(input.get());
+					break;
+				case STATE_EXTENSION:
+					extension(input.get());
+					break;
+				case STATE_SIZE_LF:
+					expect(input.get(), '\n');
+					endOfSizeLine();
+					break;
+				case STATE_DATA_CR:
+				{
+					byte b = input.get();
+					if (b == '\r')
+					{
+						mState = STATE_DATA_LF;
+						break;
+					}
+					// be lenient and accept a bare LF
+					expect(b, '\n');
+					mState = STATE_SIZE;
+					break;
+				}
+				case STATE_DATA_LF:
+					expect(input.get(), '\n');
+					mState = STATE_SIZE;
+					break;
+				case STATE_TRAILER:
+					trailer(input.get());
+					break;
+				case STATE_FINISHED:
+					return null;
+			}
+		}
+		return null;
+	}
+
+
+	/**
+	 * Returns whether the last chunk and all trailers have been decoded.
+	 * 
+	 * @return <code>true</code> if the chunked content is complete.
+	 */
+	public boolean finished()
+	{
+		return mState == STATE_FINISHED;
+	}
+
+
+	/**
+	 * Returns the trailers that have been received after the last chunk.
+	 * 
+	 * @return A {@link HeaderList} with the trailers.
+	 * @throws IllegalStateException
+	 *             If the decoder is not {@link #finished()} yet.
+	 */
+	public HeaderList trailers()
+	{
+		if (mState != STATE_FINISHED)
+		{
+			throw new IllegalStateException("Trailers are not available before the end of the content");
+		}
+		return mTrailers == null ? EmptyHeaderList.INSTANCE : new ArrayHeaderList(mTrailers.toArray(new Header<?>[mTrailers.size()]));
+	}
+
+
+	private void size(byte b) throws IOException
+	{
+		int digit = Character.digit(b, 16);
+		if (digit >= 0)
+		{
+			if (mChunkSize > (Long.MAX_VALUE >>> 4))
+			{
+				throw new IOException("Chunk size too large");
+			}
+			mChunkSize = (mChunkSize << 4) + digit;
+			++mDigits;
+			checkLineLength();
+			return;
+		}
+
+		if (mDigits == 0)
+		{
+			throw new IOException(String.format("Illegal character 0x%02x in chunk size", b & 0xff));
+		}
+
+		if (b == '\r')
+		{
+			mState = STATE_SIZE_LF;
+		}
+		else if (b == '\n')
+		{
+			endOfSizeLine();
+		}
+		else if (b == ';' || b == ' ' || b == '\t')
+		{
+			mState = STATE_EXTENSION;
+			checkLineLength();
+		}
+		else
+		{
+			throw new IOException(String.format("Illegal character 0x%02x in chunk size", b & 0xff));
+		}
+	}
+
+
+	private void extension(byte b) throws IOException
+	{
+		if (b == '\r')
+		{
+			mState = STATE_SIZE_LF;
+		}
+		else if (b == '\n')
+		{
+			endOfSizeLine();
+		}
+		else
+		{
+			checkLineLength();
+		}
+	}
+
+
+	private void endOfSizeLine()
+	{
+		mDigits = 0;
+		mLineLength = 0;
+		mState = mChunkSize == 0 ? STATE_TRAILER : STATE_DATA;
+	}
+
+
+	private void trailer(byte b) throws IOException
+	{
+		if (++mTrailerSize > mMaxTrailerSize)
+		{
+			throw new IOException("Trailers too large");
+		}
+
+		if (b != '\n')
+		{
+			mTrailerLine.append((char) (b & 0xff));
+			return;
+		}
+
+		int length = mTrailerLine.length();
+		if (length > 0 && mTrailerLine.charAt(length - 1) == '\r')
+		{
+			mTrailerLine.setLength(--length);
+		}
+
+		if (length == 0)
+		{
+			mState = STATE_FINISHED;
+			return;
+		}
+
+		String line = mTrailerLine.toString();
+		mTrailerLine.setLength(0);
+		int colon = line.indexOf(':');
+		if (colon <= 0 || line.charAt(0) == ' ' || line.charAt(0) == '\t' || line.charAt(colon - 1) == ' ')
+		{
+			throw new IOException(String.format("Malformed trailer '%s'", line));
+		}
+		if (mTrailers == null)
+		{
+			mTrailers = new ArrayList<Header<?>>(4);
+		}
+		mTrailers.add(new SimpleHeaderType<String>(line.substring(0, colon), new StringHeaderValueConverter()).headerFromString(line.substring(colon + 1)
+			.trim()));
+	}
+
+
+	private void checkLineLength() throws IOException
+	{
+		if (++mLineLength > mMaxLineLength)
+		{
+			throw new IOException("Chunk header line too long");
+		}
+	}
+
+
+	private static void expect(byte b, char expected) throws IOException
+	{
+		if (b != expected)
+		{
+			throw new IOException(String.format("Expected 0x%02x but found 0x%02x in chunked content", (int) expected, b & 0xff));
+		}
+	}
+}
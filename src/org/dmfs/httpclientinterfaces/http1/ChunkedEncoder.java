@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.http1;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dmfs.httpclientinterfaces.headers.Header;
+import org.dmfs.httpclientinterfaces.headers.HeaderList;
+import org.dmfs.httpclientinterfaces.headers.impl.HeaderFields;
+
+
+/**
+ * Encodes content using the chunked transfer coding of HTTP/1.1 (see <a href="https://tools.ietf.org/html/rfc7230#section-4.1">RFC 7230, section
+ * 4.1</a>).
+ * <p>
+ * The content is never copied. Each chunk is returned as an array of {@link ByteBuffer}s that contains the chunk header, a view of the content and the
+ * trailing CRLF, ready to be written with a single {@link java.nio.channels.GatheringByteChannel#write(ByteBuffer[])}.
+ * </p>
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class ChunkedEncoder
+{
+	private final static byte[] CRLF = { '\r', '\n' };
+	private final static byte[] HEX_DIGITS = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f' };
+	private final static ByteBuffer[] NO_BUFFERS = new ByteBuffer[0];
+
+
+	private ChunkedEncoder()
+	{
+	}
+
+
+	/**
+	 * Returns the given content as a single chunk. The remaining bytes of the given {@link ByteBuffer} are consumed, i.e. its position is moved to its
+	 * limit.
+	 * <p>
+	 * Empty content results in an empty array, because a chunk of size 0 would terminate the content.
+	 * </p>
+	 * 
+	 * @param content
+	 *            The content of the chunk.
+	 * @return An array of {@link ByteBuffer}s to be written in order.
+	 */
+	public static ByteBuffer[] chunk(ByteBuffer content)
+	{
+		if (!content.hasRemaining())
+		{
+			return NO_BUFFERS;
+		}
+		ByteBuffer data = content.slice();
+		content.position(content.limit());
+		return new ByteBuffer[] { chunkHeader(data.remaining()), data, ByteBuffer.wrap(CRLF) };
+	}
+
+
+	/**
+	 * Returns the chunk header (the chunk size in hexadecimal notation followed by CRLF) of a chunk with the given size.
+	 * 
+	 * @param size
+	 *            The size of the chunk, must be positive.
+	 * @return A {@link ByteBuffer} containing the chunk header.
+	 */
+	public static ByteBuffer chunkHeader(long size)
+	{
+		byte[] header = new byte[18];
+		int pos = 16;
+		do
+		{
+			header[--pos] = HEX_DIGITS[(int) (size & 0x0f)];
+			size >>>= 4;
+		} while (size != 0);
+		header[16] = '\r';
+		header[17] = '\n';
+		return ByteBuffer.wrap(header, pos, 18 - pos);
+	}
+
+
+	/**
+	 * Returns the last chunk, followed by the given trailers and the final CRLF.
+	 * 
+	 * @param trailers
+	 *            The trailer {@link Header}s to send after the content, may be empty.
+	 * @return A {@link ByteBuffer} that terminates the chunked content.
+	 */
+	public static ByteBuffer lastChunk(HeaderList trailers)
+	{
+		int length = 5;
+		// encode the trailers only once, the wire form of headers that don't cache it is computed on each call
+		List<byte[]> trailerBytes = new ArrayList<byte[]>(4);
+		for (Header<?> trailer : trailers)
+		{
+			byte[] bytes = HeaderFields.wireBytes(trailer);
+			trailerBytes.add(bytes);
+			length += bytes.length;
+		}
+		byte[] result = new byte[length];
+		result[0] = '0';
+		result[1] = '\r';
+		result[2] = '\n';
+		int pos = 3;
+		for (byte[] bytes : trailerBytes)
+		{
+			System.arraycopy(bytes, 0, result, pos, bytes.length);
+			pos += bytes.length;
+		}
+		result[pos] = '\r';
+		result[pos + 1] = '\n';
+		return ByteBuffer.wrap(result);
+	}
+}
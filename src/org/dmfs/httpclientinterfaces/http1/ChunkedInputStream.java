@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.http1;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.dmfs.httpclientinterfaces.headers.HeaderList;
+
+
+/**
+ * An {@link InputStream} that decodes chunked content from another {@link InputStream} using a {@link ChunkedDecoder}.
+ * <p>
+ * The stream ends with the last chunk. Any bytes the underlying stream provides after the chunked content may have been read into the internal buffer
+ * already and are available from {@link #remainder()}, e.g. to parse the next response on a persistent connection.
+ * </p>
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class ChunkedInputStream extends InputStream
+{
+	private final static int BUFFER_SIZE = 8 * 1024;
+
+	private final InputStream mIn;
+	private final ChunkedDecoder mDecoder;
+	private final ByteBuffer mBuffer;
+	private ByteBuffer mChunk;
+
+
+	/**
+	 * Creates a {@link ChunkedInputStream} using a {@link ChunkedDecoder} with the default limits.
+	 * 
+	 * @param in
+	 *            The {@link InputStream} to read the chunked content from.
+	 */
+	public ChunkedInputStream(InputStream in)
+	{
+		this(in, new ChunkedDecoder());
+	}
+
+
+	/**
+	 * Creates a {@link ChunkedInputStream}.
+	 * 
+	 * @param in
+	 *            The {@link InputStream} to read the chunked content from.
+	 * @param decoder
+	 *            A fresh {@link ChunkedDecoder}.
+	 */
+	public ChunkedInputStream(InputStream in, ChunkedDecoder decoder)
+	{
+		mIn = in;
+		mDecoder = decoder;
+		mBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+		mBuffer.flip();
+	}
+
+
+	@Override
+	public int read() throws IOException
+	{
+		if (!nextChunk())
+		{
+			return -1;
+		}
+		return mChunk.get() & 0xff;
+	}
+
+
+	@Override
+	public int read(byte[] buffer, int offset, int length) throws IOException
+	{
+		if (length == 0)
+		{
+			return 0;
+		}
+		if (!nextChunk())
+		{
+			return -1;
+		}
+		int count = Math.min(length, mChunk.remaining());
+		mChunk.get(buffer, offset, count);
+		return count;
+	}
+
+
+	@Override
+	public int available() throws IOException
+	{
+		return mChunk == null ? 0 : mChunk.remaining();
+	}
+
+
+	@Override
+	public void close() throws IOException
+	{
+		mIn.close();
+	}
+
+
+	/**
+	 * Returns the trailers of the chunked content. This is only available after the end of the stream has been reached.
+	 * 
+	 * @return A {@link HeaderList} with the trailers.
+	 * @throws IllegalStateException
+	 *             If the end of the stream has not been reached yet.
+	 */
+	public HeaderList trailers()
+	{
+		return mDecoder.trailers();
+	}
+
+
+	/**
+	 * Returns any bytes that have been read from the underlying stream but that don't belong to the chunked content.
+	 * 
+	 * @return A read-only {@link ByteBuffer}, empty if the end of the chunked content has not been reached yet.
+	 */
+	public ByteBuffer remainder()
+	{
+		return mDecoder.finished() ? mBuffer.asReadOnlyBuffer() : ByteBuffer.allocate(0);
+	}
+
+
+	/**
+	 * Makes sure {@link #mChunk} has remaining content.
+	 * 
+	 * @return <code>false</code> if the end of the content has been reached.
+	 * @throws IOException
+	 */
+	private boolean nextChunk() throws IOException
+	{
+		while (mChunk == null || !mChunk.hasRemaining())
+		{
+			mChunk = mDecoder.decode(mBuffer);
+			if (mChunk != null)
+			{
+				continue;
+			}
+			if (mDecoder.finished())
+			{
+				return false;
+			}
+			// the decoder has consumed the entire buffer
+			int read = mIn.read(mBuffer.array(), 0, mBuffer.capacity());
+			if (read < 0)
+			{
+				throw new EOFException("Unexpected end of chunked content");
+			}
+			mBuffer.limit(read);
+			mBuffer.position(0);
+		}
+		return true;
+	}
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.http1;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import org.dmfs.httpclientinterfaces.headers.HeaderList;
+import org.dmfs.httpclientinterfaces.headers.impl.EmptyHeaderList;
+
+
+/**
+ * An {@link OutputStream} that writes its content using the chunked transfer coding. This allows sending an
+ * {@link org.dmfs.httpclientinterfaces.HttpRequestEntity} of unknown length without buffering it completely.
+ * <p>
+ * Small writes are collected in a buffer to avoid tiny chunks. Writes of at least the buffer size are sent as a chunk of their own without copying them.
+ * </p>
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class ChunkedOutputStream extends FilterOutputStream
+{
+	/**
+	 * The default buffer size and hence the default size of chunks created from small writes.
+	 */
+	public final static int DEFAULT_BUFFER_SIZE = 8 * 1024;
+
+	private final static byte[] CRLF = { '\r', '\n' };
+
+	private final byte[] mBuffer;
+	private int mCount;
+	private boolean mFinished;
+
+
+	/**
+	 * Creates a {@link ChunkedOutputStream} with the default buffer size.
+	 * 
+	 * @param out
+	 *            The {@link OutputStream} to write the chunked content to.
+	 */
+	public ChunkedOutputStream(OutputStream out)
+	{
+		this(out, DEFAULT_BUFFER_SIZE);
+	}
+
+
+	/**
+	 * Creates a {@link ChunkedOutputStream}.
+	 * 
+	 * @param out
+	 *            The {@link OutputStream} to write the chunked content to.
+	 * @param bufferSize
+	 *            The size of the buffer for small writes.
+	 */
+	public ChunkedOutputStream(OutputStream out, int bufferSize)
+	{
+		super(out);
+		mBuffer = new byte[bufferSize];
+	}
+
+
+	@Override
+	public void write(int b) throws IOException
+	{
+		if (mFinished)
+		{
+			throw new IOException("stream already finished");
+		}
+		if (mCount == mBuffer.length)
+		{
+			flushBuffer();
+		}
+		mBuffer[mCount++] = (byte) b;
+	}
+
+
+	@Override
+	public void write(byte[] buffer, int offset, int length) throws IOException
+	{
+		if (mFinished)
+		{
+			throw new IOException("stream already finished");
+		}
+		if (length >= mBuffer.length)
+		{
+			flushBuffer();
+			writeChunk(buffer, offset, length);
+			return;
+		}
+		if (length > mBuffer.length - mCount)
+		{
+			flushBuffer();
+		}
+		System.arraycopy(buffer, offset, mBuffer, mCount, length);
+		mCount += length;
+	}
+
+
+	@Override
+	public void flush() throws IOException
+	{
+		flushBuffer();
+		out.flush();
+	}
+
+
+	/**
+	 * Writes any buffered content and the last chunk, followed by the given trailers. The underlying stream is not closed.
+	 * 
+	 * @param trailers
+	 *            The trailers to send.
+	 * @throws IOException
+	 */
+	public void finish(HeaderList trailers) throws IOException
+	{
+		if (mFinished)
+		{
+			return;
+		}
+		flushBuffer();
+		ByteBuffer lastChunk = ChunkedEncoder.lastChunk(trailers);
+		out.write(lastChunk.array(), lastChunk.arrayOffset() + lastChunk.position(), lastChunk.remaining());
+		mFinished = true;
+	}
+
+
+	/**
+	 * Finishes the chunked content without trailers and closes the underlying stream.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		try
+		{
+			finish(EmptyHeaderList.INSTANCE);
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+
+	private void flushBuffer() throws IOException
+	{
+		if (mCount > 0)
+		{
+			writeChunk(mBuffer, 0, mCount);
+			mCount = 0;
+		}
+	}
+
+
+	private void writeChunk(byte[] buffer, int offset, int length) throws IOException
+	{
+		if (length == 0)
+		{
+			// an empty chunk would terminate the content
+			return;
+		}
+		ByteBuffer header = ChunkedEncoder.chunkHeader(length);
+		out.write(header.array(), header.arrayOffset() + header.position(), header.remaining());
+		out.write(buffer, offset, length);
+		out.write(CRLF);
+	}
+}
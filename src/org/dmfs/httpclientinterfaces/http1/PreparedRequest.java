@@ -0,0 +1,452 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.http1;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.dmfs.httpclientinterfaces.HttpMethod;
+import org.dmfs.httpclientinterfaces.headers.Header;
+import org.dmfs.httpclientinterfaces.headers.HeaderList;
+import org.dmfs.httpclientinterfaces.headers.HttpHeaders;
+import org.dmfs.httpclientinterfaces.headers.WireEncodedHeader;
+import org.dmfs.httpclientinterfaces.headers.impl.EmptyHeaderList;
+import org.dmfs.httpclientinterfaces.headers.impl.HeaderFields;
+
+
+/**
+ * A precompiled HTTP/1.1 request head for requests that share the method, the request target (apart from some variables) and a set of headers.
+ * <p>
+ * The request target is given as a URI template with simple string expansion (level 1 of <a href="https://tools.ietf.org/html/rfc6570">RFC 6570</a>), e.g.
+ * <code>/users/{user}/items?page={page}</code>. Variable values are UTF-8 encoded and all characters but unreserved ones are percent-encoded. If the template
+ * is an absolute <code>http</code> or <code>https</code> URI, the path and query become the request target and the authority becomes the <code>Host</code>
+ * header, unless the base headers contain one. Variables are not supported in the authority. Other templates require a <code>Host</code> header in the base
+ * headers. Since every head has a <code>Host</code> header, per request headers must not contain one.
+ * </p>
+ * <p>
+ * The constructor validates and encodes everything that's known in advance into a few byte arrays: the request line around the variables and the block of
+ * base headers (using the cached {@link WireEncodedHeader#wireBytes()} where available). {@link #head(HeaderList, String...)} only encodes the variable
+ * values and per request headers and copies the parts together. A head without variables and extra headers is returned without copying at all.
+ * </p>
+ * <p>
+ * Instances are immutable and can be shared among threads.
+ * </p>
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class PreparedRequest
+{
+	private final static Charset LATIN1 = Charset.forName("ISO-8859-1");
+	private final static Charset UTF8 = Charset.forName("UTF-8");
+
+	private final static byte[] HEX_DIGITS = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F' };
+
+	/**
+	 * Unreserved characters as per <a href="https://tools.ietf.org/html/rfc3986#section-2.3">RFC 3986, section 2.3</a>.
+	 */
+	private final static boolean[] UNRESERVED = new boolean[256];
+
+	static
+	{
+		for (int c = '0'; c <= '9'; ++c)
+		{
+			UNRESERVED[c] = true;
+		}
+		for (int c = 'a'; c <= 'z'; ++c)
+		{
+			UNRESERVED[c] = true;
+			UNRESERVED[c - 'a' + 'A'] = true;
+		}
+		for (char c : "-._~".toCharArray())
+		{
+			UNRESERVED[c] = true;
+		}
+	}
+
+	private final HttpMethod mMethod;
+
+	/**
+	 * The static parts of the head. There is one more part than there are variable references. The last part ends with the base headers, but not with the
+	 * empty line that terminates the head.
+	 */
+	private final byte[][] mParts;
+
+	/**
+	 * The index in {@link #mNames} of each variable reference in the template.
+	 */
+	private final int[] mReferences;
+
+	/**
+	 * The distinct variable names in the order of their first appearance.
+	 */
+	private final String[] mNames;
+
+	private final int mStaticLength;
+
+	/**
+	 * The complete head, if the template doesn't contain any variables.
+	 */
+	private final byte[] mCompleteHead;
+
+
+	/**
+	 * Creates a {@link PreparedRequest}.
+	 * 
+	 * @param method
+	 *            The {@link HttpMethod} of the request.
+	 * @param uriTemplate
+	 *            The URI template of the request target, either starting with <code>/</code> or an absolute <code>http</code> or <code>https</code> URI.
+	 * @param headers
+	 *            The headers that are sent with every request.
+	 * @throws IllegalArgumentException
+	 *             If the template is malformed or contains characters that are not allowed in a request target, if the template has no authority and the
+	 *             headers don't contain a <code>Host</code> header, or if any of the headers contains illegal characters.
+	 */
+	public PreparedRequest(HttpMethod method, String uriTemplate, HeaderList headers)
+	{
+		String verb = method.verb();
+		for (int i = 0, length = verb.length(); i < length; ++i)
+		{
+			char c = verb.charAt(i);
+			if (c <= 0x20 || c >= 0x7f)
+			{
+				throw new IllegalArgumentException(String.format("Illegal method '%s'", verb));
+			}
+		}
+
+		String target = uriTemplate;
+		byte[] host = new byte[0];
+		int schemeEnd = uriTemplate.startsWith("http://") ? 7 : uriTemplate.startsWith("https://") ? 8 : -1;
+		if (schemeEnd > 0)
+		{
+			int authorityEnd = firstIndexOf(uriTemplate, "/?#", schemeEnd);
+			// user info is not sent
+			int at = uriTemplate.lastIndexOf('@', authorityEnd - 1);
+			String authority = uriTemplate.substring(at >= schemeEnd ? at + 1 : schemeEnd, authorityEnd);
+			if (authority.isEmpty() || authority.indexOf('{') >= 0)
+			{
+				throw new IllegalArgumentException(String.format("Illegal authority in URI template '%s'", uriTemplate));
+			}
+			if (!headers.contains(HttpHeaders.HOST))
+			{
+				host = HeaderFields.wireBytes(HttpHeaders.HOST.header(authority));
+			}
+			target = uriTemplate.substring(authorityEnd);
+			if (target.isEmpty() || target.charAt(0) != '/')
+			{
+				target = "/" + target;
+			}
+		}
+		else if (!uriTemplate.startsWith("/") && !(method == HttpMethod.OPTIONS && "*".equals(uriTemplate)))
+		{
+			throw new IllegalArgumentException(String.format("URI template '%s' is neither absolute nor starts with a slash", uriTemplate));
+		}
+		else if (!headers.contains(HttpHeaders.HOST))
+		{
+			// HTTP/1.1 servers must reject requests without a Host header
+			throw new IllegalArgumentException(String.format("URI template '%s' has no authority and the headers don't contain a Host header", uriTemplate));
+		}
+
+		int fragment = target.indexOf('#');
+		if (fragment >= 0)
+		{
+			// fragments are never sent
+			target = target.substring(0, fragment);
+		}
+
+		List<String> literals = new ArrayList<String>();
+		List<String> names = new ArrayList<String>();
+		List<Integer> references = new ArrayList<Integer>();
+		int literalStart = 0;
+		for (int i = 0, length = target.length(); i < length; ++i)
+		{
+			char c = target.charAt(i);
+			if (c == '{')
+			{
+				int end = target.indexOf('}', i);
+				if (end < 0)
+				{
+					throw new IllegalArgumentException(String.format("Unterminated variable in URI template '%s'", uriTemplate));
+				}
+				String name = target.substring(i + 1, end);
+				if (!isVariableName(name))
+				{
+					throw new IllegalArgumentException(String.format("Illegal variable name '%s' in URI template '%s'", name, uriTemplate));
+				}
+				literals.add(target.substring(literalStart, i));
+				int index = names.indexOf(name);
+				if (index < 0)
+				{
+					index = names.size();
+					names.add(name);
+				}
+				references.add(index);
+				literalStart = end + 1;
+				i = end;
+			}
+			else if (c <= 0x20 || c >= 0x7f || c == '}')
+			{
+				throw new IllegalArgumentException(String.format("Illegal character 0x%02x in URI template '%s'", (int) c, uriTemplate));
+			}
+		}
+		literals.add(target.substring(literalStart));
+
+		int partCount = literals.size();
+		byte[][] parts = new byte[partCount][];
+		for (int i = 0; i < partCount; ++i)
+		{
+			parts[i] = literals.get(i).getBytes(LATIN1);
+		}
+		parts[0] = concat((verb + " ").getBytes(LATIN1), parts[0]);
+
+		// the last part takes the rest of the request line and all the base headers
+		List<byte[]> tail = new ArrayList<byte[]>(headers.size() + 3);
+		tail.add(parts[partCount - 1]);
+		tail.add(" HTTP/1.1\r\n".getBytes(LATIN1));
+		tail.add(host);
+		for (Header<?> header : headers)
+		{
+			tail.add(HeaderFields.wireBytes(header));
+		}
+		parts[partCount - 1] = concat(tail.toArray(new byte[tail.size()][]));
+
+		int staticLength = 0;
+		for (byte[] part : parts)
+		{
+			staticLength += part.length;
+		}
+
+		mMethod = method;
+		mParts = parts;
+		mNames = names.toArray(new String[names.size()]);
+		mReferences = new int[references.size()];
+		for (int i = 0; i < mReferences.length; ++i)
+		{
+			mReferences[i] = references.get(i);
+		}
+		mStaticLength = staticLength;
+		mCompleteHead = partCount == 1 ? concat(parts[0], new byte[] { '\r', '\n' }) : null;
+	}
+
+
+	/**
+	 * Returns the {@link HttpMethod} of the request.
+	 * 
+	 * @return The {@link HttpMethod}.
+	 */
+	public HttpMethod method()
+	{
+		return mMethod;
+	}
+
+
+	/**
+	 * Returns the names of the variables in the URI template, in the order of their first appearance. This is the order in which
+	 * {@link #head(HeaderList, String...)} takes the values.
+	 * 
+	 * @return An unmodifiable {@link List} of variable names.
+	 */
+	public List<String> variables()
+	{
+		return Collections.unmodifiableList(Arrays.asList(mNames));
+	}
+
+
+	/**
+	 * Returns the request head for the given variable values.
+	 * 
+	 * @param values
+	 *            The values of the variables, in the order returned by {@link #variables()}.
+	 * @return A {@link ByteBuffer} with the complete request head, including the empty line at the end. It may be read-only.
+	 * @throws IllegalArgumentException
+	 *             If the number of values doesn't match the number of variables.
+	 */
+	public ByteBuffer head(String... values)
+	{
+		return head(EmptyHeaderList.INSTANCE, values);
+	}
+
+
+	/**
+	 * Returns the request head for the given variable values with the given headers in addition to the base headers, for instance a
+	 * <code>Content-Length</code>.
+	 * 
+	 * @param headers
+	 *            Headers to add to this request only.
+	 * @param values
+	 *            The values of the variables, in the order returned by {@link #variables()}.
+	 * @return A {@link ByteBuffer} with the complete request head, including the empty line at the end. It may be read-only.
+	 * @throws IllegalArgumentException
+	 *             If the number of values doesn't match the number of variables, if any of the headers contains illegal characters or if the headers
+	 *             contain a <code>Host</code> header.
+	 */
+	public ByteBuffer head(HeaderList headers, String... values)
+	{
+		if (values.length != mNames.length)
+		{
+			throw new IllegalArgumentException(String.format("Expected %d variable values but got %d", mNames.length, values.length));
+		}
+
+		// don't use size(), which is expensive for some HeaderList implementations
+		boolean noHeaders = !headers.iterator().hasNext();
+		if (mCompleteHead != null && noHeaders)
+		{
+			return ByteBuffer.wrap(mCompleteHead).asReadOnlyBuffer();
+		}
+		if (!noHeaders && headers.contains(HttpHeaders.HOST))
+		{
+			// the head has a Host header already, a second one makes the request invalid
+			throw new IllegalArgumentException("The request head already contains a Host header");
+		}
+
+		byte[][] encoded = new byte[values.length][];
+		for (int i = 0; i < values.length; ++i)
+		{
+			encoded[i] = encode(values[i]);
+		}
+
+		int length = mStaticLength + 2;
+		for (int reference : mReferences)
+		{
+			length += encoded[reference].length;
+		}
+		// encode the headers only once, the wire form of headers that don't cache it is computed on each call
+		List<byte[]> headerBytes = new ArrayList<byte[]>(8);
+		for (Header<?> header : headers)
+		{
+			byte[] bytes = HeaderFields.wireBytes(header);
+			headerBytes.add(bytes);
+			length += bytes.length;
+		}
+
+		byte[] result = new byte[length];
+		byte[][] parts = mParts;
+		int pos = 0;
+		for (int i = 0; i < mReferences.length; ++i)
+		{
+			System.arraycopy(parts[i], 0, result, pos, parts[i].length);
+			pos += parts[i].length;
+			byte[] value = encoded[mReferences[i]];
+			System.arraycopy(value, 0, result, pos, value.length);
+			pos += value.length;
+		}
+		byte[] last = parts[parts.length - 1];
+		System.arraycopy(last, 0, result, pos, last.length);
+		pos += last.length;
+		for (byte[] bytes : headerBytes)
+		{
+			System.arraycopy(bytes, 0, result, pos, bytes.length);
+			pos += bytes.length;
+		}
+		result[pos] = '\r';
+		result[pos + 1] = '\n';
+		return ByteBuffer.wrap(result);
+	}
+
+
+	/**
+	 * Percent-encodes all but the unreserved characters of the UTF-8 encoded value.
+	 */
+	private static byte[] encode(String value)
+	{
+		byte[] bytes = value.getBytes(UTF8);
+		int escaped = 0;
+		for (byte b : bytes)
+		{
+			if (!UNRESERVED[b & 0xff])
+			{
+				++escaped;
+			}
+		}
+		if (escaped == 0)
+		{
+			return bytes;
+		}
+
+		byte[] result = new byte[bytes.length + escaped * 2];
+		int pos = 0;
+		for (byte b : bytes)
+		{
+			if (UNRESERVED[b & 0xff])
+			{
+				result[pos++] = b;
+			}
+			else
+			{
+				result[pos++] = '%';
+				result[pos++] = HEX_DIGITS[(b >>> 4) & 0x0f];
+				result[pos++] = HEX_DIGITS[b & 0x0f];
+			}
+		}
+		return result;
+	}
+
+
+	private static boolean isVariableName(String name)
+	{
+		if (name.isEmpty())
+		{
+			return false;
+		}
+		for (int i = 0, length = name.length(); i < length; ++i)
+		{
+			// ALPHA, DIGIT, "_" and "." (pct-encoded names are not supported)
+			char c = name.charAt(i);
+			if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_' || c == '.'))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+
+	private static int firstIndexOf(String string, String characters, int from)
+	{
+		for (int i = from, length = string.length(); i < length; ++i)
+		{
+			if (characters.indexOf(string.charAt(i)) >= 0)
+			{
+				return i;
+			}
+		}
+		return string.length();
+	}
+
+
+	private static byte[] concat(byte[]... arrays)
+	{
+		int length = 0;
+		for (byte[] array : arrays)
+		{
+			length += array.length;
+		}
+		byte[] result = new byte[length];
+		int pos = 0;
+		for (byte[] array : arrays)
+		{
+			System.arraycopy(array, 0, result, pos, array.length);
+			pos += array.length;
+		}
+		return result;
+	}
+}
@@ -0,0 +1,601 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.http1;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.dmfs.httpclientinterfaces.HttpStatus;
+import org.dmfs.httpclientinterfaces.headers.HeaderList;
+import org.dmfs.httpclientinterfaces.headers.HeaderType;
+import org.dmfs.httpclientinterfaces.headers.HttpHeaders;
+import org.dmfs.httpclientinterfaces.headers.impl.ByteArrayHeaderList;
+import org.dmfs.httpclientinterfaces.headers.impl.EmptyHeaderList;
+import org.dmfs.httpclientinterfaces.headers.impl.HeaderTypeRegistry;
+
+
+/**
+ * An incremental parser of the status line and the header fields of an HTTP/1.x response (see <a href="https://tools.ietf.org/html/rfc7230#section-3">RFC
+ * 7230, section 3</a>).
+ * <p>
+ * The parser is fed with whatever has been received so far, so it works with partial reads of non-blocking channels. Status line and header names are parsed
+ * from the raw bytes. Header names are resolved to known {@link HeaderType}s by a {@link HeaderTypeRegistry} with a case-insensitive hash that's computed
+ * while the name is being received, so no String is created for the name of a known header. Header values are scanned 8 bytes at a time using the {@link ByteScanner} and copied in bulk.
+ * </p>
+ * <p>
+ * Names and values are collected in a single byte array, which {@link #headers()} returns as a {@link ByteArrayHeaderList}. Names and values are decoded and
+ * typed values are parsed only when a header is accessed, so malformed values are not detected by the parser. Headers with unknown names get an interned
+ * String valued {@link HeaderType}.
+ * </p>
+ * <p>
+ * The reason phrase is ignored (as recommended by RFC 7230), {@link #status()} returns the {@link HttpStatus} of the status code. Obsolete line folding is
+ * supported by replacing each fold with a single space.
+ * </p>
+ * <p>
+ * After a response with an informational status (1xx) call {@link #reset()} to parse the final response. Instances are not thread safe.
+ * </p>
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class ResponseHeadParser
+{
+	/**
+	 * The default maximum length of the status line.
+	 */
+	public final static int DEFAULT_MAX_STATUS_LINE_LENGTH = 8 * 1024;
+
+	/**
+	 * The default maximum size of the entire response head, including the status line.
+	 */
+	public final static int DEFAULT_MAX_HEAD_SIZE = 64 * 1024;
+
+	/**
+	 * The default maximum number of header fields.
+	 */
+	public final static int DEFAULT_MAX_HEADER_COUNT = 128;
+
+	private final static Charset LATIN1 = Charset.forName("ISO-8859-1");
+
+	private final static int STATE_STATUS_LINE = 0;
+	private final static int STATE_LINE_START = 1;
+	private final static int STATE_NAME = 2;
+	private final static int STATE_VALUE_START = 3;
+	private final static int STATE_VALUE = 4;
+	private final static int STATE_END_LF = 5;
+	private final static int STATE_FINISHED = 6;
+
+	/**
+	 * Token characters as per <a href="https://tools.ietf.org/html/rfc7230#section-3.2.6">RFC 7230, section 3.2.6</a>.
+	 */
+	private final static boolean[] TOKEN = new boolean[256];
+
+	static
+	{
+		for (int c = '0'; c <= '9'; ++c)
+		{
+			TOKEN[c] = true;
+		}
+		for (int c = 'a'; c <= 'z'; ++c)
+		{
+			TOKEN[c] = true;
+			TOKEN[c - 'a' + 'A'] = true;
+		}
+		for (char c : "!#$%&'*+-.^_`|~".toCharArray())
+		{
+			TOKEN[c] = true;
+		}
+	}
+
+	private final int mMaxStatusLineLength;
+	private final int mMaxHeadSize;
+	private final int mMaxHeaderCount;
+	private final HeaderTypeRegistry mHeaderTypes;
+
+	private int mState = STATE_STATUS_LINE;
+
+	/**
+	 * The bytes of the status line or of the names and values of all header fields received so far.
+	 */
+	private byte[] mBlock = new byte[1024];
+	private int mLength;
+	private int mHeadSize;
+
+	/**
+	 * The offset table of the header fields, see {@link ByteArrayHeaderList}.
+	 */
+	private int[] mOffsets = new int[16 * ByteArrayHeaderList.FIELDS];
+	private int mCount;
+
+	/**
+	 * The current header field.
+	 */
+	private int mNameHash;
+	private int mNameStart;
+	private int mValueStart;
+	private int mTypeIndex;
+
+	/**
+	 * Whether there is a complete header field that has not been added yet, because it might be continued on the next line.
+	 */
+	private boolean mPending;
+
+	private int mVersionMajor;
+	private int mVersionMinor;
+	private HttpStatus mStatus;
+
+
+	/**
+	 * Creates a {@link ResponseHeadParser} with the default limits that knows all headers of {@link HttpHeaders}.
+	 */
+	public ResponseHeadParser()
+	{
+		this(DEFAULT_MAX_STATUS_LINE_LENGTH, DEFAULT_MAX_HEAD_SIZE, DEFAULT_MAX_HEADER_COUNT);
+	}
+
+
+	/**
+	 * Creates a {@link ResponseHeadParser} with the given limits that knows all headers of {@link HttpHeaders}.
+	 * 
+	 * @param maxStatusLineLength
+	 *            The maximum length of the status line.
+	 * @param maxHeadSize
+	 *            The maximum size of the response head, including status line and line terminators.
+	 * @param maxHeaderCount
+	 *            The maximum number of header fields.
+	 */
+	public ResponseHeadParser(int maxStatusLineLength, int maxHeadSize, int maxHeaderCount)
+	{
+		this(maxStatusLineLength, maxHeadSize, maxHeaderCount, HeaderTypeRegistry.getInstance());
+	}
+
+
+	/**
+	 * Creates a {@link ResponseHeadParser} with the given limits that resolves the given {@link HeaderType}s in addition to the headers of {@link HttpHeaders}.
+	 * 
+	 * @param maxStatusLineLength
+	 *            The maximum length of the status line.
+	 * @param maxHeadSize
+	 *            The maximum size of the response head, including status line and line terminators.
+	 * @param maxHeaderCount
+	 *            The maximum number of header fields.
+	 * @param headerTypes
+	 *            The {@link HeaderType}s to resolve. They take precedence over the types in {@link HttpHeaders} with the same name.
+	 */
+	public ResponseHeadParser(int maxStatusLineLength, int maxHeadSize, int maxHeaderCount, HeaderType<?>... headerTypes)
+	{
+		this(maxStatusLineLength, maxHeadSize, maxHeaderCount, new HeaderTypeRegistry(HeaderTypeRegistry.getInstance(), headerTypes));
+	}
+
+
+	/**
+	 * Creates a {@link ResponseHeadParser} with the given limits that resolves header names with the given {@link HeaderTypeRegistry}. Parsers can share a
+	 * registry.
+	 * 
+	 * @param maxStatusLineLength
+	 *            The maximum length of the status line.
+	 * @param maxHeadSize
+	 *            The maximum size of the response head, including status line and line terminators.
+	 * @param maxHeaderCount
+	 *            The maximum number of header fields.
+	 * @param headerTypes
+	 *            The {@link HeaderTypeRegistry} to resolve header names.
+	 */
+	public ResponseHeadParser(int maxStatusLineLength, int maxHeadSize, int maxHeaderCount, HeaderTypeRegistry headerTypes)
+	{
+		mMaxStatusLineLength = maxStatusLineLength;
+		mMaxHeadSize = maxHeadSize;
+		mMaxHeaderCount = maxHeaderCount;
+		mHeaderTypes = headerTypes;
+	}
+
+
+	/**
+	 * Parses the given input. The position of the input buffer is moved behind all the bytes that have been processed. Once the response head is complete any
+	 * remaining input (i.e. the start of the response body) is left in the buffer.
+	 * 
+	 * @param input
+	 *            A {@link ByteBuffer} with the received bytes.
+	 * @return <code>true</code> if the response head is complete, <code>false</code> if more input is required.
+	 * @throws IOException
+	 *             If the input is malformed or exceeds the limits.
+	 */
+	public boolean parse(ByteBuffer input) throws IOException
+	{
+		while (mState != STATE_FINISHED && input.hasRemaining())
+		{
+			if (mState == STATE_VALUE && mHeadSize < mMaxHeadSize)
+			{
+				value(input);
+			}
+			else
+			{
+				next(input.get());
+			}
+		}
+		return mState == STATE_FINISHED;
+	}
+
+
+	/**
+	 * Returns whether the response head is complete.
+	 * 
+	 * @return <code>true</code> if status and headers are available.
+	 */
+	public boolean finished()
+	{
+		return mState == STATE_FINISHED;
+	}
+
+
+	/**
+	 * Returns the {@link HttpStatus} of the response.
+	 * 
+	 * @return The {@link HttpStatus}.
+	 * @throws IllegalStateException
+	 *             If the status line has not been parsed yet.
+	 */
+	public HttpStatus status()
+	{
+		if (mStatus == null)
+		{
+			throw new IllegalStateException("Status line has not been received yet");
+		}
+		return mStatus;
+	}
+
+
+	/**
+	 * Returns the major HTTP version of the response.
+	 * 
+	 * @return The major version number.
+	 * @throws IllegalStateException
+	 *             If the status line has not been parsed yet.
+	 */
+	public int versionMajor()
+	{
+		status();
+		return mVersionMajor;
+	}
+
+
+	/**
+	 * Returns the minor HTTP version of the response.
+	 * 
+	 * @return The minor version number.
+	 * @throws IllegalStateException
+	 *             If the status line has not been parsed yet.
+	 */
+	public int versionMinor()
+	{
+		status();
+		return mVersionMinor;
+	}
+
+
+	/**
+	 * Returns the header fields of the response.
+	 * 
+	 * @return A {@link HeaderList} with all headers in the order they have been received.
+	 * @throws IllegalStateException
+	 *             If the response head is not {@link #finished()} yet.
+	 */
+	public HeaderList headers()
+	{
+		if (mState != STATE_FINISHED)
+		{
+			throw new IllegalStateException("Headers are not available before the end of the response head");
+		}
+		if (mCount == 0)
+		{
+			return EmptyHeaderList.INSTANCE;
+		}
+		// the buffers are reused for the next response, so the list gets copies
+		return new ByteArrayHeaderList(Arrays.copyOf(mBlock, mLength), Arrays.copyOf(mOffsets, mCount * ByteArrayHeaderList.FIELDS), mCount, mHeaderTypes);
+	}
+
+
+	/**
+	 * Resets the parser, so it can parse another response head, like the final response after an interim response or the next response on a persistent
+	 * connection.
+	 */
+	public void reset()
+	{
+		mState = STATE_STATUS_LINE;
+		mLength = 0;
+		mHeadSize = 0;
+		mCount = 0;
+		mPending = false;
+		mStatus = null;
+	}
+
+
+	private void next(byte b) throws IOException
+	{
+		if (++mHeadSize > mMaxHeadSize)
+		{
+			throw new IOException("Response head too large");
+		}
+
+		switch (mState)
+		{
+			case STATE_STATUS_LINE:
+				if (b == '\n')
+				{
+					statusLine();
+					mState = STATE_LINE_START;
+				}
+				else if (mLength == mMaxStatusLineLength)
+				{
+					throw new IOException("Status line too long");
+				}
+				else
+				{
+					append(b);
+				}
+				break;
+			case STATE_LINE_START:
+				lineStart(b);
+				break;
+			case STATE_NAME:
+				name(b);
+				break;
+			case STATE_VALUE_START:
+				// skip leading white space
+				if (b != ' ' && b != '\t')
+				{
+					mState = STATE_VALUE;
+					value(b);
+				}
+				break;
+			case STATE_VALUE:
+				value(b);
+				break;
+			case STATE_END_LF:
+				if (b != '\n')
+				{
+					throw new IOException(String.format("Expected line feed but found 0x%02x at end of response head", b & 0xff));
+				}
+				finish();
+				break;
+		}
+	}
+
+
+	/**
+	 * Consumes a single byte of a header value.
+	 */
+	private void value(byte b) throws IOException
+	{
+		if (b == '\n')
+		{
+			mPending = true;
+			mState = STATE_LINE_START;
+		}
+		else if (ByteScanner.isControl(b))
+		{
+			throw illegalValueCharacter(b);
+		}
+		else
+		{
+			append(b);
+		}
+	}
+
+
+	/**
+	 * Consumes the bytes of a header value up to and including the next line feed in bulk.
+	 */
+	private void value(ByteBuffer input) throws IOException
+	{
+		int position = input.position();
+		// don't scan beyond the head size limit, the next byte will be rejected by next(byte)
+		int end = (int) Math.min(input.limit(), (long) position + mMaxHeadSize - mHeadSize);
+		int lineFeed = ByteScanner.indexOf(input, position, end, (byte) '\n');
+		if (lineFeed >= 0)
+		{
+			end = lineFeed;
+		}
+
+		int control = ByteScanner.indexOfControl(input, position, end);
+		if (control >= 0)
+		{
+			throw illegalValueCharacter(input.get(control));
+		}
+
+		int count = end - position;
+		if (mLength + count > mBlock.length)
+		{
+			mBlock = Arrays.copyOf(mBlock, Math.max(mBlock.length * 2, mLength + count));
+		}
+		input.get(mBlock, mLength, count);
+		mLength += count;
+		mHeadSize += count;
+
+		if (lineFeed >= 0)
+		{
+			input.get();
+			++mHeadSize;
+			mPending = true;
+			mState = STATE_LINE_START;
+		}
+	}
+
+
+	private IOException illegalValueCharacter(byte b)
+	{
+		return new IOException(String.format("Illegal character 0x%02x in value of header '%s'", b & 0xff, new String(mBlock, mNameStart, mValueStart
+			- mNameStart, LATIN1)));
+	}
+
+
+	private void lineStart(byte b) throws IOException
+	{
+		if ((b == ' ' || b == '\t') && mPending)
+		{
+			// obsolete line folding, continue the value of the pending header
+			mPending = false;
+			trimValue();
+			append((byte) ' ');
+			mState = STATE_VALUE_START;
+			return;
+		}
+
+		addPendingHeader();
+
+		if (b == '\r')
+		{
+			mState = STATE_END_LF;
+		}
+		else if (b == '\n')
+		{
+			finish();
+		}
+		else
+		{
+			mNameHash = 0;
+			mNameStart = mLength;
+			mState = STATE_NAME;
+			name(b);
+		}
+	}
+
+
+	private void name(byte b) throws IOException
+	{
+		if (b == ':')
+		{
+			if (mLength == mNameStart)
+			{
+				throw new IOException("Empty header name");
+			}
+			mTypeIndex = mHeaderTypes.indexOf(mNameHash, mBlock, mNameStart, mLength - mNameStart);
+			// the value follows the name in the block
+			mValueStart = mLength;
+			mState = STATE_VALUE_START;
+			return;
+		}
+
+		if (!TOKEN[b & 0xff])
+		{
+			throw new IOException(String.format("Illegal character 0x%02x in header name", b & 0xff));
+		}
+		mNameHash = HeaderTypeRegistry.hash(mNameHash, b);
+		append(b);
+	}
+
+
+	private void append(byte b)
+	{
+		if (mLength == mBlock.length)
+		{
+			// the head size limit keeps this from growing without bounds
+			mBlock = Arrays.copyOf(mBlock, mBlock.length * 2);
+		}
+		mBlock[mLength++] = b;
+	}
+
+
+	/**
+	 * Removes trailing white space from the current value.
+	 */
+	private void trimValue()
+	{
+		byte[] block = mBlock;
+		int length = mLength;
+		int start = mValueStart;
+		while (length > start && (block[length - 1] == ' ' || block[length - 1] == '\t' || block[length - 1] == '\r'))
+		{
+			--length;
+		}
+		mLength = length;
+	}
+
+
+	private void addPendingHeader() throws IOException
+	{
+		if (!mPending)
+		{
+			return;
+		}
+		mPending = false;
+
+		if (mCount == mMaxHeaderCount)
+		{
+			throw new IOException("Too many headers");
+		}
+
+		trimValue();
+		int offset = mCount * ByteArrayHeaderList.FIELDS;
+		if (offset == mOffsets.length)
+		{
+			mOffsets = Arrays.copyOf(mOffsets, offset * 2);
+		}
+		int[] offsets = mOffsets;
+		offsets[offset] = mNameStart;
+		offsets[offset + 1] = mValueStart;
+		offsets[offset + 2] = mLength;
+		offsets[offset + 3] = mTypeIndex;
+		++mCount;
+	}
+
+
+	private void finish()
+	{
+		mState = STATE_FINISHED;
+	}
+
+
+	/**
+	 * Parses the status line in {@link #mBlock}, e.g. <code>HTTP/1.1 200 OK</code>.
+	 */
+	private void statusLine() throws IOException
+	{
+		byte[] line = mBlock;
+		int length = mLength;
+		if (length > 0 && line[length - 1] == '\r')
+		{
+			--length;
+		}
+		// the header fields replace the status line in the block
+		mLength = 0;
+
+		// "HTTP/" DIGIT "." DIGIT SP 3DIGIT [ SP reason-phrase ]
+		if (length < 12 || line[0] != 'H' || line[1] != 'T' || line[2] != 'T' || line[3] != 'P' || line[4] != '/' || !digit(line[5]) || line[6] != '.'
+			|| !digit(line[7]) || line[8] != ' ' || !digit(line[9]) || !digit(line[10]) || !digit(line[11]) || length > 12 && line[12] != ' ')
+		{
+			throw new IOException(String.format("Malformed status line '%s'", new String(line, 0, length, LATIN1)));
+		}
+
+		int statusCode = (line[9] - '0') * 100 + (line[10] - '0') * 10 + line[11] - '0';
+		if (statusCode < 100)
+		{
+			throw new IOException("Illegal status code " + statusCode);
+		}
+		mVersionMajor = line[5] - '0';
+		mVersionMinor = line[7] - '0';
+		mStatus = HttpStatus.fromStatusCode(statusCode);
+	}
+
+
+	private static boolean digit(byte b)
+	{
+		return b >= '0' && b <= '9';
+	}
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.net;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * A {@link Resolver} that caches the results of another {@link Resolver}.
+ * <p>
+ * Results are cached for a fixed time to live. When a cached result is used after {@value #REFRESH_AHEAD_PERCENT}% of its time to live, it's refreshed in the
+ * background, so frequently used hosts never expire. Failed lookups are cached as well, usually with a shorter time to live.
+ * </p>
+ * <p>
+ * Each call to {@link #resolve(String)} returns the addresses of a host rotated by one position, so connections are spread over all addresses of a host.
+ * </p>
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class CachingResolver implements Resolver
+{
+	/**
+	 * The default time to live of resolved addresses in seconds.
+	 */
+	public final static long DEFAULT_TTL = 60;
+
+	/**
+	 * The default time to live of failed lookups in seconds.
+	 */
+	public final static long DEFAULT_NEGATIVE_TTL = 10;
+
+	/**
+	 * The default maximum number of cached hosts.
+	 */
+	public final static int DEFAULT_MAX_ENTRIES = 1024;
+
+	/**
+	 * The age of an entry in percent of its time to live, after which it's refreshed in the background.
+	 */
+	public final static int REFRESH_AHEAD_PERCENT = 75;
+
+	private final Resolver mResolver;
+	private final Executor mRefreshExecutor;
+	private final long mTtlNanos;
+	private final long mNegativeTtlNanos;
+	private final int mMaxEntries;
+	private final ConcurrentMap<String, Entry> mCache;
+
+
+	/**
+	 * Creates a {@link CachingResolver} with the default settings.
+	 * 
+	 * @param resolver
+	 *            The {@link Resolver} that resolves the host names.
+	 * @param refreshExecutor
+	 *            The {@link Executor} to run background refreshes.
+	 */
+	public CachingResolver(Resolver resolver, Executor refreshExecutor)
+	{
+		this(resolver, refreshExecutor, DEFAULT_TTL, DEFAULT_NEGATIVE_TTL, TimeUnit.SECONDS, DEFAULT_MAX_ENTRIES);
+	}
+
+
+	/**
+	 * Creates a {@link CachingResolver}.
+	 * 
+	 * @param resolver
+	 *            The {@link Resolver} that resolves the host names.
+	 * @param refreshExecutor
+	 *            The {@link Executor} to run background refreshes.
+	 * @param ttl
+	 *            The time to live of resolved addresses.
+	 * @param negativeTtl
+	 *            The time to live of failed lookups, 0 disables negative caching.
+	 * @param unit
+	 *            The {@link TimeUnit} of ttl and negativeTtl.
+	 * @param maxEntries
+	 *            The maximum number of cached hosts.
+	 */
+	public CachingResolver(Resolver resolver, Executor refreshExecutor, long ttl, long negativeTtl, TimeUnit unit, int maxEntries)
+	{
+		mResolver = resolver;
+		mRefreshExecutor = refreshExecutor;
+		mTtlNanos = unit.toNanos(ttl);
+		mNegativeTtlNanos = unit.toNanos(negativeTtl);
+		mMaxEntries = maxEntries;
+		mCache = new ConcurrentHashMap<String, Entry>(Math.min(maxEntries, 64));
+	}
+
+
+	@Override
+	public InetAddress[] resolve(String hostName) throws UnknownHostException
+	{
+		String key = hostName.toLowerCase(Locale.ENGLISH);
+		long now = System.nanoTime();
+		Entry entry = mCache.get(key);
+		if (entry == null || entry.expired(now))
+		{
+			entry = load(key, hostName);
+		}
+		else if (entry.refreshDue(now) && entry.mRefreshing.compareAndSet(false, true))
+		{
+			refresh(key, hostName, entry);
+		}
+		return entry.addresses();
+	}
+
+
+	/**
+	 * Removes all entries from the cache.
+	 */
+	public void clear()
+	{
+		mCache.clear();
+	}
+
+
+	/**
+	 * Resolves the given host name and caches the result.
+	 */
+	private Entry load(String key, String hostName)
+	{
+		Entry entry;
+		try
+		{
+			entry = new Entry(mResolver.resolve(hostName), null, mTtlNanos);
+		}
+		catch (UnknownHostException e)
+		{
+			entry = new Entry(null, e, mNegativeTtlNanos);
+		}
+
+		if (entry.mTtlNanos > 0)
+		{
+			if (mCache.size() >= mMaxEntries)
+			{
+				evict();
+			}
+			mCache.put(key, entry);
+		}
+		return entry;
+	}
+
+
+	/**
+	 * Resolves the given host name in the background and replaces the given entry with the result. If the refresh fails the old entry is kept until it expires.
+	 */
+	private void refresh(final String key, final String hostName, final Entry entry)
+	{
+		try
+		{
+			mRefreshExecutor.execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						mCache.replace(key, entry, new Entry(mResolver.resolve(hostName), null, mTtlNanos));
+					}
+					catch (UnknownHostException e)
+					{
+						// keep the stale entry until it expires, the next lookup will try again
+					}
+					finally
+					{
+						// allow another refresh if this one failed, this is harmless if the entry has been replaced
+						entry.mRefreshing.set(false);
+					}
+				}
+			});
+		}
+		catch (RejectedExecutionException e)
+		{
+			// try again next time
+			entry.mRefreshing.set(false);
+		}
+	}
+
+
+	/**
+	 * Makes room for a new entry. Removes all expired entries or, if there are none, an arbitrary one.
+	 */
+	private void evict()
+	{
+		long now = System.nanoTime();
+		boolean removed = false;
+		for (Iterator<Entry> iterator = mCache.values().iterator(); iterator.hasNext();)
+		{
+			if (iterator.next().expired(now))
+			{
+				iterator.remove();
+				removed = true;
+			}
+		}
+
+		if (!removed)
+		{
+			Iterator<String> iterator = mCache.keySet().iterator();
+			if (iterator.hasNext())
+			{
+				iterator.next();
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * A cached lookup result.
+	 */
+	private final static class Entry
+	{
+		private final InetAddress[] mAddresses;
+		private final UnknownHostException mError;
+		private final long mCreated = System.nanoTime();
+		private final long mTtlNanos;
+		private final AtomicInteger mRotation = new AtomicInteger();
+		private final AtomicBoolean mRefreshing = new AtomicBoolean();
+
+
+		public Entry(InetAddress[] addresses, UnknownHostException error, long ttlNanos)
+		{
+			mAddresses = addresses;
+			mError = error;
+			mTtlNanos = ttlNanos;
+		}
+
+
+		public boolean expired(long now)
+		{
+			return now - mCreated >= mTtlNanos;
+		}
+
+
+		public boolean refreshDue(long now)
+		{
+			return mError == null && (now - mCreated) * 100 >= mTtlNanos * REFRESH_AHEAD_PERCENT;
+		}
+
+
+		/**
+		 * Returns a copy of the addresses, rotated by one position per call.
+		 */
+		public InetAddress[] addresses() throws UnknownHostException
+		{
+			if (mError != null)
+			{
+				UnknownHostException e = new UnknownHostException(mError.getMessage());
+				e.initCause(mError);
+				throw e;
+			}
+
+			InetAddress[] addresses = mAddresses;
+			int count = addresses.length;
+			InetAddress[] result = new InetAddress[count];
+			if (count == 0)
+			{
+				return result;
+			}
+			int start = (mRotation.getAndIncrement() & Integer.MAX_VALUE) % count;
+			System.arraycopy(addresses, start, result, 0, count - start);
+			System.arraycopy(addresses, 0, result, count - start, start);
+			return result;
+		}
+	}
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.net;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+
+/**
+ * Interface of a host name resolver. {@link org.dmfs.httpclientinterfaces.HttpRequestExecutor} implementations can use this to resolve the addresses of the
+ * hosts they connect to.
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public interface Resolver
+{
+	/**
+	 * Returns the addresses of the given host. Callers should try to connect to the returned addresses in the given order.
+	 * 
+	 * @param hostName
+	 *            The name of the host to resolve.
+	 * @return A non-empty array of {@link InetAddress}es.
+	 * @throws UnknownHostException
+	 *             If the host name can not be resolved.
+	 */
+	public InetAddress[] resolve(String hostName) throws UnknownHostException;
+}
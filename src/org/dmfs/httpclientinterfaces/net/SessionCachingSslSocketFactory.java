@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.net;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+
+/**
+ * An {@link SSLSocketFactory} for the https connections of {@link org.dmfs.httpclientinterfaces.HttpRequestExecutor} implementations that resumes TLS sessions
+ * and collects {@link TlsHandshakeStatistics}.
+ * <p>
+ * TLS sessions (session IDs and session tickets) are cached per host and port by the client session context of the given {@link SSLContext}. This factory
+ * configures the size and the lifetime of that cache. Use a dedicated {@link SSLContext} to get a dedicated session cache.
+ * </p>
+ * <p>
+ * All sockets returned by this factory are connected and have completed the handshake. Sockets that are created for a host name verify that the server
+ * certificate matches the host name. Unconnected sockets are not supported.
+ * </p>
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class SessionCachingSslSocketFactory extends SSLSocketFactory
+{
+	/**
+	 * The default maximum number of cached sessions.
+	 */
+	public final static int DEFAULT_CACHE_SIZE = 256;
+
+	/**
+	 * The default lifetime of cached sessions in seconds.
+	 */
+	public final static int DEFAULT_SESSION_TIMEOUT = 4 * 60 * 60;
+
+	private final SSLSocketFactory mDelegate;
+	private final SSLSessionContext mSessionContext;
+	private final TlsHandshakeStatistics mStatistics = new TlsHandshakeStatistics();
+
+
+	/**
+	 * Creates an {@link SessionCachingSslSocketFactory} with the default cache size and session lifetime.
+	 * 
+	 * @param sslContext
+	 *            The {@link SSLContext} to create the sockets.
+	 */
+	public SessionCachingSslSocketFactory(SSLContext sslContext)
+	{
+		this(sslContext, DEFAULT_CACHE_SIZE, DEFAULT_SESSION_TIMEOUT);
+	}
+
+
+	/**
+	 * Creates an {@link SessionCachingSslSocketFactory}.
+	 * 
+	 * @param sslContext
+	 *            The {@link SSLContext} to create the sockets.
+	 * @param cacheSize
+	 *            The maximum number of cached sessions, 0 means no limit.
+	 * @param sessionTimeout
+	 *            The lifetime of cached sessions in seconds, 0 means no limit.
+	 */
+	public SessionCachingSslSocketFactory(SSLContext sslContext, int cacheSize, int sessionTimeout)
+	{
+		mDelegate = sslContext.getSocketFactory();
+		mSessionContext = sslContext.getClientSessionContext();
+		mSessionContext.setSessionCacheSize(cacheSize);
+		mSessionContext.setSessionTimeout(sessionTimeout);
+	}
+
+
+	/**
+	 * Returns the handshake statistics of the sockets created by this factory.
+	 * 
+	 * @return The {@link TlsHandshakeStatistics}.
+	 */
+	public TlsHandshakeStatistics statistics()
+	{
+		return mStatistics;
+	}
+
+
+	/**
+	 * Returns the {@link SSLSessionContext} that caches the sessions.
+	 * 
+	 * @return The client {@link SSLSessionContext} of the underlying {@link SSLContext}.
+	 */
+	public SSLSessionContext sessionContext()
+	{
+		return mSessionContext;
+	}
+
+
+	@Override
+	public String[] getDefaultCipherSuites()
+	{
+		return mDelegate.getDefaultCipherSuites();
+	}
+
+
+	@Override
+	public String[] getSupportedCipherSuites()
+	{
+		return mDelegate.getSupportedCipherSuites();
+	}
+
+
+	@Override
+	public Socket createSocket(Socket socket, String host, int port, boolean autoClose) throws IOException
+	{
+		return handshake((SSLSocket) mDelegate.createSocket(socket, host, port, autoClose), true);
+	}
+
+
+	@Override
+	public Socket createSocket(String host, int port) throws IOException
+	{
+		return handshake((SSLSocket) mDelegate.createSocket(host, port), true);
+	}
+
+
+	@Override
+	public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException
+	{
+		return handshake((SSLSocket) mDelegate.createSocket(host, port, localHost, localPort), true);
+	}
+
+
+	@Override
+	public Socket createSocket(InetAddress host, int port) throws IOException
+	{
+		return handshake((SSLSocket) mDelegate.createSocket(host, port), false);
+	}
+
+
+	@Override
+	public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException
+	{
+		return handshake((SSLSocket) mDelegate.createSocket(address, port, localAddress, localPort), false);
+	}
+
+
+	/**
+	 * Performs the handshake on the given socket and records it.
+	 * <p>
+	 * A resumed session keeps the creation time of the session it resumes, so a session that has been created before the handshake started, has been
+	 * resumed. In contrast to comparing session IDs, this works for TLS 1.3 as well, which issues a new session ID on resumption.
+	 * </p>
+	 * 
+	 * @param socket
+	 *            The {@link SSLSocket} to perform the handshake on.
+	 * @param verifyHost
+	 *            Whether to verify the host name of the server.
+	 * @return The socket.
+	 * @throws IOException
+	 */
+	private SSLSocket handshake(SSLSocket socket, boolean verifyHost) throws IOException
+	{
+		try
+		{
+			if (verifyHost)
+			{
+				SSLParameters parameters = socket.getSSLParameters();
+				parameters.setEndpointIdentificationAlgorithm("HTTPS");
+				socket.setSSLParameters(parameters);
+			}
+
+			long startMillis = System.currentTimeMillis();
+			long start = System.nanoTime();
+			socket.startHandshake();
+			long duration = System.nanoTime() - start;
+			mStatistics.record(duration, socket.getSession().getCreationTime() < startMillis);
+			return socket;
+		}
+		catch (IOException e)
+		{
+			socket.close();
+			throw e;
+		}
+		catch (RuntimeException e)
+		{
+			socket.close();
+			throw e;
+		}
+	}
+}
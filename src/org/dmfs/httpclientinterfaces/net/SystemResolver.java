@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.net;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+
+/**
+ * A {@link Resolver} that resolves host names using {@link InetAddress#getAllByName(String)}. To get an instance call {@link #getInstance()}.
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class SystemResolver implements Resolver
+{
+	private final static class SingletonHolder
+	{
+		/**
+		 * A static instance of the {@link SystemResolver}. It will be initialized when {@link SystemResolver#getInstance()} is called the first time.
+		 */
+		final static SystemResolver INSTANCE = new SystemResolver();
+	}
+
+
+	/**
+	 * Returns an instance of {@link SystemResolver}.
+	 * 
+	 * @return A static instance of {@link SystemResolver}.
+	 */
+	public static SystemResolver getInstance()
+	{
+		return SingletonHolder.INSTANCE;
+	}
+
+
+	/**
+	 * Don't Instantiate this, use {@link #getInstance()}. Instead.
+	 */
+	private SystemResolver()
+	{
+	}
+
+
+	@Override
+	public InetAddress[] resolve(String hostName) throws UnknownHostException
+	{
+		return InetAddress.getAllByName(hostName);
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.net;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Thread safe statistics of TLS handshakes.
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class TlsHandshakeStatistics
+{
+	private final AtomicLong mHandshakes = new AtomicLong();
+	private final AtomicLong mResumptions = new AtomicLong();
+	private final AtomicLong mHandshakeNanos = new AtomicLong();
+	private final AtomicLong mResumptionNanos = new AtomicLong();
+
+
+	/**
+	 * Records a completed handshake.
+	 * 
+	 * @param durationNanos
+	 *            The duration of the handshake in nanoseconds.
+	 * @param resumed
+	 *            <code>true</code> if an existing session has been resumed, <code>false</code> if a full handshake has been performed.
+	 */
+	public void record(long durationNanos, boolean resumed)
+	{
+		mHandshakes.incrementAndGet();
+		mHandshakeNanos.addAndGet(durationNanos);
+		if (resumed)
+		{
+			mResumptions.incrementAndGet();
+			mResumptionNanos.addAndGet(durationNanos);
+		}
+	}
+
+
+	/**
+	 * Returns the number of completed handshakes, including resumptions.
+	 * 
+	 * @return The number of handshakes.
+	 */
+	public long handshakes()
+	{
+		return mHandshakes.get();
+	}
+
+
+	/**
+	 * Returns the number of handshakes that resumed an existing session.
+	 * 
+	 * @return The number of resumed sessions.
+	 */
+	public long resumptions()
+	{
+		return mResumptions.get();
+	}
+
+
+	/**
+	 * Returns the ratio of handshakes that resumed an existing session.
+	 * 
+	 * @return A value between 0 and 1, 0 if there were no handshakes yet.
+	 */
+	public double resumptionRate()
+	{
+		long handshakes = mHandshakes.get();
+		return handshakes == 0 ? 0 : (double) mResumptions.get() / handshakes;
+	}
+
+
+	/**
+	 * Returns the average duration of a handshake, including resumptions.
+	 * 
+	 * @param unit
+	 *            The {@link TimeUnit} of the result.
+	 * @return The average handshake duration, 0 if there were no handshakes yet.
+	 */
+	public long averageHandshakeTime(TimeUnit unit)
+	{
+		long handshakes = mHandshakes.get();
+		return handshakes == 0 ? 0 : unit.convert(mHandshakeNanos.get() / handshakes, TimeUnit.NANOSECONDS);
+	}
+
+
+	/**
+	 * Returns the average duration of a full handshake, i.e. one that didn't resume an existing session.
+	 * 
+	 * @param unit
+	 *            The {@link TimeUnit} of the result.
+	 * @return The average duration of a full handshake, 0 if there were no full handshakes yet.
+	 */
+	public long averageFullHandshakeTime(TimeUnit unit)
+	{
+		long fullHandshakes = mHandshakes.get() - mResumptions.get();
+		return fullHandshakes <= 0 ? 0 : unit.convert((mHandshakeNanos.get() - mResumptionNanos.get()) / fullHandshakes, TimeUnit.NANOSECONDS);
+	}
+
+
+	/**
+	 * Returns the average duration of a handshake that resumed an existing session.
+	 * 
+	 * @param unit
+	 *            The {@link TimeUnit} of the result.
+	 * @return The average duration of a resumption, 0 if there were no resumptions yet.
+	 */
+	public long averageResumptionTime(TimeUnit unit)
+	{
+		long resumptions = mResumptions.get();
+		return resumptions == 0 ? 0 : unit.convert(mResumptionNanos.get() / resumptions, TimeUnit.NANOSECONDS);
+	}
+
+
+	@Override
+	public String toString()
+	{
+		return String.format("%d handshakes, %d resumed (%.1f%%), avg %d us", handshakes(), resumptions(), resumptionRate() * 100,
+			averageHandshakeTime(TimeUnit.MICROSECONDS));
+	}
+}
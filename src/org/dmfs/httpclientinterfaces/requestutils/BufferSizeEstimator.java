@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.requestutils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Learns the typical size of buffered content per route, so the first chunk of a buffer can be sized to hold the entire content in most cases.
+ * <p>
+ * For each route key (e.g. method and path of an API endpoint) this keeps a running estimate of a high percentile of the observed sizes. The estimate is
+ * updated with a multiplicative stochastic approximation: it moves up a little if an observed size is larger and down a little if it's smaller, with step
+ * sizes chosen such that it converges to the configured percentile. Older observations decay automatically, so the estimate follows changes in the
+ * workload. Updates are not synchronized, concurrent updates may get lost, which is fine for an estimate.
+ * </p>
+ * <p>
+ * The estimator also counts the memory that has been left unused in first chunks and the number of buffers that needed more than one chunk, both with the
+ * learned sizes and with the default chunk size, to show what the estimate saves.
+ * </p>
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class BufferSizeEstimator
+{
+	/**
+	 * The default percentile to estimate.
+	 */
+	public final static double DEFAULT_PERCENTILE = 0.9;
+
+	/**
+	 * The default step size of an update, relative to the current estimate.
+	 */
+	public final static double DEFAULT_LEARNING_RATE = 0.2;
+
+	/**
+	 * The smallest chunk size this returns.
+	 */
+	public final static int MIN_CHUNK_SIZE = 1024;
+
+	/**
+	 * The largest chunk size this returns.
+	 */
+	public final static int MAX_CHUNK_SIZE = 1024 * 1024;
+
+	/**
+	 * The maximum number of routes to track. When this is exceeded, new routes get the default chunk size.
+	 */
+	private final static int MAX_ROUTES = 1024;
+
+	private final int mDefaultChunkSize;
+	private final double mStepUp;
+	private final double mStepDown;
+	private final ConcurrentMap<String, Estimate> mEstimates = new ConcurrentHashMap<String, Estimate>(32);
+
+	private final AtomicLong mBuffers = new AtomicLong();
+	private final AtomicLong mUnusedBytes = new AtomicLong();
+	private final AtomicLong mGrownBuffers = new AtomicLong();
+	private final AtomicLong mDefaultUnusedBytes = new AtomicLong();
+	private final AtomicLong mDefaultGrownBuffers = new AtomicLong();
+
+
+	/**
+	 * Creates a {@link BufferSizeEstimator} that estimates the 90th percentile.
+	 * 
+	 * @param defaultChunkSize
+	 *            The chunk size to use for unknown routes.
+	 */
+	public BufferSizeEstimator(int defaultChunkSize)
+	{
+		this(defaultChunkSize, DEFAULT_PERCENTILE, DEFAULT_LEARNING_RATE);
+	}
+
+
+	/**
+	 * Creates a {@link BufferSizeEstimator}.
+	 * 
+	 * @param defaultChunkSize
+	 *            The chunk size to use for unknown routes.
+	 * @param percentile
+	 *            The percentile to estimate, between 0 and 1 (exclusive).
+	 * @param learningRate
+	 *            The relative step size of an update, larger values adapt faster but are less stable.
+	 */
+	public BufferSizeEstimator(int defaultChunkSize, double percentile, double learningRate)
+	{
+		if (percentile <= 0 || percentile >= 1)
+		{
+			throw new IllegalArgumentException("Percentile must be between 0 and 1");
+		}
+		mDefaultChunkSize = defaultChunkSize;
+		// in equilibrium the estimate moves up with probability (1 - percentile) and down with probability percentile
+		mStepUp = 1 + learningRate * percentile;
+		mStepDown = 1 - learningRate * (1 - percentile);
+	}
+
+
+	/**
+	 * Returns the chunk size for the first chunk of a buffer for the given route. Note that a {@link ChunkPool} may round this up, e.g.
+	 * {@link SharedChunkPool} returns chunks with a power of two size, which can be up to twice the estimate.
+	 * 
+	 * @param routeKey
+	 *            The key of the route.
+	 * @return The estimated chunk size.
+	 */
+	public int chunkSize(String routeKey)
+	{
+		Estimate estimate = mEstimates.get(routeKey);
+		if (estimate == null)
+		{
+			return mDefaultChunkSize;
+		}
+		return (int) Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE, Math.ceil(estimate.mValue)));
+	}
+
+
+	/**
+	 * Records the size of buffered content for the given route.
+	 * 
+	 * @param routeKey
+	 *            The key of the route.
+	 * @param firstChunkSize
+	 *            The actual size of the first chunk that has been allocated for the buffer, which may be larger than the requested size, or 0 if no chunk
+	 *            has been allocated.
+	 * @param size
+	 *            The size of the content.
+	 */
+	public void record(String routeKey, int firstChunkSize, long size)
+	{
+		Estimate estimate = mEstimates.get(routeKey);
+		if (estimate == null)
+		{
+			if (mEstimates.size() >= MAX_ROUTES)
+			{
+				// don't grow without bounds if route keys are not chosen wisely
+				return;
+			}
+			estimate = new Estimate(Math.max(size, MIN_CHUNK_SIZE));
+			Estimate existing = mEstimates.putIfAbsent(routeKey, estimate);
+			if (existing != null)
+			{
+				estimate = existing;
+			}
+		}
+		else
+		{
+			double value = estimate.mValue;
+			estimate.mValue = size > value ? value * mStepUp : Math.max(MIN_CHUNK_SIZE, value * mStepDown);
+		}
+
+		mBuffers.incrementAndGet();
+		account(firstChunkSize, size, mUnusedBytes, mGrownBuffers);
+		account(mDefaultChunkSize, size, mDefaultUnusedBytes, mDefaultGrownBuffers);
+	}
+
+
+	/**
+	 * Returns the number of buffers that have been recorded.
+	 * 
+	 * @return The number of recorded buffers.
+	 */
+	public long buffers()
+	{
+		return mBuffers.get();
+	}
+
+
+	/**
+	 * Returns the number of bytes left unused in first chunks.
+	 * 
+	 * @return The number of unused bytes.
+	 */
+	public long unusedBytes()
+	{
+		return mUnusedBytes.get();
+	}
+
+
+	/**
+	 * Returns the number of buffers that needed more than their first chunk.
+	 * 
+	 * @return The number of buffers that had to allocate more chunks.
+	 */
+	public long grownBuffers()
+	{
+		return mGrownBuffers.get();
+	}
+
+
+	/**
+	 * Returns the number of bytes that would have been left unused in first chunks of the default chunk size.
+	 * 
+	 * @return The number of unused bytes with the default chunk size.
+	 */
+	public long defaultUnusedBytes()
+	{
+		return mDefaultUnusedBytes.get();
+	}
+
+
+	/**
+	 * Returns the number of buffers that would have needed more than one chunk of the default chunk size.
+	 * 
+	 * @return The number of buffers that would have had to allocate more chunks with the default chunk size.
+	 */
+	public long defaultGrownBuffers()
+	{
+		return mDefaultGrownBuffers.get();
+	}
+
+
+	@Override
+	public String toString()
+	{
+		return String.format("%d buffers, %d unused bytes (default %d), %d grown (default %d)", buffers(), unusedBytes(), defaultUnusedBytes(),
+			grownBuffers(), defaultGrownBuffers());
+	}
+
+
+	private static void account(int chunkSize, long size, AtomicLong unusedBytes, AtomicLong grownBuffers)
+	{
+		if (size <= chunkSize)
+		{
+			unusedBytes.addAndGet(chunkSize - size);
+		}
+		else
+		{
+			grownBuffers.incrementAndGet();
+		}
+	}
+
+	/**
+	 * The estimate of a route.
+	 */
+	private final static class Estimate
+	{
+		private volatile double mValue;
+
+
+		private Estimate(double value)
+		{
+			mValue = value;
+		}
+	}
+}
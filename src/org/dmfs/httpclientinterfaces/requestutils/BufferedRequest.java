@@ -32,6 +32,9 @@ import org.dmfs.httpclientinterfaces.headers.HeaderList;
 /**
  * A buffered request wrapper. You can use this to wrap request with entities that are generated on demand to avoid chunked encoding, which is not well
  * supported by many servers.
+ * <p>
+ * The buffer is released once the response handler of the wrapped request has handled the response.
+ * </p>
  * 
  * @author Marten Gajda <marten@dmfs.org>
  * 
@@ -78,6 +81,25 @@ public final class BufferedRequest<T> implements HttpRequest<T>
 	}
 
 
+	/**
+	 * Creates a {@link BufferedRequest} wrapper for the given request that sizes its buffer using the given {@link BufferSizeEstimator}.
+	 *
+	 * @param request
+	 *            The request to buffer.
+	 * @param maxBufferSize
+	 *            The maximum buffer size.
+	 * @param estimator
+	 *            The {@link BufferSizeEstimator} that learns the content size of the route.
+	 * @param routeKey
+	 *            The key of the route of this request.
+	 */
+	public BufferedRequest(HttpRequest<T> request, int maxBufferSize, BufferSizeEstimator estimator, String routeKey)
+	{
+		mRequest = request;
+		mEntity = new BufferedRequestEntity(mRequest.requestEntity(), maxBufferSize, null, estimator, routeKey);
+	}
+
+
 	@Override
 	public HttpMethod method()
 	{
@@ -102,6 +124,35 @@ public final class BufferedRequest<T> implements HttpRequest<T>
 	@Override
 	public HttpResponseHandler<T> responseHandler(HttpResponse response) throws IOException, ProtocolError, ProtocolException
 	{
-		return mRequest.responseHandler(response);
+		boolean handedOver = false;
+		try
+		{
+			final HttpResponseHandler<T> handler = mRequest.responseHandler(response);
+			HttpResponseHandler<T> result = new HttpResponseHandler<T>()
+			{
+				@Override
+				public T handleResponse(HttpResponse response) throws IOException, ProtocolError, ProtocolException
+				{
+					try
+					{
+						return handler.handleResponse(response);
+					}
+					finally
+					{
+						// the request has been completed, return the buffer to the pool
+						mEntity.release();
+					}
+				}
+			};
+			handedOver = true;
+			return result;
+		}
+		finally
+		{
+			if (!handedOver)
+			{
+				mEntity.release();
+			}
+		}
 	}
 }
@@ -17,9 +17,14 @@
 
 package org.dmfs.httpclientinterfaces.requestutils;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
 
+import org.dmfs.httpclientinterfaces.ChannelRequestEntity;
 import org.dmfs.httpclientinterfaces.ContentType;
 import org.dmfs.httpclientinterfaces.HttpRequestEntity;
 
@@ -27,10 +32,26 @@ import org.dmfs.httpclientinterfaces.HttpRequestEntity;
 /**
  * A buffered request entity wrapper. It buffers the content of another {@link HttpRequestEntity}, if necessary, to determine the content length before sending
  * it to the client. Implementations can use this to avoid chunked encoding if the server doesn't support it.
+ * <p>
+ * By default content that exceeds the maximum buffer size is not buffered at all, it's just counted and the wrapped entity has to write it again when it's
+ * sent. Entities that are expensive to generate or that can be written only once should use a spill directory instead. In that mode content that exceeds the
+ * maximum buffer size is moved to a temporary file and every subsequent write (including retries and redirects) is served from that file. Call
+ * {@link #release()} to delete the file once the request has been completed.
+ * </p>
+ * <p>
+ * Buffers take their chunks from the {@link SharedChunkPool}. {@link #release()} returns them once the request has been completed, {@link BufferedRequest}
+ * does that when the response has been handled. Chunks of entities that are never released are left to the garbage collector.
+ * </p>
+ * <p>
+ * Entities that are created with a {@link MemoryBudget} also reserve their buffers from it. When the budget is exhausted, content is treated like content
+ * that exceeds the maximum buffer size, i.e. it's spilled to disk or streamed without buffering. Such entities must be released with {@link #release()} after
+ * the request has been completed, otherwise their reservations are never returned. Entities created without a {@link MemoryBudget} are only limited by the
+ * maximum buffer size.
+ * </p>
  * 
  * @author Marten Gajda <marten@dmfs.org>
  */
-public final class BufferedRequestEntity implements HttpRequestEntity
+public final class BufferedRequestEntity implements ChannelRequestEntity
 {
 	/**
 	 * The chunk size of our buffer. 16kB should hold most of the smaller requests.
@@ -47,11 +68,36 @@ public final class BufferedRequestEntity implements HttpRequestEntity
 	 */
 	private ByteArrayOutputStream mBuffer;
 
+	/**
+	 * The buffer that spills to disk, only used if {@link #mSpillDirectory} is not <code>null</code>.
+	 */
+	private SpillingOutputStream mSpillBuffer;
+
 	/**
 	 * The buffer size limit.
 	 */
 	private final int mMaxBufferSize;
 
+	/**
+	 * The directory to store content that exceeds {@link #mMaxBufferSize}, may be <code>null</code>.
+	 */
+	private final File mSpillDirectory;
+
+	/**
+	 * The {@link BufferSizeEstimator} that determines the initial chunk size, may be <code>null</code>.
+	 */
+	private final BufferSizeEstimator mEstimator;
+
+	/**
+	 * The key of the route in {@link #mEstimator}.
+	 */
+	private final String mRouteKey;
+
+	/**
+	 * The {@link MemoryBudget} to reserve buffers from, may be <code>null</code>.
+	 */
+	private final MemoryBudget mMemoryBudget;
+
 
 	public BufferedRequestEntity(HttpRequestEntity bufferedEntity)
 	{
@@ -60,9 +106,75 @@ public final class BufferedRequestEntity implements HttpRequestEntity
 
 
 	public BufferedRequestEntity(HttpRequestEntity bufferedEntity, int maxBufferSize)
+	{
+		this(bufferedEntity, maxBufferSize, null);
+	}
+
+
+	/**
+	 * Creates a {@link BufferedRequestEntity} that keeps up to maxBufferSize bytes in memory and spills larger content to a temporary file in the given
+	 * directory.
+	 * 
+	 * @param bufferedEntity
+	 *            The {@link HttpRequestEntity} to buffer.
+	 * @param maxBufferSize
+	 *            The maximum number of bytes to buffer in memory.
+	 * @param spillDirectory
+	 *            The directory for temporary files or <code>null</code> to not buffer content that exceeds the maximum buffer size.
+	 */
+	public BufferedRequestEntity(HttpRequestEntity bufferedEntity, int maxBufferSize, File spillDirectory)
+	{
+		this(bufferedEntity, maxBufferSize, spillDirectory, null, null);
+	}
+
+
+	/**
+	 * Creates a {@link BufferedRequestEntity} that sizes its buffer using the given {@link BufferSizeEstimator}. The estimator learns the typical content size
+	 * of the given route, so the buffer usually fits into a single chunk without wasting much memory.
+	 * 
+	 * @param bufferedEntity
+	 *            The {@link HttpRequestEntity} to buffer.
+	 * @param maxBufferSize
+	 *            The maximum number of bytes to buffer in memory.
+	 * @param spillDirectory
+	 *            The directory for temporary files or <code>null</code> to not buffer content that exceeds the maximum buffer size.
+	 * @param estimator
+	 *            The {@link BufferSizeEstimator} to use or <code>null</code> to use a fixed chunk size.
+	 * @param routeKey
+	 *            The key of the route this entity is sent to, like the request method and the path without any variable parts.
+	 */
+	public BufferedRequestEntity(HttpRequestEntity bufferedEntity, int maxBufferSize, File spillDirectory, BufferSizeEstimator estimator, String routeKey)
+	{
+		this(bufferedEntity, maxBufferSize, spillDirectory, estimator, routeKey, null);
+	}
+
+
+	/**
+	 * Creates a {@link BufferedRequestEntity} that reserves its buffers from the given {@link MemoryBudget}. Call {@link #release()} once the request has been
+	 * completed to return the reservation.
+	 * 
+	 * @param bufferedEntity
+	 *            The {@link HttpRequestEntity} to buffer.
+	 * @param maxBufferSize
+	 *            The maximum number of bytes to buffer in memory.
+	 * @param spillDirectory
+	 *            The directory for temporary files or <code>null</code> to not buffer content that exceeds the maximum buffer size.
+	 * @param estimator
+	 *            The {@link BufferSizeEstimator} to use or <code>null</code> to use a fixed chunk size.
+	 * @param routeKey
+	 *            The key of the route this entity is sent to.
+	 * @param memoryBudget
+	 *            The {@link MemoryBudget} to reserve the buffers from, e.g. {@link MemoryBudget#getInstance()}, or <code>null</code> to not reserve them.
+	 */
+	public BufferedRequestEntity(HttpRequestEntity bufferedEntity, int maxBufferSize, File spillDirectory, BufferSizeEstimator estimator, String routeKey,
+		MemoryBudget memoryBudget)
 	{
 		mBufferedEntity = bufferedEntity;
 		mMaxBufferSize = maxBufferSize;
+		mSpillDirectory = spillDirectory;
+		mEstimator = estimator;
+		mRouteKey = routeKey;
+		mMemoryBudget = memoryBudget;
 	}
 
 
@@ -83,10 +195,20 @@ public final class BufferedRequestEntity implements HttpRequestEntity
 			return len;
 		}
 
+		if (mSpillDirectory != null)
+		{
+			return spillBuffer().length();
+		}
+
 		if (mBuffer == null)
 		{
-			mBuffer = new ByteArrayOutputStream(CHUNK_SIZE, mMaxBufferSize);
+			mBuffer = new ByteArrayOutputStream(chunkSize(), mMaxBufferSize, SharedChunkPool.getInstance(), mMemoryBudget);
 			mBufferedEntity.writeContent(mBuffer);
+			if (mEstimator != null)
+			{
+				// record the chunk we actually got, the pool rounds the size up
+				mEstimator.record(mRouteKey, mBuffer.firstChunkSize(), mBuffer.length());
+			}
 		}
 
 		return mBuffer.length();
@@ -96,7 +218,20 @@ public final class BufferedRequestEntity implements HttpRequestEntity
 	@Override
 	public void writeContent(OutputStream out) throws IOException
 	{
-		if (mBuffer == null || mBuffer.bufferOverflow())
+		if (mSpillDirectory != null)
+		{
+			if (mSpillBuffer == null && mBufferedEntity.contentLength() >= 0)
+			{
+				// the content length is known, so there is no need to buffer
+				mBufferedEntity.writeContent(out);
+			}
+			else
+			{
+				// make sure the wrapped entity is written only once
+				spillBuffer().writeTo(out);
+			}
+		}
+		else if (mBuffer == null || mBuffer.bufferOverflow())
 		{
 			// the buffer is empty or there was a buffer overflow
 			mBufferedEntity.writeContent(out);
@@ -107,4 +242,75 @@ public final class BufferedRequestEntity implements HttpRequestEntity
 			mBuffer.writeTo(out);
 		}
 	}
+
+
+	@Override
+	public void writeContent(WritableByteChannel channel) throws IOException
+	{
+		if (mSpillDirectory != null && (mSpillBuffer != null || mBufferedEntity.contentLength() < 0))
+		{
+			// the content is served from the memory buffer or transferred directly from the file
+			spillBuffer().writeTo(channel);
+		}
+		else if (mBuffer != null && !mBuffer.bufferOverflow() && channel instanceof GatheringByteChannel)
+		{
+			// write all chunks at once
+			mBuffer.writeTo((GatheringByteChannel) channel);
+		}
+		else
+		{
+			writeContent(Channels.newOutputStream(channel));
+		}
+	}
+
+
+	/**
+	 * Returns the buffer to the {@link SharedChunkPool} and the {@link MemoryBudget} and deletes any temporary file. If the entity is written again after
+	 * calling this, the content is buffered again.
+	 */
+	public void release()
+	{
+		if (mBuffer != null)
+		{
+			mBuffer.release();
+			mBuffer = null;
+		}
+		if (mSpillBuffer != null)
+		{
+			mSpillBuffer.release();
+			mSpillBuffer = null;
+		}
+	}
+
+
+	private SpillingOutputStream spillBuffer() throws IOException
+	{
+		if (mSpillBuffer == null)
+		{
+			SpillingOutputStream buffer = new SpillingOutputStream(mMaxBufferSize, mSpillDirectory, chunkSize(), mMemoryBudget);
+			try
+			{
+				mBufferedEntity.writeContent(buffer);
+				buffer.close();
+			}
+			catch (IOException e)
+			{
+				buffer.release();
+				throw e;
+			}
+			mSpillBuffer = buffer;
+			if (mEstimator != null)
+			{
+				mEstimator.record(mRouteKey, buffer.firstChunkSize(), buffer.length());
+			}
+		}
+		return mSpillBuffer;
+	}
+
+
+	private int chunkSize()
+	{
+		int chunkSize = mEstimator == null ? CHUNK_SIZE : mEstimator.chunkSize(mRouteKey);
+		return Math.max(1, Math.min(chunkSize, mMaxBufferSize));
+	}
 }
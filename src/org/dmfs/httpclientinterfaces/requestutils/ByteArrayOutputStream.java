@@ -18,7 +18,12 @@
 package org.dmfs.httpclientinterfaces.requestutils;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -26,6 +31,18 @@ import java.util.List;
 /**
  * An {@link OutputStream} that buffers all written content in byte arrays. In contrast to {@link java.io.ByteArrayOutputStream}, it allows to set a maximum
  * buffer size, switching to a count-only mode when the maximum buffer size will be exceeded.
+ * <p>
+ * The buffer grows geometrically, i.e. each new chunk is as large as all previous chunks together (but at least as large as the minimal chunk size and at most
+ * {@link #MAX_GROWTH_CHUNK_SIZE}, unless a single write requires more). This keeps the number of chunks small for large content. Growth never allocates more
+ * than the buffer size limit requires.
+ * </p>
+ * <p>
+ * Chunks can be taken from a {@link ChunkPool}. In that case call {@link #release()} to return them when the content is no longer needed.
+ * </p>
+ * <p>
+ * If a {@link MemoryBudget} is given, every chunk is reserved from the budget before it's allocated. If the budget is exhausted, the stream drops its chunks
+ * and switches to the count-only mode, just like in case of a buffer overflow.
+ * </p>
  * 
  * @author Marten Gajda <marten@dmfs.org>
  */
@@ -36,6 +53,11 @@ public final class ByteArrayOutputStream extends OutputStream
 	 */
 	public final static int MIN_CHUNK_SIZE = 8 * 1024;
 
+	/**
+	 * The maximum size of chunks that result from geometric growth. Larger chunks are only allocated for larger writes.
+	 */
+	public final static int MAX_GROWTH_CHUNK_SIZE = 256 * 1024;
+
 	/**
 	 * The list of chunks.
 	 */
@@ -66,11 +88,41 @@ public final class ByteArrayOutputStream extends OutputStream
 	 */
 	private int mLength;
 
+	/**
+	 * The total size of all chunks in {@link #mChunkList}.
+	 */
+	private long mCapacity;
+
+	/**
+	 * The size of the first chunk this stream has allocated or 0 if it hasn't allocated any chunk yet.
+	 */
+	private int mFirstChunkSize;
+
 	/**
 	 * The overall buffer size limit.
 	 */
 	private final int mBufferSizeLimit;
 
+	/**
+	 * The {@link ChunkPool} to take chunks from, may be <code>null</code>.
+	 */
+	private final ChunkPool mChunkPool;
+
+	/**
+	 * The {@link MemoryBudget} to reserve chunks from, may be <code>null</code>.
+	 */
+	private final MemoryBudget mMemoryBudget;
+
+	/**
+	 * Whether {@link #mMemoryBudget} was exhausted while writing the current content.
+	 */
+	private boolean mBudgetExhausted;
+
+	/**
+	 * A chunk without any space, used as the current chunk until the first chunk has been requested.
+	 */
+	private final static byte[] NO_CHUNK = new byte[0];
+
 
 	/**
 	 * Creates an unlimited {@link ByteArrayOutputStream} using #MIN_CHUNK_SIZE as minimal chunk size.
@@ -106,11 +158,60 @@ public final class ByteArrayOutputStream extends OutputStream
 	 *            The maximum buffer size used by this {@link ByteArrayOutputStream}.
 	 */
 	public ByteArrayOutputStream(int minChunkSize, int bufferSizeLimit)
+	{
+		this(minChunkSize, bufferSizeLimit, null);
+	}
+
+
+	/**
+	 * Creates a {@link ByteArrayOutputStream} that's limited in size and takes its chunks from the given {@link ChunkPool}. The first chunk is requested on the
+	 * first write.
+	 * <p>
+	 * Note that the chunks returned by the pool might be larger than the minimal chunk size.
+	 * </p>
+	 * 
+	 * @param minChunkSize
+	 *            The minimal chunk size.
+	 * @param bufferSizeLimit
+	 *            The maximum buffer size used by this {@link ByteArrayOutputStream}.
+	 * @param chunkPool
+	 *            The {@link ChunkPool} to take the chunks from or <code>null</code> to allocate new chunks.
+	 */
+	public ByteArrayOutputStream(int minChunkSize, int bufferSizeLimit, ChunkPool chunkPool)
+	{
+		this(minChunkSize, bufferSizeLimit, chunkPool, null);
+	}
+
+
+	/**
+	 * Creates a {@link ByteArrayOutputStream} that's limited in size, takes its chunks from the given {@link ChunkPool} and reserves them from the given
+	 * {@link MemoryBudget}. If the budget is exhausted, this behaves like in case of a buffer overflow.
+	 * 
+	 * @param minChunkSize
+	 *            The minimal chunk size.
+	 * @param bufferSizeLimit
+	 *            The maximum buffer size used by this {@link ByteArrayOutputStream}.
+	 * @param chunkPool
+	 *            The {@link ChunkPool} to take the chunks from or <code>null</code> to allocate new chunks.
+	 * @param memoryBudget
+	 *            The {@link MemoryBudget} to reserve the chunks from or <code>null</code> to not limit the memory use beyond the buffer size limit.
+	 */
+	public ByteArrayOutputStream(int minChunkSize, int bufferSizeLimit, ChunkPool chunkPool, MemoryBudget memoryBudget)
 	{
 		mMinChunkSize = minChunkSize;
-		requestChunk(minChunkSize);
-		mLength = 0;
 		mBufferSizeLimit = bufferSizeLimit;
+		mChunkPool = chunkPool;
+		mMemoryBudget = memoryBudget;
+		if (chunkPool == null && memoryBudget == null)
+		{
+			requestChunk(minChunkSize);
+		}
+		else
+		{
+			// don't take a chunk from the pool or the budget before it's needed
+			mCurrentChunk = NO_CHUNK;
+		}
+		mLength = 0;
 	}
 
 
@@ -119,7 +220,7 @@ public final class ByteArrayOutputStream extends OutputStream
 	{
 		mLength += len;
 
-		if (mLength > mBufferSizeLimit)
+		if (bufferOverflow())
 		{
 			// we have a buffer overflow, stop buffering
 			return;
@@ -134,9 +235,10 @@ public final class ByteArrayOutputStream extends OutputStream
 			off += count;
 			mPosInChunk += count;
 			len -= count;
-			if (len > 0)
+			if (len > 0 && (currentChunk = requestChunk(len)) == null)
 			{
-				currentChunk = requestChunk(len);
+				// the memory budget is exhausted
+				return;
 			}
 		}
 	}
@@ -147,16 +249,17 @@ public final class ByteArrayOutputStream extends OutputStream
 	{
 		++mLength;
 
-		if (mLength > mBufferSizeLimit)
+		if (bufferOverflow())
 		{
 			// we have a buffer overflow, stop buffering
 			return;
 		}
 
 		byte[] currentChunk = mCurrentChunk;
-		if (mPosInChunk == currentChunk.length)
+		if (mPosInChunk == currentChunk.length && (currentChunk = requestChunk(mMinChunkSize)) == null)
 		{
-			currentChunk = requestChunk(mMinChunkSize);
+			// the memory budget is exhausted
+			return;
 		}
 		currentChunk[mPosInChunk++] = (byte) b;
 	}
@@ -167,7 +270,7 @@ public final class ByteArrayOutputStream extends OutputStream
 	 * 
 	 * @param requestedSize
 	 *            The minimal size of the new buffer.
-	 * @return The new or recycled buffer.
+	 * @return The new or recycled buffer or <code>null</code> if the {@link MemoryBudget} is exhausted.
 	 */
 	private byte[] requestChunk(int requestedSize)
 	{
@@ -178,8 +281,67 @@ public final class ByteArrayOutputStream extends OutputStream
 			return mCurrentChunk = mChunkList.get(mCurrentChunkIndex);
 		}
 
-		mChunkList.add(mCurrentChunk = new byte[Math.max(requestedSize, mMinChunkSize)]);
-		return mCurrentChunk;
+		// grow geometrically, but don't exceed the buffer size limit
+		long growth = Math.min(Math.min(mCapacity, MAX_GROWTH_CHUNK_SIZE), mBufferSizeLimit - mCapacity);
+		int size = (int) Math.max(Math.max(requestedSize, mMinChunkSize), growth);
+		ChunkPool pool = mChunkPool;
+		MemoryBudget budget = mMemoryBudget;
+		if (budget != null && pool == null && !budget.tryReserve(size))
+		{
+			return budgetExhausted();
+		}
+		byte[] chunk = pool == null ? new byte[size] : pool.acquire(size);
+		if (budget != null && pool != null && !budget.tryReserve(chunk.length))
+		{
+			// pooled chunks may be larger than requested, so we can reserve them only after they have been acquired
+			pool.release(chunk);
+			return budgetExhausted();
+		}
+		mChunkList.add(mCurrentChunk = chunk);
+		mCapacity += chunk.length;
+		if (mFirstChunkSize == 0)
+		{
+			mFirstChunkSize = chunk.length;
+		}
+		return chunk;
+	}
+
+
+	/**
+	 * Drops all chunks and switches to the count-only mode after the {@link MemoryBudget} has been exhausted.
+	 * 
+	 * @return <code>null</code>
+	 */
+	private byte[] budgetExhausted()
+	{
+		mBudgetExhausted = true;
+		freeChunks();
+		return null;
+	}
+
+
+	/**
+	 * Returns all chunks to the {@link ChunkPool} and the {@link MemoryBudget}, if any, and removes them from the list.
+	 */
+	private void freeChunks()
+	{
+		ChunkPool pool = mChunkPool;
+		if (pool != null)
+		{
+			for (byte[] chunk : mChunkList)
+			{
+				pool.release(chunk);
+			}
+		}
+		if (mMemoryBudget != null)
+		{
+			mMemoryBudget.release(mCapacity);
+		}
+		mChunkList.clear();
+		mCapacity = 0;
+		mCurrentChunkIndex = -1;
+		mCurrentChunk = NO_CHUNK;
+		mPosInChunk = 0;
 	}
 
 
@@ -195,7 +357,7 @@ public final class ByteArrayOutputStream extends OutputStream
 	 */
 	public void writeTo(OutputStream out) throws IOException
 	{
-		if (mLength > mBufferSizeLimit)
+		if (bufferOverflow())
 		{
 			throw new IllegalStateException("Can't write after a buffer overflow.");
 		}
@@ -218,6 +380,86 @@ public final class ByteArrayOutputStream extends OutputStream
 	}
 
 
+	/**
+	 * Write the buffered content to the given {@link GatheringByteChannel}. All chunks are passed to the channel at once, so a socket channel can send them
+	 * with a single system call. Call {@link #bufferOverflow()} before calling this to check if all written content was buffered or not.
+	 * 
+	 * @param channel
+	 *            The blocking {@link GatheringByteChannel} to write to.
+	 * @throws IOException
+	 * @throws {@link IllegalStateException} if there was a buffer overflow and not all content was buffered.
+	 */
+	public void writeTo(GatheringByteChannel channel) throws IOException
+	{
+		ByteBuffer[] buffers = buffers();
+		int first = 0;
+		while (first < buffers.length)
+		{
+			channel.write(buffers, first, buffers.length - first);
+			while (first < buffers.length && !buffers[first].hasRemaining())
+			{
+				++first;
+			}
+		}
+	}
+
+
+	/**
+	 * Returns {@link ByteBuffer}s that wrap the chunks of the buffered content. The content is not copied, so the buffers are only valid until this stream is
+	 * written to, reset or released. The caller must not modify the content of the buffers.
+	 * 
+	 * @return An array of {@link ByteBuffer}s, empty if there is no content.
+	 * @throws {@link IllegalStateException} if there was a buffer overflow and not all content was buffered.
+	 */
+	public ByteBuffer[] buffers()
+	{
+		if (bufferOverflow())
+		{
+			throw new IllegalStateException("Can't access the content after a buffer overflow.");
+		}
+
+		if (mLength == 0)
+		{
+			return new ByteBuffer[0];
+		}
+
+		int count = mCurrentChunkIndex;
+		ByteBuffer[] result = new ByteBuffer[count + 1];
+		for (int i = 0; i < count; ++i)
+		{
+			result[i] = ByteBuffer.wrap(mChunkList.get(i));
+		}
+		result[count] = ByteBuffer.wrap(mCurrentChunk, 0, mPosInChunk);
+		return result;
+	}
+
+
+	/**
+	 * Returns an {@link InputStream} that reads the buffered content without copying it first. The stream is only valid until this stream is written to,
+	 * reset or released.
+	 * 
+	 * @return An {@link InputStream} of the buffered content.
+	 * @throws {@link IllegalStateException} if there was a buffer overflow and not all content was buffered.
+	 */
+	public InputStream inputStream()
+	{
+		return new ChunkInputStream(buffers());
+	}
+
+
+	/**
+	 * Returns a {@link ReadableByteChannel} that reads the buffered content without copying it first. The channel is only valid until this stream is written
+	 * to, reset or released.
+	 * 
+	 * @return A {@link ReadableByteChannel} of the buffered content.
+	 * @throws {@link IllegalStateException} if there was a buffer overflow and not all content was buffered.
+	 */
+	public ReadableByteChannel channel()
+	{
+		return new ChunkChannel(buffers());
+	}
+
+
 	/**
 	 * Clear all buffers.
 	 */
@@ -225,8 +467,29 @@ public final class ByteArrayOutputStream extends OutputStream
 	{
 		mCurrentChunkIndex = -1;
 		mPosInChunk = 0;
-		mCurrentChunk = requestChunk(mMinChunkSize);
+		mBudgetExhausted = false;
+		if (mChunkList.isEmpty())
+		{
+			// the chunks have been released, don't request a new one before it's needed
+			mCurrentChunk = NO_CHUNK;
+		}
+		else
+		{
+			mCurrentChunk = requestChunk(mMinChunkSize);
+		}
+		mLength = 0;
+	}
+
+
+	/**
+	 * Clears all buffers and returns all chunks to the {@link ChunkPool} and their memory to the {@link MemoryBudget}, if any. The stream can still be used
+	 * afterwards, in which case it takes new chunks from the pool.
+	 */
+	public void release()
+	{
+		freeChunks();
 		mLength = 0;
+		mBudgetExhausted = false;
 	}
 
 
@@ -236,9 +499,19 @@ public final class ByteArrayOutputStream extends OutputStream
 	public void trim()
 	{
 		List<byte[]> chunkList = mChunkList;
+		ChunkPool pool = mChunkPool;
 		while (chunkList.size() - 1 > mCurrentChunkIndex)
 		{
-			chunkList.remove(chunkList.size() - 1);
+			byte[] chunk = chunkList.remove(chunkList.size() - 1);
+			mCapacity -= chunk.length;
+			if (pool != null)
+			{
+				pool.release(chunk);
+			}
+			if (mMemoryBudget != null)
+			{
+				mMemoryBudget.release(chunk.length);
+			}
 		}
 	}
 
@@ -255,12 +528,190 @@ public final class ByteArrayOutputStream extends OutputStream
 
 
 	/**
-	 * Returns whether there was a buffer overflow, i.e. the content written was larger than the maximum buffer size.
+	 * Returns the total size of all chunks held by this stream, i.e. the memory used for buffering.
+	 * 
+	 * @return The buffer capacity in bytes.
+	 */
+	public long capacity()
+	{
+		return mCapacity;
+	}
+
+
+	/**
+	 * Returns the size of the first chunk this stream has allocated. This can be larger than the minimum chunk size if the {@link ChunkPool} rounds sizes up.
+	 * 
+	 * @return The size of the first chunk or 0 if no chunk has been allocated.
+	 */
+	public int firstChunkSize()
+	{
+		return mFirstChunkSize;
+	}
+
+
+	/**
+	 * Returns the number of chunks held by this stream.
+	 * 
+	 * @return The number of chunks.
+	 */
+	public int chunks()
+	{
+		return mChunkList.size();
+	}
+
+
+	/**
+	 * Returns whether there was a buffer overflow, i.e. the content written was larger than the maximum buffer size or the {@link MemoryBudget} was exhausted.
 	 * 
 	 * @return <code>true</code> if there was a buffer overflow and not all content was buffered, <code>false</code> otherwise.
 	 */
 	public boolean bufferOverflow()
 	{
-		return mLength > mBufferSizeLimit;
+		return mLength > mBufferSizeLimit || mBudgetExhausted;
+	}
+
+	/**
+	 * An {@link InputStream} that reads from an array of {@link ByteBuffer}s.
+	 */
+	private final static class ChunkInputStream extends InputStream
+	{
+		private final ByteBuffer[] mBuffers;
+		private int mIndex;
+
+
+		private ChunkInputStream(ByteBuffer[] buffers)
+		{
+			mBuffers = buffers;
+		}
+
+
+		@Override
+		public int read() throws IOException
+		{
+			ByteBuffer buffer = current();
+			return buffer == null ? -1 : buffer.get() & 0xff;
+		}
+
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException
+		{
+			if (len == 0)
+			{
+				return 0;
+			}
+			ByteBuffer buffer = current();
+			if (buffer == null)
+			{
+				return -1;
+			}
+			int count = Math.min(len, buffer.remaining());
+			buffer.get(b, off, count);
+			return count;
+		}
+
+
+		@Override
+		public long skip(long n) throws IOException
+		{
+			ByteBuffer buffer = current();
+			if (buffer == null || n <= 0)
+			{
+				return 0;
+			}
+			int count = (int) Math.min(n, buffer.remaining());
+			buffer.position(buffer.position() + count);
+			return count;
+		}
+
+
+		@Override
+		public int available() throws IOException
+		{
+			ByteBuffer buffer = current();
+			return buffer == null ? 0 : buffer.remaining();
+		}
+
+
+		private ByteBuffer current()
+		{
+			ByteBuffer[] buffers = mBuffers;
+			while (mIndex < buffers.length)
+			{
+				if (buffers[mIndex].hasRemaining())
+				{
+					return buffers[mIndex];
+				}
+				++mIndex;
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * A {@link ReadableByteChannel} that reads from an array of {@link ByteBuffer}s.
+	 */
+	private final static class ChunkChannel implements ReadableByteChannel
+	{
+		private final ByteBuffer[] mBuffers;
+		private int mIndex;
+		private boolean mOpen = true;
+
+
+		private ChunkChannel(ByteBuffer[] buffers)
+		{
+			mBuffers = buffers;
+		}
+
+
+		@Override
+		public int read(ByteBuffer dst) throws IOException
+		{
+			if (!mOpen)
+			{
+				throw new ClosedChannelException();
+			}
+
+			ByteBuffer[] buffers = mBuffers;
+			if (mIndex == buffers.length)
+			{
+				return -1;
+			}
+
+			int total = 0;
+			while (dst.hasRemaining() && mIndex < buffers.length)
+			{
+				ByteBuffer buffer = buffers[mIndex];
+				if (buffer.remaining() <= dst.remaining())
+				{
+					total += buffer.remaining();
+					dst.put(buffer);
+					++mIndex;
+				}
+				else
+				{
+					int limit = buffer.limit();
+					buffer.limit(buffer.position() + dst.remaining());
+					total += buffer.remaining();
+					dst.put(buffer);
+					buffer.limit(limit);
+				}
+			}
+			return total;
+		}
+
+
+		@Override
+		public boolean isOpen()
+		{
+			return mOpen;
+		}
+
+
+		@Override
+		public void close() throws IOException
+		{
+			mOpen = false;
+		}
 	}
-}
\ No newline at end of file
+}
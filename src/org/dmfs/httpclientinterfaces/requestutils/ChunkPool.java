@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.requestutils;
+
+/**
+ * Interface of a pool of byte array chunks, used by {@link ByteArrayOutputStream} to recycle its buffers.
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public interface ChunkPool
+{
+	/**
+	 * Returns a chunk of at least the given size. The content of the chunk is undefined.
+	 * 
+	 * @param minSize
+	 *            The minimum size of the chunk, may be 0.
+	 * @return A byte array of at least minSize bytes.
+	 * @throws IllegalArgumentException
+	 *             If minSize is negative.
+	 */
+	public byte[] acquire(int minSize);
+
+
+	/**
+	 * Returns a chunk to the pool. The caller must not use the chunk anymore.
+	 * 
+	 * @param chunk
+	 *            A chunk that has been returned by {@link #acquire(int)}.
+	 */
+	public void release(byte[] chunk);
+}
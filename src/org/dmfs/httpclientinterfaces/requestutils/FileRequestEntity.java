@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.requestutils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.WritableByteChannel;
+
+import org.dmfs.httpclientinterfaces.ChannelRequestEntity;
+import org.dmfs.httpclientinterfaces.ContentType;
+
+
+/**
+ * A {@link ChannelRequestEntity} that sends the content of a file. The content length is known up front, so there is no need to buffer the entity.
+ * <p>
+ * The content is sent with {@link FileChannel#transferTo(long, long, WritableByteChannel)}. Executors that own the {@link java.nio.channels.SocketChannel} of
+ * a plain connection should call {@link #writeContent(WritableByteChannel)}, which lets the operating system move the content from the file to the socket
+ * without copying it to the heap (sendfile). Other channels, like TLS connections, and {@link OutputStream}s are served by the JDK's copy loop, which uses
+ * pooled temporary buffers.
+ * </p>
+ * <p>
+ * The file must not be modified while the request is being sent.
+ * </p>
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class FileRequestEntity implements ChannelRequestEntity
+{
+	/**
+	 * The maximum number of bytes to transfer with a single call to {@link FileChannel#transferTo(long, long, WritableByteChannel)}. Some platforms transfer
+	 * at most 2 GB per call anyway.
+	 */
+	private final static long MAX_TRANSFER_SIZE = 8 * 1024 * 1024;
+
+	private final File mFile;
+	private final ContentType mContentType;
+
+
+	/**
+	 * Creates a {@link FileRequestEntity}.
+	 * 
+	 * @param file
+	 *            The file to send.
+	 * @param contentType
+	 *            The {@link ContentType} of the file.
+	 */
+	public FileRequestEntity(File file, ContentType contentType)
+	{
+		mFile = file;
+		mContentType = contentType;
+	}
+
+
+	@Override
+	public ContentType contentType()
+	{
+		return mContentType;
+	}
+
+
+	@Override
+	public long contentLength() throws IOException
+	{
+		if (!mFile.isFile())
+		{
+			throw new IOException(String.format("%s is not a file", mFile));
+		}
+		return mFile.length();
+	}
+
+
+	@Override
+	public void writeContent(OutputStream out) throws IOException
+	{
+		if (out instanceof FileOutputStream)
+		{
+			// file to file transfers don't need to go through the heap either
+			writeContent(((FileOutputStream) out).getChannel());
+			return;
+		}
+		WritableByteChannel channel = Channels.newChannel(out);
+		writeContent(channel);
+	}
+
+
+	@Override
+	public void writeContent(WritableByteChannel channel) throws IOException
+	{
+		FileInputStream in = new FileInputStream(mFile);
+		try
+		{
+			transfer(in.getChannel(), channel);
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+
+	/**
+	 * Transfers the entire content of the given {@link FileChannel} to the given {@link WritableByteChannel}.
+	 * <p>
+	 * The target must be in blocking mode. A non-blocking channel may not accept any bytes, which would make this loop spin, so it's rejected.
+	 * </p>
+	 * 
+	 * @param source
+	 *            The {@link FileChannel} to read from.
+	 * @param target
+	 *            The blocking {@link WritableByteChannel} to write to.
+	 * @throws IOException
+	 * @throws IllegalBlockingModeException
+	 *             If the target is a {@link SelectableChannel} in non-blocking mode.
+	 */
+	static void transfer(FileChannel source, WritableByteChannel target) throws IOException
+	{
+		if (target instanceof SelectableChannel && !((SelectableChannel) target).isBlocking())
+		{
+			throw new IllegalBlockingModeException();
+		}
+
+		long position = 0;
+		long length = source.size();
+		while (position < length)
+		{
+			long count = source.transferTo(position, Math.min(MAX_TRANSFER_SIZE, length - position), target);
+			if (count <= 0)
+			{
+				if (source.size() < length)
+				{
+					throw new IOException("File has been truncated while sending it");
+				}
+				// a blocking channel always accepts at least one byte, so this would never end
+				throw new IOException("Target channel didn't accept any bytes, it's probably not in blocking mode");
+			}
+			position += count;
+		}
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.requestutils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.dmfs.httpclientinterfaces.HttpResponse;
+import org.dmfs.httpclientinterfaces.HttpResponseEntity;
+import org.dmfs.httpclientinterfaces.HttpResponseHandler;
+import org.dmfs.httpclientinterfaces.exceptions.ProtocolError;
+import org.dmfs.httpclientinterfaces.exceptions.ProtocolException;
+import org.dmfs.httpclientinterfaces.utils.ChannelResponseEntityAdapter;
+
+
+/**
+ * An {@link HttpResponseHandler} that stores the response entity in a file and returns that file.
+ * <p>
+ * The content is written to a temporary file in the same directory, which is renamed to the target file once the content has been received completely. So
+ * the target file is either replaced with the complete content or not touched at all. If the content length is known, the temporary file is preallocated
+ * and truncated content is detected.
+ * </p>
+ * <p>
+ * The content is moved with {@link FileChannel#transferFrom(ReadableByteChannel, long, long)}. If the entity is a
+ * {@link org.dmfs.httpclientinterfaces.ChannelResponseEntity}, its channel is used directly.
+ * </p>
+ * <p>
+ * Responses that are not successful are passed to the {@link DefaultResponseHandler}, which throws an appropriate exception.
+ * </p>
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class FileResponseHandler implements HttpResponseHandler<File>
+{
+	/**
+	 * The maximum number of bytes to transfer with a single call to {@link FileChannel#transferFrom(ReadableByteChannel, long, long)}.
+	 */
+	private final static long MAX_TRANSFER_SIZE = 8 * 1024 * 1024;
+
+	private final File mTarget;
+	private final boolean mSync;
+
+
+	/**
+	 * Creates a {@link FileResponseHandler} that doesn't sync the file to the storage device.
+	 * 
+	 * @param target
+	 *            The file to store the content in.
+	 */
+	public FileResponseHandler(File target)
+	{
+		this(target, false);
+	}
+
+
+	/**
+	 * Creates a {@link FileResponseHandler}.
+	 * 
+	 * @param target
+	 *            The file to store the content in.
+	 * @param sync
+	 *            <code>true</code> to force the content to the storage device before the file is renamed. This is slow, but makes sure the content survives a
+	 *            system crash.
+	 */
+	public FileResponseHandler(File target, boolean sync)
+	{
+		mTarget = target;
+		mSync = sync;
+	}
+
+
+	@Override
+	public File handleResponse(HttpResponse response) throws IOException, ProtocolError, ProtocolException
+	{
+		if (!response.status().isSuccess())
+		{
+			return DefaultResponseHandler.<File> getInstance().handleResponse(response);
+		}
+
+		File directory = mTarget.getAbsoluteFile().getParentFile();
+		File temp = File.createTempFile(mTarget.getName() + ".", ".part", directory);
+		boolean success = false;
+		try
+		{
+			store(response.responseEntity(), temp);
+			move(temp, mTarget);
+			success = true;
+		}
+		finally
+		{
+			if (!success)
+			{
+				temp.delete();
+			}
+		}
+		return mTarget;
+	}
+
+
+	private void store(HttpResponseEntity entity, File file) throws IOException
+	{
+		long length = entity.contentLength();
+		ReadableByteChannel source = new ChannelResponseEntityAdapter(entity).contentChannel();
+		try
+		{
+			RandomAccessFile out = new RandomAccessFile(file, "rw");
+			try
+			{
+				if (length > 0)
+				{
+					// reserve the space up front, this also fails early if the disk is full on file systems that don't create sparse files
+					out.setLength(length);
+				}
+
+				FileChannel channel = out.getChannel();
+				long position = 0;
+				long count;
+				while ((count = channel.transferFrom(source, position, MAX_TRANSFER_SIZE)) > 0)
+				{
+					position += count;
+				}
+
+				if (length >= 0 && position != length)
+				{
+					throw new IOException(String.format("Expected %d bytes but received %d", length, position));
+				}
+
+				if (mSync)
+				{
+					channel.force(true);
+				}
+			}
+			finally
+			{
+				out.close();
+			}
+		}
+		finally
+		{
+			source.close();
+		}
+	}
+
+
+	private static void move(File source, File target) throws IOException
+	{
+		try
+		{
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (AtomicMoveNotSupportedException e)
+		{
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+}
@@ -0,0 +1,431 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.requestutils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dmfs.httpclientinterfaces.ContentType;
+import org.dmfs.httpclientinterfaces.HttpMethod;
+import org.dmfs.httpclientinterfaces.HttpRequest;
+import org.dmfs.httpclientinterfaces.HttpRequestEntity;
+import org.dmfs.httpclientinterfaces.HttpRequestExecutor;
+import org.dmfs.httpclientinterfaces.HttpResponse;
+import org.dmfs.httpclientinterfaces.HttpResponseHandler;
+import org.dmfs.httpclientinterfaces.OnResponseCallback;
+import org.dmfs.httpclientinterfaces.headers.Header;
+import org.dmfs.httpclientinterfaces.headers.HeaderList;
+import org.dmfs.httpclientinterfaces.headers.HttpHeaders;
+import org.dmfs.httpclientinterfaces.headers.impl.EmptyHeaderList;
+import org.dmfs.httpclientinterfaces.headers.impl.SingleHeaderList;
+import org.dmfs.httpclientinterfaces.headers.values.Link;
+import org.dmfs.httpclientinterfaces.utils.ConsumingInputStream;
+
+
+/**
+ * Prefetches the targets of the {@link HttpHeaders#LINK} headers of a response. For each link that has one of the configured relation types a background
+ * {@link HttpMethod#GET} request is sent using the asynchronous execute methods of an {@link HttpRequestExecutor}. The response content is consumed and
+ * dropped, so this is only useful with an executor that caches responses.
+ * <p>
+ * The relation types are given in order of priority. Links with a higher priority relation type are prefetched first. The number of prefetches per response
+ * and the number of concurrent prefetches are limited, links that exceed any of these limits are skipped.
+ * </p>
+ * <p>
+ * Note that prefetching is only effective if the given {@link HttpRequestExecutor} executes the asynchronous requests in the background.
+ * </p>
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class LinkPrefetcher
+{
+	/**
+	 * The "preload" relation type.
+	 * 
+	 * @see <a href="https://www.w3.org/TR/preload/">Preload</a>
+	 */
+	public final static String REL_PRELOAD = "preload";
+
+	/**
+	 * The "prefetch" relation type.
+	 * 
+	 * @see <a href="https://www.w3.org/TR/resource-hints/#prefetch">Resource Hints</a>
+	 */
+	public final static String REL_PREFETCH = "prefetch";
+
+	/**
+	 * The "next" relation type.
+	 * 
+	 * @see <a href="https://www.w3.org/TR/html5/links.html#link-type-next">HTML5, section 4.8.4.11</a>
+	 */
+	public final static String REL_NEXT = "next";
+
+	/**
+	 * The default maximum number of prefetches started for a single response.
+	 */
+	public final static int DEFAULT_MAX_PREFETCHES_PER_RESPONSE = 4;
+
+	/**
+	 * The default maximum number of prefetches in flight at the same time.
+	 */
+	public final static int DEFAULT_MAX_CONCURRENT_PREFETCHES = 8;
+
+	private final HttpRequestExecutor mExecutor;
+
+	/**
+	 * The relation types to prefetch in order of priority.
+	 */
+	private final List<String> mRelationTypes;
+
+	private final int mMaxPrefetchesPerResponse;
+
+	private final int mMaxConcurrentPrefetches;
+
+	/**
+	 * The number of prefetches currently in flight.
+	 */
+	private final AtomicInteger mPrefetchCount = new AtomicInteger();
+
+	/**
+	 * The targets that are currently being prefetched.
+	 */
+	private final Set<URI> mPrefetchTargets = Collections.newSetFromMap(new ConcurrentHashMap<URI, Boolean>(16));
+
+
+	/**
+	 * Creates a {@link LinkPrefetcher} that prefetches {@link #REL_PRELOAD}, {@link #REL_PREFETCH} and {@link #REL_NEXT} links (in that order) using the
+	 * default limits.
+	 * 
+	 * @param executor
+	 *            The {@link HttpRequestExecutor} to execute the prefetch requests.
+	 */
+	public LinkPrefetcher(HttpRequestExecutor executor)
+	{
+		this(executor, DEFAULT_MAX_PREFETCHES_PER_RESPONSE, DEFAULT_MAX_CONCURRENT_PREFETCHES, REL_PRELOAD, REL_PREFETCH, REL_NEXT);
+	}
+
+
+	/**
+	 * Creates a {@link LinkPrefetcher} that prefetches links with the given relation types.
+	 * 
+	 * @param executor
+	 *            The {@link HttpRequestExecutor} to execute the prefetch requests.
+	 * @param maxPrefetchesPerResponse
+	 *            The maximum number of prefetches to start for a single response.
+	 * @param maxConcurrentPrefetches
+	 *            The maximum number of prefetches in flight at the same time.
+	 * @param relationTypes
+	 *            The relation types of the links to prefetch in order of priority, highest priority first.
+	 */
+	public LinkPrefetcher(HttpRequestExecutor executor, int maxPrefetchesPerResponse, int maxConcurrentPrefetches, String... relationTypes)
+	{
+		if (maxPrefetchesPerResponse < 0 || maxConcurrentPrefetches < 0)
+		{
+			throw new IllegalArgumentException("Prefetch limits must not be negative");
+		}
+		mExecutor = executor;
+		mMaxPrefetchesPerResponse = maxPrefetchesPerResponse;
+		mMaxConcurrentPrefetches = maxConcurrentPrefetches;
+		mRelationTypes = Arrays.asList(relationTypes.clone());
+	}
+
+
+	/**
+	 * Starts prefetching the link targets of the given response.
+	 * 
+	 * @param response
+	 *            The {@link HttpResponse} that may contain {@link HttpHeaders#LINK} headers.
+	 * @return The number of prefetches that have been started. If the executor rejects a prefetch, no further prefetches are started for this response.
+	 */
+	public int prefetch(HttpResponse response)
+	{
+		if (mMaxPrefetchesPerResponse == 0 || !response.hasHeader(HttpHeaders.LINK))
+		{
+			return 0;
+		}
+
+		List<Candidate> candidates = candidates(response);
+		int started = 0;
+		for (Candidate candidate : candidates)
+		{
+			if (started == mMaxPrefetchesPerResponse || !acquire())
+			{
+				// budget exhausted, skip the remaining links, which have a lower priority
+				break;
+			}
+
+			if (!mPrefetchTargets.add(candidate.target))
+			{
+				// already in flight
+				release(null);
+				continue;
+			}
+
+			try
+			{
+				mExecutor.execute(candidate.target, new PrefetchRequest(candidate.mediaType), new PrefetchCallback(candidate.target));
+				++started;
+			}
+			catch (RuntimeException e)
+			{
+				// the executor is saturated or shut down, prefetching is best effort only, so don't fail the response that carried the links
+				release(candidate.target);
+				break;
+			}
+		}
+		return started;
+	}
+
+
+	/**
+	 * Returns the number of prefetches currently in flight.
+	 * 
+	 * @return The number of prefetches that have not completed yet.
+	 */
+	public int pendingPrefetches()
+	{
+		return mPrefetchCount.get();
+	}
+
+
+	/**
+	 * Collects the links of the given response that have one of our relation types, ordered by priority.
+	 */
+	private List<Candidate> candidates(HttpResponse response)
+	{
+		List<Candidate> result = new ArrayList<Candidate>(8);
+		Iterator<Header<Link>> links = response.headers(HttpHeaders.LINK);
+		while (links.hasNext())
+		{
+			List<Link> headerLinks;
+			try
+			{
+				headerLinks = Links.links(links.next());
+			}
+			catch (IllegalArgumentException e)
+			{
+				// prefetching is best effort only, ignore malformed links
+				continue;
+			}
+
+			for (Link link : headerLinks)
+			{
+				if (!link.hasParameter("rel"))
+				{
+					continue;
+				}
+
+				int priority = Integer.MAX_VALUE;
+				for (String rel : link.relationTypes())
+				{
+					int index = mRelationTypes.indexOf(rel);
+					if (index >= 0 && index < priority)
+					{
+						priority = index;
+					}
+				}
+
+				if (priority == Integer.MAX_VALUE)
+				{
+					continue;
+				}
+
+				URI target = response.responseUri().resolve(link.link());
+				String scheme = target.getScheme();
+				if (!"http".equalsIgnoreCase(scheme) && !"https".equalsIgnoreCase(scheme))
+				{
+					continue;
+				}
+
+				boolean duplicate = false;
+				for (Candidate candidate : result)
+				{
+					if (candidate.target.equals(target))
+					{
+						duplicate = true;
+						break;
+					}
+				}
+
+				if (!duplicate)
+				{
+					result.add(new Candidate(target, link.mediaType(), priority));
+				}
+			}
+		}
+
+		// this is a stable sort, links with equal priority keep their order
+		Collections.sort(result, new Comparator<Candidate>()
+		{
+			@Override
+			public int compare(Candidate lhs, Candidate rhs)
+			{
+				return lhs.priority < rhs.priority ? -1 : (lhs.priority == rhs.priority ? 0 : 1);
+			}
+		});
+		return result;
+	}
+
+
+	/**
+	 * Tries to reserve a slot for another prefetch.
+	 * 
+	 * @return <code>true</code> if the slot has been reserved, <code>false</code> if the concurrency limit has been reached.
+	 */
+	private boolean acquire()
+	{
+		int count;
+		do
+		{
+			count = mPrefetchCount.get();
+			if (count >= mMaxConcurrentPrefetches)
+			{
+				return false;
+			}
+		} while (!mPrefetchCount.compareAndSet(count, count + 1));
+		return true;
+	}
+
+
+	/**
+	 * Releases a slot reserved by {@link #acquire()}.
+	 * 
+	 * @param target
+	 *            The target of the completed prefetch or <code>null</code> if the slot has not been used.
+	 */
+	private void release(URI target)
+	{
+		if (target != null)
+		{
+			mPrefetchTargets.remove(target);
+		}
+		mPrefetchCount.decrementAndGet();
+	}
+
+	/**
+	 * A link target to prefetch.
+	 */
+	private final static class Candidate
+	{
+		private final URI target;
+		private final ContentType mediaType;
+		private final int priority;
+
+
+		public Candidate(URI target, ContentType mediaType, int priority)
+		{
+			this.target = target;
+			this.mediaType = mediaType;
+			this.priority = priority;
+		}
+	}
+
+	/**
+	 * Releases the prefetch slot when the prefetch is done. Errors are ignored.
+	 * <p>
+	 * The callback releases the target it has been created for rather than the request {@link URI} passed by the executor, which might have normalized it.
+	 * </p>
+	 */
+	private final class PrefetchCallback implements OnResponseCallback<Void>
+	{
+		private final URI mTarget;
+
+
+		public PrefetchCallback(URI target)
+		{
+			mTarget = target;
+		}
+
+
+		@Override
+		public void onResponse(URI requestUri, URI respondingUri, Void response)
+		{
+			release(mTarget);
+		}
+
+
+		@Override
+		public void onError(URI requestUri, Exception e)
+		{
+			release(mTarget);
+		}
+	}
+
+	/**
+	 * The {@link HttpMethod#GET} request that fetches a link target. It accepts the media type of the link, if present, and consumes the response content.
+	 */
+	private final static class PrefetchRequest implements HttpRequest<Void>, HttpResponseHandler<Void>
+	{
+		private final ContentType mMediaType;
+
+
+		public PrefetchRequest(ContentType mediaType)
+		{
+			mMediaType = mediaType;
+		}
+
+
+		@Override
+		public HttpMethod method()
+		{
+			return HttpMethod.GET;
+		}
+
+
+		@Override
+		public HeaderList headers()
+		{
+			if (mMediaType == null)
+			{
+				return EmptyHeaderList.INSTANCE;
+			}
+			return new SingleHeaderList(HttpHeaders.ACCEPT.header(Collections.singletonList(mMediaType)));
+		}
+
+
+		@Override
+		public HttpRequestEntity requestEntity()
+		{
+			return EmptyHttpRequestEntity.INSTANCE;
+		}
+
+
+		@Override
+		public HttpResponseHandler<Void> responseHandler(HttpResponse response)
+		{
+			return this;
+		}
+
+
+		@Override
+		public Void handleResponse(HttpResponse response) throws IOException
+		{
+			// read the entire response, so the executor can cache it
+			new ConsumingInputStream(response.responseEntity().contentStream()).close();
+			return null;
+		}
+	}
+}
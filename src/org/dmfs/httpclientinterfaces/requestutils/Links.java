@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.requestutils;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.dmfs.httpclientinterfaces.headers.Header;
+import org.dmfs.httpclientinterfaces.headers.impl.LinkHeaderValueConverter;
+import org.dmfs.httpclientinterfaces.headers.values.Link;
+
+
+/**
+ * Helper to get all {@link Link}s of a Link header. {@link Header#value()} only returns the first link of a header that contains several comma separated
+ * links.
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+final class Links
+{
+	private final static LinkHeaderValueConverter CONVERTER = new LinkHeaderValueConverter();
+
+
+	private Links()
+	{
+	}
+
+
+	/**
+	 * Returns all {@link Link}s of the given header.
+	 * 
+	 * @param header
+	 *            A Link {@link Header}.
+	 * @return The {@link Link}s in the order they appear in the header.
+	 * @throws IllegalArgumentException
+	 *             If any of the links is invalid.
+	 */
+	public static List<Link> links(Header<Link> header)
+	{
+		String valueString;
+		try
+		{
+			valueString = header.valueString();
+		}
+		catch (UnsupportedOperationException e)
+		{
+			// the header has been created from a Link value that can't be serialized, so there is only this one link
+			return Collections.singletonList(header.value());
+		}
+		return CONVERTER.parseValues(valueString);
+	}
+}
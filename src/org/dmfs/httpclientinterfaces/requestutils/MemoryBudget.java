@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.requestutils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * A thread safe budget of bytes that components may keep in memory, shared by all buffers of a process.
+ * <p>
+ * Components reserve memory before they buffer content and release it when the content is no longer needed. If a reservation fails, the component is expected
+ * to degrade gracefully, i.e. to spill the content to disk, to stream it without buffering or to wait for memory to become available using
+ * {@link #reserve(long, long, TimeUnit)}.
+ * </p>
+ * <p>
+ * {@link #used()} can be polled as a gauge of the memory in use.
+ * </p>
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class MemoryBudget
+{
+	/**
+	 * The default budget, which allows a quarter of the maximum heap size to be used for buffering.
+	 */
+	private final static MemoryBudget INSTANCE = new MemoryBudget(Runtime.getRuntime().maxMemory() / 4);
+
+	private final long mLimit;
+	private final AtomicLong mUsed = new AtomicLong();
+	private final AtomicLong mPeak = new AtomicLong();
+	private final AtomicLong mRejections = new AtomicLong();
+	private final AtomicInteger mWaiters = new AtomicInteger();
+
+
+	/**
+	 * Returns the process wide default {@link MemoryBudget}, which is limited to a quarter of the maximum heap size.
+	 * 
+	 * @return The default instance.
+	 */
+	public static MemoryBudget getInstance()
+	{
+		return INSTANCE;
+	}
+
+
+	/**
+	 * Creates a {@link MemoryBudget}.
+	 * 
+	 * @param limit
+	 *            The maximum number of bytes that can be reserved at the same time.
+	 */
+	public MemoryBudget(long limit)
+	{
+		if (limit < 0)
+		{
+			throw new IllegalArgumentException("Limit must not be negative");
+		}
+		mLimit = limit;
+	}
+
+
+	/**
+	 * Reserves the given number of bytes if they are available. This never blocks.
+	 * 
+	 * @param bytes
+	 *            The number of bytes to reserve.
+	 * @return <code>true</code> if the bytes have been reserved, <code>false</code> if the budget is exhausted.
+	 */
+	public boolean tryReserve(long bytes)
+	{
+		if (!reserved(bytes))
+		{
+			mRejections.incrementAndGet();
+			return false;
+		}
+		return true;
+	}
+
+
+	/**
+	 * Reserves the given number of bytes, waiting up to the given time for other components to release memory. This allows to apply backpressure to producers
+	 * when the budget is exhausted.
+	 * 
+	 * @param bytes
+	 *            The number of bytes to reserve.
+	 * @param timeout
+	 *            The maximum time to wait.
+	 * @param unit
+	 *            The {@link TimeUnit} of the timeout.
+	 * @return <code>true</code> if the bytes have been reserved, <code>false</code> if the timeout expired or the request exceeds the limit of this budget.
+	 * @throws InterruptedException
+	 *             if the thread was interrupted while waiting.
+	 */
+	public boolean reserve(long bytes, long timeout, TimeUnit unit) throws InterruptedException
+	{
+		if (reserved(bytes))
+		{
+			return true;
+		}
+
+		if (bytes > mLimit)
+		{
+			// this will never succeed
+			mRejections.incrementAndGet();
+			return false;
+		}
+
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		synchronized (this)
+		{
+			mWaiters.incrementAndGet();
+			try
+			{
+				// check again after registering as a waiter, so we can't miss a release
+				while (!reserved(bytes))
+				{
+					long remaining = deadline - System.nanoTime();
+					if (remaining <= 0)
+					{
+						mRejections.incrementAndGet();
+						return false;
+					}
+					TimeUnit.NANOSECONDS.timedWait(this, remaining);
+				}
+				return true;
+			}
+			finally
+			{
+				mWaiters.decrementAndGet();
+			}
+		}
+	}
+
+
+	/**
+	 * Releases the given number of previously reserved bytes.
+	 * 
+	 * @param bytes
+	 *            The number of bytes to release.
+	 */
+	public void release(long bytes)
+	{
+		if (bytes <= 0)
+		{
+			return;
+		}
+
+		mUsed.addAndGet(-bytes);
+		if (mWaiters.get() > 0)
+		{
+			synchronized (this)
+			{
+				notifyAll();
+			}
+		}
+	}
+
+
+	/**
+	 * Returns the maximum number of bytes that can be reserved at the same time.
+	 * 
+	 * @return The limit of this budget.
+	 */
+	public long limit()
+	{
+		return mLimit;
+	}
+
+
+	/**
+	 * Returns the number of bytes that are currently reserved.
+	 * 
+	 * @return The number of reserved bytes.
+	 */
+	public long used()
+	{
+		return mUsed.get();
+	}
+
+
+	/**
+	 * Returns the number of bytes that can currently be reserved.
+	 * 
+	 * @return The number of available bytes.
+	 */
+	public long available()
+	{
+		return Math.max(0, mLimit - mUsed.get());
+	}
+
+
+	/**
+	 * Returns the largest number of bytes that have been reserved at the same time.
+	 * 
+	 * @return The peak usage.
+	 */
+	public long peak()
+	{
+		return mPeak.get();
+	}
+
+
+	/**
+	 * Returns the number of reservations that failed because the budget was exhausted.
+	 * 
+	 * @return The number of rejected reservations.
+	 */
+	public long rejections()
+	{
+		return mRejections.get();
+	}
+
+
+	@Override
+	public String toString()
+	{
+		return String.format("%d of %d bytes used (peak %d), %d rejections", used(), limit(), peak(), rejections());
+	}
+
+
+	private boolean reserved(long bytes)
+	{
+		if (bytes <= 0)
+		{
+			return true;
+		}
+
+		AtomicLong used = mUsed;
+		long current;
+		long next;
+		do
+		{
+			current = used.get();
+			next = current + bytes;
+			if (next > mLimit || next < 0)
+			{
+				return false;
+			}
+		} while (!used.compareAndSet(current, next));
+
+		AtomicLong peak = mPeak;
+		long previousPeak;
+		while ((previousPeak = peak.get()) < next && !peak.compareAndSet(previousPeak, next))
+		{
+			// retry
+		}
+		return true;
+	}
+}
@@ -0,0 +1,373 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.requestutils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+import org.dmfs.httpclientinterfaces.HttpMethod;
+import org.dmfs.httpclientinterfaces.HttpRequest;
+import org.dmfs.httpclientinterfaces.HttpRequestEntity;
+import org.dmfs.httpclientinterfaces.HttpRequestExecutor;
+import org.dmfs.httpclientinterfaces.HttpResponse;
+import org.dmfs.httpclientinterfaces.HttpResponseHandler;
+import org.dmfs.httpclientinterfaces.exceptions.ProtocolError;
+import org.dmfs.httpclientinterfaces.exceptions.ProtocolException;
+import org.dmfs.httpclientinterfaces.headers.Header;
+import org.dmfs.httpclientinterfaces.headers.HeaderList;
+import org.dmfs.httpclientinterfaces.headers.HttpHeaders;
+import org.dmfs.httpclientinterfaces.headers.values.Link;
+
+
+/**
+ * Iterates the pages of a paginated resource. Pages are linked by {@link HttpHeaders#LINK} headers with the relation type "next". Each page is requested with
+ * the same {@link HttpRequest}, only the {@link URI} changes.
+ * <p>
+ * Pages are fetched by a background task, so the next page is loaded while the current one is being processed. The number of pages that are fetched ahead of
+ * the consumer is limited by the lookahead parameter. Call {@link #close()} to stop fetching pages early.
+ * </p>
+ * <p>
+ * Any error that occurs while fetching a page is thrown by {@link #hasNext()} and {@link #next()} after all previous pages have been returned.
+ * </p>
+ * <p>
+ * The iteration ends when a "next" link points to a page that has been fetched already, so a server can't make it loop forever.
+ * </p>
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ * 
+ * @param <T>
+ *            The type of the pages.
+ */
+public final class PageIterator<T> implements Closeable
+{
+	/**
+	 * The relation type of links to the next page.
+	 */
+	private final static String REL_NEXT = "next";
+
+	/**
+	 * Marks the end of the pages.
+	 */
+	private final static Page<Object> END = new Page<Object>(null, null);
+
+	private final HttpRequestExecutor mExecutor;
+	private final HttpRequest<T> mPageRequest;
+
+	/**
+	 * The pages that have been fetched, but not returned yet.
+	 */
+	private final BlockingQueue<Page<T>> mPages;
+
+	/**
+	 * One permit for each page the fetcher may fetch ahead of the consumer. The fetcher takes a permit before it fetches a page, {@link #next()} returns it
+	 * when the page has been handed to the consumer.
+	 */
+	private final Semaphore mLookahead;
+
+	/**
+	 * The next page to return or <code>null</code> if it hasn't been taken from {@link #mPages} yet.
+	 */
+	private Page<T> mNext;
+
+	private volatile boolean mClosed;
+
+
+	/**
+	 * Creates a {@link PageIterator} that starts fetching pages at the given {@link URI} immediately.
+	 * 
+	 * @param executor
+	 *            The {@link HttpRequestExecutor} to execute the page requests.
+	 * @param backgroundExecutor
+	 *            The {@link Executor} that runs the background task fetching the pages.
+	 * @param firstPage
+	 *            The {@link URI} of the first page.
+	 * @param pageRequest
+	 *            The {@link HttpRequest} to send to each page.
+	 * @param lookahead
+	 *            The maximum number of pages to fetch ahead of the consumer, i.e. pages that have been fetched but not returned by {@link #next()} yet, must
+	 *            be at least 1.
+	 */
+	@SuppressWarnings("unchecked")
+	public PageIterator(HttpRequestExecutor executor, Executor backgroundExecutor, URI firstPage, HttpRequest<T> pageRequest, int lookahead)
+	{
+		if (lookahead < 1)
+		{
+			throw new IllegalArgumentException("lookahead must be at least 1");
+		}
+		mExecutor = executor;
+		mPageRequest = pageRequest;
+		mPages = new LinkedBlockingQueue<Page<T>>();
+		mLookahead = new Semaphore(lookahead);
+		backgroundExecutor.execute(new PageFetcher(firstPage, (Page<T>) END));
+	}
+
+
+	/**
+	 * Returns whether there is another page. This blocks until the next page has been fetched or it's known that there is no other page.
+	 * 
+	 * @return <code>true</code> if there is another page, <code>false</code> otherwise.
+	 * @throws IOException
+	 * @throws ProtocolError
+	 * @throws ProtocolException
+	 */
+	public boolean hasNext() throws IOException, ProtocolError, ProtocolException
+	{
+		if (mClosed)
+		{
+			return false;
+		}
+
+		if (mNext == null)
+		{
+			try
+			{
+				mNext = mPages.take();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for the next page");
+			}
+		}
+
+		if (mNext.error != null)
+		{
+			// rethrow the error in the consumer thread
+			if (mNext.error instanceof IOException)
+			{
+				throw (IOException) mNext.error;
+			}
+			if (mNext.error instanceof ProtocolError)
+			{
+				throw (ProtocolError) mNext.error;
+			}
+			if (mNext.error instanceof ProtocolException)
+			{
+				throw (ProtocolException) mNext.error;
+			}
+			if (mNext.error instanceof RuntimeException)
+			{
+				throw (RuntimeException) mNext.error;
+			}
+			throw (Error) mNext.error;
+		}
+
+		return mNext != END;
+	}
+
+
+	/**
+	 * Returns the next page. This blocks until the next page has been fetched.
+	 * 
+	 * @return The next page.
+	 * @throws IOException
+	 * @throws ProtocolError
+	 * @throws ProtocolException
+	 * @throws NoSuchElementException
+	 *             if there are no more pages.
+	 */
+	public T next() throws IOException, ProtocolError, ProtocolException
+	{
+		if (!hasNext())
+		{
+			throw new NoSuchElementException("No more pages to iterate");
+		}
+		T result = mNext.value;
+		mNext = null;
+		mLookahead.release();
+		return result;
+	}
+
+
+	/**
+	 * Stops fetching pages. Pages that have been fetched already are dropped. A page request that's in progress is completed, but its result is dropped as
+	 * well.
+	 */
+	@Override
+	public void close()
+	{
+		mClosed = true;
+		mPages.clear();
+		// wake up the fetcher in case it's waiting for the consumer
+		mLookahead.release();
+	}
+
+	/**
+	 * A fetched page or an error.
+	 */
+	private final static class Page<T>
+	{
+		private final T value;
+		private final Throwable error;
+
+
+		public Page(T value, Throwable error)
+		{
+			this.value = value;
+			this.error = error;
+		}
+	}
+
+	/**
+	 * The background task that fetches the pages.
+	 */
+	private final class PageFetcher implements Runnable
+	{
+		private final URI mFirstPage;
+		private final Page<T> mEnd;
+
+
+		public PageFetcher(URI firstPage, Page<T> end)
+		{
+			mFirstPage = firstPage;
+			mEnd = end;
+		}
+
+
+		@Override
+		public void run()
+		{
+			URI pageUri = mFirstPage;
+			// the pages we've fetched so far, to detect "next" links that point back to a previous page
+			Set<URI> visited = new HashSet<URI>();
+			try
+			{
+				try
+				{
+					while (pageUri != null && !mClosed && visited.add(pageUri))
+					{
+						// wait until the consumer has room for another page
+						mLookahead.acquire();
+						if (mClosed)
+						{
+							return;
+						}
+						NextLinkRequest<T> request = new NextLinkRequest<T>(mPageRequest);
+						T page = mExecutor.execute(pageUri, request);
+						pageUri = request.mNextPage;
+						put(new Page<T>(page, null));
+					}
+					put(mEnd);
+				}
+				catch (InterruptedException e)
+				{
+					throw e;
+				}
+				catch (Exception e)
+				{
+					put(new Page<T>(null, e));
+				}
+				catch (Error e)
+				{
+					put(new Page<T>(null, e));
+					throw e;
+				}
+			}
+			catch (InterruptedException e)
+			{
+				// we've been interrupted, give up
+				Thread.currentThread().interrupt();
+			}
+		}
+
+
+		/**
+		 * Hands a page to the consumer. This never blocks, the lookahead is limited by the permits the fetcher takes before fetching a page.
+		 */
+		private void put(Page<T> page)
+		{
+			if (!mClosed)
+			{
+				mPages.add(page);
+			}
+		}
+	}
+
+	/**
+	 * A request wrapper that takes note of the "next" link of the response.
+	 */
+	private final static class NextLinkRequest<T> implements HttpRequest<T>
+	{
+		private final HttpRequest<T> mRequest;
+
+		/**
+		 * The {@link URI} of the next page or <code>null</code> if there is no next page.
+		 */
+		private URI mNextPage;
+
+
+		public NextLinkRequest(HttpRequest<T> request)
+		{
+			mRequest = request;
+		}
+
+
+		@Override
+		public HttpMethod method()
+		{
+			return mRequest.method();
+		}
+
+
+		@Override
+		public HeaderList headers()
+		{
+			return mRequest.headers();
+		}
+
+
+		@Override
+		public HttpRequestEntity requestEntity()
+		{
+			return mRequest.requestEntity();
+		}
+
+
+		@Override
+		public HttpResponseHandler<T> responseHandler(HttpResponse response) throws IOException, ProtocolError, ProtocolException
+		{
+			mNextPage = null;
+			if (response.status().isSuccess())
+			{
+				Iterator<Header<Link>> links = response.headers(HttpHeaders.LINK);
+				while (links.hasNext() && mNextPage == null)
+				{
+					for (Link link : Links.links(links.next()))
+					{
+						if (link.hasParameter("rel") && link.relationTypes().contains(REL_NEXT))
+						{
+							mNextPage = response.responseUri().resolve(link.link());
+							break;
+						}
+					}
+				}
+			}
+			return mRequest.responseHandler(response);
+		}
+	}
+}
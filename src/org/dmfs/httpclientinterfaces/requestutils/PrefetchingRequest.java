@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.requestutils;
+
+import java.io.IOException;
+
+import org.dmfs.httpclientinterfaces.HttpMethod;
+import org.dmfs.httpclientinterfaces.HttpRequest;
+import org.dmfs.httpclientinterfaces.HttpRequestEntity;
+import org.dmfs.httpclientinterfaces.HttpResponse;
+import org.dmfs.httpclientinterfaces.HttpResponseHandler;
+import org.dmfs.httpclientinterfaces.exceptions.ProtocolError;
+import org.dmfs.httpclientinterfaces.exceptions.ProtocolException;
+import org.dmfs.httpclientinterfaces.headers.HeaderList;
+import org.dmfs.httpclientinterfaces.headers.HttpHeaders;
+
+
+/**
+ * A request wrapper that prefetches the {@link HttpHeaders#LINK} targets of successful responses using a {@link LinkPrefetcher}. The prefetches are started
+ * before the response is handed to the response handler of the wrapped request.
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ * 
+ * @param <T>
+ *            The generic type of the wrapped request.
+ */
+public final class PrefetchingRequest<T> implements HttpRequest<T>
+{
+	/**
+	 * The wrapped request.
+	 */
+	private final HttpRequest<T> mRequest;
+
+	/**
+	 * The {@link LinkPrefetcher} to prefetch the links.
+	 */
+	private final LinkPrefetcher mPrefetcher;
+
+
+	/**
+	 * Creates a {@link PrefetchingRequest} wrapper for the given request.
+	 * 
+	 * @param request
+	 *            The request to wrap.
+	 * @param prefetcher
+	 *            The {@link LinkPrefetcher} to prefetch the links of the response.
+	 */
+	public PrefetchingRequest(HttpRequest<T> request, LinkPrefetcher prefetcher)
+	{
+		mRequest = request;
+		mPrefetcher = prefetcher;
+	}
+
+
+	@Override
+	public HttpMethod method()
+	{
+		return mRequest.method();
+	}
+
+
+	@Override
+	public HeaderList headers()
+	{
+		return mRequest.headers();
+	}
+
+
+	@Override
+	public HttpRequestEntity requestEntity()
+	{
+		return mRequest.requestEntity();
+	}
+
+
+	@Override
+	public HttpResponseHandler<T> responseHandler(HttpResponse response) throws IOException, ProtocolError, ProtocolException
+	{
+		if (response.status().isSuccess())
+		{
+			mPrefetcher.prefetch(response);
+		}
+		return mRequest.responseHandler(response);
+	}
+}
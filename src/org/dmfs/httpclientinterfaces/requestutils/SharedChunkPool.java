@@ -0,0 +1,312 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.requestutils;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * A thread safe {@link ChunkPool} with power of two size classes.
+ * <p>
+ * Released chunks are kept in a small cache of the releasing thread first, so a thread that buffers one request after another doesn't need any
+ * synchronization at all. Chunks that don't fit into the thread cache go to a global lock-free pool that's limited to a maximum number of bytes. Requests
+ * for chunks larger than the largest size class are served by allocating new arrays, which are never pooled.
+ * </p>
+ * <p>
+ * Thread caches are not counted against the limit of the global pool. Each of them holds at most the configured number of bytes, so the pool keeps at most
+ * <code>maxPooledBytes + threads * threadCacheBytes</code> bytes. A thread cache is dropped with its thread. Long living threads that stop buffering, e.g.
+ * idle threads of a thread pool, can call {@link #trimThreadCache()} to hand their cached chunks back.
+ * </p>
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class SharedChunkPool implements ChunkPool
+{
+	/**
+	 * The default size of the smallest size class.
+	 */
+	public final static int DEFAULT_MIN_CHUNK_SIZE = 4 * 1024;
+
+	/**
+	 * The default size of the largest size class.
+	 */
+	public final static int DEFAULT_MAX_CHUNK_SIZE = 256 * 1024;
+
+	/**
+	 * The default maximum number of bytes in the global pool.
+	 */
+	public final static long DEFAULT_MAX_POOLED_BYTES = 16 * 1024 * 1024;
+
+	/**
+	 * The default maximum number of bytes cached per thread.
+	 */
+	public final static int DEFAULT_THREAD_CACHE_BYTES = 256 * 1024;
+
+	/**
+	 * The maximum number of chunks per size class in a thread cache.
+	 */
+	private final static int THREAD_CACHE_SLOTS = 8;
+
+	private final static SharedChunkPool INSTANCE = new SharedChunkPool(DEFAULT_MIN_CHUNK_SIZE, DEFAULT_MAX_CHUNK_SIZE, DEFAULT_MAX_POOLED_BYTES,
+		DEFAULT_THREAD_CACHE_BYTES);
+
+	private final int mMinShift;
+	private final int mMaxChunkSize;
+	private final long mMaxPooledBytes;
+	private final int mThreadCacheBytes;
+	private final Queue<byte[]>[] mPools;
+	private final AtomicLong mPooledBytes = new AtomicLong();
+	private final AtomicLong mAllocations = new AtomicLong();
+	private final AtomicLong mRecycled = new AtomicLong();
+
+	private final ThreadLocal<ThreadCache> mThreadCache = new ThreadLocal<ThreadCache>()
+	{
+		@Override
+		protected ThreadCache initialValue()
+		{
+			return new ThreadCache(mPools.length);
+		}
+	};
+
+
+	/**
+	 * Returns the shared {@link SharedChunkPool} with the default limits.
+	 * 
+	 * @return The default instance.
+	 */
+	public static SharedChunkPool getInstance()
+	{
+		return INSTANCE;
+	}
+
+
+	/**
+	 * Creates a {@link SharedChunkPool}.
+	 * 
+	 * @param minChunkSize
+	 *            The size of the smallest size class, must be a power of two.
+	 * @param maxChunkSize
+	 *            The size of the largest size class, must be a power of two.
+	 * @param maxPooledBytes
+	 *            The maximum number of bytes to keep in the global pool.
+	 * @param threadCacheBytes
+	 *            The maximum number of bytes to cache per thread, 0 to disable thread caches. This is not part of maxPooledBytes.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public SharedChunkPool(int minChunkSize, int maxChunkSize, long maxPooledBytes, int threadCacheBytes)
+	{
+		if (Integer.bitCount(minChunkSize) != 1 || Integer.bitCount(maxChunkSize) != 1 || minChunkSize > maxChunkSize)
+		{
+			throw new IllegalArgumentException("Chunk sizes must be powers of two and minChunkSize must not be larger than maxChunkSize");
+		}
+		mMinShift = Integer.numberOfTrailingZeros(minChunkSize);
+		mMaxChunkSize = maxChunkSize;
+		mMaxPooledBytes = maxPooledBytes;
+		mThreadCacheBytes = threadCacheBytes;
+		mPools = new Queue[Integer.numberOfTrailingZeros(maxChunkSize) - mMinShift + 1];
+		for (int i = 0; i < mPools.length; ++i)
+		{
+			mPools[i] = new ConcurrentLinkedQueue<byte[]>();
+		}
+	}
+
+
+	@Override
+	public byte[] acquire(int minSize)
+	{
+		if (minSize < 0)
+		{
+			throw new IllegalArgumentException(String.format("Negative chunk size %d", minSize));
+		}
+		if (minSize > mMaxChunkSize)
+		{
+			mAllocations.incrementAndGet();
+			return new byte[minSize];
+		}
+
+		int sizeClass = sizeClass(minSize);
+		byte[] chunk = mThreadCache.get().poll(sizeClass);
+		if (chunk == null)
+		{
+			chunk = mPools[sizeClass].poll();
+			if (chunk != null)
+			{
+				mPooledBytes.addAndGet(-chunk.length);
+			}
+		}
+
+		if (chunk != null)
+		{
+			mRecycled.incrementAndGet();
+			return chunk;
+		}
+
+		mAllocations.incrementAndGet();
+		return new byte[1 << (sizeClass + mMinShift)];
+	}
+
+
+	@Override
+	public void release(byte[] chunk)
+	{
+		int length = chunk.length;
+		if (length > mMaxChunkSize || Integer.bitCount(length) != 1 || length < 1 << mMinShift)
+		{
+			// not one of ours
+			return;
+		}
+
+		int sizeClass = sizeClass(length);
+		if (mThreadCache.get().offer(sizeClass, chunk, mThreadCacheBytes))
+		{
+			return;
+		}
+
+		pool(sizeClass, chunk);
+	}
+
+
+	/**
+	 * Puts the given chunk into the global pool, unless that's full.
+	 */
+	private void pool(int sizeClass, byte[] chunk)
+	{
+		int length = chunk.length;
+		if (mPooledBytes.addAndGet(length) <= mMaxPooledBytes)
+		{
+			mPools[sizeClass].offer(chunk);
+		}
+		else
+		{
+			// pool is full, leave the chunk to the garbage collector
+			mPooledBytes.addAndGet(-length);
+		}
+	}
+
+
+	/**
+	 * Moves the chunks in the cache of the calling thread to the global pool, as far as the global pool has room for them, and drops the others.
+	 */
+	public void trimThreadCache()
+	{
+		ThreadCache cache = mThreadCache.get();
+		mThreadCache.remove();
+		for (int sizeClass = 0; sizeClass < mPools.length; ++sizeClass)
+		{
+			byte[] chunk;
+			while ((chunk = cache.poll(sizeClass)) != null)
+			{
+				pool(sizeClass, chunk);
+			}
+		}
+	}
+
+
+	/**
+	 * Returns the number of chunks this pool had to allocate.
+	 * 
+	 * @return The number of allocations.
+	 */
+	public long allocations()
+	{
+		return mAllocations.get();
+	}
+
+
+	/**
+	 * Returns the number of chunks that have been served from the pool.
+	 * 
+	 * @return The number of recycled chunks.
+	 */
+	public long recycled()
+	{
+		return mRecycled.get();
+	}
+
+
+	/**
+	 * Returns the number of bytes in the global pool, not including any thread caches.
+	 * 
+	 * @return The number of pooled bytes.
+	 */
+	public long pooledBytes()
+	{
+		return mPooledBytes.get();
+	}
+
+
+	private int sizeClass(int size)
+	{
+		if (size <= 1 << mMinShift)
+		{
+			// this includes 0, which would result in a shift of 32 below
+			return 0;
+		}
+		int shift = 32 - Integer.numberOfLeadingZeros(size - 1);
+		return shift - mMinShift;
+	}
+
+	/**
+	 * A per thread stack of chunks for each size class.
+	 */
+	private final static class ThreadCache
+	{
+		private final byte[][][] mChunks;
+		private final int[] mCounts;
+		private int mBytes;
+
+
+		private ThreadCache(int sizeClasses)
+		{
+			mChunks = new byte[sizeClasses][THREAD_CACHE_SLOTS][];
+			mCounts = new int[sizeClasses];
+		}
+
+
+		private byte[] poll(int sizeClass)
+		{
+			int count = mCounts[sizeClass];
+			if (count == 0)
+			{
+				return null;
+			}
+			byte[][] chunks = mChunks[sizeClass];
+			byte[] result = chunks[--count];
+			chunks[count] = null;
+			mCounts[sizeClass] = count;
+			mBytes -= result.length;
+			return result;
+		}
+
+
+		private boolean offer(int sizeClass, byte[] chunk, int maxBytes)
+		{
+			int count = mCounts[sizeClass];
+			if (count == THREAD_CACHE_SLOTS || mBytes + chunk.length > maxBytes)
+			{
+				return false;
+			}
+			mChunks[sizeClass][count] = chunk;
+			mCounts[sizeClass] = count + 1;
+			mBytes += chunk.length;
+			return true;
+		}
+	}
+}
@@ -0,0 +1,365 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.requestutils;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+
+/**
+ * An {@link OutputStream} that buffers all written content in memory until a threshold is exceeded. At that point the buffered content is moved to a
+ * temporary file and all further content is written to that file.
+ * <p>
+ * The memory buffer takes its chunks from the {@link SharedChunkPool}. Call {@link #release()} to return them and to delete the temporary file when the
+ * content is no longer needed.
+ * </p>
+ * <p>
+ * If a {@link MemoryBudget} is given, memory is reserved from the budget before content is buffered. The content is spilled to the temporary file as soon as
+ * the budget is exhausted, even if the memory threshold has not been reached yet.
+ * </p>
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class SpillingOutputStream extends OutputStream
+{
+	/**
+	 * The chunk size of the memory buffer.
+	 */
+	private final static int CHUNK_SIZE = 16 * 1024;
+
+	private final int mMemoryThreshold;
+	private final File mDirectory;
+	private final int mChunkSize;
+	private final MemoryBudget mMemoryBudget;
+	private long mReserved;
+	private ByteArrayOutputStream mMemoryBuffer;
+
+	/**
+	 * The size of the first chunk of the memory buffer, kept after the memory buffer has been released.
+	 */
+	private int mFirstChunkSize;
+	private File mSpillFile;
+	private OutputStream mSpillStream;
+	private long mLength;
+
+
+	/**
+	 * Creates a {@link SpillingOutputStream}.
+	 * 
+	 * @param memoryThreshold
+	 *            The maximum number of bytes to keep in memory.
+	 * @param directory
+	 *            The directory to create the temporary file in.
+	 */
+	public SpillingOutputStream(int memoryThreshold, File directory)
+	{
+		this(memoryThreshold, directory, CHUNK_SIZE);
+	}
+
+
+	/**
+	 * Creates a {@link SpillingOutputStream} with the given size of the first memory chunk.
+	 *
+	 * @param memoryThreshold
+	 *            The maximum number of bytes to keep in memory.
+	 * @param directory
+	 *            The directory to create the temporary file in.
+	 * @param chunkSize
+	 *            The size of the first chunk of the memory buffer.
+	 */
+	public SpillingOutputStream(int memoryThreshold, File directory, int chunkSize)
+	{
+		this(memoryThreshold, directory, chunkSize, null);
+	}
+
+
+	/**
+	 * Creates a {@link SpillingOutputStream} that reserves its memory buffer from the given {@link MemoryBudget}.
+	 *
+	 * @param memoryThreshold
+	 *            The maximum number of bytes to keep in memory.
+	 * @param directory
+	 *            The directory to create the temporary file in.
+	 * @param chunkSize
+	 *            The size of the first chunk of the memory buffer.
+	 * @param memoryBudget
+	 *            The {@link MemoryBudget} to reserve memory from or <code>null</code> to spill only when the memory threshold is exceeded.
+	 */
+	public SpillingOutputStream(int memoryThreshold, File directory, int chunkSize, MemoryBudget memoryBudget)
+	{
+		mMemoryThreshold = memoryThreshold;
+		mDirectory = directory;
+		mChunkSize = Math.min(chunkSize, Math.max(memoryThreshold, 1));
+		mMemoryBudget = memoryBudget;
+		mMemoryBuffer = new ByteArrayOutputStream(mChunkSize, memoryThreshold, SharedChunkPool.getInstance());
+	}
+
+
+	@Override
+	public void write(int b) throws IOException
+	{
+		target(1).write(b);
+		++mLength;
+	}
+
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException
+	{
+		target(len).write(b, off, len);
+		mLength += len;
+	}
+
+
+	@Override
+	public void flush() throws IOException
+	{
+		if (mSpillStream != null)
+		{
+			mSpillStream.flush();
+		}
+	}
+
+
+	/**
+	 * Finishes writing. In particular this closes the temporary file if there is any. The content remains available until {@link #release()} is called.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		if (mSpillStream != null)
+		{
+			mSpillStream.close();
+			mSpillStream = null;
+		}
+	}
+
+
+	/**
+	 * Returns the number of bytes written to this stream.
+	 * 
+	 * @return The content length.
+	 */
+	public long length()
+	{
+		return mLength;
+	}
+
+
+	/**
+	 * Returns the size of the first chunk of the memory buffer, see {@link ByteArrayOutputStream#firstChunkSize()}.
+	 * 
+	 * @return The size of the first chunk or 0 if no chunk has been allocated.
+	 */
+	public int firstChunkSize()
+	{
+		return mMemoryBuffer == null ? mFirstChunkSize : mMemoryBuffer.firstChunkSize();
+	}
+
+
+	/**
+	 * Returns whether the content has been moved to a temporary file.
+	 * 
+	 * @return <code>true</code> if the memory threshold has been exceeded or the {@link MemoryBudget} was exhausted.
+	 */
+	public boolean spilled()
+	{
+		return mSpillFile != null;
+	}
+
+
+	/**
+	 * Writes the content to the given {@link OutputStream}. Spilled content is transferred using {@link FileChannel#transferTo(long, long, WritableByteChannel)}.
+	 * 
+	 * @param out
+	 *            The {@link OutputStream} to write to.
+	 * @throws IOException
+	 * @throws IllegalStateException
+	 *             if the content has been released already.
+	 */
+	public void writeTo(OutputStream out) throws IOException
+	{
+		if (mSpillFile == null)
+		{
+			if (mMemoryBuffer == null)
+			{
+				throw new IllegalStateException("Content has been released already.");
+			}
+			mMemoryBuffer.writeTo(out);
+			return;
+		}
+
+		writeTo(Channels.newChannel(out));
+	}
+
+
+	/**
+	 * Writes the content to the given {@link WritableByteChannel}. Spilled content is transferred using
+	 * {@link FileChannel#transferTo(long, long, WritableByteChannel)}, which allows the operating system to send it without copying it to the heap.
+	 * 
+	 * @param channel
+	 *            The {@link WritableByteChannel} to write to.
+	 * @throws IOException
+	 * @throws IllegalStateException
+	 *             if the content has been released already.
+	 */
+	public void writeTo(WritableByteChannel channel) throws IOException
+	{
+		if (mSpillFile == null)
+		{
+			if (mMemoryBuffer == null)
+			{
+				throw new IllegalStateException("Content has been released already.");
+			}
+			if (channel instanceof GatheringByteChannel)
+			{
+				mMemoryBuffer.writeTo((GatheringByteChannel) channel);
+			}
+			else
+			{
+				mMemoryBuffer.writeTo(Channels.newOutputStream(channel));
+			}
+			return;
+		}
+
+		flush();
+		RandomAccessFile file = new RandomAccessFile(mSpillFile, "r");
+		try
+		{
+			FileRequestEntity.transfer(file.getChannel(), channel);
+		}
+		finally
+		{
+			file.close();
+		}
+	}
+
+
+	/**
+	 * Frees the memory buffer and deletes the temporary file, if any.
+	 */
+	public void release()
+	{
+		if (mMemoryBuffer != null)
+		{
+			mMemoryBuffer.release();
+			mMemoryBuffer = null;
+		}
+		releaseReservation();
+		if (mSpillStream != null)
+		{
+			try
+			{
+				mSpillStream.close();
+			}
+			catch (IOException e)
+			{
+				// we're deleting the file anyway
+			}
+			mSpillStream = null;
+		}
+		if (mSpillFile != null)
+		{
+			mSpillFile.delete();
+			mSpillFile = null;
+		}
+	}
+
+
+	/**
+	 * Returns the stream to write the next bytes to, spilling the memory buffer if it can't take the given number of bytes.
+	 */
+	private OutputStream target(int length) throws IOException
+	{
+		if (mSpillStream != null)
+		{
+			return mSpillStream;
+		}
+
+		if (mSpillFile != null || mMemoryBuffer == null)
+		{
+			throw new IOException("Stream already closed");
+		}
+
+		if (mLength + length <= mMemoryThreshold && reserve(mLength + length))
+		{
+			return mMemoryBuffer;
+		}
+
+		File spillFile = File.createTempFile("request", ".tmp", mDirectory);
+		OutputStream spillStream = new BufferedOutputStream(new FileOutputStream(spillFile), CHUNK_SIZE);
+		try
+		{
+			mMemoryBuffer.writeTo(spillStream);
+		}
+		catch (IOException e)
+		{
+			spillStream.close();
+			spillFile.delete();
+			throw e;
+		}
+		mFirstChunkSize = mMemoryBuffer.firstChunkSize();
+		mMemoryBuffer.release();
+		mMemoryBuffer = null;
+		releaseReservation();
+		mSpillFile = spillFile;
+		mSpillStream = spillStream;
+		return spillStream;
+	}
+
+
+	/**
+	 * Makes sure the given number of bytes is reserved from the {@link MemoryBudget}. The reservation grows geometrically to keep the number of reservations
+	 * low.
+	 * 
+	 * @return <code>false</code> if the budget is exhausted.
+	 */
+	private boolean reserve(long required)
+	{
+		if (mMemoryBudget == null || required <= mReserved)
+		{
+			return true;
+		}
+
+		long reservation = Math.min(Math.max(required, Math.max(mReserved * 2, mChunkSize)), mMemoryThreshold);
+		if (!mMemoryBudget.tryReserve(reservation - mReserved))
+		{
+			return false;
+		}
+		mReserved = reservation;
+		return true;
+	}
+
+
+	private void releaseReservation()
+	{
+		if (mMemoryBudget != null)
+		{
+			mMemoryBudget.release(mReserved);
+		}
+		mReserved = 0;
+	}
+}
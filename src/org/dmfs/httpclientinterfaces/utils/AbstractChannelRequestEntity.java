@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+
+import org.dmfs.httpclientinterfaces.ChannelRequestEntity;
+
+
+/**
+ * An abstract base class for {@link ChannelRequestEntity}s that implements {@link #writeContent(OutputStream)} by writing to a channel that wraps the
+ * {@link OutputStream}.
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public abstract class AbstractChannelRequestEntity implements ChannelRequestEntity
+{
+
+	@Override
+	public void writeContent(OutputStream out) throws IOException
+	{
+		writeContent(Channels.newChannel(out));
+	}
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+
+import org.dmfs.httpclientinterfaces.ChannelResponseEntity;
+
+
+/**
+ * An abstract base class for {@link ChannelResponseEntity}s that implements {@link #contentStream()} by wrapping the {@link #contentChannel()}.
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public abstract class AbstractChannelResponseEntity implements ChannelResponseEntity
+{
+
+	@Override
+	public InputStream contentStream() throws IOException
+	{
+		return Channels.newInputStream(contentChannel());
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+import org.dmfs.httpclientinterfaces.ChannelRequestEntity;
+import org.dmfs.httpclientinterfaces.ContentType;
+import org.dmfs.httpclientinterfaces.HttpRequestEntity;
+
+
+/**
+ * A {@link ChannelRequestEntity} that wraps any {@link HttpRequestEntity}. If the wrapped entity is a {@link ChannelRequestEntity} itself, it writes
+ * directly to the channel, otherwise its content is written to an {@link OutputStream} that wraps the channel.
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class ChannelRequestEntityAdapter implements ChannelRequestEntity
+{
+	private final HttpRequestEntity mEntity;
+
+
+	public ChannelRequestEntityAdapter(HttpRequestEntity entity)
+	{
+		mEntity = entity;
+	}
+
+
+	@Override
+	public ContentType contentType()
+	{
+		return mEntity.contentType();
+	}
+
+
+	@Override
+	public long contentLength() throws IOException
+	{
+		return mEntity.contentLength();
+	}
+
+
+	@Override
+	public void writeContent(OutputStream out) throws IOException
+	{
+		mEntity.writeContent(out);
+	}
+
+
+	@Override
+	public void writeContent(WritableByteChannel channel) throws IOException
+	{
+		if (mEntity instanceof ChannelRequestEntity)
+		{
+			((ChannelRequestEntity) mEntity).writeContent(channel);
+			return;
+		}
+		// the stream wraps the given arrays without copying them, entities must not close it
+		mEntity.writeContent(Channels.newOutputStream(channel));
+	}
+}
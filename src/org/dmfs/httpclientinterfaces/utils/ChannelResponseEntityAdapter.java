@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2016 Marten Gajda <marten@dmfs.org>
+ *
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dmfs.httpclientinterfaces.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+import org.dmfs.httpclientinterfaces.ChannelResponseEntity;
+import org.dmfs.httpclientinterfaces.ContentType;
+import org.dmfs.httpclientinterfaces.HttpResponseEntity;
+
+
+/**
+ * A {@link ChannelResponseEntity} that wraps any {@link HttpResponseEntity}. If the wrapped entity is a {@link ChannelResponseEntity} itself, its channel is
+ * returned, otherwise the content stream is wrapped in a channel.
+ * 
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public final class ChannelResponseEntityAdapter implements ChannelResponseEntity
+{
+	private final HttpResponseEntity mEntity;
+
+
+	public ChannelResponseEntityAdapter(HttpResponseEntity entity)
+	{
+		mEntity = entity;
+	}
+
+
+	@Override
+	public ContentType contentType() throws IOException
+	{
+		return mEntity.contentType();
+	}
+
+
+	@Override
+	public long contentLength() throws IOException
+	{
+		return mEntity.contentLength();
+	}
+
+
+	@Override
+	public InputStream contentStream() throws IOException
+	{
+		return mEntity.contentStream();
+	}
+
+
+	@Override
+	public ReadableByteChannel contentChannel() throws IOException
+	{
+		if (mEntity instanceof ChannelResponseEntity)
+		{
+			return ((ChannelResponseEntity) mEntity).contentChannel();
+		}
+		return Channels.newChannel(mEntity.contentStream());
+	}
+}
@@ -51,7 +51,7 @@ public final class ConsumingInputStream extends FilterInputStream
 		}
 		finally
 		{
-			close();
+			super.close();
 		}
 	}
 
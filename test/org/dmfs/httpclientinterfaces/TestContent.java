@@ -0,0 +1,40 @@
+package org.dmfs.httpclientinterfaces;
+
+import java.util.Random;
+
+
+/**
+ * Reproducible content for tests.
+ */
+public final class TestContent
+{
+	private TestContent()
+	{
+	}
+
+
+	/**
+	 * Returns random bytes, which don't compress.
+	 */
+	public static byte[] randomContent(int length)
+	{
+		byte[] result = new byte[length];
+		new Random(42).nextBytes(result);
+		return result;
+	}
+
+
+	/**
+	 * Returns compressible, but not trivial content.
+	 */
+	public static byte[] compressibleContent(int length)
+	{
+		byte[] result = new byte[length];
+		Random random = new Random(42);
+		for (int i = 0; i < result.length; ++i)
+		{
+			result[i] = (byte) ('a' + random.nextInt(8));
+		}
+		return result;
+	}
+}
@@ -0,0 +1,525 @@
+package org.dmfs.httpclientinterfaces.authentication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dmfs.httpclientinterfaces.ContentType;
+import org.dmfs.httpclientinterfaces.HttpMethod;
+import org.dmfs.httpclientinterfaces.HttpRequest;
+import org.dmfs.httpclientinterfaces.HttpRequestEntity;
+import org.dmfs.httpclientinterfaces.HttpRequestExecutor;
+import org.dmfs.httpclientinterfaces.HttpResponse;
+import org.dmfs.httpclientinterfaces.HttpResponseEntity;
+import org.dmfs.httpclientinterfaces.HttpResponseHandler;
+import org.dmfs.httpclientinterfaces.HttpStatus;
+import org.dmfs.httpclientinterfaces.OnRedirectCallback;
+import org.dmfs.httpclientinterfaces.OnResponseCallback;
+import org.dmfs.httpclientinterfaces.exceptions.UnauthorizedException;
+import org.dmfs.httpclientinterfaces.headers.Header;
+import org.dmfs.httpclientinterfaces.headers.HeaderList;
+import org.dmfs.httpclientinterfaces.headers.HeaderType;
+import org.dmfs.httpclientinterfaces.headers.HttpHeaders;
+import org.dmfs.httpclientinterfaces.headers.impl.EmptyHeaderList;
+import org.dmfs.httpclientinterfaces.headers.values.Challenge;
+import org.dmfs.httpclientinterfaces.requestutils.DefaultResponseHandler;
+import org.dmfs.httpclientinterfaces.requestutils.EmptyHttpRequestEntity;
+import org.junit.Test;
+
+
+public class AuthenticatingExecutorTest
+{
+
+	@Test
+	public void testBasic() throws Exception
+	{
+		Server server = new Server()
+		{
+			@Override
+			String challenge(URI uri, String authorization)
+			{
+				return "Basic dXNlcjpwYXNz".equals(authorization) ? null : "Basic realm=\"test\"";
+			}
+		};
+		HttpRequestExecutor executor = new AuthenticatingExecutor(server, new AuthenticationCache(), new AuthenticatorFactory()
+		{
+			@Override
+			public Authenticator authenticator(ProtectionSpace protectionSpace, Challenge challenge)
+			{
+				assertEquals("test", protectionSpace.realm());
+				return "basic".equalsIgnoreCase(challenge.scheme()) ? new BasicAuthenticator("user", "pass") : null;
+			}
+		});
+
+		assertEquals("ok", executor.execute(URI.create("http://example.com/dir/a"), new Request()));
+		assertEquals(2, server.requests.get());
+		assertNull(server.authorizations.get(0));
+
+		// the directory of the first request is authenticated preemptively
+		assertEquals("ok", executor.execute(URI.create("http://example.com/dir/sub/b"), new Request()));
+		assertEquals(3, server.requests.get());
+
+		// other paths are not
+		assertEquals("ok", executor.execute(URI.create("http://example.com/other"), new Request()));
+		assertEquals(5, server.requests.get());
+
+		// now the protection space covers both paths
+		assertEquals("ok", executor.execute(URI.create("http://example.com/c"), new Request()));
+		assertEquals(6, server.requests.get());
+	}
+
+
+	@Test
+	public void testWrongCredentials() throws Exception
+	{
+		Server server = new Server()
+		{
+			@Override
+			String challenge(URI uri, String authorization)
+			{
+				return "Basic realm=\"test\"";
+			}
+		};
+		HttpRequestExecutor executor = new AuthenticatingExecutor(server, new AuthenticationCache(), new AuthenticatorFactory()
+		{
+			@Override
+			public Authenticator authenticator(ProtectionSpace protectionSpace, Challenge challenge)
+			{
+				return new BasicAuthenticator("user", "wrong");
+			}
+		});
+
+		try
+		{
+			executor.execute(URI.create("http://example.com/"), new Request());
+			fail("request should fail");
+		}
+		catch (UnauthorizedException e)
+		{
+			// pass
+		}
+		// the request has been repeated exactly once
+		assertEquals(2, server.requests.get());
+	}
+
+
+	@Test
+	public void testDigest() throws Exception
+	{
+		Server server = new Server()
+		{
+			@Override
+			String challenge(URI uri, String authorization)
+			{
+				String challenge = "Digest realm=\"http-auth@example.org\", qop=\"auth, auth-int\", algorithm=MD5, nonce=\"7ypf/xlj9XXwfDPEoM4URrv/xwf94BcCAzFZH4GiTo0v\", opaque=\"FQhe/qaU925kfnzjCev0ciny7QMkPqMAFRtzCUYo5tdS\"";
+				if (authorization == null)
+				{
+					return challenge;
+				}
+				Challenge credentials = HttpHeaders.WWW_AUTHENTICATE.headerFromString(authorization).value().get(0);
+				String ha1 = md5("Mufasa:http-auth@example.org:Circle of Life");
+				String ha2 = md5("GET:" + credentials.parameter("uri"));
+				String expected = md5(ha1 + ":" + credentials.parameter("nonce") + ":" + credentials.parameter("nc") + ":" + credentials.parameter("cnonce")
+					+ ":auth:" + ha2);
+				return expected.equals(credentials.parameter("response")) && "FQhe/qaU925kfnzjCev0ciny7QMkPqMAFRtzCUYo5tdS".equals(credentials.parameter("opaque")) ? null
+					: challenge;
+			}
+		};
+		HttpRequestExecutor executor = new AuthenticatingExecutor(server, new AuthenticationCache(), new AuthenticatorFactory()
+		{
+			@Override
+			public Authenticator authenticator(ProtectionSpace protectionSpace, Challenge challenge)
+			{
+				return new DigestAuthenticator("Mufasa", "Circle of Life");
+			}
+		});
+
+		assertEquals("ok", executor.execute(URI.create("http://example.org/dir/index.html"), new Request()));
+		assertEquals(2, server.requests.get());
+		assertTrue(server.authorizations.get(1).contains("nc=00000001"));
+		assertTrue(server.authorizations.get(1).contains("uri=\"/dir/index.html\""));
+
+		// the nonce is reused with the next nonce count
+		assertEquals("ok", executor.execute(URI.create("http://example.org/dir/index.html?a=b"), new Request()));
+		assertEquals(3, server.requests.get());
+		assertTrue(server.authorizations.get(2).contains("nc=00000002"));
+		assertTrue(server.authorizations.get(2).contains("uri=\"/dir/index.html?a=b\""));
+	}
+
+
+	@Test
+	public void testBearerSingleFlightRefresh() throws Exception
+	{
+		final AtomicInteger tokens = new AtomicInteger();
+		final Server server = new Server()
+		{
+			@Override
+			String challenge(URI uri, String authorization)
+			{
+				if (authorization == null)
+				{
+					return "Bearer realm=\"api\"";
+				}
+				return authorization.equals("Bearer token" + validToken) ? null : "Bearer realm=\"api\", error=\"invalid_token\"";
+			}
+		};
+		final HttpRequestExecutor executor = new AuthenticatingExecutor(server, new AuthenticationCache(), new AuthenticatorFactory()
+		{
+			@Override
+			public Authenticator authenticator(ProtectionSpace protectionSpace, Challenge challenge)
+			{
+				return new BearerAuthenticator(new TokenProvider()
+				{
+					@Override
+					public String newToken() throws IOException
+					{
+						try
+						{
+							// simulate a slow token endpoint
+							Thread.sleep(100);
+						}
+						catch (InterruptedException e)
+						{
+							throw new IOException(e);
+						}
+						return "token" + tokens.incrementAndGet();
+					}
+				});
+			}
+		});
+
+		server.validToken = 1;
+		assertEquals("ok", executor.execute(URI.create("https://example.com/api/"), new Request()));
+		assertEquals(1, tokens.get());
+
+		// expire the token and run many requests in parallel
+		server.validToken = 2;
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicInteger successes = new AtomicInteger();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < 8; ++i)
+		{
+			Thread thread = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						start.await();
+						if ("ok".equals(executor.execute(URI.create("https://example.com/api/items"), new Request())))
+						{
+							successes.incrementAndGet();
+						}
+					}
+					catch (Exception e)
+					{
+						// counted as failure
+					}
+				}
+			};
+			thread.start();
+			threads.add(thread);
+		}
+		start.countDown();
+		for (Thread thread : threads)
+		{
+			thread.join(5000);
+		}
+
+		assertEquals(8, successes.get());
+		// exactly one refresh for all requests
+		assertEquals(2, tokens.get());
+	}
+
+
+	@Test
+	public void testRedirectToOtherServer() throws Exception
+	{
+		Server server = new Server()
+		{
+			@Override
+			URI respondingUri(URI uri)
+			{
+				// everything on a.example.com is redirected to b.example.com
+				return "a.example.com".equals(uri.getHost()) ? URI.create("http://b.example.com" + uri.getRawPath()) : uri;
+			}
+
+
+			@Override
+			String challenge(URI uri, String authorization)
+			{
+				return "Basic dXNlcjpwYXNz".equals(authorization) ? null : "Basic realm=\"b\"";
+			}
+		};
+		final List<ProtectionSpace> protectionSpaces = new ArrayList<ProtectionSpace>();
+		AuthenticationCache cache = new AuthenticationCache();
+		HttpRequestExecutor executor = new AuthenticatingExecutor(server, cache, new AuthenticatorFactory()
+		{
+			@Override
+			public Authenticator authenticator(ProtectionSpace protectionSpace, Challenge challenge)
+			{
+				protectionSpaces.add(protectionSpace);
+				return new BasicAuthenticator("user", "pass");
+			}
+		});
+
+		assertEquals("ok", executor.execute(URI.create("http://a.example.com/dir/a"), new Request()));
+
+		// the challenge belongs to the server that sent it
+		assertEquals(1, protectionSpaces.size());
+		assertEquals("http://b.example.com:80", protectionSpaces.get(0).root());
+		assertNull(cache.authenticator(URI.create("http://a.example.com/dir/a")));
+		assertTrue(cache.authenticator(URI.create("http://b.example.com/dir/a")) != null);
+
+		// the credentials have only been sent to the server that asked for them
+		assertEquals(2, server.requests.get());
+		assertEquals(URI.create("http://a.example.com/dir/a"), server.uris.get(0));
+		assertNull(server.authorizations.get(0));
+		assertEquals(URI.create("http://b.example.com/dir/a"), server.uris.get(1));
+		assertEquals("Basic dXNlcjpwYXNz", server.authorizations.get(1));
+
+		// requests to the first server are still not authenticated preemptively
+		assertEquals("ok", executor.execute(URI.create("http://a.example.com/dir/b"), new Request()));
+		assertNull(server.authorizations.get(2));
+	}
+
+
+	private static String md5(String value)
+	{
+		try
+		{
+			return String.format("%032x", new BigInteger(1, MessageDigest.getInstance("MD5").digest(value.getBytes("UTF-8"))));
+		}
+		catch (Exception e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * A GET request that returns "ok" for successful responses.
+	 */
+	private final static class Request implements HttpRequest<String>
+	{
+		@Override
+		public HttpMethod method()
+		{
+			return HttpMethod.GET;
+		}
+
+
+		@Override
+		public HeaderList headers()
+		{
+			return EmptyHeaderList.INSTANCE;
+		}
+
+
+		@Override
+		public HttpRequestEntity requestEntity()
+		{
+			return EmptyHttpRequestEntity.INSTANCE;
+		}
+
+
+		@Override
+		public HttpResponseHandler<String> responseHandler(HttpResponse response)
+		{
+			if (response.status().isSuccess())
+			{
+				return new HttpResponseHandler<String>()
+				{
+					@Override
+					public String handleResponse(HttpResponse response)
+					{
+						return "ok";
+					}
+				};
+			}
+			return DefaultResponseHandler.getInstance();
+		}
+	}
+
+	/**
+	 * A synchronous {@link HttpRequestExecutor} that simulates a server.
+	 */
+	private abstract static class Server implements HttpRequestExecutor
+	{
+		final AtomicInteger requests = new AtomicInteger();
+		final List<String> authorizations = new ArrayList<String>();
+		final List<URI> uris = new ArrayList<URI>();
+		volatile int validToken;
+
+
+		/**
+		 * Returns the {@link URI} of the response to a request to the given {@link URI}. Override this to simulate redirects.
+		 */
+		URI respondingUri(URI uri)
+		{
+			return uri;
+		}
+
+
+		/**
+		 * Returns the WWW-Authenticate header value to send with a 401 response or <code>null</code> to accept the request.
+		 */
+		abstract String challenge(URI uri, String authorization);
+
+
+		@Override
+		public <T> T execute(URI uri, HttpRequest<T> request) throws UnauthorizedException, IOException
+		{
+			requests.incrementAndGet();
+			String authorization = request.headers().contains(HttpHeaders.AUTHORIZATION) ? request.headers().headersByType(HttpHeaders.AUTHORIZATION).next()
+				.value() : null;
+			synchronized (authorizations)
+			{
+				authorizations.add(authorization);
+				uris.add(uri);
+			}
+			URI respondingUri = respondingUri(uri);
+			String challenge = challenge(respondingUri, authorization);
+			Response response = new Response(uri, respondingUri, challenge == null ? HttpStatus.OK : HttpStatus.UNAUTHORIZED, challenge == null ? EmptyHeaderList.INSTANCE
+				: EmptyHeaderList.INSTANCE.append(HttpHeaders.WWW_AUTHENTICATE.headerFromString(challenge)));
+			try
+			{
+				return request.responseHandler(response).handleResponse(response);
+			}
+			catch (UnauthorizedException e)
+			{
+				throw e;
+			}
+			catch (IOException e)
+			{
+				throw e;
+			}
+			catch (Exception e)
+			{
+				throw new RuntimeException(e);
+			}
+		}
+
+
+		@Override
+		public <T> T execute(URI uri, HttpRequest<T> request, OnRedirectCallback redirectionCallback) throws UnauthorizedException, IOException
+		{
+			return execute(uri, request);
+		}
+
+
+		@Override
+		public <T> void execute(URI uri, HttpRequest<T> request, OnResponseCallback<T> callback)
+		{
+			throw new UnsupportedOperationException();
+		}
+
+
+		@Override
+		public <T> void execute(URI uri, HttpRequest<T> request, OnResponseCallback<T> callback, OnRedirectCallback redirectionCallback)
+		{
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	private final static class Response implements HttpResponse
+	{
+		private final URI mUri;
+		private final URI mRespondingUri;
+		private final HttpStatus mStatus;
+		private final HeaderList mHeaders;
+
+
+		Response(URI uri, URI respondingUri, HttpStatus status, HeaderList headers)
+		{
+			mUri = uri;
+			mRespondingUri = respondingUri;
+			mStatus = status;
+			mHeaders = headers;
+		}
+
+
+		@Override
+		public HttpStatus status()
+		{
+			return mStatus;
+		}
+
+
+		@Override
+		public <T> boolean hasHeader(HeaderType<T> headerType)
+		{
+			return mHeaders.contains(headerType);
+		}
+
+
+		@Override
+		public <T> Header<T> firstHeader(HeaderType<T> headerType) throws NoSuchElementException
+		{
+			return headers(headerType).next();
+		}
+
+
+		@Override
+		public <T> Iterator<Header<T>> headers(HeaderType<T> headerType)
+		{
+			return mHeaders.headersByType(headerType);
+		}
+
+
+		@Override
+		public HttpResponseEntity responseEntity()
+		{
+			return new HttpResponseEntity()
+			{
+				@Override
+				public ContentType contentType()
+				{
+					return null;
+				}
+
+
+				@Override
+				public long contentLength()
+				{
+					return 0;
+				}
+
+
+				@Override
+				public InputStream contentStream()
+				{
+					return new ByteArrayInputStream(new byte[0]);
+				}
+			};
+		}
+
+
+		@Override
+		public URI requestUri()
+		{
+			return mUri;
+		}
+
+
+		@Override
+		public URI responseUri()
+		{
+			return mRespondingUri;
+		}
+	}
+}
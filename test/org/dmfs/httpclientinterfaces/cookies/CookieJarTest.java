@@ -0,0 +1,134 @@
+package org.dmfs.httpclientinterfaces.cookies;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+
+import org.dmfs.httpclientinterfaces.headers.HttpHeaders;
+import org.dmfs.httpclientinterfaces.headers.impl.EmptyHeaderList;
+import org.dmfs.httpclientinterfaces.headers.values.SetCookie;
+import org.junit.Test;
+
+
+public class CookieJarTest
+{
+
+	private static SetCookie setCookie(String value)
+	{
+		return HttpHeaders.SET_COOKIE.headerFromString(value).value();
+	}
+
+
+	@Test
+	public void testDomainAndPathMatching()
+	{
+		CookieJar jar = new CookieJar();
+		URI origin = URI.create("http://www.example.com/shop/cart");
+
+		assertTrue(jar.store(origin, setCookie("host=1")));
+		assertTrue(jar.store(origin, setCookie("domain=2; Domain=.example.com; Path=/")));
+		assertTrue(jar.store(origin, setCookie("shop=3; Path=/shop")));
+		assertFalse(jar.store(origin, setCookie("other=4; Domain=example.org")));
+		assertFalse(jar.store(origin, setCookie("tld=5; Domain=com")));
+		assertFalse(jar.store(origin, setCookie("secure=6; Secure")));
+		assertEquals(3, jar.size());
+
+		// longer paths first
+		assertEquals("host=1; shop=3; domain=2", jar.cookieHeaderValue(URI.create("http://www.example.com/shop/cart?id=1")));
+		assertEquals("host=1; shop=3; domain=2", jar.cookieHeaderValue(URI.create("http://www.example.com/shop")));
+		assertEquals("domain=2", jar.cookieHeaderValue(URI.create("http://www.example.com/shopping")));
+		assertEquals("domain=2", jar.cookieHeaderValue(URI.create("http://example.com")));
+		assertEquals("domain=2", jar.cookieHeaderValue(URI.create("http://a.b.example.com/shop/cart")));
+		assertNull(jar.cookieHeaderValue(URI.create("http://www.example.org/")));
+		assertNull(jar.cookieHeaderValue(URI.create("http://com/")));
+	}
+
+
+	@Test
+	public void testSecure()
+	{
+		CookieJar jar = new CookieJar();
+		assertTrue(jar.store(URI.create("https://example.com/"), setCookie("a=1; Secure; HttpOnly")));
+		assertTrue(jar.store(URI.create("https://example.com/"), setCookie("b=2")));
+
+		assertEquals("a=1; b=2", jar.cookieHeaderValue(URI.create("https://example.com/")));
+		assertEquals("b=2", jar.cookieHeaderValue(URI.create("http://example.com/")));
+	}
+
+
+	@Test
+	public void testReplaceAndDelete()
+	{
+		CookieJar jar = new CookieJar();
+		URI uri = URI.create("http://example.com/");
+		jar.store(uri, setCookie("a=1"));
+		jar.store(uri, setCookie("b=2"));
+		assertEquals("a=1; b=2", jar.cookieHeaderValue(uri));
+
+		// replaced cookies keep their position
+		jar.store(uri, setCookie("a=3"));
+		assertEquals("a=3; b=2", jar.cookieHeaderValue(uri));
+		assertEquals(2, jar.size());
+
+		jar.store(uri, setCookie("a=; Max-Age=0"));
+		assertEquals("b=2", jar.cookieHeaderValue(uri));
+		jar.store(uri, setCookie("b=; Expires=Thu, 01 Jan 1970 00:00:00 GMT"));
+		assertNull(jar.cookieHeaderValue(uri));
+		assertEquals(0, jar.size());
+	}
+
+
+	@Test
+	public void testCache()
+	{
+		CookieJar jar = new CookieJar();
+		URI uri = URI.create("http://example.com/");
+		jar.store(uri, setCookie("a=1"));
+
+		String value = jar.cookieHeaderValue(uri);
+		assertSame(value, jar.cookieHeaderValue(uri));
+
+		jar.store(uri, setCookie("b=2"));
+		assertEquals("a=1; b=2", jar.cookieHeaderValue(uri));
+
+		jar.clear();
+		assertNull(jar.cookieHeaderValue(uri));
+	}
+
+
+	@Test
+	public void testExpiry() throws InterruptedException
+	{
+		CookieJar jar = new CookieJar();
+		URI uri = URI.create("http://example.com/");
+		jar.store(uri, setCookie("a=1; Max-Age=1"));
+		jar.store(uri, setCookie("b=2; Max-Age=3600"));
+		assertEquals("a=1; b=2", jar.cookieHeaderValue(uri));
+		assertEquals(0, jar.sweep());
+
+		Thread.sleep(1100);
+
+		// the cached value contains an expired cookie, so it's recomputed
+		assertEquals("b=2", jar.cookieHeaderValue(uri));
+		assertEquals(2, jar.size());
+		assertEquals(1, jar.sweep());
+		assertEquals(1, jar.size());
+	}
+
+
+	@Test
+	public void testWithCookies()
+	{
+		CookieJar jar = new CookieJar();
+		jar.store(URI.create("http://example.com/"), setCookie("a=1"));
+
+		assertEquals("a=1", jar.withCookies(URI.create("http://example.com/"), EmptyHeaderList.INSTANCE)
+			.headersByType(HttpHeaders.COOKIE).next().value());
+		assertFalse(jar.withCookies(URI.create("http://example.org/"), EmptyHeaderList.INSTANCE).contains(
+			HttpHeaders.COOKIE));
+	}
+}
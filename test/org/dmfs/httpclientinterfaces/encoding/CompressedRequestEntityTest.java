@@ -0,0 +1,255 @@
+package org.dmfs.httpclientinterfaces.encoding;
+
+import static org.dmfs.httpclientinterfaces.TestContent.compressibleContent;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+
+import org.dmfs.httpclientinterfaces.ContentType;
+import org.dmfs.httpclientinterfaces.HttpRequestEntity;
+import org.dmfs.httpclientinterfaces.requestutils.BufferedRequestEntity;
+import org.junit.Test;
+
+
+public class CompressedRequestEntityTest
+{
+
+	private static class TestEntity implements HttpRequestEntity
+	{
+		private final ContentType mContentType;
+		private final byte[] mContent;
+		private final boolean mKnownLength;
+
+
+		private TestEntity(String contentType, byte[] content, boolean knownLength)
+		{
+			mContentType = new ContentType(contentType);
+			mContent = content;
+			mKnownLength = knownLength;
+		}
+
+
+		@Override
+		public ContentType contentType()
+		{
+			return mContentType;
+		}
+
+
+		@Override
+		public long contentLength()
+		{
+			return mKnownLength ? mContent.length : -1;
+		}
+
+
+		@Override
+		public void writeContent(OutputStream out) throws IOException
+		{
+			// write in small pieces to exercise the deflate loop
+			for (int i = 0; i < mContent.length; i += 1000)
+			{
+				out.write(mContent, i, Math.min(1000, mContent.length - i));
+			}
+		}
+	}
+
+
+	private static byte[] write(HttpRequestEntity entity) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		entity.writeContent(out);
+		return out.toByteArray();
+	}
+
+
+	private static byte[] gunzip(byte[] data) throws IOException
+	{
+		InputStream in = new GZIPInputStream(new ByteArrayInputStream(data));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1000];
+		int read;
+		while ((read = in.read(buffer)) >= 0)
+		{
+			out.write(buffer, 0, read);
+		}
+		return out.toByteArray();
+	}
+
+
+	@Test
+	public void testCompressed() throws IOException
+	{
+		byte[] content = compressibleContent(100000);
+		CompressionStatistics statistics = new CompressionStatistics();
+		CompressedRequestEntity entity = new CompressedRequestEntity(new TestEntity("application/json", content, true), 1024, new DeflaterPool(6, 1),
+			statistics);
+
+		assertTrue(entity.compressed());
+		assertEquals(-1, entity.contentLength());
+
+		byte[] compressed = write(entity);
+		assertTrue(compressed.length < content.length);
+		assertArrayEquals(content, gunzip(compressed));
+
+		// the pooled inflating stream must be able to read it as well
+		InputStream in = new InflatingInputStream(new ByteArrayInputStream(compressed), true, new InflaterPool(1));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		int b;
+		while ((b = in.read()) >= 0)
+		{
+			out.write(b);
+		}
+		in.close();
+		assertArrayEquals(content, out.toByteArray());
+
+		assertEquals(1, statistics.compressions());
+		assertEquals(content.length, statistics.bytesIn());
+		assertEquals(compressed.length, statistics.bytesOut());
+		assertTrue(statistics.bytesSaved() > 0);
+	}
+
+
+	@Test
+	public void testUnknownLength() throws IOException
+	{
+		byte[] content = compressibleContent(100);
+		CompressedRequestEntity entity = new CompressedRequestEntity(new TestEntity("text/plain", content, false), 1024, new DeflaterPool(6, 1), null);
+
+		// content of unknown length is always compressed
+		assertTrue(entity.compressed());
+		assertArrayEquals(content, gunzip(write(entity)));
+	}
+
+
+	@Test
+	public void testEmpty() throws IOException
+	{
+		CompressedRequestEntity entity = new CompressedRequestEntity(new TestEntity("text/plain", new byte[0], false), 1024, new DeflaterPool(6, 1), null);
+		assertArrayEquals(new byte[0], gunzip(write(entity)));
+	}
+
+
+	@Test
+	public void testBelowThreshold() throws IOException
+	{
+		byte[] content = compressibleContent(1000);
+		CompressionStatistics statistics = new CompressionStatistics();
+		CompressedRequestEntity entity = new CompressedRequestEntity(new TestEntity("text/plain", content, true), 1024, new DeflaterPool(6, 1), statistics);
+
+		assertFalse(entity.compressed());
+		assertEquals(1000, entity.contentLength());
+		assertArrayEquals(content, write(entity));
+		assertEquals(0, statistics.compressions());
+		assertEquals(1, statistics.skipped());
+	}
+
+
+	@Test
+	public void testIncompressible() throws IOException
+	{
+		byte[] content = compressibleContent(100000);
+		CompressedRequestEntity entity = new CompressedRequestEntity(new TestEntity("image/png", content, true), 1024, new DeflaterPool(6, 1), null);
+
+		assertFalse(entity.compressed());
+		assertEquals(100000, entity.contentLength());
+		assertArrayEquals(content, write(entity));
+	}
+
+
+	@Test
+	public void testIsCompressible()
+	{
+		assertTrue(CompressedRequestEntity.isCompressible(new ContentType("text/csv")));
+		assertTrue(CompressedRequestEntity.isCompressible(new ContentType("application/json")));
+		assertTrue(CompressedRequestEntity.isCompressible(new ContentType("application/xml")));
+		assertTrue(CompressedRequestEntity.isCompressible(new ContentType("application/vnd.api+json")));
+		assertTrue(CompressedRequestEntity.isCompressible(new ContentType("application/atom+xml")));
+		assertTrue(CompressedRequestEntity.isCompressible(new ContentType("application/x-www-form-urlencoded")));
+		assertFalse(CompressedRequestEntity.isCompressible(new ContentType("application/octet-stream")));
+		assertFalse(CompressedRequestEntity.isCompressible(new ContentType("application/zip")));
+		assertFalse(CompressedRequestEntity.isCompressible(new ContentType("image/jpeg")));
+		assertFalse(CompressedRequestEntity.isCompressible(null));
+	}
+
+
+	@Test
+	public void testBuffered() throws IOException
+	{
+		byte[] content = compressibleContent(100000);
+		HttpRequestEntity entity = new BufferedRequestEntity(new CompressedRequestEntity(new TestEntity("text/plain", content, true), 1024, new DeflaterPool(
+			6, 1), null));
+
+		long length = entity.contentLength();
+		byte[] compressed = write(entity);
+		assertEquals(compressed.length, length);
+		assertArrayEquals(content, gunzip(compressed));
+	}
+
+
+	@Test
+	public void testDeflaterReuse() throws IOException
+	{
+		byte[] content = compressibleContent(10000);
+		DeflaterPool pool = new DeflaterPool(6, 1);
+		CompressedRequestEntity entity = new CompressedRequestEntity(new TestEntity("text/plain", content, true), 1024, pool, null);
+
+		for (int i = 0; i < 5; ++i)
+		{
+			assertArrayEquals(content, gunzip(write(entity)));
+		}
+		assertEquals(1, pool.created());
+		assertEquals(1, pool.idle());
+	}
+
+
+	@Test
+	public void testFailingEntity() throws IOException
+	{
+		final IOException error = new IOException("failed");
+		DeflaterPool pool = new DeflaterPool(6, 1);
+		CompressedRequestEntity entity = new CompressedRequestEntity(new TestEntity("text/plain", compressibleContent(10000), true)
+		{
+			@Override
+			public void writeContent(OutputStream out) throws IOException
+			{
+				super.writeContent(out);
+				throw error;
+			}
+		}, 1024, pool, null);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try
+		{
+			entity.writeContent(out);
+			fail("IOException expected");
+		}
+		catch (IOException e)
+		{
+			assertSame(error, e);
+		}
+
+		// no trailer has been written, so the content is not mistaken for complete
+		try
+		{
+			gunzip(out.toByteArray());
+			fail("EOFException expected");
+		}
+		catch (EOFException e)
+		{
+			// pass
+		}
+		assertEquals(1, pool.idle());
+	}
+}
@@ -0,0 +1,184 @@
+package org.dmfs.httpclientinterfaces.encoding;
+
+import static org.dmfs.httpclientinterfaces.TestContent.compressibleContent;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import org.junit.Test;
+
+
+public class InflatingInputStreamTest
+{
+
+	private static byte[] gzip(byte[] content) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		GZIPOutputStream gzip = new GZIPOutputStream(out);
+		gzip.write(content);
+		gzip.close();
+		return out.toByteArray();
+	}
+
+
+	private static byte[] deflate(byte[] content, boolean raw) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DeflaterOutputStream deflate = new DeflaterOutputStream(out, new Deflater(Deflater.DEFAULT_COMPRESSION, raw));
+		deflate.write(content);
+		deflate.close();
+		return out.toByteArray();
+	}
+
+
+	private static byte[] read(InputStream in) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1000];
+		int count;
+		while ((count = in.read(buffer)) >= 0)
+		{
+			out.write(buffer, 0, count);
+		}
+		in.close();
+		return out.toByteArray();
+	}
+
+
+	/**
+	 * Returns an {@link InputStream} that returns at most one byte per read.
+	 */
+	private static InputStream trickle(byte[] data)
+	{
+		return new FilterInputStream(new ByteArrayInputStream(data))
+		{
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException
+			{
+				return super.read(b, off, Math.min(len, 1));
+			}
+
+
+			@Override
+			public int available()
+			{
+				return 0;
+			}
+		};
+	}
+
+
+	@Test
+	public void testGzip() throws IOException
+	{
+		byte[] content = compressibleContent(100000);
+		InflaterPool pool = new InflaterPool(4);
+		assertArrayEquals(content, read(new InflatingInputStream(new ByteArrayInputStream(gzip(content)), true, pool)));
+		assertArrayEquals(content, read(new InflatingInputStream(trickle(gzip(content)), true, pool)));
+
+		// gzip header with file name and comment
+		byte[] gzip = gzip(content);
+		ByteArrayOutputStream withName = new ByteArrayOutputStream();
+		withName.write(gzip, 0, 3);
+		withName.write(8 | 16);
+		withName.write(gzip, 4, 6);
+		withName.write("name.txt\0comment\0".getBytes("US-ASCII"));
+		withName.write(gzip, 10, gzip.length - 10);
+		assertArrayEquals(content, read(new InflatingInputStream(new ByteArrayInputStream(withName.toByteArray()), true, pool)));
+	}
+
+
+	@Test
+	public void testDeflate() throws IOException
+	{
+		byte[] content = compressibleContent(100000);
+		InflaterPool pool = new InflaterPool(4);
+		assertArrayEquals(content, read(new InflatingInputStream(new ByteArrayInputStream(deflate(content, false)), false, pool)));
+		assertArrayEquals(content, read(new InflatingInputStream(new ByteArrayInputStream(deflate(content, true)), false, pool)));
+		assertArrayEquals(content, read(new InflatingInputStream(trickle(deflate(content, false)), false, pool)));
+		assertArrayEquals(new byte[0], read(new InflatingInputStream(new ByteArrayInputStream(deflate(new byte[0], false)), false, pool)));
+	}
+
+
+	@Test
+	public void testCorruptContent() throws IOException
+	{
+		byte[] gzip = gzip(compressibleContent(100000));
+		// flip a bit of the checksum
+		gzip[gzip.length - 6] ^= 1;
+		try
+		{
+			read(new InflatingInputStream(new ByteArrayInputStream(gzip), true, new InflaterPool(4)));
+			fail("corrupt content not detected");
+		}
+		catch (ZipException e)
+		{
+			// pass
+		}
+
+		// flip a bit in each byte of the Adler-32 checksum of zlib content
+		for (int i = 1; i <= 4; ++i)
+		{
+			byte[] zlib = deflate(compressibleContent(100000), false);
+			zlib[zlib.length - i] ^= 1;
+			try
+			{
+				read(new InflatingInputStream(new ByteArrayInputStream(zlib), false, new InflaterPool(4)));
+				fail("corrupt zlib content not detected");
+			}
+			catch (ZipException e)
+			{
+				// pass
+			}
+		}
+
+		byte[] truncated = new byte[100];
+		System.arraycopy(gzip(compressibleContent(100000)), 0, truncated, 0, truncated.length);
+		try
+		{
+			read(new InflatingInputStream(new ByteArrayInputStream(truncated), true, new InflaterPool(4)));
+			fail("truncated content not detected");
+		}
+		catch (IOException e)
+		{
+			// pass
+		}
+	}
+
+
+	@Test
+	public void testPool() throws IOException
+	{
+		byte[] content = compressibleContent(100000);
+		byte[] gzip = gzip(content);
+		InflaterPool pool = new InflaterPool(2);
+
+		for (int i = 0; i < 10; ++i)
+		{
+			assertArrayEquals(content, read(new InflatingInputStream(new ByteArrayInputStream(gzip), true, pool)));
+		}
+		// the inflater has been reused
+		assertEquals(1, pool.created());
+		assertEquals(1, pool.idle());
+
+		InputStream in1 = new InflatingInputStream(new ByteArrayInputStream(gzip), true, pool);
+		InputStream in2 = new InflatingInputStream(new ByteArrayInputStream(gzip), true, pool);
+		InputStream in3 = new InflatingInputStream(new ByteArrayInputStream(gzip), true, pool);
+		assertEquals(3, pool.created());
+		in1.close();
+		in2.close();
+		in3.close();
+		// one inflater exceeds the pool size
+		assertEquals(2, pool.idle());
+	}
+}
@@ -0,0 +1,151 @@
+package org.dmfs.httpclientinterfaces.headers;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.Charset;
+import java.util.Iterator;
+
+import org.dmfs.httpclientinterfaces.headers.impl.AbstractComplexHeaderList;
+import org.dmfs.httpclientinterfaces.headers.impl.ByteArrayHeaderList;
+import org.dmfs.httpclientinterfaces.headers.impl.HeaderTypeRegistry;
+import org.dmfs.httpclientinterfaces.headers.impl.SimpleHeaderType;
+import org.dmfs.httpclientinterfaces.headers.impl.StringHeaderValueConverter;
+import org.junit.Test;
+
+
+public class ByteArrayHeaderListTest
+{
+	private final static Charset LATIN1 = Charset.forName("ISO-8859-1");
+
+
+	/**
+	 * Builds a list from name/value pairs, header names are resolved with the given registry.
+	 */
+	private static ByteArrayHeaderList list(HeaderTypeRegistry headerTypes, String... namesAndValues)
+	{
+		StringBuilder block = new StringBuilder();
+		int count = namesAndValues.length / 2;
+		int[] offsets = new int[count * ByteArrayHeaderList.FIELDS];
+		for (int i = 0; i < count; ++i)
+		{
+			offsets[i * ByteArrayHeaderList.FIELDS] = block.length();
+			block.append(namesAndValues[i * 2]);
+			offsets[i * ByteArrayHeaderList.FIELDS + 1] = block.length();
+			block.append(namesAndValues[i * 2 + 1]);
+			offsets[i * ByteArrayHeaderList.FIELDS + 2] = block.length();
+			offsets[i * ByteArrayHeaderList.FIELDS + 3] = headerTypes.indexOf(namesAndValues[i * 2]);
+		}
+		return new ByteArrayHeaderList(block.toString().getBytes(LATIN1), offsets, count, headerTypes);
+	}
+
+
+	@Test
+	public void test()
+	{
+		HeaderType<String> known = new SimpleHeaderType<String>("Known", new StringHeaderValueConverter());
+		HeaderType<String> unknown = new SimpleHeaderType<String>("X-Unknown", new StringHeaderValueConverter());
+		HeaderType<String> other = new SimpleHeaderType<String>("other", new StringHeaderValueConverter());
+
+		HeaderTypeRegistry registry = new HeaderTypeRegistry(known);
+		HeaderList headers = list(registry, "kNOWN", "a", "X-Unknown", "\u00e9t\u00e9", "Known", "b");
+
+		assertEquals(3, headers.size());
+		assertTrue(headers.contains(known));
+		assertTrue(headers.contains(unknown));
+		assertFalse(headers.contains(other));
+		// names are case-insensitive
+		assertTrue(headers.contains(new SimpleHeaderType<String>("x-unknown", new StringHeaderValueConverter())));
+		assertTrue(headers.contains(new SimpleHeaderType<String>("KNOWN", new StringHeaderValueConverter())));
+
+		assertTrue(headers.contains(known.headerFromString("b")));
+		assertTrue(headers.contains(unknown.headerFromString("\u00e9t\u00e9")));
+		assertFalse(headers.contains(known.headerFromString("c")));
+		assertFalse(headers.contains(other.headerFromString("a")));
+
+		Iterator<Header<?>> iterator = headers.iterator();
+		Header<?> header = iterator.next();
+		assertSame(known, header.headerType());
+		assertEquals("a", header.value());
+		header = iterator.next();
+		assertEquals("X-Unknown", header.headerType().headerName());
+		// unknown types are interned
+		assertSame(registry.headerType("x-unknown"), header.headerType());
+		assertEquals("\u00e9t\u00e9", header.value());
+		header = iterator.next();
+		assertSame(known, header.headerType());
+		assertEquals("b", header.value());
+		assertFalse(iterator.hasNext());
+
+		Iterator<Header<String>> iterator2 = headers.headersByType(known);
+		assertEquals("a", iterator2.next().value());
+		assertEquals("b", iterator2.next().value());
+		assertFalse(iterator2.hasNext());
+
+		assertFalse(headers.headersByType(other).hasNext());
+	}
+
+
+	@Test
+	public void testEmptyValue()
+	{
+		HeaderType<String> unknown = new SimpleHeaderType<String>("X-Empty", new StringHeaderValueConverter());
+		HeaderList headers = list(new HeaderTypeRegistry(), "X-Empty", "");
+		assertEquals("", headers.headersByType(unknown).next().value());
+	}
+
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOffsetTableTooSmall()
+	{
+		new ByteArrayHeaderList(new byte[0], new int[ByteArrayHeaderList.FIELDS], 2, new HeaderTypeRegistry());
+	}
+
+
+	@Test
+	public void testAppendDoesNotParse()
+	{
+		final int[] parsed = new int[1];
+		HeaderType<String> counting = new SimpleHeaderType<String>("Counted", new HeaderValueConverter<String>()
+		{
+			@Override
+			public String parseValue(String headerValueString)
+			{
+				++parsed[0];
+				return headerValueString;
+			}
+
+
+			@Override
+			public String valueString(String headerValue)
+			{
+				return headerValue;
+			}
+		});
+		HeaderType<String> added = new SimpleHeaderType<String>("X-Added", new StringHeaderValueConverter());
+
+		HeaderList headers = list(new HeaderTypeRegistry(counting), "Counted", "a", "Counted", "b");
+		// append enough headers to flatten the chain several times
+		for (int i = 0; i < AbstractComplexHeaderList.MAX_DEPTH * 25; ++i)
+		{
+			headers = headers.append(added.headerFromString("x" + i));
+			if (i == 50)
+			{
+				headers = headers.remove(added);
+			}
+		}
+		assertEquals(0, parsed[0]);
+
+		assertEquals(51, headers.size());
+		assertTrue(headers.contains(counting));
+		Iterator<Header<String>> iterator = headers.headersByType(added);
+		for (int i = 51; i < AbstractComplexHeaderList.MAX_DEPTH * 25; ++i)
+		{
+			assertEquals("x" + i, iterator.next().value());
+		}
+		assertFalse(iterator.hasNext());
+		Iterator<Header<String>> iterator2 = headers.headersByType(counting);
+		assertEquals("a", iterator2.next().value());
+		assertEquals("b", iterator2.next().value());
+		assertFalse(iterator2.hasNext());
+	}
+}
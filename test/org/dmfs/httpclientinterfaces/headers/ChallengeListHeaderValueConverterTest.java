@@ -0,0 +1,49 @@
+package org.dmfs.httpclientinterfaces.headers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+
+import org.dmfs.httpclientinterfaces.headers.impl.ChallengeListHeaderValueConverter;
+import org.dmfs.httpclientinterfaces.headers.values.Challenge;
+import org.junit.Test;
+
+
+public class ChallengeListHeaderValueConverterTest
+{
+
+	@Test
+	public void testParseValue()
+	{
+		ChallengeListHeaderValueConverter conv = new ChallengeListHeaderValueConverter();
+
+		List<Challenge> challenges = conv
+			.parseValue("Newauth realm=\"apps\", type=1, title=\"Login to \\\"apps\\\"\", Basic realm=\"simple\", Negotiate, Token abc+/def==");
+		assertEquals(4, challenges.size());
+
+		assertEquals("Newauth", challenges.get(0).scheme());
+		assertEquals("apps", challenges.get(0).parameter("realm"));
+		assertEquals("1", challenges.get(0).parameter("TYPE"));
+		assertEquals("Login to \"apps\"", challenges.get(0).parameter("title"));
+
+		assertEquals("Basic", challenges.get(1).scheme());
+		assertEquals("simple", challenges.get(1).parameter("realm"));
+
+		assertEquals("Negotiate", challenges.get(2).scheme());
+		assertNull(challenges.get(2).token68());
+		assertEquals(0, challenges.get(2).parameterNames().size());
+
+		assertEquals("Token", challenges.get(3).scheme());
+		assertEquals("abc+/def==", challenges.get(3).token68());
+	}
+
+
+	@Test
+	public void testValueString()
+	{
+		ChallengeListHeaderValueConverter conv = new ChallengeListHeaderValueConverter();
+		String value = "Basic realm=\"a \\\"b\\\"\", charset=\"UTF-8\", Token abc==";
+		assertEquals(value, conv.valueString(conv.parseValue(value)));
+	}
+}
@@ -4,6 +4,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
+import java.util.List;
 
 import org.dmfs.httpclientinterfaces.ContentType;
 import org.dmfs.httpclientinterfaces.headers.impl.ContentTypeListHeaderValueConverter;
@@ -35,4 +36,21 @@ public class ContentTypeListHeaderValueConverterTest
 
 	}
 
+
+	@Test
+	public void testUnquoted()
+	{
+		ContentTypeListHeaderValueConverter conv = new ContentTypeListHeaderValueConverter();
+
+		// the last character before a comma must not be dropped
+		List<ContentType> result = conv.parseValue("text/html,text/plain;a=\"x,y\",image/png");
+		assertEquals(3, result.size());
+		assertEquals("text/html", result.get(0).toString());
+		assertEquals("x,y", result.get(1).param("a").value);
+		assertEquals("image/png", result.get(2).toString());
+
+		// an unterminated quoted string extends to the end
+		assertEquals(2, conv.parseValue("text/html, text/plain;a=\"x,y").size());
+	}
+
 }
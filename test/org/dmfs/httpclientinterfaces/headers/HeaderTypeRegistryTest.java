@@ -0,0 +1,77 @@
+package org.dmfs.httpclientinterfaces.headers;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.Charset;
+
+import org.dmfs.httpclientinterfaces.headers.impl.HeaderTypeRegistry;
+import org.dmfs.httpclientinterfaces.headers.impl.SimpleHeaderType;
+import org.dmfs.httpclientinterfaces.headers.impl.StringHeaderValueConverter;
+import org.junit.Test;
+
+
+public class HeaderTypeRegistryTest
+{
+	private final static Charset LATIN1 = Charset.forName("ISO-8859-1");
+
+
+	@Test
+	public void testWellKnown()
+	{
+		HeaderTypeRegistry registry = HeaderTypeRegistry.getInstance();
+		assertSame(HttpHeaders.LINK, registry.headerType("Link"));
+		assertSame(HttpHeaders.LINK, registry.headerType("lInK"));
+		assertSame(HttpHeaders.WWW_AUTHENTICATE, registry.headerType("www-authenticate"));
+
+		byte[] wire = "xxSET-COOKIE: a=b".getBytes(LATIN1);
+		assertSame(HttpHeaders.SET_COOKIE, registry.headerType(wire, 2, 10));
+
+		int hash = 0;
+		for (int i = 2; i < 12; ++i)
+		{
+			hash = HeaderTypeRegistry.hash(hash, wire[i]);
+		}
+		assertEquals("set-cookie".hashCode(), hash);
+		assertEquals(HttpHeaders.SET_COOKIE.hashCode(), hash);
+		assertSame(HttpHeaders.SET_COOKIE, registry.headerType(registry.indexOf(hash, wire, 2, 10)));
+		assertEquals(-1, registry.indexOf(hash, wire, 2, 9));
+	}
+
+
+	@Test
+	public void testUnknown()
+	{
+		HeaderTypeRegistry registry = new HeaderTypeRegistry();
+		HeaderType<?> type = registry.headerType("X-Unknown");
+		assertEquals("X-Unknown", type.headerName());
+		assertSame(type, registry.headerType("x-unknown"));
+		assertSame(type, registry.headerType("X-UNKNOWN".getBytes(LATIN1), 0, 9));
+		assertEquals(-1, registry.indexOf("X-Unknown"));
+		assertEquals("value", type.headerFromString("value").value());
+
+		// the number of interned types is limited
+		for (int i = 0; i < HeaderTypeRegistry.MAX_INTERNED * 2; ++i)
+		{
+			registry.headerType("X-Header-" + i);
+		}
+		assertNotSame(registry.headerType("X-Header-" + HeaderTypeRegistry.MAX_INTERNED), registry.headerType("X-Header-"
+			+ HeaderTypeRegistry.MAX_INTERNED));
+		assertEquals(registry.headerType("X-Header-" + HeaderTypeRegistry.MAX_INTERNED), registry.headerType("X-Header-" + HeaderTypeRegistry.MAX_INTERNED));
+		assertSame(type, registry.headerType("X-Unknown"));
+	}
+
+
+	@Test
+	public void testPrecedence()
+	{
+		HeaderType<String> link = new SimpleHeaderType<String>("LINK", new StringHeaderValueConverter());
+		HeaderType<String> other = new SimpleHeaderType<String>("Other", new StringHeaderValueConverter());
+		HeaderTypeRegistry registry = new HeaderTypeRegistry(HeaderTypeRegistry.getInstance(), link, other);
+		assertSame(link, registry.headerType("Link"));
+		assertSame(other, registry.headerType("other"));
+		assertSame(HttpHeaders.COOKIE, registry.headerType("cookie"));
+		// the defaults are not affected
+		assertSame(HttpHeaders.LINK, HeaderTypeRegistry.getInstance().headerType("Link"));
+		assertEquals(-1, HeaderTypeRegistry.getInstance().indexOf("Other"));
+	}
+}
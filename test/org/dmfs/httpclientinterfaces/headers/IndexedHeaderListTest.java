@@ -0,0 +1,249 @@
+package org.dmfs.httpclientinterfaces.headers;
+
+import static org.junit.Assert.*;
+
+import java.util.Iterator;
+
+import org.dmfs.httpclientinterfaces.headers.impl.ArrayHeaderList;
+import org.dmfs.httpclientinterfaces.headers.impl.IndexedHeaderList;
+import org.dmfs.httpclientinterfaces.headers.impl.SimpleHeaderType;
+import org.dmfs.httpclientinterfaces.headers.impl.StringHeaderValueConverter;
+import org.junit.Test;
+
+
+public class IndexedHeaderListTest
+{
+	private final static HeaderType<String> TYPE1 = new SimpleHeaderType<String>("type1", new StringHeaderValueConverter());
+	private final static HeaderType<String> TYPE2 = new SimpleHeaderType<String>("type2", new StringHeaderValueConverter());
+	private final static HeaderType<String> TYPE3 = new SimpleHeaderType<String>("type3", new StringHeaderValueConverter());
+
+
+	@Test
+	public void test()
+	{
+		Header<String> a = TYPE1.headerFromString("a");
+		Header<String> b = TYPE2.headerFromString("b");
+		Header<String> c = TYPE1.headerFromString("c");
+
+		IndexedHeaderList headers = new IndexedHeaderList(a, b, c);
+
+		assertEquals(3, headers.size());
+		assertTrue(headers.contains(TYPE1));
+		assertTrue(headers.contains(TYPE2));
+		assertFalse(headers.contains(TYPE3));
+		// equal types are found too
+		assertTrue(headers.contains(new SimpleHeaderType<String>("type2", new StringHeaderValueConverter())));
+
+		assertTrue(headers.contains(c));
+		assertFalse(headers.contains(TYPE1.headerFromString("c")));
+
+		Iterator<Header<?>> iterator = headers.iterator();
+		assertSame(a, iterator.next());
+		assertSame(b, iterator.next());
+		assertSame(c, iterator.next());
+		assertFalse(iterator.hasNext());
+
+		Iterator<Header<String>> iterator2 = headers.headersByType(TYPE1);
+		assertSame(a, iterator2.next());
+		assertSame(c, iterator2.next());
+		assertFalse(iterator2.hasNext());
+		assertFalse(headers.headersByType(TYPE3).hasNext());
+
+		assertSame(a, headers.header(TYPE1));
+		assertSame(b, headers.header(TYPE2));
+		assertNull(headers.header(TYPE3));
+	}
+
+
+	@Test
+	public void testAppendRemove()
+	{
+		Header<String> a = TYPE1.headerFromString("a");
+		Header<String> b = TYPE2.headerFromString("b");
+		Header<String> c = TYPE3.headerFromString("c");
+
+		HeaderList headers = new IndexedHeaderList();
+		assertEquals(0, headers.size());
+		assertFalse(headers.contains(TYPE1));
+
+		headers = new IndexedHeaderList(headers.append(a).append(new ArrayHeaderList(b, c)));
+		assertEquals(3, headers.size());
+		assertTrue(headers.contains(TYPE3));
+
+		HeaderList removed = headers.remove(TYPE1, TYPE3);
+		assertTrue(removed instanceof IndexedHeaderList);
+		assertEquals(1, removed.size());
+		assertFalse(removed.contains(TYPE1));
+		assertSame(b, removed.iterator().next());
+
+		// nothing to remove
+		assertSame(removed, removed.remove(TYPE1));
+		assertSame(headers, headers.append());
+	}
+
+
+	@Test
+	public void testAutomaticFlattening()
+	{
+		HeaderList headers = new ArrayHeaderList(TYPE3.headerFromString("c"), TYPE3.headerFromString("d"));
+		for (int i = 0; i < 100; ++i)
+		{
+			headers = headers.append(TYPE1.headerFromString("a" + i));
+			if (i % 3 == 0)
+			{
+				headers = headers.remove(TYPE2);
+			}
+			headers = headers.append(TYPE2.headerFromString("b" + i));
+		}
+		headers = headers.remove(TYPE3);
+
+		assertEquals(101, headers.size());
+		assertFalse(headers.contains(TYPE3));
+		Iterator<Header<String>> iterator = headers.headersByType(TYPE1);
+		for (int i = 0; i < 100; ++i)
+		{
+			assertEquals("a" + i, iterator.next().value());
+		}
+		assertFalse(iterator.hasNext());
+		// the last iteration removed all previous TYPE2 headers
+		iterator = headers.headersByType(TYPE2);
+		assertEquals("b99", iterator.next().value());
+		assertFalse(iterator.hasNext());
+	}
+
+
+	@Test
+	public void testAppendInPlace()
+	{
+		HeaderList headers = new IndexedHeaderList(TYPE1.headerFromString("a"));
+		for (int i = 0; i < 100; ++i)
+		{
+			headers = headers.append(TYPE2.headerFromString("b" + i));
+			assertTrue(headers instanceof IndexedHeaderList);
+		}
+		assertEquals(101, headers.size());
+
+		// appending to the same list twice must not affect the other result or the original list
+		HeaderList branch1 = headers.append(TYPE3.headerFromString("c1"));
+		HeaderList branch2 = headers.append(TYPE3.headerFromString("c2"), TYPE1.headerFromString("d"));
+		assertEquals(101, headers.size());
+		assertFalse(headers.contains(TYPE3));
+		assertEquals(102, branch1.size());
+		assertEquals(103, branch2.size());
+		assertEquals("c1", ((IndexedHeaderList) branch1).header(TYPE3).value());
+		assertEquals("c2", ((IndexedHeaderList) branch2).header(TYPE3).value());
+		assertFalse(branch1.headersByType(TYPE3).next() == branch2.headersByType(TYPE3).next());
+		Iterator<Header<String>> iterator = branch1.headersByType(TYPE1);
+		assertEquals("a", iterator.next().value());
+		assertFalse(iterator.hasNext());
+		iterator = branch2.headersByType(TYPE1);
+		assertEquals("a", iterator.next().value());
+		assertEquals("d", iterator.next().value());
+		assertFalse(iterator.hasNext());
+	}
+
+
+	@Test
+	public void testBuilder()
+	{
+		IndexedHeaderList.Builder builder = new IndexedHeaderList.Builder(1);
+		for (int i = 0; i < 100; ++i)
+		{
+			builder.add(TYPE1.headerFromString("a" + i), TYPE2.headerFromString("b" + i));
+		}
+		builder.remove(TYPE2).add(TYPE3.headerFromString("c"));
+		IndexedHeaderList headers = builder.build();
+
+		assertEquals(101, headers.size());
+		assertFalse(headers.contains(TYPE2));
+		Iterator<Header<String>> iterator = headers.headersByType(TYPE1);
+		for (int i = 0; i < 100; ++i)
+		{
+			assertEquals("a" + i, iterator.next().value());
+		}
+		assertFalse(iterator.hasNext());
+		assertEquals("c", headers.header(TYPE3).value());
+
+		// the builder can still be used without affecting the list
+		builder.add(TYPE2.headerFromString("b"));
+		assertFalse(headers.contains(TYPE2));
+		assertEquals(102, builder.build().size());
+	}
+
+
+	@Test
+	public void testFlatten()
+	{
+		HeaderList nested = new ArrayHeaderList(TYPE1.headerFromString("a")).append(TYPE2.headerFromString("b"), TYPE1.headerFromString("c")).remove(TYPE2);
+		IndexedHeaderList headers = new IndexedHeaderList(nested);
+		assertEquals(2, headers.size());
+		assertFalse(headers.contains(TYPE2));
+		Iterator<Header<String>> iterator = headers.headersByType(TYPE1);
+		assertEquals("a", iterator.next().value());
+		assertEquals("c", iterator.next().value());
+		assertFalse(iterator.hasNext());
+	}
+
+
+	@Test
+	public void testCaseSensitiveHeaderType()
+	{
+		// a HeaderType that follows the old contract, i.e. compares names case-sensitively and returns the hash code of the name
+		HeaderType<String> legacy = new HeaderType<String>()
+		{
+			private final HeaderType<String> mDelegate = new SimpleHeaderType<String>("X-Legacy", new StringHeaderValueConverter());
+
+
+			@Override
+			public String headerName()
+			{
+				return "X-Legacy";
+			}
+
+
+			@Override
+			public Header<String> headerFromString(String headerValueString)
+			{
+				return mDelegate.headerFromString(headerValueString);
+			}
+
+
+			@Override
+			public Header<String> header(String value)
+			{
+				return mDelegate.header(value);
+			}
+
+
+			@Override
+			public String valueToString(String headerValue)
+			{
+				return headerValue;
+			}
+
+
+			@Override
+			public int hashCode()
+			{
+				return headerName().hashCode();
+			}
+
+
+			@Override
+			public boolean equals(Object obj)
+			{
+				return obj instanceof HeaderType && headerName().equals(((HeaderType<?>) obj).headerName());
+			}
+		};
+
+		IndexedHeaderList headers = new IndexedHeaderList(TYPE1.headerFromString("a"), legacy.headerFromString("b"));
+		assertTrue(headers.contains(legacy));
+		assertTrue(headers.contains(new SimpleHeaderType<String>("X-Legacy", new StringHeaderValueConverter())));
+		assertTrue(headers.contains(new SimpleHeaderType<String>("x-legacy", new StringHeaderValueConverter())));
+
+		headers = new IndexedHeaderList(TYPE1.headerFromString("a"), new SimpleHeaderType<String>("x-legacy", new StringHeaderValueConverter())
+			.headerFromString("b"));
+		assertTrue(headers.contains(legacy));
+		assertEquals("b", headers.header(legacy).value());
+	}
+}
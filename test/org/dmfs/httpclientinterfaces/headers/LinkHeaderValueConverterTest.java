@@ -1,10 +1,13 @@
 package org.dmfs.httpclientinterfaces.headers;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.net.URI;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 
 import org.dmfs.httpclientinterfaces.ContentType;
 import org.dmfs.httpclientinterfaces.headers.impl.LinkHeaderValueConverter;
@@ -29,4 +32,34 @@ public class LinkHeaderValueConverterTest
 		assertEquals(new HashSet<>(Arrays.asList(new String[] { "\"abcdef\"" })), l.rawParameter("token"));
 	}
 
+
+	@Test
+	public void testMultipleLinks()
+	{
+		LinkHeaderValueConverter conv = new LinkHeaderValueConverter();
+		String value = "<https://api.example.com/items?page=1>; rel=\"prev\", <https://api.example.com/items?a=1,2>; title=\"x, y\"; rel=\"next\",, ";
+
+		// parseValue only returns the first link, but keeps the complete value
+		Link first = conv.parseValue(value);
+		assertEquals(URI.create("https://api.example.com/items?page=1"), first.link());
+		assertEquals(Collections.singleton("prev"), first.relationTypes());
+		assertEquals(value, conv.valueString(first));
+
+		List<Link> links = conv.parseValues(value);
+		assertEquals(2, links.size());
+		assertEquals(URI.create("https://api.example.com/items?page=1"), links.get(0).link());
+		assertEquals(URI.create("https://api.example.com/items?a=1,2"), links.get(1).link());
+		assertEquals(Collections.singleton("next"), links.get(1).relationTypes());
+		assertEquals("x, y", links.get(1).title());
+
+		assertTrue(conv.parseValues("").isEmpty());
+	}
+
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidSecondLink()
+	{
+		new LinkHeaderValueConverter().parseValues("<a>; rel=next, b; rel=prev");
+	}
+
 }
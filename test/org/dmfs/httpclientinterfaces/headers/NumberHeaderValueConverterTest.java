@@ -0,0 +1,53 @@
+package org.dmfs.httpclientinterfaces.headers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.dmfs.httpclientinterfaces.headers.impl.NumberHeaderValueConverter;
+import org.junit.Test;
+
+
+public class NumberHeaderValueConverterTest
+{
+
+	@Test
+	public void test()
+	{
+		NumberHeaderValueConverter conv = new NumberHeaderValueConverter();
+
+		assertEquals(Long.valueOf(0), conv.parseValue("0"));
+		assertEquals(Long.valueOf(1234), conv.parseValue(" 1234 "));
+		assertEquals(Long.valueOf(Long.MAX_VALUE), conv.parseValue(Long.toString(Long.MAX_VALUE)));
+		assertEquals("1234", conv.valueString(1234L));
+	}
+
+
+	@Test
+	public void testInvalid()
+	{
+		NumberHeaderValueConverter conv = new NumberHeaderValueConverter();
+
+		for (String value : new String[] { "", " ", "-1", "+1", "1 2", "12a", "0x10", "99999999999999999999" })
+		{
+			try
+			{
+				conv.parseValue(value);
+				fail("IllegalArgumentException expected for '" + value + "'");
+			}
+			catch (IllegalArgumentException e)
+			{
+				// pass
+			}
+		}
+
+		try
+		{
+			conv.valueString(-1L);
+			fail("IllegalArgumentException expected");
+		}
+		catch (IllegalArgumentException e)
+		{
+			// pass
+		}
+	}
+}
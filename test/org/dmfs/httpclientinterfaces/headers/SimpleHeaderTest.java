@@ -0,0 +1,73 @@
+package org.dmfs.httpclientinterfaces.headers;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.Charset;
+
+import org.dmfs.httpclientinterfaces.headers.impl.HeaderFields;
+import org.dmfs.httpclientinterfaces.headers.impl.SimpleHeaderType;
+import org.dmfs.httpclientinterfaces.headers.impl.StringHeaderValueConverter;
+import org.junit.Test;
+
+
+public class SimpleHeaderTest
+{
+	private final static Charset LATIN1 = Charset.forName("ISO-8859-1");
+
+
+	@Test
+	public void testWireBytes()
+	{
+		WireEncodedHeader<String> header = (WireEncodedHeader<String>) new SimpleHeaderType<String>("User-Agent", new StringHeaderValueConverter())
+			.header("test/1.0 (\u00e9)");
+		byte[] wireBytes = header.wireBytes();
+		assertEquals("User-Agent: test/1.0 (\u00e9)\r\n", new String(wireBytes, LATIN1));
+		// the wire form is cached
+		assertSame(wireBytes, header.wireBytes());
+		assertSame(header.valueString(), header.valueString());
+
+		assertEquals("Cookie: a=b\r\n", new String(HeaderFields.wireBytes(HttpHeaders.COOKIE.headerFromString(" a=b ")), LATIN1));
+	}
+
+
+	@Test
+	public void testIllegalName()
+	{
+		for (String name : new String[] { "Bad Name", "Bad:Name", "Bad\r\nName", "Bad(Name)", "Bad/Name", "Bad=Name", "Bad\"Name", "Bad{Name}", "", "" + (char) 0x7f })
+		{
+			try
+			{
+				HeaderFields.wireBytes(new SimpleHeaderType<String>(name, new StringHeaderValueConverter()).header("value"));
+				fail("IllegalArgumentException expected for " + name);
+			}
+			catch (IllegalArgumentException e)
+			{
+				// pass
+			}
+		}
+		// all other visible characters are allowed in a token
+		assertEquals("X-!#$%&'*+.^_`|~: value\r\n",
+			new String(HeaderFields.wireBytes(new SimpleHeaderType<String>("X-!#$%&'*+.^_`|~", new StringHeaderValueConverter()).header("value")), LATIN1));
+	}
+
+
+	@Test
+	public void testIllegalValue()
+	{
+		for (String value : new String[] { "injected\r\nX-Other: value", "a\u007fb", "a\u0000b", "\u0100" })
+		{
+			try
+			{
+				HeaderFields.wireBytes(new SimpleHeaderType<String>("X-Test", new StringHeaderValueConverter()).header(value));
+				fail("IllegalArgumentException expected for " + value);
+			}
+			catch (IllegalArgumentException e)
+			{
+				// pass
+			}
+		}
+		// tabs and obs-text are allowed
+		assertEquals("X-Test: a\tb\u00ff\r\n", new String(HeaderFields.wireBytes(new SimpleHeaderType<String>("X-Test", new StringHeaderValueConverter())
+			.header("a\tb\u00ff")), LATIN1));
+	}
+}
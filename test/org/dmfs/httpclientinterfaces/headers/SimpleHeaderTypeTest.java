@@ -26,4 +26,21 @@ public class SimpleHeaderTypeTest
 		assertNotEquals(type1, type2);
 	}
 
+
+	@Test
+	public void testCaseInsensitive()
+	{
+		HeaderType<String> type1 = new SimpleHeaderType<String>("Content-Type", new StringHeaderValueConverter());
+		HeaderType<String> type1b = new SimpleHeaderType<String>("content-TYPE", new StringHeaderValueConverter());
+		HeaderType<String> type2 = new SimpleHeaderType<String>("Content_Type", new StringHeaderValueConverter());
+
+		assertEquals("content-TYPE", type1b.headerName());
+		assertEquals(type1, type1b);
+		assertEquals(type1b, type1);
+		assertEquals(type1.hashCode(), type1b.hashCode());
+		assertEquals("content-type".hashCode(), type1.hashCode());
+		// only ASCII letters are folded
+		assertNotEquals(type1, type2);
+	}
+
 }
@@ -0,0 +1,141 @@
+package org.dmfs.httpclientinterfaces.http1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import org.junit.Test;
+
+
+public class ByteScannerTest
+{
+	private static int scalarIndexOf(ByteBuffer buffer, int from, int to, byte value)
+	{
+		for (int i = from; i < to; ++i)
+		{
+			if (buffer.get(i) == value)
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+
+	private static int scalarIndexOfControl(ByteBuffer buffer, int from, int to)
+	{
+		for (int i = from; i < to; ++i)
+		{
+			if (ByteScanner.isControl(buffer.get(i)))
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+
+	/**
+	 * Returns buffers with the given content in all variants the scanner has to support.
+	 */
+	private static ByteBuffer[] buffers(byte[] content)
+	{
+		ByteBuffer direct = ByteBuffer.allocateDirect(content.length);
+		direct.put(content).clear();
+		return new ByteBuffer[] { ByteBuffer.wrap(content), ByteBuffer.wrap(content).order(ByteOrder.LITTLE_ENDIAN), direct,
+			direct.duplicate().order(ByteOrder.LITTLE_ENDIAN) };
+	}
+
+
+	@Test
+	public void testIsControl()
+	{
+		for (int b = 0; b < 256; ++b)
+		{
+			assertEquals(b < 0x20 && b != '\t' && b != '\r' || b == 0x7f, ByteScanner.isControl((byte) b));
+		}
+	}
+
+
+	@Test
+	public void testRandom()
+	{
+		Random random = new Random(42);
+		// a small alphabet that contains all the edge cases, so every word contains some matches
+		byte[] alphabet = { 0x00, 0x01, '\t', '\n', '\r', 0x1f, ' ', ',', ':', 0x7e, 0x7f, (byte) 0x80, (byte) 0x8a, (byte) 0xff, 'a' };
+		for (int run = 0; run < 200; ++run)
+		{
+			byte[] content = new byte[1 + random.nextInt(64)];
+			// mostly harmless bytes with some edge cases
+			for (int i = 0; i < content.length; ++i)
+			{
+				content[i] = random.nextInt(8) == 0 ? alphabet[random.nextInt(alphabet.length)] : (byte) ('a' + random.nextInt(26));
+			}
+
+			for (ByteBuffer buffer : buffers(content))
+			{
+				for (int from = 0; from < content.length; ++from)
+				{
+					for (int to = from; to <= content.length; to += 3)
+					{
+						for (byte value : alphabet)
+						{
+							assertEquals(scalarIndexOf(buffer, from, to, value), ByteScanner.indexOf(buffer, from, to, value));
+						}
+						assertEquals(scalarIndexOfControl(buffer, from, to), ByteScanner.indexOfControl(buffer, from, to));
+					}
+				}
+				assertEquals(0, buffer.position());
+			}
+		}
+	}
+
+
+	@Test
+	public void testAllPositions()
+	{
+		// a match in each position of a word, with values that trigger false positives of the common zero byte test in the bytes around it
+		for (int length = 1; length < 20; ++length)
+		{
+			for (int pos = 0; pos < length; ++pos)
+			{
+				byte[] content = new byte[length];
+				byte[] controlContent = new byte[length];
+				for (int i = 0; i < length; ++i)
+				{
+					content[i] = (byte) ('\n' + 1);
+					controlContent[i] = (byte) (i % 2 == 0 ? 0x20 : '\r');
+				}
+				content[pos] = '\n';
+				controlContent[pos] = 0x1f;
+				for (ByteBuffer buffer : buffers(content))
+				{
+					assertEquals(pos, ByteScanner.indexOf(buffer, 0, length, (byte) '\n'));
+					assertEquals(-1, ByteScanner.indexOf(buffer, pos + 1, length, (byte) '\n'));
+				}
+				for (ByteBuffer buffer : buffers(controlContent))
+				{
+					assertEquals(pos, ByteScanner.indexOfControl(buffer, 0, length));
+					assertEquals(-1, ByteScanner.indexOfControl(buffer, pos + 1, length));
+				}
+			}
+		}
+	}
+
+
+	@Test
+	public void testHeaderValues()
+	{
+		byte[] content = "text/html; charset=\"utf-8\"\t\r\n".getBytes();
+		ByteBuffer buffer = ByteBuffer.wrap(content);
+		assertEquals(content.length - 1, ByteScanner.indexOf(buffer, 0, content.length, (byte) '\n'));
+		assertEquals(content.length - 1, ByteScanner.indexOfControl(buffer, 0, content.length));
+		assertEquals(-1, ByteScanner.indexOfControl(buffer, 0, content.length - 1));
+		assertFalse(ByteScanner.isControl((byte) 0xe9));
+		assertTrue(ByteScanner.isControl((byte) 0));
+	}
+}
@@ -0,0 +1,247 @@
+package org.dmfs.httpclientinterfaces.http1;
+
+import static org.dmfs.httpclientinterfaces.TestContent.randomContent;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.dmfs.httpclientinterfaces.headers.Header;
+import org.dmfs.httpclientinterfaces.headers.HeaderList;
+import org.dmfs.httpclientinterfaces.headers.HeaderType;
+import org.dmfs.httpclientinterfaces.headers.impl.ArrayHeaderList;
+import org.dmfs.httpclientinterfaces.headers.impl.EmptyHeaderList;
+import org.dmfs.httpclientinterfaces.headers.impl.SimpleHeaderType;
+import org.dmfs.httpclientinterfaces.headers.impl.StringHeaderValueConverter;
+import org.junit.Test;
+
+
+public class ChunkedCodecTest
+{
+	private final static Charset LATIN1 = Charset.forName("ISO-8859-1");
+
+	private final static SimpleHeaderType<String> CHECKSUM = new SimpleHeaderType<String>("X-Checksum", new StringHeaderValueConverter());
+
+
+	private static byte[] read(InputStream in) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[777];
+		int read;
+		while ((read = in.read(buffer)) >= 0)
+		{
+			out.write(buffer, 0, read);
+		}
+		return out.toByteArray();
+	}
+
+
+	/**
+	 * Decodes the given input feeding the decoder in pieces of the given size.
+	 */
+	private static byte[] decode(ChunkedDecoder decoder, byte[] input, int pieceSize) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (int i = 0; i < input.length && !decoder.finished(); i += pieceSize)
+		{
+			ByteBuffer piece = ByteBuffer.wrap(input, i, Math.min(pieceSize, input.length - i));
+			ByteBuffer data;
+			while ((data = decoder.decode(piece)) != null)
+			{
+				// content must be a view of the input, not a copy
+				assertSame(input, data.array());
+				out.write(data.array(), data.arrayOffset() + data.position(), data.remaining());
+			}
+		}
+		return out.toByteArray();
+	}
+
+
+	@Test
+	public void testEncoder()
+	{
+		byte[] content = "Hello World".getBytes(LATIN1);
+		ByteBuffer input = ByteBuffer.wrap(content);
+		ByteBuffer[] chunk = ChunkedEncoder.chunk(input);
+
+		assertFalse(input.hasRemaining());
+		assertEquals(3, chunk.length);
+		assertEquals("b\r\n", LATIN1.decode(chunk[0]).toString());
+		assertSame(content, chunk[1].array());
+		assertEquals("\r\n", LATIN1.decode(chunk[2]).toString());
+
+		assertEquals(0, ChunkedEncoder.chunk(ByteBuffer.allocate(0)).length);
+		assertEquals("7fffffffffffffff\r\n", LATIN1.decode(ChunkedEncoder.chunkHeader(Long.MAX_VALUE)).toString());
+		assertEquals("0\r\n\r\n", LATIN1.decode(ChunkedEncoder.lastChunk(EmptyHeaderList.INSTANCE)).toString());
+		assertEquals("0\r\nX-Checksum: abc\r\n\r\n", LATIN1.decode(ChunkedEncoder.lastChunk(new ArrayHeaderList(CHECKSUM.header("abc")))).toString());
+	}
+
+
+	@Test
+	public void testThirdPartyTrailer()
+	{
+		// a Header that doesn't provide its own wire form is encoded from its name and value string
+		final int[] encoded = new int[1];
+		Header<String> trailer = new Header<String>()
+		{
+			@Override
+			public HeaderType<String> headerType()
+			{
+				return CHECKSUM;
+			}
+
+
+			@Override
+			public String value()
+			{
+				return "abc";
+			}
+
+
+			@Override
+			public String valueString()
+			{
+				++encoded[0];
+				return "abc";
+			}
+		};
+		assertEquals("0\r\nX-Checksum: abc\r\n\r\n", LATIN1.decode(ChunkedEncoder.lastChunk(new ArrayHeaderList(trailer))).toString());
+		// and only once
+		assertEquals(1, encoded[0]);
+	}
+
+
+	@Test
+	public void testRoundTrip() throws IOException
+	{
+		byte[] content = randomContent(100000);
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		ChunkedOutputStream out = new ChunkedOutputStream(encoded, 1000);
+		// mix small and large writes
+		int pos = 0;
+		int step = 1;
+		while (pos < content.length)
+		{
+			int length = Math.min(step, content.length - pos);
+			out.write(content, pos, length);
+			pos += length;
+			step = (step * 7) % 3001 + 1;
+		}
+		out.finish(new ArrayHeaderList(CHECKSUM.header("1234")));
+		byte[] input = encoded.toByteArray();
+
+		for (int pieceSize : new int[] { 1, 3, 17, 1000, input.length })
+		{
+			ChunkedDecoder decoder = new ChunkedDecoder();
+			assertArrayEquals(content, decode(decoder, input, pieceSize));
+			assertTrue(decoder.finished());
+			HeaderList trailers = decoder.trailers();
+			assertEquals(1, trailers.size());
+			Header<String> checksum = trailers.headersByType(CHECKSUM).next();
+			assertEquals("1234", checksum.value());
+		}
+
+		ChunkedInputStream in = new ChunkedInputStream(new ByteArrayInputStream(input));
+		assertArrayEquals(content, read(in));
+		assertEquals("1234", in.trailers().headersByType(CHECKSUM).next().value());
+	}
+
+
+	@Test
+	public void testExtensionsAndRemainder() throws IOException
+	{
+		byte[] input = "5;name=value\r\nHello\r\n6 ; x\r\n World\r\n0\r\nA: 1\r\nB:2 \r\n\r\nHTTP/1.1 200 OK".getBytes(LATIN1);
+		ChunkedInputStream in = new ChunkedInputStream(new ByteArrayInputStream(input));
+		assertEquals("Hello World", new String(read(in), LATIN1));
+		assertEquals(2, in.trailers().size());
+		assertEquals("HTTP/1.1 200 OK", LATIN1.decode(in.remainder()).toString());
+	}
+
+
+	@Test
+	public void testNotFinished() throws IOException
+	{
+		ChunkedDecoder decoder = new ChunkedDecoder();
+		assertNull(decoder.decode(ByteBuffer.wrap("a\r\n".getBytes(LATIN1))));
+		assertFalse(decoder.finished());
+		try
+		{
+			decoder.trailers();
+			fail("IllegalStateException expected");
+		}
+		catch (IllegalStateException e)
+		{
+			// pass
+		}
+
+		try
+		{
+			read(new ChunkedInputStream(new ByteArrayInputStream("a\r\n01234".getBytes(LATIN1))));
+			fail("EOFException expected");
+		}
+		catch (EOFException e)
+		{
+			// pass
+		}
+	}
+
+
+	@Test
+	public void testMalformed() throws IOException
+	{
+		String[] inputs = { "x\r\n", "\r\n", "5\r\nHello0\r\n\r\n", "5\rX", "0\r\nno colon\r\n\r\n", "0\r\n folded: x\r\n\r\n", "10000000000000000\r\n" };
+		for (String input : inputs)
+		{
+			try
+			{
+				decode(new ChunkedDecoder(), input.getBytes(LATIN1), 1);
+				fail("IOException expected for " + input);
+			}
+			catch (IOException e)
+			{
+				// pass
+			}
+		}
+	}
+
+
+	@Test
+	public void testLimits() throws IOException
+	{
+		StringBuilder extension = new StringBuilder("5;");
+		for (int i = 0; i < 100; ++i)
+		{
+			extension.append('x');
+		}
+		try
+		{
+			decode(new ChunkedDecoder(50, 1000), extension.toString().getBytes(LATIN1), 10);
+			fail("IOException expected");
+		}
+		catch (IOException e)
+		{
+			// pass
+		}
+
+		try
+		{
+			decode(new ChunkedDecoder(50, 10), "0\r\nX-Long-Trailer: value\r\n\r\n".getBytes(LATIN1), 10);
+			fail("IOException expected");
+		}
+		catch (IOException e)
+		{
+			// pass
+		}
+	}
+}
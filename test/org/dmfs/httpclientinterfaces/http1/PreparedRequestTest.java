@@ -0,0 +1,194 @@
+package org.dmfs.httpclientinterfaces.http1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.dmfs.httpclientinterfaces.HttpMethod;
+import org.dmfs.httpclientinterfaces.headers.Header;
+import org.dmfs.httpclientinterfaces.headers.HeaderList;
+import org.dmfs.httpclientinterfaces.headers.HeaderType;
+import org.dmfs.httpclientinterfaces.headers.HttpHeaders;
+import org.dmfs.httpclientinterfaces.headers.impl.ArrayHeaderList;
+import org.dmfs.httpclientinterfaces.headers.impl.EmptyHeaderList;
+import org.dmfs.httpclientinterfaces.headers.impl.SingleHeaderList;
+import org.junit.Test;
+
+
+public class PreparedRequestTest
+{
+	private final static Charset LATIN1 = Charset.forName("ISO-8859-1");
+
+
+	private final static HeaderList HOST = new SingleHeaderList(HttpHeaders.HOST.header("example.com"));
+	private final static HeaderList HEADERS = new ArrayHeaderList(HttpHeaders.HOST.header("example.com"), HttpHeaders.USER_AGENT.header("test/1.0"),
+		HttpHeaders.ACCEPT_ENCODING.header("gzip"));
+
+
+	private static String string(ByteBuffer buffer)
+	{
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.get(bytes);
+		return new String(bytes, LATIN1);
+	}
+
+
+	@Test
+	public void testStatic()
+	{
+		PreparedRequest request = new PreparedRequest(HttpMethod.GET, "/status?verbose", HEADERS);
+		assertEquals(0, request.variables().size());
+		ByteBuffer head = request.head();
+		assertTrue(head.isReadOnly());
+		assertEquals("GET /status?verbose HTTP/1.1\r\nHost: example.com\r\nUser-Agent: test/1.0\r\nAccept-Encoding: gzip\r\n\r\n", string(head));
+		// the buffer doesn't share its position
+		assertEquals("GET /status?verbose HTTP/1.1\r\nHost: example.com\r\nUser-Agent: test/1.0\r\nAccept-Encoding: gzip\r\n\r\n", string(request.head()));
+
+		assertEquals("GET /status?verbose HTTP/1.1\r\nHost: example.com\r\nUser-Agent: test/1.0\r\nAccept-Encoding: gzip\r\nContent-Length: 0\r\n\r\n",
+			string(request.head(new SingleHeaderList(HttpHeaders.CONTENT_LENGTH.header(0L)))));
+	}
+
+
+	@Test
+	public void testVariables()
+	{
+		PreparedRequest request = new PreparedRequest(HttpMethod.PUT, "/users/{user}/items/{item.id}?owner={user}", HEADERS);
+		assertEquals(Arrays.asList("user", "item.id"), request.variables());
+		assertEquals("PUT /users/jo/items/17?owner=jo HTTP/1.1\r\nHost: example.com\r\nUser-Agent: test/1.0\r\nAccept-Encoding: gzip\r\n\r\n",
+			string(request.head("jo", "17")));
+		assertEquals("PUT /users/a%20b%2Fc%C3%BC/items/-._~?owner=a%20b%2Fc%C3%BC HTTP/1.1\r\nHost: example.com\r\nUser-Agent: test/1.0\r\n"
+			+ "Accept-Encoding: gzip\r\nContent-Length: 3\r\n\r\n",
+			string(request.head(new SingleHeaderList(HttpHeaders.CONTENT_LENGTH.header(3L)), "a b/c\u00fc", "-._~")));
+
+		// variables at the start and the end
+		request = new PreparedRequest(HttpMethod.GET, "/{a}{b}", HOST);
+		assertEquals("GET /xy HTTP/1.1\r\nHost: example.com\r\n\r\n", string(request.head("x", "y")));
+		assertEquals("GET / HTTP/1.1\r\nHost: example.com\r\n\r\n", string(request.head("", "")));
+	}
+
+
+	@Test
+	public void testAbsolute()
+	{
+		assertEquals("GET /a/1 HTTP/1.1\r\nHost: example.com:8080\r\n\r\n",
+			string(new PreparedRequest(HttpMethod.GET, "https://user@example.com:8080/a/{x}#fragment", EmptyHeaderList.INSTANCE).head("1")));
+		assertEquals("GET /?q HTTP/1.1\r\nHost: example.com\r\n\r\n",
+			string(new PreparedRequest(HttpMethod.GET, "http://example.com?q", EmptyHeaderList.INSTANCE).head()));
+		// an explicit Host header wins
+		assertEquals("GET / HTTP/1.1\r\nHost: other\r\n\r\n",
+			string(new PreparedRequest(HttpMethod.GET, "http://example.com", new SingleHeaderList(HttpHeaders.HOST.header("other"))).head()));
+		assertEquals("OPTIONS * HTTP/1.1\r\nHost: example.com\r\n\r\n", string(new PreparedRequest(HttpMethod.OPTIONS, "*", HOST).head()));
+	}
+
+
+	@Test
+	public void testThirdPartyHeader()
+	{
+		// a Header that doesn't provide its own wire form is encoded from its name and value string, but only once
+		final int[] encoded = new int[1];
+		Header<Long> header = new Header<Long>()
+		{
+			@Override
+			public HeaderType<Long> headerType()
+			{
+				return HttpHeaders.CONTENT_LENGTH;
+			}
+
+
+			@Override
+			public Long value()
+			{
+				return 3L;
+			}
+
+
+			@Override
+			public String valueString()
+			{
+				++encoded[0];
+				return "3";
+			}
+		};
+		assertEquals("GET /status HTTP/1.1\r\nHost: example.com\r\nContent-Length: 3\r\n\r\n",
+			string(new PreparedRequest(HttpMethod.GET, "/status", HOST).head(new SingleHeaderList(header))));
+		assertEquals(1, encoded[0]);
+	}
+
+
+	@Test
+	public void testDuplicateHost()
+	{
+		PreparedRequest[] requests = { new PreparedRequest(HttpMethod.GET, "http://example.com/{x}", EmptyHeaderList.INSTANCE),
+			new PreparedRequest(HttpMethod.GET, "/{x}", HOST) };
+		for (PreparedRequest request : requests)
+		{
+			try
+			{
+				request.head(new ArrayHeaderList(HttpHeaders.CONTENT_LENGTH.header(0L), HttpHeaders.HOST.header("other")), "1");
+				fail("IllegalArgumentException expected");
+			}
+			catch (IllegalArgumentException e)
+			{
+				// pass
+			}
+		}
+
+		// without an authority the base headers must contain the Host
+		for (String template : new String[] { "/{x}", "*" })
+		{
+			try
+			{
+				new PreparedRequest(HttpMethod.OPTIONS, template, new SingleHeaderList(HttpHeaders.USER_AGENT.header("test/1.0")));
+				fail("IllegalArgumentException expected for " + template);
+			}
+			catch (IllegalArgumentException e)
+			{
+				// pass
+			}
+		}
+	}
+
+
+	@Test
+	public void testIllegal()
+	{
+		String[] templates = { "relative/path", "/a b", "/a\r\nX-Injected: 1", "/{unterminated", "/{}", "/{a-b}", "/a}", "http://{host}/", "http:///path",
+			"/\u00fc", "*" };
+		for (String template : templates)
+		{
+			try
+			{
+				new PreparedRequest(HttpMethod.GET, template, HOST);
+				fail("IllegalArgumentException expected for " + template);
+			}
+			catch (IllegalArgumentException e)
+			{
+				// pass
+			}
+		}
+
+		try
+		{
+			new PreparedRequest(HttpMethod.GET, "/{a}", HOST).head();
+			fail("IllegalArgumentException expected");
+		}
+		catch (IllegalArgumentException e)
+		{
+			// pass
+		}
+
+		try
+		{
+			new PreparedRequest(HttpMethod.GET, "/", HEADERS.append(HttpHeaders.USER_AGENT.header("a\r\nX-Injected: 1")));
+			fail("IllegalArgumentException expected");
+		}
+		catch (IllegalArgumentException e)
+		{
+			// pass
+		}
+	}
+}
@@ -0,0 +1,397 @@
+package org.dmfs.httpclientinterfaces.http1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.Random;
+
+import org.dmfs.httpclientinterfaces.HttpStatus;
+import org.dmfs.httpclientinterfaces.headers.Header;
+import org.dmfs.httpclientinterfaces.headers.HeaderList;
+import org.dmfs.httpclientinterfaces.headers.HttpHeaders;
+import org.dmfs.httpclientinterfaces.headers.impl.SimpleHeaderType;
+import org.dmfs.httpclientinterfaces.headers.impl.StringHeaderValueConverter;
+import org.dmfs.httpclientinterfaces.headers.values.Link;
+import org.junit.Test;
+
+
+public class ResponseHeadParserTest
+{
+	private final static Charset LATIN1 = Charset.forName("ISO-8859-1");
+
+	private final static SimpleHeaderType<String> CONTENT_TYPE = new SimpleHeaderType<String>("Content-Type", new StringHeaderValueConverter());
+
+	/**
+	 * Valid response heads, the seeds of the fuzz test.
+	 */
+	private final static String[] CORPUS = {
+		"HTTP/1.1 200 OK\r\n\r\n",
+		"HTTP/1.0 404 Not Found\r\nContent-Type: text/html\r\nContent-Length: 0\r\n\r\n",
+		"HTTP/1.1 204\r\nX-Empty:\r\n\r\n",
+		"HTTP/1.1 301 Moved Permanently\nLocation: http://example.com/\n\n",
+		"HTTP/1.1 200 OK\r\nLink: <http://example.com/next>; rel=\"next\"\r\nset-cookie: a=b; Path=/\r\nWWW-Authenticate: Basic realm=\"x\"\r\n\r\n",
+		"HTTP/1.1 100 Continue\r\n\r\n",
+		"HTTP/1.1 200 OK\r\nX-Folded: first\r\n  second\r\n\tthird\r\nX-Latin1: caf\u00e9\r\n\r\n",
+		"HTTP/1.1 599 Whatever Reason\r\nX-A: 1\r\nX-B: 2\r\nX-A: 3\r\n\r\n" };
+
+	/**
+	 * Malformed response heads.
+	 */
+	private final static String[] MALFORMED = {
+		"HTTP/1.1 200 OK\r\nNo-Colon\r\n\r\n",
+		"HTTP/1.1 200 OK\r\n: empty name\r\n\r\n",
+		"HTTP/1.1 200 OK\r\nName : space before colon\r\n\r\n",
+		"HTTP/1.1 200 OK\r\n folded first line\r\n\r\n",
+		"HTTP/1.1 200 OK\r\nX-Control: a\u0000b\r\n\r\n",
+		"HTTP/1.1 200 OK\r\n\rX",
+		"HTTP/1.1 2OO OK\r\n\r\n",
+		"HTTP/1.1 099 Too Low\r\n\r\n",
+		"HTTP/1.1200 OK\r\n\r\n",
+		"HTTP/11 200 OK\r\n\r\n",
+		"HTTPS/1.1 200 OK\r\n\r\n",
+		"http/1.1 200 OK\r\n\r\n",
+		"HTTP/1.1 2000 OK\r\n\r\n",
+		"\r\n" };
+
+
+	private static ByteBuffer buffer(String head)
+	{
+		return ByteBuffer.wrap(head.getBytes(LATIN1));
+	}
+
+
+	/**
+	 * Parses the given input feeding the parser in pieces of the given size and returns the number of bytes consumed.
+	 */
+	private static int parse(ResponseHeadParser parser, byte[] input, int pieceSize) throws IOException
+	{
+		for (int i = 0; i < input.length; i += pieceSize)
+		{
+			ByteBuffer piece = ByteBuffer.wrap(input, i, Math.min(pieceSize, input.length - i));
+			if (parser.parse(piece))
+			{
+				return piece.position();
+			}
+			assertFalse(piece.hasRemaining());
+		}
+		throw new IOException("Incomplete response head");
+	}
+
+
+	private static String toString(ResponseHeadParser parser)
+	{
+		StringBuilder result = new StringBuilder();
+		result.append(parser.versionMajor()).append('.').append(parser.versionMinor()).append(' ').append(parser.status().statusCode());
+		for (Header<?> header : parser.headers())
+		{
+			result.append('\n').append(header.headerType().headerName()).append(": ").append(value(header));
+		}
+		return result.toString();
+	}
+
+
+	private static Object value(Header<?> header)
+	{
+		Object value = header.value();
+		if (value instanceof String)
+		{
+			// serializing Strings rejects some characters that are valid in received values
+			return value;
+		}
+		if (value instanceof Link)
+		{
+			// Links can't be serialized yet
+			return ((Link) value).link();
+		}
+		return header.valueString();
+	}
+
+
+	@Test
+	public void testSimple() throws IOException
+	{
+		ByteBuffer input = buffer("HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\ncontent-encoding:gzip \r\nX-Custom:  a b  \r\n\r\nbody");
+		ResponseHeadParser parser = new ResponseHeadParser(1024, 1024, 10, CONTENT_TYPE);
+		assertTrue(parser.parse(input));
+		assertTrue(parser.finished());
+
+		// the body is left in the buffer
+		assertEquals(4, input.remaining());
+		assertEquals('b', input.get());
+
+		assertSame(HttpStatus.OK, parser.status());
+		assertEquals(1, parser.versionMajor());
+		assertEquals(1, parser.versionMinor());
+
+		HeaderList headers = parser.headers();
+		assertEquals(3, headers.size());
+		Iterator<Header<?>> iterator = headers.iterator();
+		// known names resolve to the known types, regardless of the case
+		assertSame(CONTENT_TYPE, iterator.next().headerType());
+		Header<?> encoding = iterator.next();
+		assertSame(HttpHeaders.CONTENT_ENCODING, encoding.headerType());
+		assertEquals("gzip", encoding.value());
+		Header<?> custom = iterator.next();
+		assertEquals("X-Custom", custom.headerType().headerName());
+		assertEquals("a b", custom.value());
+	}
+
+
+	@Test
+	public void testTypedValues() throws IOException
+	{
+		ResponseHeadParser parser = new ResponseHeadParser();
+		assertTrue(parser.parse(buffer(CORPUS[4])));
+		HeaderList headers = parser.headers();
+		Link link = headers.headersByType(HttpHeaders.LINK).next().value();
+		assertEquals("http://example.com/next", link.link().toString());
+		assertTrue(headers.contains(HttpHeaders.SET_COOKIE));
+		assertTrue(headers.contains(HttpHeaders.WWW_AUTHENTICATE));
+	}
+
+
+	@Test
+	public void testCommonResponseHeaders() throws IOException
+	{
+		ResponseHeadParser parser = new ResponseHeadParser();
+		assertTrue(parser.parse(buffer(CORPUS[1])));
+		HeaderList headers = parser.headers();
+		assertEquals("text/html", headers.headersByType(HttpHeaders.CONTENT_TYPE).next().value().type);
+		assertEquals(Long.valueOf(0), headers.headersByType(HttpHeaders.CONTENT_LENGTH).next().value());
+
+		parser = new ResponseHeadParser();
+		assertTrue(parser.parse(buffer(CORPUS[3])));
+		Iterator<Header<?>> iterator = parser.headers().iterator();
+		// the well known types are registered by default
+		assertSame(HttpHeaders.LOCATION, iterator.next().headerType());
+	}
+
+
+	@Test
+	public void testFolding() throws IOException
+	{
+		ResponseHeadParser parser = new ResponseHeadParser();
+		assertTrue(parser.parse(buffer(CORPUS[6])));
+		Iterator<Header<?>> iterator = parser.headers().iterator();
+		assertEquals("first second third", iterator.next().value());
+		assertEquals("caf\u00e9", iterator.next().value());
+	}
+
+
+	@Test
+	public void testInterimResponse() throws IOException
+	{
+		ByteBuffer input = buffer(CORPUS[5] + CORPUS[0]);
+		ResponseHeadParser parser = new ResponseHeadParser();
+		assertTrue(parser.parse(input));
+		assertTrue(parser.status().isInformational());
+		assertEquals(0, parser.headers().size());
+
+		parser.reset();
+		assertFalse(parser.finished());
+		assertTrue(parser.parse(input));
+		assertSame(HttpStatus.OK, parser.status());
+		assertFalse(input.hasRemaining());
+	}
+
+
+	@Test
+	public void testSplitInput() throws IOException
+	{
+		for (String head : CORPUS)
+		{
+			byte[] input = head.getBytes(LATIN1);
+			ResponseHeadParser parser = new ResponseHeadParser();
+			assertEquals(input.length, parse(parser, input, input.length));
+			String expected = toString(parser);
+			for (int pieceSize = 1; pieceSize < 8; ++pieceSize)
+			{
+				parser = new ResponseHeadParser();
+				assertEquals(input.length, parse(parser, input, pieceSize));
+				assertEquals(expected, toString(parser));
+			}
+		}
+	}
+
+
+	@Test
+	public void testIncomplete() throws IOException
+	{
+		ResponseHeadParser parser = new ResponseHeadParser();
+		assertFalse(parser.parse(buffer("HTTP/1.1 200 OK\r\nX-A: 1\r\n")));
+		try
+		{
+			parser.headers();
+			fail("IllegalStateException expected");
+		}
+		catch (IllegalStateException e)
+		{
+			// pass
+		}
+		// the status is available as soon as the status line is complete
+		assertSame(HttpStatus.OK, parser.status());
+		// the last header might still be continued
+		assertFalse(parser.parse(buffer(" 2\r\n")));
+		assertTrue(parser.parse(buffer("\r\n")));
+		assertEquals("1 2", parser.headers().iterator().next().value());
+	}
+
+
+	@Test
+	public void testLimits() throws IOException
+	{
+		String head = "HTTP/1.1 200 OK\r\nX-A: 1\r\nX-B: 2\r\nX-C: 3\r\n\r\n";
+		// the status line length includes the carriage return
+		assertTrue(new ResponseHeadParser(16, head.length(), 3).parse(buffer(head)));
+		assertMalformed(new ResponseHeadParser(15, 1024, 3), head);
+		assertMalformed(new ResponseHeadParser(1024, head.length() - 1, 3), head);
+		assertMalformed(new ResponseHeadParser(1024, 1024, 2), head);
+
+		// the head size limit also applies to endless header values
+		ResponseHeadParser parser = new ResponseHeadParser(1024, 10000, 10);
+		parser.parse(buffer("HTTP/1.1 200 OK\r\nX-Long: "));
+		try
+		{
+			for (int i = 0; i < 10000; ++i)
+			{
+				parser.parse(buffer("a"));
+			}
+			fail("IOException expected");
+		}
+		catch (IOException e)
+		{
+			// pass
+		}
+	}
+
+
+	@Test
+	public void testMalformed() throws IOException
+	{
+		for (String head : MALFORMED)
+		{
+			assertMalformed(new ResponseHeadParser(), head);
+		}
+	}
+
+
+	@Test
+	public void testMalformedValue() throws IOException
+	{
+		// typed values are parsed on access, so the parser accepts them
+		ResponseHeadParser parser = new ResponseHeadParser();
+		parser.parse(buffer("HTTP/1.1 200 OK\r\nLink: no angle brackets\r\nX-Other: value\r\n\r\n"));
+		assertTrue(parser.finished());
+		HeaderList headers = parser.headers();
+		assertEquals(2, headers.size());
+		assertTrue(headers.contains(HttpHeaders.LINK));
+		assertEquals("value", headers.headersByType(new SimpleHeaderType<String>("X-Other", new StringHeaderValueConverter())).next().value());
+		try
+		{
+			headers.headersByType(HttpHeaders.LINK).next();
+			fail("RuntimeException expected");
+		}
+		catch (RuntimeException e)
+		{
+			// pass
+		}
+	}
+
+
+	/**
+	 * Mutates the corpus at random and checks that the parser either succeeds or throws an {@link IOException}, and that it comes to the same result
+	 * regardless of how the input is split.
+	 */
+	@Test
+	public void testFuzz() throws IOException
+	{
+		byte[] interesting = ": \t\r\n\u0000\u007f\u00ff/.0123456789Hh".getBytes(LATIN1);
+		Random random = new Random(42);
+		int succeeded = 0;
+		for (int i = 0; i < 20000; ++i)
+		{
+			byte[] input = CORPUS[random.nextInt(CORPUS.length)].getBytes(LATIN1);
+			int mutations = 1 + random.nextInt(4);
+			for (int m = 0; m < mutations; ++m)
+			{
+				int pos = random.nextInt(input.length);
+				switch (random.nextInt(4))
+				{
+					case 0:
+						input[pos] = interesting[random.nextInt(interesting.length)];
+						break;
+					case 1:
+						input[pos] = (byte) random.nextInt(256);
+						break;
+					case 2:
+						// drop a byte
+						byte[] shorter = new byte[input.length - 1];
+						System.arraycopy(input, 0, shorter, 0, pos);
+						System.arraycopy(input, pos + 1, shorter, pos, shorter.length - pos);
+						input = shorter.length == 0 ? input : shorter;
+						break;
+					default:
+						// duplicate a byte
+						byte[] longer = new byte[input.length + 1];
+						System.arraycopy(input, 0, longer, 0, pos + 1);
+						System.arraycopy(input, pos, longer, pos + 1, input.length - pos);
+						input = longer;
+				}
+			}
+
+			String whole = result(input, input.length);
+			String split = result(input, 1 + random.nextInt(5));
+			assertEquals(whole, split);
+			if (!whole.startsWith("!"))
+			{
+				++succeeded;
+			}
+		}
+		// make sure the mutations leave enough valid input to be useful
+		assertTrue(succeeded > 1000);
+	}
+
+
+	/**
+	 * Returns a String representation of the result of parsing the given input, which starts with "!" if the input was rejected.
+	 */
+	private static String result(byte[] input, int pieceSize)
+	{
+		try
+		{
+			ResponseHeadParser parser = new ResponseHeadParser();
+			int consumed = parse(parser, input, pieceSize);
+			return consumed + " " + toString(parser);
+		}
+		catch (IOException e)
+		{
+			return "!" + e.getMessage();
+		}
+		catch (RuntimeException e)
+		{
+			// a malformed typed value, detected when the headers are converted
+			return "!!" + e.getClass().getName();
+		}
+	}
+
+
+	private static void assertMalformed(ResponseHeadParser parser, String head)
+	{
+		try
+		{
+			parser.parse(buffer(head));
+			fail("IOException expected for " + head);
+		}
+		catch (IOException e)
+		{
+			// pass
+		}
+	}
+}
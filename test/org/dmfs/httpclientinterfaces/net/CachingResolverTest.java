@@ -0,0 +1,150 @@
+package org.dmfs.httpclientinterfaces.net;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+
+public class CachingResolverTest
+{
+
+	/**
+	 * An in-memory {@link Resolver} that counts lookups.
+	 */
+	private final static class MapResolver implements Resolver
+	{
+		final Map<String, InetAddress[]> hosts = new HashMap<String, InetAddress[]>();
+		int lookups;
+
+
+		@Override
+		public InetAddress[] resolve(String hostName) throws UnknownHostException
+		{
+			++lookups;
+			InetAddress[] result = hosts.get(hostName);
+			if (result == null)
+			{
+				throw new UnknownHostException(hostName);
+			}
+			return result.clone();
+		}
+	}
+
+	/**
+	 * An {@link Executor} that runs tasks immediately.
+	 */
+	private final static Executor DIRECT = new Executor()
+	{
+		@Override
+		public void execute(Runnable command)
+		{
+			command.run();
+		}
+	};
+
+
+	private static InetAddress address(int last) throws UnknownHostException
+	{
+		return InetAddress.getByAddress(new byte[] { 10, 0, 0, (byte) last });
+	}
+
+
+	@Test
+	public void testCachingAndRoundRobin() throws UnknownHostException
+	{
+		MapResolver backend = new MapResolver();
+		backend.hosts.put("example.com", new InetAddress[] { address(1), address(2), address(3) });
+
+		CachingResolver resolver = new CachingResolver(backend, DIRECT);
+
+		assertArrayEquals(new InetAddress[] { address(1), address(2), address(3) }, resolver.resolve("example.com"));
+		assertArrayEquals(new InetAddress[] { address(2), address(3), address(1) }, resolver.resolve("example.com"));
+		assertArrayEquals(new InetAddress[] { address(3), address(1), address(2) }, resolver.resolve("EXAMPLE.com"));
+		assertArrayEquals(new InetAddress[] { address(1), address(2), address(3) }, resolver.resolve("example.com"));
+
+		assertEquals(1, backend.lookups);
+	}
+
+
+	@Test
+	public void testNegativeCaching() throws Exception
+	{
+		MapResolver backend = new MapResolver();
+		CachingResolver resolver = new CachingResolver(backend, DIRECT, 1000, 100, TimeUnit.MILLISECONDS, 10);
+
+		for (int i = 0; i < 3; ++i)
+		{
+			try
+			{
+				resolver.resolve("unknown.example.com");
+				fail("UnknownHostException expected");
+			}
+			catch (UnknownHostException e)
+			{
+				// pass
+			}
+		}
+		assertEquals(1, backend.lookups);
+
+		// once the negative entry expired, the host is resolved again
+		backend.hosts.put("unknown.example.com", new InetAddress[] { address(1) });
+		Thread.sleep(150);
+		assertArrayEquals(new InetAddress[] { address(1) }, resolver.resolve("unknown.example.com"));
+		assertEquals(2, backend.lookups);
+	}
+
+
+	@Test
+	public void testRefreshAhead() throws Exception
+	{
+		MapResolver backend = new MapResolver();
+		backend.hosts.put("example.com", new InetAddress[] { address(1) });
+		CachingResolver resolver = new CachingResolver(backend, DIRECT, 400, 0, TimeUnit.MILLISECONDS, 10);
+
+		assertArrayEquals(new InetAddress[] { address(1) }, resolver.resolve("example.com"));
+
+		// the address changes, but the cached one is still fresh
+		backend.hosts.put("example.com", new InetAddress[] { address(2) });
+		assertArrayEquals(new InetAddress[] { address(1) }, resolver.resolve("example.com"));
+		assertEquals(1, backend.lookups);
+
+		// after 75% of the ttl the stale result is returned once, but refreshed in the background
+		Thread.sleep(320);
+		assertArrayEquals(new InetAddress[] { address(1) }, resolver.resolve("example.com"));
+		assertEquals(2, backend.lookups);
+		assertArrayEquals(new InetAddress[] { address(2) }, resolver.resolve("example.com"));
+		assertEquals(2, backend.lookups);
+	}
+
+
+	@Test
+	public void testFailedRefresh() throws Exception
+	{
+		MapResolver backend = new MapResolver();
+		backend.hosts.put("example.com", new InetAddress[] { address(1) });
+		CachingResolver resolver = new CachingResolver(backend, DIRECT, 400, 0, TimeUnit.MILLISECONDS, 10);
+
+		assertArrayEquals(new InetAddress[] { address(1) }, resolver.resolve("example.com"));
+
+		// the refresh fails, the stale entry is kept
+		backend.hosts.remove("example.com");
+		Thread.sleep(320);
+		assertArrayEquals(new InetAddress[] { address(1) }, resolver.resolve("example.com"));
+		assertEquals(2, backend.lookups);
+
+		// the next lookup tries again
+		backend.hosts.put("example.com", new InetAddress[] { address(2) });
+		assertArrayEquals(new InetAddress[] { address(1) }, resolver.resolve("example.com"));
+		assertEquals(3, backend.lookups);
+		assertArrayEquals(new InetAddress[] { address(2) }, resolver.resolve("example.com"));
+	}
+}
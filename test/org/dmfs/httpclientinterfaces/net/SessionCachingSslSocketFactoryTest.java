@@ -0,0 +1,223 @@
+package org.dmfs.httpclientinterfaces.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.security.KeyStore;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManagerFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * Tests {@link SessionCachingSslSocketFactory} against a local TLS server with a self-signed certificate.
+ *
+ * @author Marten Gajda <marten@dmfs.org>
+ */
+public class SessionCachingSslSocketFactoryTest
+{
+	private final static char[] PASSWORD = "password".toCharArray();
+
+	private File mKeyStoreFile;
+	private KeyStore mKeyStore;
+	private SSLServerSocket mServerSocket;
+	private Thread mServerThread;
+
+
+	@Before
+	public void setUp() throws Exception
+	{
+		// generate a self-signed certificate for localhost
+		mKeyStoreFile = File.createTempFile("test", ".p12");
+		mKeyStoreFile.delete();
+		Process keytool = new ProcessBuilder(new File(new File(System.getProperty("java.home"), "bin"), "keytool").getPath(), "-genkeypair", "-alias",
+			"localhost", "-keyalg", "RSA", "-keysize", "2048", "-dname", "CN=localhost", "-ext", "SAN=dns:localhost", "-validity", "1", "-storetype",
+			"PKCS12", "-keystore", mKeyStoreFile.getPath(), "-storepass", new String(PASSWORD), "-keypass", new String(PASSWORD)).redirectErrorStream(true)
+			.start();
+		InputStream keytoolOutput = keytool.getInputStream();
+		while (keytoolOutput.read() >= 0)
+		{
+		}
+		assertEquals(0, keytool.waitFor());
+
+		mKeyStore = KeyStore.getInstance("PKCS12");
+		InputStream in = new FileInputStream(mKeyStoreFile);
+		try
+		{
+			mKeyStore.load(in, PASSWORD);
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+
+	/**
+	 * Starts a TLS echo server that supports the given protocols only. The protocols are configured before the server thread starts, so the server thread is
+	 * guaranteed to see them.
+	 */
+	private void startServer(String... protocols) throws Exception
+	{
+		stopServer();
+
+		KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+		keyManagerFactory.init(mKeyStore, PASSWORD);
+		SSLContext serverContext = SSLContext.getInstance("TLS");
+		serverContext.init(keyManagerFactory.getKeyManagers(), null, null);
+
+		mServerSocket = (SSLServerSocket) serverContext.getServerSocketFactory().createServerSocket(0);
+		mServerSocket.setEnabledProtocols(protocols);
+		final SSLServerSocket serverSocket = mServerSocket;
+		mServerThread = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					while (true)
+					{
+						Socket client = serverSocket.accept();
+						try
+						{
+							// echo a single byte
+							client.getOutputStream().write(client.getInputStream().read());
+						}
+						catch (IOException e)
+						{
+							// ignore failing clients
+						}
+						finally
+						{
+							client.close();
+						}
+					}
+				}
+				catch (IOException e)
+				{
+					// server socket has been closed
+				}
+			}
+		};
+		mServerThread.start();
+	}
+
+
+	private void stopServer() throws Exception
+	{
+		if (mServerSocket != null)
+		{
+			mServerSocket.close();
+			mServerThread.join(5000);
+			mServerSocket = null;
+		}
+	}
+
+
+	@After
+	public void tearDown() throws Exception
+	{
+		stopServer();
+		mKeyStoreFile.delete();
+	}
+
+
+	private SSLContext clientContext() throws Exception
+	{
+		TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+		trustManagerFactory.init(mKeyStore);
+		SSLContext clientContext = SSLContext.getInstance("TLS");
+		clientContext.init(null, trustManagerFactory.getTrustManagers(), null);
+		return clientContext;
+	}
+
+
+	private void echo(SessionCachingSslSocketFactory factory, String protocol) throws IOException
+	{
+		SSLSocket socket = (SSLSocket) factory.createSocket("localhost", mServerSocket.getLocalPort());
+		try
+		{
+			assertEquals(protocol, socket.getSession().getProtocol());
+			socket.getOutputStream().write(42);
+			assertEquals(42, socket.getInputStream().read());
+		}
+		finally
+		{
+			socket.close();
+		}
+	}
+
+
+	@Test
+	public void testResumption() throws Exception
+	{
+		for (String protocol : new String[] { "TLSv1.2", "TLSv1.3" })
+		{
+			startServer(protocol);
+			SessionCachingSslSocketFactory factory = new SessionCachingSslSocketFactory(clientContext(), 16, 60);
+
+			for (int i = 0; i < 4; ++i)
+			{
+				echo(factory, protocol);
+			}
+
+			TlsHandshakeStatistics statistics = factory.statistics();
+			assertEquals(4, statistics.handshakes());
+			assertEquals(3, statistics.resumptions());
+			assertEquals(0.75, statistics.resumptionRate(), 0.001);
+			assertTrue(statistics.averageFullHandshakeTime(TimeUnit.NANOSECONDS) > 0);
+			assertTrue(statistics.averageResumptionTime(TimeUnit.NANOSECONDS) > 0);
+		}
+	}
+
+
+	@Test
+	public void testExpiredSession() throws Exception
+	{
+		startServer("TLSv1.2");
+		SessionCachingSslSocketFactory factory = new SessionCachingSslSocketFactory(clientContext(), 16, 60);
+
+		echo(factory, "TLSv1.2");
+		factory.sessionContext().setSessionTimeout(1);
+		Thread.sleep(1100);
+		echo(factory, "TLSv1.2");
+
+		// the session has expired, so there was no resumption
+		assertEquals(2, factory.statistics().handshakes());
+		assertEquals(0, factory.statistics().resumptions());
+	}
+
+
+	@Test
+	public void testHostVerification() throws Exception
+	{
+		startServer("TLSv1.2", "TLSv1.3");
+		SessionCachingSslSocketFactory factory = new SessionCachingSslSocketFactory(clientContext());
+		try
+		{
+			// the certificate is valid for "localhost" only
+			factory.createSocket("127.0.0.1", mServerSocket.getLocalPort());
+			fail("host name verification should fail");
+		}
+		catch (IOException e)
+		{
+			// pass
+		}
+		assertEquals(0, factory.statistics().handshakes());
+	}
+}
@@ -0,0 +1,104 @@
+package org.dmfs.httpclientinterfaces.requestutils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.dmfs.httpclientinterfaces.ContentType;
+import org.dmfs.httpclientinterfaces.HttpRequestEntity;
+import org.junit.Test;
+
+
+public class BufferSizeEstimatorTest
+{
+	@Test
+	public void testUnknownRoute()
+	{
+		BufferSizeEstimator estimator = new BufferSizeEstimator(16 * 1024);
+		assertEquals(16 * 1024, estimator.chunkSize("GET /unknown"));
+		assertEquals(0, estimator.buffers());
+	}
+
+
+	@Test
+	public void testConvergence()
+	{
+		BufferSizeEstimator estimator = new BufferSizeEstimator(16 * 1024);
+		Random random = new Random(42);
+		for (int i = 0; i < 5000; ++i)
+		{
+			// sizes are uniformly distributed between 0 and 100000 bytes, the 90th percentile is 90000
+			String route = "PUT /large";
+			estimator.record(route, estimator.chunkSize(route), random.nextInt(100000));
+
+			// small content never goes below the minimum chunk size
+			estimator.record("POST /small", estimator.chunkSize("POST /small"), random.nextInt(100));
+		}
+		int estimate = estimator.chunkSize("PUT /large");
+		assertTrue("estimate " + estimate, estimate > 70000 && estimate < 100000);
+		assertEquals(BufferSizeEstimator.MIN_CHUNK_SIZE, estimator.chunkSize("POST /small"));
+
+		assertEquals(10000, estimator.buffers());
+		// the default chunk size is too small for most large buffers
+		assertTrue(estimator.toString(), estimator.grownBuffers() < estimator.defaultGrownBuffers() / 4);
+	}
+
+
+	@Test
+	public void testUnusedBytes()
+	{
+		BufferSizeEstimator estimator = new BufferSizeEstimator(16 * 1024);
+		Random random = new Random(42);
+		for (int i = 0; i < 1000; ++i)
+		{
+			estimator.record("POST /small", estimator.chunkSize("POST /small"), 500 + random.nextInt(500));
+		}
+		// the default chunk size wastes most of its memory on small content
+		assertEquals(0, estimator.grownBuffers());
+		assertTrue(estimator.toString(), estimator.unusedBytes() * 10 < estimator.defaultUnusedBytes());
+	}
+
+
+	@Test
+	public void testBufferedRequestEntity() throws Exception
+	{
+		BufferSizeEstimator estimator = new BufferSizeEstimator(16 * 1024);
+		final byte[] content = new byte[40000];
+		new Random(42).nextBytes(content);
+		HttpRequestEntity wrapped = new HttpRequestEntity()
+		{
+			@Override
+			public ContentType contentType()
+			{
+				return null;
+			}
+
+
+			@Override
+			public long contentLength()
+			{
+				return -1;
+			}
+
+
+			@Override
+			public void writeContent(OutputStream out) throws IOException
+			{
+				out.write(content);
+			}
+		};
+		for (int i = 0; i < 20; ++i)
+		{
+			BufferedRequestEntity entity = new BufferedRequestEntity(wrapped, 1024 * 1024, null, estimator, "PUT /x");
+			assertEquals(content.length, entity.contentLength());
+			entity.release();
+		}
+		assertEquals(20, estimator.buffers());
+		// the default chunk size needs to grow every time, the estimate only occasionally while it settles
+		assertEquals(20, estimator.defaultGrownBuffers());
+		assertTrue(estimator.toString(), estimator.grownBuffers() < 5);
+	}
+}
@@ -0,0 +1,323 @@
+package org.dmfs.httpclientinterfaces.requestutils;
+
+import static org.dmfs.httpclientinterfaces.TestContent.randomContent;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.dmfs.httpclientinterfaces.ContentType;
+import org.dmfs.httpclientinterfaces.HttpMethod;
+import org.dmfs.httpclientinterfaces.HttpRequest;
+import org.dmfs.httpclientinterfaces.HttpRequestEntity;
+import org.dmfs.httpclientinterfaces.HttpResponse;
+import org.dmfs.httpclientinterfaces.HttpResponseHandler;
+import org.dmfs.httpclientinterfaces.headers.HeaderList;
+import org.dmfs.httpclientinterfaces.headers.impl.EmptyHeaderList;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+public class BufferedRequestEntityTest
+{
+	@Rule
+	public TemporaryFolder mFolder = new TemporaryFolder();
+
+
+	/**
+	 * An entity of unknown length that counts how often it has been written.
+	 */
+	private final static class CountingEntity implements HttpRequestEntity
+	{
+		private final byte[] mContent;
+		private int mWrites;
+
+
+		private CountingEntity(byte[] content)
+		{
+			mContent = content;
+		}
+
+
+		@Override
+		public ContentType contentType()
+		{
+			return new ContentType("application/octet-stream");
+		}
+
+
+		@Override
+		public long contentLength()
+		{
+			return -1;
+		}
+
+
+		@Override
+		public void writeContent(OutputStream out) throws IOException
+		{
+			++mWrites;
+			for (int i = 0; i < mContent.length; i += 1000)
+			{
+				out.write(mContent, i, Math.min(1000, mContent.length - i));
+			}
+		}
+	}
+
+
+	private static byte[] write(HttpRequestEntity entity) throws IOException
+	{
+		java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+		entity.writeContent(out);
+		return out.toByteArray();
+	}
+
+
+	@Test
+	public void testOverflowWithoutSpill() throws IOException
+	{
+		byte[] content = randomContent(100000);
+		CountingEntity wrapped = new CountingEntity(content);
+		BufferedRequestEntity entity = new BufferedRequestEntity(wrapped, 10000);
+
+		assertEquals(100000, entity.contentLength());
+		assertArrayEquals(content, write(entity));
+		// the content didn't fit into the buffer, so it has been written twice
+		assertEquals(2, wrapped.mWrites);
+	}
+
+
+	@Test
+	public void testSpill() throws IOException
+	{
+		byte[] content = randomContent(100000);
+		CountingEntity wrapped = new CountingEntity(content);
+		BufferedRequestEntity entity = new BufferedRequestEntity(wrapped, 10000, mFolder.getRoot());
+
+		assertEquals(100000, entity.contentLength());
+		assertEquals(1, mFolder.getRoot().list().length);
+		assertArrayEquals(content, write(entity));
+		assertArrayEquals(content, write(entity));
+		assertEquals(1, wrapped.mWrites);
+
+		entity.release();
+		assertEquals(0, mFolder.getRoot().list().length);
+	}
+
+
+	@Test
+	public void testSpillWithoutContentLength() throws IOException
+	{
+		byte[] content = randomContent(100000);
+		CountingEntity wrapped = new CountingEntity(content);
+		BufferedRequestEntity entity = new BufferedRequestEntity(wrapped, 10000, mFolder.getRoot());
+
+		// replays must not write the wrapped entity again, even if contentLength() has not been called
+		assertArrayEquals(content, write(entity));
+		assertArrayEquals(content, write(entity));
+		assertEquals(100000, entity.contentLength());
+		assertEquals(1, wrapped.mWrites);
+		entity.release();
+		assertEquals(0, mFolder.getRoot().list().length);
+	}
+
+
+	@Test
+	public void testSmallContentStaysInMemory() throws IOException
+	{
+		byte[] content = randomContent(5000);
+		CountingEntity wrapped = new CountingEntity(content);
+		BufferedRequestEntity entity = new BufferedRequestEntity(wrapped, 10000, mFolder.getRoot());
+
+		assertEquals(5000, entity.contentLength());
+		assertArrayEquals(content, write(entity));
+		assertEquals(1, wrapped.mWrites);
+		assertEquals(0, mFolder.getRoot().list().length);
+	}
+
+
+	@Test
+	public void testSpillingOutputStream() throws IOException
+	{
+		byte[] content = randomContent(50000);
+		SpillingOutputStream out = new SpillingOutputStream(100, mFolder.getRoot());
+		out.write(content, 0, 50);
+		out.write(content[50]);
+		assertEquals(false, out.spilled());
+		out.write(content, 51, content.length - 51);
+		assertEquals(true, out.spilled());
+		out.close();
+
+		java.io.ByteArrayOutputStream result = new java.io.ByteArrayOutputStream();
+		out.writeTo(result);
+		assertArrayEquals(content, result.toByteArray());
+		assertEquals(50000, out.length());
+
+		out.release();
+		assertEquals(0, mFolder.getRoot().list().length);
+	}
+
+
+	@Test
+	public void testExhaustedBudgetStreams() throws IOException
+	{
+		MemoryBudget budget = new MemoryBudget(20000);
+		assertTrue(budget.tryReserve(15000));
+
+		byte[] content = randomContent(8000);
+		CountingEntity wrapped = new CountingEntity(content);
+		BufferedRequestEntity entity = new BufferedRequestEntity(wrapped, 10000, null, null, null, budget);
+
+		// the content fits into the buffer, but not into the budget
+		assertEquals(8000, entity.contentLength());
+		assertEquals(15000, budget.used());
+		assertArrayEquals(content, write(entity));
+		assertEquals(2, wrapped.mWrites);
+	}
+
+
+	@Test
+	public void testExhaustedBudgetSpills() throws IOException
+	{
+		MemoryBudget budget = new MemoryBudget(20000);
+		assertTrue(budget.tryReserve(15000));
+
+		byte[] content = randomContent(8000);
+		CountingEntity wrapped = new CountingEntity(content);
+		BufferedRequestEntity entity = new BufferedRequestEntity(wrapped, 10000, mFolder.getRoot(), null, null, budget);
+
+		assertEquals(8000, entity.contentLength());
+		assertEquals(1, mFolder.getRoot().list().length);
+		assertEquals(15000, budget.used());
+		assertArrayEquals(content, write(entity));
+		assertEquals(1, wrapped.mWrites);
+
+		entity.release();
+		assertEquals(0, mFolder.getRoot().list().length);
+	}
+
+
+	@Test
+	public void testBudgetReleased() throws IOException
+	{
+		MemoryBudget budget = new MemoryBudget(1024 * 1024);
+		byte[] content = randomContent(5000);
+		BufferedRequestEntity entity = new BufferedRequestEntity(new CountingEntity(content), 10000, null, null, null, budget);
+		BufferedRequestEntity spillingEntity = new BufferedRequestEntity(new CountingEntity(content), 10000, mFolder.getRoot(), null, null, budget);
+
+		assertEquals(5000, entity.contentLength());
+		assertEquals(5000, spillingEntity.contentLength());
+		assertTrue(budget.used() >= 10000);
+		assertEquals(budget.used(), budget.peak());
+
+		entity.release();
+		spillingEntity.release();
+		assertEquals(0, budget.used());
+	}
+
+
+	@Test
+	public void testEstimatorRecordsActualChunkSize() throws IOException
+	{
+		BufferSizeEstimator estimator = new BufferSizeEstimator(1024);
+		MemoryBudget budget = new MemoryBudget(1024 * 1024);
+		byte[] content = randomContent(3000);
+
+		// the first buffer teaches the estimator a first chunk size of 3000 bytes
+		BufferedRequestEntity entity = new BufferedRequestEntity(new CountingEntity(content), 10000, null, estimator, "POST /items", budget);
+		assertEquals(3000, entity.contentLength());
+		entity.release();
+		assertEquals(3000, estimator.chunkSize("POST /items"));
+		long unused = estimator.unusedBytes();
+
+		// the pool rounds the chunk up to 4096 bytes, which leaves 1096 bytes unused
+		entity = new BufferedRequestEntity(new CountingEntity(content), 10000, null, estimator, "POST /items", budget);
+		assertEquals(3000, entity.contentLength());
+		entity.release();
+		assertEquals(unused + 1096, estimator.unusedBytes());
+
+		entity = new BufferedRequestEntity(new CountingEntity(content), 10000, mFolder.getRoot(), estimator, "POST /items", budget);
+		assertEquals(3000, entity.contentLength());
+		entity.release();
+		assertEquals(unused + 2 * 1096, estimator.unusedBytes());
+	}
+
+
+	@Test
+	public void testUnreleasedEntitiesDontDrainTheBudget() throws IOException
+	{
+		long used = MemoryBudget.getInstance().used();
+		byte[] content = randomContent(100);
+		for (int i = 0; i < 5000; ++i)
+		{
+			// entities created without a budget are never released by their users
+			CountingEntity counting = new CountingEntity(content);
+			BufferedRequestEntity entity = i % 2 == 0 ? new BufferedRequestEntity(counting, 10000) : new BufferedRequestEntity(counting, 10000, null,
+				new BufferSizeEstimator(1024), "POST /items");
+			assertEquals(100, entity.contentLength());
+			assertArrayEquals(content, write(entity));
+			// the content has been buffered and not written twice
+			assertEquals(1, counting.mWrites);
+		}
+		assertEquals(used, MemoryBudget.getInstance().used());
+	}
+
+
+	@Test
+	public void testBufferedRequestReleasesBuffer() throws Exception
+	{
+		final CountingEntity wrapped = new CountingEntity(randomContent(5000));
+		HttpRequest<String> request = new BufferedRequest<String>(new HttpRequest<String>()
+		{
+			@Override
+			public HttpMethod method()
+			{
+				return HttpMethod.POST;
+			}
+
+
+			@Override
+			public HeaderList headers()
+			{
+				return EmptyHeaderList.INSTANCE;
+			}
+
+
+			@Override
+			public HttpRequestEntity requestEntity()
+			{
+				return wrapped;
+			}
+
+
+			@Override
+			public HttpResponseHandler<String> responseHandler(HttpResponse response)
+			{
+				return new HttpResponseHandler<String>()
+				{
+					@Override
+					public String handleResponse(HttpResponse response)
+					{
+						return "handled";
+					}
+				};
+			}
+		});
+
+		SharedChunkPool pool = SharedChunkPool.getInstance();
+		assertEquals(5000, request.requestEntity().contentLength());
+		assertEquals("handled", request.responseHandler(null).handleResponse(null));
+
+		// the buffer has been returned to the pool, so buffering the same content again recycles it
+		long recycled = pool.recycled();
+		assertEquals(5000, request.requestEntity().contentLength());
+		assertEquals(recycled + 1, pool.recycled());
+		// the released entity buffers the content again
+		assertEquals(2, wrapped.mWrites);
+		assertArrayEquals(wrapped.mContent, write(request.requestEntity()));
+		assertEquals(2, wrapped.mWrites);
+	}
+}
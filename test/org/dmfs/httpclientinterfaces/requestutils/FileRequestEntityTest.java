@@ -0,0 +1,146 @@
+package org.dmfs.httpclientinterfaces.requestutils;
+
+import static org.dmfs.httpclientinterfaces.TestContent.randomContent;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.channels.Pipe;
+import java.util.Random;
+
+import org.dmfs.httpclientinterfaces.ContentType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+public class FileRequestEntityTest
+{
+	@Rule
+	public TemporaryFolder mFolder = new TemporaryFolder();
+
+
+	private File file(byte[] content) throws IOException
+	{
+		File file = mFolder.newFile();
+		FileOutputStream out = new FileOutputStream(file);
+		out.write(content);
+		out.close();
+		return file;
+	}
+
+
+	private static byte[] read(File file) throws IOException
+	{
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		byte[] result = new byte[(int) in.length()];
+		in.readFully(result);
+		in.close();
+		return result;
+	}
+
+
+	@Test
+	public void testOutputStream() throws IOException
+	{
+		byte[] content = randomContent(300000);
+		FileRequestEntity entity = new FileRequestEntity(file(content), new ContentType("application/octet-stream"));
+
+		assertEquals(300000, entity.contentLength());
+		assertEquals("application/octet-stream", entity.contentType().type);
+
+		java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+		entity.writeContent(out);
+		assertArrayEquals(content, out.toByteArray());
+
+		File target = mFolder.newFile();
+		FileOutputStream fileOut = new FileOutputStream(target);
+		entity.writeContent(fileOut);
+		fileOut.close();
+		assertArrayEquals(content, read(target));
+	}
+
+
+	@Test
+	public void testChannel() throws Exception
+	{
+		final byte[] content = randomContent(300000);
+		FileRequestEntity entity = new FileRequestEntity(file(content), null);
+
+		final Pipe pipe = Pipe.open();
+		final ByteBuffer received = ByteBuffer.allocate(content.length + 1);
+		Thread reader = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					while (pipe.source().read(received) >= 0)
+					{
+						// keep reading
+					}
+				}
+				catch (IOException e)
+				{
+					// test will fail
+				}
+			}
+		};
+		reader.start();
+		entity.writeContent(pipe.sink());
+		pipe.sink().close();
+		reader.join(10000);
+
+		received.flip();
+		byte[] result = new byte[received.remaining()];
+		received.get(result);
+		assertArrayEquals(content, result);
+	}
+
+
+	@Test
+	public void testMissingFile() throws IOException
+	{
+		FileRequestEntity entity = new FileRequestEntity(new File(mFolder.getRoot(), "missing"), null);
+		try
+		{
+			entity.contentLength();
+			fail("IOException expected");
+		}
+		catch (IOException e)
+		{
+			// pass
+		}
+	}
+
+
+	@Test
+	public void testNonBlockingChannel() throws IOException
+	{
+		FileRequestEntity entity = new FileRequestEntity(file(randomContent(300000)), null);
+		Pipe pipe = Pipe.open();
+		pipe.sink().configureBlocking(false);
+		try
+		{
+			// nobody reads from the pipe, so this would spin forever
+			entity.writeContent(pipe.sink());
+			fail("IllegalBlockingModeException expected");
+		}
+		catch (IllegalBlockingModeException e)
+		{
+			// pass
+		}
+		finally
+		{
+			pipe.sink().close();
+			pipe.source().close();
+		}
+	}
+}
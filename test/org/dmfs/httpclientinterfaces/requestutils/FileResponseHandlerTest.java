@@ -0,0 +1,185 @@
+package org.dmfs.httpclientinterfaces.requestutils;
+
+import static org.dmfs.httpclientinterfaces.TestContent.randomContent;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Random;
+
+import org.dmfs.httpclientinterfaces.ContentType;
+import org.dmfs.httpclientinterfaces.HttpResponse;
+import org.dmfs.httpclientinterfaces.HttpResponseEntity;
+import org.dmfs.httpclientinterfaces.HttpStatus;
+import org.dmfs.httpclientinterfaces.exceptions.NotFoundException;
+import org.dmfs.httpclientinterfaces.headers.Header;
+import org.dmfs.httpclientinterfaces.headers.HeaderType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+public class FileResponseHandlerTest
+{
+	@Rule
+	public TemporaryFolder mFolder = new TemporaryFolder();
+
+
+	private static HttpResponse response(final HttpStatus status, final byte[] content, final long contentLength)
+	{
+		return new HttpResponse()
+		{
+			@Override
+			public HttpStatus status()
+			{
+				return status;
+			}
+
+
+			@Override
+			public <V> boolean hasHeader(HeaderType<V> headerType)
+			{
+				return false;
+			}
+
+
+			@Override
+			public <V> Header<V> firstHeader(HeaderType<V> headerType)
+			{
+				return headers(headerType).next();
+			}
+
+
+			@Override
+			public <V> Iterator<Header<V>> headers(HeaderType<V> headerType)
+			{
+				return Collections.emptyIterator();
+			}
+
+
+			@Override
+			public HttpResponseEntity responseEntity()
+			{
+				return new HttpResponseEntity()
+				{
+					@Override
+					public ContentType contentType()
+					{
+						return null;
+					}
+
+
+					@Override
+					public long contentLength()
+					{
+						return contentLength;
+					}
+
+
+					@Override
+					public InputStream contentStream()
+					{
+						return new ByteArrayInputStream(content);
+					}
+				};
+			}
+
+
+			@Override
+			public URI requestUri()
+			{
+				return URI.create("http://example.com/file");
+			}
+
+
+			@Override
+			public URI responseUri()
+			{
+				return requestUri();
+			}
+		};
+	}
+
+
+	private static byte[] read(File file) throws IOException
+	{
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		byte[] result = new byte[(int) in.length()];
+		in.readFully(result);
+		in.close();
+		return result;
+	}
+
+
+	@Test
+	public void testKnownLength() throws Exception
+	{
+		byte[] content = randomContent(200000);
+		File target = new File(mFolder.getRoot(), "download");
+		assertEquals(target, new FileResponseHandler(target, true).handleResponse(response(HttpStatus.OK, content, content.length)));
+		assertArrayEquals(content, read(target));
+		assertEquals(1, mFolder.getRoot().list().length);
+	}
+
+
+	@Test
+	public void testUnknownLengthReplacesTarget() throws Exception
+	{
+		byte[] content = randomContent(200000);
+		File target = mFolder.newFile("download");
+		FileOutputStream out = new FileOutputStream(target);
+		out.write(new byte[10]);
+		out.close();
+
+		new FileResponseHandler(target).handleResponse(response(HttpStatus.OK, content, -1));
+		assertArrayEquals(content, read(target));
+		assertEquals(1, mFolder.getRoot().list().length);
+	}
+
+
+	@Test
+	public void testTruncated() throws Exception
+	{
+		byte[] content = randomContent(1000);
+		File target = new File(mFolder.getRoot(), "download");
+		try
+		{
+			new FileResponseHandler(target).handleResponse(response(HttpStatus.OK, content, 2000));
+			fail("IOException expected");
+		}
+		catch (IOException e)
+		{
+			// pass
+		}
+		// neither the target nor the temporary file must exist
+		assertFalse(target.exists());
+		assertEquals(0, mFolder.getRoot().list().length);
+	}
+
+
+	@Test
+	public void testError() throws Exception
+	{
+		File target = new File(mFolder.getRoot(), "download");
+		try
+		{
+			new FileResponseHandler(target).handleResponse(response(HttpStatus.NOT_FOUND, new byte[100], 100));
+			fail("NotFoundException expected");
+		}
+		catch (NotFoundException e)
+		{
+			// pass
+		}
+		assertEquals(0, mFolder.getRoot().list().length);
+	}
+}
@@ -0,0 +1,349 @@
+package org.dmfs.httpclientinterfaces.requestutils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.dmfs.httpclientinterfaces.ContentType;
+import org.dmfs.httpclientinterfaces.HttpMethod;
+import org.dmfs.httpclientinterfaces.HttpRequest;
+import org.dmfs.httpclientinterfaces.HttpRequestEntity;
+import org.dmfs.httpclientinterfaces.HttpRequestExecutor;
+import org.dmfs.httpclientinterfaces.HttpResponse;
+import org.dmfs.httpclientinterfaces.HttpResponseEntity;
+import org.dmfs.httpclientinterfaces.HttpResponseHandler;
+import org.dmfs.httpclientinterfaces.HttpStatus;
+import org.dmfs.httpclientinterfaces.OnRedirectCallback;
+import org.dmfs.httpclientinterfaces.OnResponseCallback;
+import org.dmfs.httpclientinterfaces.headers.Header;
+import org.dmfs.httpclientinterfaces.headers.HeaderList;
+import org.dmfs.httpclientinterfaces.headers.HeaderType;
+import org.dmfs.httpclientinterfaces.headers.HttpHeaders;
+import org.dmfs.httpclientinterfaces.headers.impl.EmptyHeaderList;
+import org.dmfs.httpclientinterfaces.headers.values.Link;
+import org.junit.Test;
+
+
+public class LinkPrefetcherTest
+{
+
+	@Test
+	public void testPrefetch() throws Exception
+	{
+		RecordingExecutor executor = new RecordingExecutor();
+		LinkPrefetcher prefetcher = new LinkPrefetcher(executor);
+
+		assertEquals(3, prefetcher.prefetch(new LinkResponse(URI.create("http://example.com/items/"), "<page2>; rel=next", "<style.css>; rel=stylesheet",
+			"</img.png>; rel=prefetch", "<https://cdn.example.com/app.js>; rel=\"preload\"; type=application/javascript", "<mailto:a@example.com>; rel=prefetch")));
+
+		// preload first, then prefetch, then next
+		assertEquals(
+			Arrays.asList(URI.create("https://cdn.example.com/app.js"), URI.create("http://example.com/img.png"), URI.create("http://example.com/items/page2")),
+			executor.uris);
+		assertEquals(3, prefetcher.pendingPrefetches());
+
+		// a prefetch that is still in flight is not started again
+		assertEquals(0, prefetcher.prefetch(new LinkResponse(URI.create("http://example.com/items/"), "<page2>; rel=next")));
+
+		executor.completeAll();
+		assertEquals(0, prefetcher.pendingPrefetches());
+
+		// the response content has been consumed
+		assertEquals(3, executor.consumed);
+	}
+
+
+	@Test
+	public void testBudget() throws Exception
+	{
+		RecordingExecutor executor = new RecordingExecutor();
+		LinkPrefetcher prefetcher = new LinkPrefetcher(executor, 2, 3, LinkPrefetcher.REL_NEXT, LinkPrefetcher.REL_PREFETCH);
+
+		// only two prefetches per response, the "next" link has the highest priority
+		assertEquals(2, prefetcher.prefetch(new LinkResponse(URI.create("http://example.com/"), "</1>; rel=prefetch", "</2>; rel=prefetch", "</3>; rel=next")));
+		assertEquals(Arrays.asList(URI.create("http://example.com/3"), URI.create("http://example.com/1")), executor.uris);
+
+		// only three concurrent prefetches
+		assertEquals(1, prefetcher.prefetch(new LinkResponse(URI.create("http://example.com/"), "</4>; rel=prefetch", "</5>; rel=prefetch")));
+		assertEquals(0, prefetcher.prefetch(new LinkResponse(URI.create("http://example.com/"), "</6>; rel=prefetch")));
+
+		executor.completeAll();
+		assertEquals(1, prefetcher.prefetch(new LinkResponse(URI.create("http://example.com/"), "</6>; rel=prefetch")));
+	}
+
+	@Test
+	public void testJoinedLinks() throws Exception
+	{
+		RecordingExecutor executor = new RecordingExecutor();
+		LinkPrefetcher prefetcher = new LinkPrefetcher(executor);
+
+		// several links in one header, the comma in the quoted title doesn't separate links
+		assertEquals(2, prefetcher.prefetch(new LinkResponse(URI.create("http://example.com/items/"),
+			"<page1>; rel=prev, <style.css>; rel=prefetch; title=\"a, b\", <page3>; rel=\"next\"")));
+		assertEquals(Arrays.asList(URI.create("http://example.com/items/style.css"), URI.create("http://example.com/items/page3")), executor.uris);
+	}
+
+
+	@Test
+	public void testNormalizedRequestUri() throws Exception
+	{
+		RecordingExecutor executor = new RecordingExecutor();
+		executor.normalize = true;
+		LinkPrefetcher prefetcher = new LinkPrefetcher(executor);
+
+		assertEquals(1, prefetcher.prefetch(new LinkResponse(URI.create("http://example.com/items/"), "<./page2>; rel=next")));
+		executor.completeAll();
+		assertEquals(0, prefetcher.pendingPrefetches());
+
+		// the target has been released, even though the executor reported a different request URI
+		assertEquals(1, prefetcher.prefetch(new LinkResponse(URI.create("http://example.com/items/"), "<./page2>; rel=next")));
+	}
+
+
+	@Test
+	public void testRejectingExecutor() throws Exception
+	{
+		RecordingExecutor executor = new RecordingExecutor();
+		executor.reject = true;
+		LinkPrefetcher prefetcher = new LinkPrefetcher(executor);
+
+		HttpRequest<String> request = new PrefetchingRequest<String>(new HttpRequest<String>()
+		{
+			@Override
+			public HttpMethod method()
+			{
+				return HttpMethod.GET;
+			}
+
+
+			@Override
+			public HeaderList headers()
+			{
+				return EmptyHeaderList.INSTANCE;
+			}
+
+
+			@Override
+			public HttpRequestEntity requestEntity()
+			{
+				return EmptyHttpRequestEntity.INSTANCE;
+			}
+
+
+			@Override
+			public HttpResponseHandler<String> responseHandler(HttpResponse response)
+			{
+				return new HttpResponseHandler<String>()
+				{
+					@Override
+					public String handleResponse(HttpResponse response)
+					{
+						return "handled";
+					}
+				};
+			}
+		}, prefetcher);
+
+		// the rejected prefetch doesn't fail the primary response
+		LinkResponse response = new LinkResponse(URI.create("http://example.com/"), "</1>; rel=prefetch", "</2>; rel=prefetch");
+		assertEquals("handled", request.responseHandler(response).handleResponse(response));
+		// only the first prefetch has been attempted and its slot has been released
+		assertEquals(1, executor.rejected);
+		assertEquals(0, prefetcher.pendingPrefetches());
+
+		executor.reject = false;
+		assertEquals(2, prefetcher.prefetch(response));
+	}
+
+	/**
+	 * An {@link HttpRequestExecutor} that records asynchronous requests and completes them on demand.
+	 */
+	private final static class RecordingExecutor implements HttpRequestExecutor
+	{
+		final List<URI> uris = new ArrayList<URI>();
+		final List<HttpRequest<Void>> requests = new ArrayList<HttpRequest<Void>>();
+		final List<OnResponseCallback<Void>> callbacks = new ArrayList<OnResponseCallback<Void>>();
+		int consumed;
+
+		/**
+		 * Whether to report the request URIs with an explicit default port to the callbacks.
+		 */
+		boolean normalize;
+
+		/**
+		 * Whether to reject asynchronous requests like a saturated executor.
+		 */
+		boolean reject;
+		int rejected;
+
+
+		@Override
+		public <T> T execute(URI uri, HttpRequest<T> request)
+		{
+			throw new UnsupportedOperationException();
+		}
+
+
+		@Override
+		public <T> T execute(URI uri, HttpRequest<T> request, OnRedirectCallback redirectionCallback)
+		{
+			throw new UnsupportedOperationException();
+		}
+
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public <T> void execute(URI uri, HttpRequest<T> request, OnResponseCallback<T> callback)
+		{
+			if (reject)
+			{
+				++rejected;
+				throw new RejectedExecutionException();
+			}
+			uris.add(uri);
+			requests.add((HttpRequest<Void>) request);
+			callbacks.add((OnResponseCallback<Void>) callback);
+		}
+
+
+		@Override
+		public <T> void execute(URI uri, HttpRequest<T> request, OnResponseCallback<T> callback, OnRedirectCallback redirectionCallback)
+		{
+			execute(uri, request, callback);
+		}
+
+
+		void completeAll() throws Exception
+		{
+			for (int i = 0; i < uris.size(); ++i)
+			{
+				LinkResponse response = new LinkResponse(uris.get(i));
+				requests.get(i).responseHandler(response).handleResponse(response);
+				consumed += response.consumed() ? 1 : 0;
+				URI uri = uris.get(i);
+				if (normalize)
+				{
+					uri = URI.create(uri.toString().replace(uri.getAuthority(), uri.getAuthority() + ":80"));
+				}
+				callbacks.get(i).onResponse(uri, uri, null);
+			}
+			uris.clear();
+			requests.clear();
+			callbacks.clear();
+		}
+	}
+
+	/**
+	 * A successful {@link HttpResponse} with {@link HttpHeaders#LINK} headers.
+	 */
+	private final static class LinkResponse implements HttpResponse
+	{
+		private final URI mUri;
+		private final List<Header<Link>> mLinks = new ArrayList<Header<Link>>();
+		private final ByteArrayInputStream mContent = new ByteArrayInputStream(new byte[] { 1, 2, 3 });
+
+
+		public LinkResponse(URI uri, String... links)
+		{
+			mUri = uri;
+			for (String link : links)
+			{
+				mLinks.add(HttpHeaders.LINK.headerFromString(link));
+			}
+		}
+
+
+		boolean consumed()
+		{
+			return mContent.available() == 0;
+		}
+
+
+		@Override
+		public HttpStatus status()
+		{
+			return HttpStatus.OK;
+		}
+
+
+		@Override
+		public <T> boolean hasHeader(HeaderType<T> headerType)
+		{
+			return HttpHeaders.LINK.equals(headerType) && !mLinks.isEmpty();
+		}
+
+
+		@Override
+		public <T> Header<T> firstHeader(HeaderType<T> headerType) throws NoSuchElementException
+		{
+			return headers(headerType).next();
+		}
+
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public <T> Iterator<Header<T>> headers(HeaderType<T> headerType)
+		{
+			List<Header<T>> result = new ArrayList<Header<T>>();
+			if (HttpHeaders.LINK.equals(headerType))
+			{
+				for (Header<Link> link : mLinks)
+				{
+					result.add((Header<T>) link);
+				}
+			}
+			return result.iterator();
+		}
+
+
+		@Override
+		public HttpResponseEntity responseEntity()
+		{
+			return new HttpResponseEntity()
+			{
+				@Override
+				public ContentType contentType()
+				{
+					return null;
+				}
+
+
+				@Override
+				public long contentLength()
+				{
+					return 3;
+				}
+
+
+				@Override
+				public InputStream contentStream() throws IOException
+				{
+					return mContent;
+				}
+			};
+		}
+
+
+		@Override
+		public URI requestUri()
+		{
+			return mUri;
+		}
+
+
+		@Override
+		public URI responseUri()
+		{
+			return mUri;
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package org.dmfs.httpclientinterfaces.requestutils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+
+public class MemoryBudgetTest
+{
+	@Test
+	public void testReserve()
+	{
+		MemoryBudget budget = new MemoryBudget(1000);
+		assertTrue(budget.tryReserve(600));
+		assertTrue(budget.tryReserve(400));
+		assertFalse(budget.tryReserve(1));
+		assertEquals(1000, budget.used());
+		assertEquals(0, budget.available());
+		assertEquals(1, budget.rejections());
+
+		budget.release(700);
+		assertEquals(300, budget.used());
+		assertEquals(1000, budget.peak());
+		assertFalse(budget.tryReserve(701));
+		assertTrue(budget.tryReserve(700));
+		assertEquals(2, budget.rejections());
+	}
+
+
+	@Test
+	public void testBackpressure() throws InterruptedException
+	{
+		final MemoryBudget budget = new MemoryBudget(1000);
+		assertTrue(budget.tryReserve(1000));
+
+		// a request that exceeds the limit fails immediately, a request that can't be served in time times out
+		assertFalse(budget.reserve(1001, 1, TimeUnit.MINUTES));
+		assertFalse(budget.reserve(500, 10, TimeUnit.MILLISECONDS));
+
+		final CountDownLatch started = new CountDownLatch(1);
+		final AtomicBoolean reserved = new AtomicBoolean();
+		Thread waiter = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				started.countDown();
+				try
+				{
+					reserved.set(budget.reserve(500, 1, TimeUnit.MINUTES));
+				}
+				catch (InterruptedException e)
+				{
+					// fail
+				}
+			}
+		};
+		waiter.start();
+		started.await();
+		budget.release(500);
+		waiter.join(10000);
+		assertTrue(reserved.get());
+		assertEquals(1000, budget.used());
+	}
+
+
+	@Test
+	public void testByteArrayOutputStream() throws Exception
+	{
+		MemoryBudget budget = new MemoryBudget(10000);
+		ByteArrayOutputStream out = new ByteArrayOutputStream(4000, Integer.MAX_VALUE, null, budget);
+		assertEquals(0, budget.used());
+
+		out.write(new byte[7000]);
+		assertEquals(7000, budget.used());
+		assertFalse(out.bufferOverflow());
+
+		// the next chunk grows geometrically to 7000 bytes, which exceeds the budget, the stream drops its chunks and just counts
+		out.write(new byte[2000]);
+		assertTrue(out.bufferOverflow());
+		assertEquals(9000, out.length());
+		assertEquals(0, budget.used());
+
+		out.reset();
+		out.write(new byte[100]);
+		assertFalse(out.bufferOverflow());
+		assertEquals(4000, budget.used());
+		out.release();
+		assertEquals(0, budget.used());
+	}
+
+
+	@Test
+	public void testSpillingOutputStream() throws Exception
+	{
+		MemoryBudget budget = new MemoryBudget(10000);
+		SpillingOutputStream out = new SpillingOutputStream(100000, null, 4000, budget);
+		out.write(new byte[3000]);
+		assertFalse(out.spilled());
+		assertEquals(4000, budget.used());
+
+		out.write(new byte[10000]);
+		assertTrue(out.spilled());
+		assertEquals(0, budget.used());
+		assertEquals(13000, out.length());
+		out.release();
+	}
+}
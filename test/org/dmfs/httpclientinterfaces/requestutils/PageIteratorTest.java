@@ -0,0 +1,377 @@
+package org.dmfs.httpclientinterfaces.requestutils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dmfs.httpclientinterfaces.ContentType;
+import org.dmfs.httpclientinterfaces.HttpMethod;
+import org.dmfs.httpclientinterfaces.HttpRequest;
+import org.dmfs.httpclientinterfaces.HttpRequestEntity;
+import org.dmfs.httpclientinterfaces.HttpRequestExecutor;
+import org.dmfs.httpclientinterfaces.HttpResponse;
+import org.dmfs.httpclientinterfaces.HttpResponseEntity;
+import org.dmfs.httpclientinterfaces.HttpResponseHandler;
+import org.dmfs.httpclientinterfaces.HttpStatus;
+import org.dmfs.httpclientinterfaces.OnRedirectCallback;
+import org.dmfs.httpclientinterfaces.OnResponseCallback;
+import org.dmfs.httpclientinterfaces.exceptions.NotFoundException;
+import org.dmfs.httpclientinterfaces.exceptions.ProtocolError;
+import org.dmfs.httpclientinterfaces.exceptions.ProtocolException;
+import org.dmfs.httpclientinterfaces.headers.Header;
+import org.dmfs.httpclientinterfaces.headers.HeaderList;
+import org.dmfs.httpclientinterfaces.headers.HeaderType;
+import org.dmfs.httpclientinterfaces.headers.HttpHeaders;
+import org.dmfs.httpclientinterfaces.headers.impl.EmptyHeaderList;
+import org.junit.Test;
+
+
+public class PageIteratorTest
+{
+
+	@Test
+	public void testIteration() throws Exception
+	{
+		ThreadExecutor background = new ThreadExecutor();
+		PagedExecutor executor = new PagedExecutor(5, -1);
+		PageIterator<String> pages = new PageIterator<String>(executor, background, URI.create("http://example.com/items?page=1"), new PageRequest(), 2);
+
+		List<String> result = new ArrayList<String>();
+		while (pages.hasNext())
+		{
+			result.add(pages.next());
+		}
+
+		assertEquals(
+			new ArrayList<String>(Arrays.asList("http://example.com/items?page=1", "http://example.com/items?page=2",
+				"http://example.com/items?page=3", "http://example.com/items?page=4", "http://example.com/items?page=5")), result);
+		assertFalse(pages.hasNext());
+
+		try
+		{
+			pages.next();
+			fail("NoSuchElementException expected");
+		}
+		catch (NoSuchElementException e)
+		{
+			// pass
+		}
+
+		background.join();
+	}
+
+
+	@Test
+	public void testLookaheadAndClose() throws Exception
+	{
+		ThreadExecutor background = new ThreadExecutor();
+		PagedExecutor executor = new PagedExecutor(100, -1);
+		PageIterator<String> pages = new PageIterator<String>(executor, background, URI.create("http://example.com/items?page=1"), new PageRequest(), 2);
+
+		assertTrue(pages.hasNext());
+		assertEquals("http://example.com/items?page=1", pages.next());
+
+		// give the fetcher some time to fill the lookahead queue
+		Thread.sleep(200);
+
+		// one page taken and two pages ahead of the consumer
+		assertEquals(3, executor.requests.get());
+
+		pages.close();
+		assertFalse(pages.hasNext());
+		background.join();
+		assertEquals(3, executor.requests.get());
+	}
+
+
+	@Test
+	public void testLookahead() throws Exception
+	{
+		for (int lookahead = 1; lookahead <= 3; ++lookahead)
+		{
+			ThreadExecutor background = new ThreadExecutor();
+			PagedExecutor executor = new PagedExecutor(100, -1);
+			PageIterator<String> pages = new PageIterator<String>(executor, background, URI.create("http://example.com/items?page=1"), new PageRequest(),
+				lookahead);
+
+			// give the fetcher some time to fetch as many pages as it may
+			Thread.sleep(200);
+			assertEquals(lookahead, executor.requests.get());
+
+			assertEquals("http://example.com/items?page=1", pages.next());
+			Thread.sleep(200);
+			assertEquals(lookahead + 1, executor.requests.get());
+
+			pages.close();
+			background.join();
+		}
+	}
+
+
+	@Test
+	public void testError() throws Exception
+	{
+		ThreadExecutor background = new ThreadExecutor();
+		PagedExecutor executor = new PagedExecutor(5, 3);
+		PageIterator<String> pages = new PageIterator<String>(executor, background, URI.create("http://example.com/items?page=1"), new PageRequest(), 1);
+
+		assertEquals("http://example.com/items?page=1", pages.next());
+		assertEquals("http://example.com/items?page=2", pages.next());
+		try
+		{
+			pages.hasNext();
+			fail("NotFoundException expected");
+		}
+		catch (NotFoundException e)
+		{
+			// pass
+		}
+		background.join();
+	}
+
+	@Test
+	public void testCycle() throws Exception
+	{
+		ThreadExecutor background = new ThreadExecutor();
+		PagedExecutor executor = new PagedExecutor(3, -1, true);
+		PageIterator<String> pages = new PageIterator<String>(executor, background, URI.create("http://example.com/items?page=1"), new PageRequest(), 2);
+
+		List<String> result = new ArrayList<String>();
+		while (pages.hasNext())
+		{
+			result.add(pages.next());
+		}
+
+		// the last page links back to the first one, which is not fetched again
+		assertEquals(
+			new ArrayList<String>(Arrays.asList("http://example.com/items?page=1", "http://example.com/items?page=2", "http://example.com/items?page=3")),
+			result);
+		assertEquals(3, executor.requests.get());
+		background.join();
+	}
+
+
+	/**
+	 * An {@link Executor} that runs each task in a new {@link Thread}.
+	 */
+	private final static class ThreadExecutor implements Executor
+	{
+		private final List<Thread> mThreads = new ArrayList<Thread>();
+
+
+		@Override
+		public void execute(Runnable command)
+		{
+			Thread thread = new Thread(command);
+			mThreads.add(thread);
+			thread.start();
+		}
+
+
+		void join() throws InterruptedException
+		{
+			for (Thread thread : mThreads)
+			{
+				thread.join(5000);
+				assertFalse(thread.isAlive());
+			}
+		}
+	}
+
+	/**
+	 * A request that returns the response URI as the page.
+	 */
+	private final static class PageRequest implements HttpRequest<String>
+	{
+		@Override
+		public HttpMethod method()
+		{
+			return HttpMethod.GET;
+		}
+
+
+		@Override
+		public HeaderList headers()
+		{
+			return EmptyHeaderList.INSTANCE;
+		}
+
+
+		@Override
+		public HttpRequestEntity requestEntity()
+		{
+			return EmptyHttpRequestEntity.INSTANCE;
+		}
+
+
+		@Override
+		public HttpResponseHandler<String> responseHandler(HttpResponse response) throws IOException, ProtocolError, ProtocolException
+		{
+			if (!response.status().isSuccess())
+			{
+				return DefaultResponseHandler.getInstance();
+			}
+			return new HttpResponseHandler<String>()
+			{
+				@Override
+				public String handleResponse(HttpResponse response)
+				{
+					return response.responseUri().toASCIIString();
+				}
+			};
+		}
+	}
+
+	/**
+	 * An {@link HttpRequestExecutor} that serves a number of pages linked by "next" links.
+	 */
+	private final static class PagedExecutor implements HttpRequestExecutor
+	{
+		private final int mPageCount;
+		private final int mMissingPage;
+		final AtomicInteger requests = new AtomicInteger();
+
+
+		/**
+		 * Whether the last page links back to the first one.
+		 */
+		private final boolean mCycle;
+
+
+		public PagedExecutor(int pageCount, int missingPage)
+		{
+			this(pageCount, missingPage, false);
+		}
+
+
+		public PagedExecutor(int pageCount, int missingPage, boolean cycle)
+		{
+			mPageCount = pageCount;
+			mMissingPage = missingPage;
+			mCycle = cycle;
+		}
+
+
+		@Override
+		public <T> T execute(final URI uri, HttpRequest<T> request) throws IOException, ProtocolError, ProtocolException
+		{
+			requests.incrementAndGet();
+			final int page = Integer.parseInt(uri.getQuery().substring("page=".length()));
+			HttpResponse response = new HttpResponse()
+			{
+				@Override
+				public HttpStatus status()
+				{
+					return page == mMissingPage ? HttpStatus.NOT_FOUND : HttpStatus.OK;
+				}
+
+
+				@Override
+				public <V> boolean hasHeader(HeaderType<V> headerType)
+				{
+					return headers(headerType).hasNext();
+				}
+
+
+				@Override
+				public <V> Header<V> firstHeader(HeaderType<V> headerType)
+				{
+					return headers(headerType).next();
+				}
+
+
+				@SuppressWarnings("unchecked")
+				@Override
+				public <V> Iterator<Header<V>> headers(HeaderType<V> headerType)
+				{
+					if ((page < mPageCount || mCycle) && HttpHeaders.LINK.equals(headerType))
+					{
+						// all links in a single header, like GitHub does
+						String links = String.format("<items?page=1>; rel=\"first\", <items?page=%d>; rel=\"prev\", <items?page=%d>; rel=\"next\"",
+							Math.max(page - 1, 1), page < mPageCount ? page + 1 : 1);
+						return Collections.singletonList((Header<V>) HttpHeaders.LINK.headerFromString(links)).iterator();
+					}
+					return Collections.emptyIterator();
+				}
+
+
+				@Override
+				public HttpResponseEntity responseEntity()
+				{
+					return new HttpResponseEntity()
+					{
+						@Override
+						public ContentType contentType()
+						{
+							return null;
+						}
+
+
+						@Override
+						public long contentLength()
+						{
+							return 0;
+						}
+
+
+						@Override
+						public InputStream contentStream()
+						{
+							return new ByteArrayInputStream(new byte[0]);
+						}
+					};
+				}
+
+
+				@Override
+				public URI requestUri()
+				{
+					return uri;
+				}
+
+
+				@Override
+				public URI responseUri()
+				{
+					return uri;
+				}
+			};
+			return request.responseHandler(response).handleResponse(response);
+		}
+
+
+		@Override
+		public <T> T execute(URI uri, HttpRequest<T> request, OnRedirectCallback redirectionCallback) throws IOException, ProtocolError, ProtocolException
+		{
+			return execute(uri, request);
+		}
+
+
+		@Override
+		public <T> void execute(URI uri, HttpRequest<T> request, OnResponseCallback<T> callback)
+		{
+			throw new UnsupportedOperationException();
+		}
+
+
+		@Override
+		public <T> void execute(URI uri, HttpRequest<T> request, OnResponseCallback<T> callback, OnRedirectCallback redirectionCallback)
+		{
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package org.dmfs.httpclientinterfaces.requestutils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+
+public class SharedChunkPoolTest
+{
+
+	@Test
+	public void testSizeClasses()
+	{
+		SharedChunkPool pool = new SharedChunkPool(1024, 8192, 1024 * 1024, 0);
+		assertEquals(1024, pool.acquire(1).length);
+		assertEquals(1024, pool.acquire(1024).length);
+		assertEquals(2048, pool.acquire(1025).length);
+		assertEquals(8192, pool.acquire(8000).length);
+		// larger than the largest size class
+		assertEquals(10000, pool.acquire(10000).length);
+		assertEquals(5, pool.allocations());
+	}
+
+
+	@Test
+	public void testEmptyChunk()
+	{
+		SharedChunkPool pool = new SharedChunkPool(1024, 8192, 1024 * 1024, 4096);
+		// the smallest size class serves empty chunks too
+		byte[] chunk = pool.acquire(0);
+		assertEquals(1024, chunk.length);
+		pool.release(chunk);
+		assertSame(chunk, pool.acquire(0));
+		assertEquals(4096, SharedChunkPool.getInstance().acquire(0).length);
+
+		try
+		{
+			pool.acquire(-1);
+			fail("IllegalArgumentException expected");
+		}
+		catch (IllegalArgumentException e)
+		{
+			// pass
+		}
+	}
+
+
+	@Test
+	public void testThreadCache()
+	{
+		SharedChunkPool pool = new SharedChunkPool(1024, 8192, 0, 4096);
+		byte[] chunk = pool.acquire(2000);
+		pool.release(chunk);
+		// the global pool is disabled, so this comes from the thread cache
+		assertSame(chunk, pool.acquire(1500));
+		assertEquals(0, pool.pooledBytes());
+		assertEquals(1, pool.recycled());
+
+		// the thread cache takes only 4096 bytes
+		byte[] chunk1 = pool.acquire(4096);
+		byte[] chunk2 = pool.acquire(4096);
+		pool.release(chunk1);
+		pool.release(chunk2);
+		assertSame(chunk1, pool.acquire(4096));
+		assertEquals(3, pool.allocations());
+	}
+
+
+	@Test
+	public void testGlobalPool() throws InterruptedException
+	{
+		final SharedChunkPool pool = new SharedChunkPool(1024, 8192, 4096, 0);
+		final byte[][] chunks = new byte[3][];
+		for (int i = 0; i < chunks.length; ++i)
+		{
+			chunks[i] = pool.acquire(2048);
+		}
+		for (byte[] chunk : chunks)
+		{
+			pool.release(chunk);
+		}
+		// only two chunks fit into the pool
+		assertEquals(4096, pool.pooledBytes());
+
+		// foreign chunks are not pooled
+		pool.release(new byte[3000]);
+		pool.release(new byte[512]);
+		assertEquals(4096, pool.pooledBytes());
+
+		// other threads can take chunks from the global pool
+		final CountDownLatch done = new CountDownLatch(1);
+		final byte[][] result = new byte[2][];
+		new Thread()
+		{
+			@Override
+			public void run()
+			{
+				result[0] = pool.acquire(2048);
+				result[1] = pool.acquire(2048);
+				done.countDown();
+			}
+		}.start();
+		done.await();
+		assertSame(chunks[0], result[0]);
+		assertSame(chunks[1], result[1]);
+		assertEquals(0, pool.pooledBytes());
+		assertEquals(2, pool.recycled());
+	}
+
+
+	@Test
+	public void testTrimThreadCache()
+	{
+		SharedChunkPool pool = new SharedChunkPool(1024, 8192, 2048, 4096);
+		byte[] chunk1 = pool.acquire(2048);
+		byte[] chunk2 = pool.acquire(2048);
+		pool.release(chunk1);
+		pool.release(chunk2);
+		// both chunks are in the thread cache
+		assertEquals(0, pool.pooledBytes());
+
+		pool.trimThreadCache();
+		// only one of them fits into the global pool
+		assertEquals(2048, pool.pooledBytes());
+		pool.acquire(2048);
+		assertEquals(0, pool.pooledBytes());
+		assertEquals(1, pool.recycled());
+		pool.acquire(2048);
+		assertEquals(3, pool.allocations());
+	}
+}
@@ -1,13 +1,21 @@
 package org.dmfs.httpclientinterfaces.utils;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
 
 import org.dmfs.httpclientinterfaces.requestutils.ByteArrayOutputStream;
+import org.dmfs.httpclientinterfaces.requestutils.SharedChunkPool;
 import org.junit.Test;
 
 
@@ -176,6 +184,145 @@ public class ByteArrayOutputStreamTest
 	}
 
 
+	/**
+	 * Write to a stream that takes its chunks from a pool and release them.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testPooled() throws IOException
+	{
+		SharedChunkPool pool = new SharedChunkPool(1024, 64 * 1024, 1024 * 1024, 0);
+		ByteArrayOutputStream testStream = new ByteArrayOutputStream(1000, Integer.MAX_VALUE, pool);
+		// no chunk must be taken before the first write
+		assertEquals(0, pool.allocations());
+
+		for (int round = 0; round < 3; ++round)
+		{
+			for (int i = 0; i < 100; ++i)
+			{
+				testStream.write(getTestBuffer(i * 999 + 1, 999));
+			}
+			testStream.write((byte) (100 * 999 + 1));
+			VerifyingOutputStream verifyer = new VerifyingOutputStream();
+			testStream.writeTo(verifyer);
+			assertEquals(100 * 999 + 1, verifyer.count);
+			testStream.release();
+			assertEquals(0, testStream.length());
+		}
+
+		// the later rounds must have been served from the pool
+		assertEquals(pool.allocations() * 2, pool.recycled());
+		testStream.close();
+	}
+
+
+	/**
+	 * Verify the buffer grows geometrically, but not beyond the buffer size limit.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testGrowth() throws IOException
+	{
+		ByteArrayOutputStream testStream = new ByteArrayOutputStream(1024);
+		testStream.write(getTestBuffer(1, 1024 * 1024));
+		// the remainder of a large write gets a single chunk
+		assertEquals(2, testStream.chunks());
+		testStream.write(1);
+		assertEquals(3, testStream.chunks());
+		assertEquals(1024 * 1024 + ByteArrayOutputStream.MAX_GROWTH_CHUNK_SIZE, testStream.capacity());
+
+		testStream = new ByteArrayOutputStream(1000, 5000);
+		for (int i = 0; i < 5000; ++i)
+		{
+			testStream.write((byte) (i + 1));
+		}
+		// 1000 + 1000 + 2000 + 1000
+		assertEquals(4, testStream.chunks());
+		assertEquals(5000, testStream.capacity());
+		VerifyingOutputStream verifyer = new VerifyingOutputStream();
+		testStream.writeTo(verifyer);
+		assertEquals(5000, verifyer.count);
+		testStream.close();
+	}
+
+
+	/**
+	 * Read the content through the buffer, stream and channel views and write it with a gathering write.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testViews() throws IOException
+	{
+		ByteArrayOutputStream testStream = new ByteArrayOutputStream(1000);
+		assertEquals(0, testStream.buffers().length);
+		assertEquals(-1, testStream.inputStream().read());
+
+		for (int i = 0; i < 10; ++i)
+		{
+			testStream.write(getTestBuffer(i * 777 + 1, 777));
+		}
+		byte[] expected = getTestBuffer(1, 7770);
+
+		ByteBuffer[] buffers = testStream.buffers();
+		// 1000 + 1000 + 2000 + 4000 bytes
+		assertEquals(4, buffers.length);
+		int total = 0;
+		for (ByteBuffer buffer : buffers)
+		{
+			total += buffer.remaining();
+		}
+		assertEquals(7770, total);
+
+		// input stream
+		InputStream in = testStream.inputStream();
+		java.io.ByteArrayOutputStream result = new java.io.ByteArrayOutputStream();
+		assertEquals(1, in.read());
+		assertEquals(10, in.skip(10));
+		byte[] buffer = new byte[333];
+		int read;
+		while ((read = in.read(buffer)) >= 0)
+		{
+			result.write(buffer, 0, read);
+		}
+		assertArrayEquals(Arrays.copyOfRange(expected, 11, expected.length), result.toByteArray());
+
+		// channel
+		ReadableByteChannel channel = testStream.channel();
+		ByteBuffer target = ByteBuffer.allocate(8000);
+		ByteBuffer small = ByteBuffer.allocate(1234);
+		assertEquals(1234, channel.read(small));
+		target.put((ByteBuffer) small.flip());
+		while (channel.read(target) >= 0)
+		{
+		}
+		target.flip();
+		byte[] channelResult = new byte[target.remaining()];
+		target.get(channelResult);
+		assertArrayEquals(expected, channelResult);
+
+		// gathering write
+		File file = File.createTempFile("test", ".tmp");
+		try
+		{
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			testStream.writeTo(raf.getChannel());
+			byte[] fileContent = new byte[(int) raf.length()];
+			raf.seek(0);
+			raf.readFully(fileContent);
+			raf.close();
+			assertArrayEquals(expected, fileContent);
+		}
+		finally
+		{
+			file.delete();
+		}
+		testStream.close();
+	}
+
+
 	private byte[] getTestBuffer(int offset, int len)
 	{
 		byte[] result = new byte[len];
@@ -0,0 +1,192 @@
+package org.dmfs.httpclientinterfaces.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Random;
+
+import org.dmfs.httpclientinterfaces.ContentType;
+import org.dmfs.httpclientinterfaces.HttpRequestEntity;
+import org.dmfs.httpclientinterfaces.HttpResponseEntity;
+import org.junit.Test;
+
+
+public class ChannelEntityAdapterTest
+{
+	private final static byte[] CONTENT = new byte[50000];
+
+	static
+	{
+		new Random(42).nextBytes(CONTENT);
+	}
+
+
+	private static byte[] read(ReadableByteChannel channel) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ByteBuffer buffer = ByteBuffer.allocate(999);
+		while (channel.read(buffer) >= 0)
+		{
+			buffer.flip();
+			out.write(buffer.array(), 0, buffer.limit());
+			buffer.clear();
+		}
+		return out.toByteArray();
+	}
+
+
+	@Test
+	public void testStreamEntityToChannel() throws IOException
+	{
+		HttpRequestEntity entity = new HttpRequestEntity()
+		{
+			@Override
+			public ContentType contentType()
+			{
+				return new ContentType("application/octet-stream");
+			}
+
+
+			@Override
+			public long contentLength()
+			{
+				return CONTENT.length;
+			}
+
+
+			@Override
+			public void writeContent(OutputStream out) throws IOException
+			{
+				out.write(CONTENT, 0, 1000);
+				out.write(CONTENT[1000]);
+				out.write(CONTENT, 1001, CONTENT.length - 1001);
+			}
+		};
+
+		ChannelRequestEntityAdapter adapter = new ChannelRequestEntityAdapter(entity);
+		assertEquals(CONTENT.length, adapter.contentLength());
+		assertEquals("application/octet-stream", adapter.contentType().type);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		adapter.writeContent(Channels.newChannel(out));
+		assertArrayEquals(CONTENT, out.toByteArray());
+	}
+
+
+	@Test
+	public void testChannelEntityToStream() throws IOException
+	{
+		final int[] channelWrites = new int[1];
+		AbstractChannelRequestEntity entity = new AbstractChannelRequestEntity()
+		{
+			@Override
+			public ContentType contentType()
+			{
+				return null;
+			}
+
+
+			@Override
+			public long contentLength()
+			{
+				return CONTENT.length;
+			}
+
+
+			@Override
+			public void writeContent(WritableByteChannel channel) throws IOException
+			{
+				++channelWrites[0];
+				ByteBuffer buffer = ByteBuffer.wrap(CONTENT);
+				while (buffer.hasRemaining())
+				{
+					channel.write(buffer);
+				}
+			}
+		};
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		entity.writeContent(out);
+		assertArrayEquals(CONTENT, out.toByteArray());
+
+		// the adapter must pass the channel through
+		out.reset();
+		new ChannelRequestEntityAdapter(entity).writeContent(Channels.newChannel(out));
+		assertArrayEquals(CONTENT, out.toByteArray());
+		assertEquals(2, channelWrites[0]);
+	}
+
+
+	@Test
+	public void testResponseEntities() throws IOException
+	{
+		HttpResponseEntity streamEntity = new HttpResponseEntity()
+		{
+			@Override
+			public ContentType contentType()
+			{
+				return null;
+			}
+
+
+			@Override
+			public long contentLength()
+			{
+				return CONTENT.length;
+			}
+
+
+			@Override
+			public InputStream contentStream()
+			{
+				return new ByteArrayInputStream(CONTENT);
+			}
+		};
+		assertArrayEquals(CONTENT, read(new ChannelResponseEntityAdapter(streamEntity).contentChannel()));
+
+		final ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream(CONTENT));
+		AbstractChannelResponseEntity channelEntity = new AbstractChannelResponseEntity()
+		{
+			@Override
+			public ContentType contentType()
+			{
+				return null;
+			}
+
+
+			@Override
+			public long contentLength()
+			{
+				return CONTENT.length;
+			}
+
+
+			@Override
+			public ReadableByteChannel contentChannel()
+			{
+				return channel;
+			}
+		};
+		assertSame(channel, new ChannelResponseEntityAdapter(channelEntity).contentChannel());
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		InputStream in = channelEntity.contentStream();
+		byte[] buffer = new byte[999];
+		int read;
+		while ((read = in.read(buffer)) >= 0)
+		{
+			out.write(buffer, 0, read);
+		}
+		assertArrayEquals(CONTENT, out.toByteArray());
+	}
+}